@@ -0,0 +1,329 @@
+package cdds.codec;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.UnsafeByteOperations;
+
+import ccsds.cdds.v1.Monitoring.FunctionalResourceParameter;
+import ccsds.cdds.v1.Monitoring.GenericMonitoringParameter;
+import ccsds.cdds.v1.Monitoring.MonitoringMessage;
+import ccsds.cdds.v1.Telecommand.ReportRequest;
+import ccsds.cdds.v1.Telecommand.TelecommandMessage;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiation;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequest;
+import ccsds.cdds.v1.Telecommand.TelecommandReport;
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Tracking.AtomicSegment;
+import ccsds.cdds.v1.Tracking.Format;
+import ccsds.cdds.v1.Tracking.TdmTypeText;
+import ccsds.cdds.v1.Tracking.TrackingDataMessage;
+import ccsds.cdds.v1.Types.Alarm;
+import ccsds.cdds.v1.Types.AlarmQualifier;
+import ccsds.cdds.v1.Types.Annotation;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.DateTime;
+import ccsds.cdds.v1.Types.EncodedQualifiedValue;
+import ccsds.cdds.v1.Types.FrameQuality;
+import ccsds.cdds.v1.Types.ObjectIdentifier;
+import ccsds.cdds.v1.Types.ProductionState;
+import ccsds.cdds.v1.Types.QualifiedValue;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.Types.Value;
+import ccsds.cdds.v1.Types.ValueQualifier;
+import cdds.tm.TestTelemetryFile;
+import cdds.util.TimeUtil;
+
+/**
+ * JMH benchmark of the protobuf encoding and decoding of the CDDS messages, the baseline to judge
+ * schema changes of the proto files against.
+ * Run with: mvn test -Pbenchmark -Dtest=MessageCodecBenchmark
+ *
+ * Each message is serialized to a byte array and parsed from it:
+ *  - TelemetryMessage for frames of 64 bytes to the maximum USLP frame of 65536 bytes, with 0 and 8 private
+ *    annotations and 1 and 4 reception meta data (apertures), also parsed aliasing the frame data
+ *  - TelecommandMessage with radiation requests of 64 and 1024 byte TC frames
+ *  - TelecommandReport with a radiation report
+ *  - MonitoringMessage with 1 and 32 generic and functional resource parameters each
+ *  - TrackingDataMessage with 1 and 16 atomic KVN segments
+ * The GC profiler reports the bytes allocated per message, the test fails if the aliasing parse of
+ * the largest frames copies the frame data.
+ */
+@Tag("benchmark")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    private static final int USLP_MAX_FRAME_LENGTH = 65536;
+
+    @State(Scope.Thread)
+    public static class TelemetryState {
+
+        @Param({"64", "1115", "65536"})
+        int frameLength;
+
+        @Param({"0", "8"})
+        int numAnnotations;
+
+        @Param({"1", "4"})
+        int numMetaData;
+
+        TelemetryMessage message;
+        byte[] encoded;
+        ByteString encodedBytes;    // wraps the encoded message, immutable for aliasing
+
+        @Setup
+        public void setup() {
+            TelemetryData.Builder data = TelemetryData.newBuilder()
+                .setFrameQuality(FrameQuality.GOOD)
+                .setData(ByteString.copyFrom(TestTelemetryFile.getFrameData(frameLength)));
+            for(int idx = 0; idx < numMetaData; idx++) {
+                data.addMetaData(ReceptionMetaData.newBuilder()
+                    .setReceiveTime(TimeUtil.now())
+                    .setApertureId(ApertureId.newBuilder().setLocalForm("NNO" + idx).build())
+                    .setDataLinkContinuity(0)
+                    .build());
+            }
+            for(int idx = 0; idx < numAnnotations; idx++) {
+                data.addPrivateAnnotation(Annotation.newBuilder()
+                    .setName("annotation" + idx)
+                    .setValue(idx % 2 == 0 ? Value.newBuilder().setInt64Value(idx).build()
+                                           : Value.newBuilder().setStringValue("value" + idx).build())
+                    .build());
+            }
+            message = TelemetryMessage.newBuilder().setSequenceNumber(4711).setTelemetry(data.build()).build();
+            encoded = message.toByteArray();
+            encodedBytes = UnsafeByteOperations.unsafeWrap(encoded);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TelecommandState {
+
+        @Param({"64", "1024"})
+        int frameLength;
+
+        TelecommandMessage message;
+        byte[] encoded;
+
+        @Setup
+        public void setup() {
+            message = TelecommandMessage.newBuilder()
+                .setRadiationRequest(TelecommandRadiationRequest.newBuilder()
+                    .setCommandId(4711)
+                    .setReportRequest(ReportRequest.PRODUCE_REPORT)
+                    .setEarliestRadiationTime(TimeUtil.now())
+                    .setTelecommandFrame(ByteString.copyFrom(TestTelemetryFile.getFrameData(frameLength)))
+                    .build())
+                .build();
+            encoded = message.toByteArray();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TelecommandReportState {
+
+        TelecommandReport message;
+        byte[] encoded;
+
+        @Setup
+        public void setup() {
+            message = TelecommandReport.newBuilder()
+                .setCommandId(4711)
+                .setProductionState(ProductionState.OPERATIONAL)
+                .setBufferAvailable(4711)
+                .setReportGenerationTime(TimeUtil.now())
+                .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                .setRadiation(TelecommandRadiation.newBuilder()
+                    .setRadiationStartTime(TimeUtil.now())
+                    .setRadiationStopTime(TimeUtil.now())
+                    .build())
+                .build();
+            encoded = message.toByteArray();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MonitoringState {
+
+        @Param({"1", "32"})
+        int numParameters;
+
+        MonitoringMessage message;
+        byte[] encoded;
+
+        @Setup
+        public void setup() {
+            DateTime now = TimeUtil.now();
+            MonitoringMessage.Builder monitoring = MonitoringMessage.newBuilder().setProductionState(ProductionState.OPERATIONAL);
+            for(int idx = 0; idx < numParameters; idx++) {
+                monitoring.addGenericMonitoringParameters(GenericMonitoringParameter.newBuilder()
+                    .setIdentifier("antenna.azimuth." + idx)
+                    .setTimeStamp(now)
+                    .setQualifiedValue(QualifiedValue.newBuilder()
+                        .setValue(Value.newBuilder().setDoubleValue(123.456 + idx).build())
+                        .setValueQualifier(ValueQualifier.VALID_VALUE)
+                        .setAlarmQualifier(AlarmQualifier.newBuilder().setAlarm(Alarm.NO_ALARM).build())
+                        .build())
+                    .build());
+                monitoring.addFunctionalResourceParameters(FunctionalResourceParameter.newBuilder()
+                    .setFunctionalResourceParameterIdentifier(ObjectIdentifier.newBuilder()
+                        .addArcs(1).addArcs(3).addArcs(112).addArcs(4).addArcs(4).addArcs(2).addArcs(1).addArcs(idx)
+                        .build())
+                    .setFunctionalResourceInstance(1)
+                    .setTimeStamp(now)
+                    .setParameterValue(EncodedQualifiedValue.newBuilder()
+                        .setEncodedValue(ByteString.copyFrom(new byte[] { 0x02, 0x01, (byte) idx }))
+                        .setValueQualifier(ValueQualifier.VALID_VALUE)
+                        .build())
+                    .build());
+            }
+            message = monitoring.build();
+            encoded = message.toByteArray();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TrackingDataState {
+
+        @Param({"1", "16"})
+        int numSegments;
+
+        TrackingDataMessage message;
+        byte[] encoded;
+
+        @Setup
+        public void setup() {
+            TdmTypeText.Builder tdm = TdmTypeText.newBuilder()
+                .setFormat(Format.KVN)
+                .setHeader("CCSDS_TDM_VERS = 2.0\nCREATION_DATE = 2026-10-18T12:00:00\nORIGINATOR = CDDS\n");
+            for(int idx = 0; idx < numSegments; idx++) {
+                StringBuilder data = new StringBuilder("DATA_START\n");
+                for(int line = 0; line < 60; line++) {
+                    data.append("RANGE = 2026-10-18T12:").append(String.format("%02d:%02d", idx % 60, line))
+                        .append(" 3.7841234567890E+04\n");
+                }
+                tdm.addAtomicSegments(AtomicSegment.newBuilder()
+                    .setMetaData("META_START\nTIME_SYSTEM = UTC\nPARTICIPANT_1 = NNO1\nPARTICIPANT_2 = SAT" + idx
+                        + "\nMODE = SEQUENTIAL\nPATH = 1,2,1\nMETA_STOP\n")
+                    .setData(data.append("DATA_STOP\n").toString())
+                    .build());
+            }
+            message = TrackingDataMessage.newBuilder().setProductionState(ProductionState.OPERATIONAL).setTdmText(tdm.build()).build();
+            encoded = message.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeTelemetry(TelemetryState state) {
+        return state.message.toByteArray();
+    }
+
+    @Benchmark
+    public TelemetryMessage parseTelemetry(TelemetryState state) throws IOException {
+        return TelemetryMessage.parseFrom(state.encoded);
+    }
+
+    @Benchmark
+    public TelemetryMessage parseTelemetryAliased(TelemetryState state) throws IOException {
+        CodedInputStream input = state.encodedBytes.newCodedInput();
+        input.enableAliasing(true);
+        return TelemetryMessage.parseFrom(input);
+    }
+
+    @Benchmark
+    public byte[] serializeTelecommand(TelecommandState state) {
+        return state.message.toByteArray();
+    }
+
+    @Benchmark
+    public TelecommandMessage parseTelecommand(TelecommandState state) throws IOException {
+        return TelecommandMessage.parseFrom(state.encoded);
+    }
+
+    @Benchmark
+    public byte[] serializeTelecommandReport(TelecommandReportState state) {
+        return state.message.toByteArray();
+    }
+
+    @Benchmark
+    public TelecommandReport parseTelecommandReport(TelecommandReportState state) throws IOException {
+        return TelecommandReport.parseFrom(state.encoded);
+    }
+
+    @Benchmark
+    public byte[] serializeMonitoring(MonitoringState state) {
+        return state.message.toByteArray();
+    }
+
+    @Benchmark
+    public MonitoringMessage parseMonitoring(MonitoringState state) throws IOException {
+        return MonitoringMessage.parseFrom(state.encoded);
+    }
+
+    @Benchmark
+    public byte[] serializeTrackingData(TrackingDataState state) {
+        return state.message.toByteArray();
+    }
+
+    @Benchmark
+    public TrackingDataMessage parseTrackingData(TrackingDataState state) throws IOException {
+        return TrackingDataMessage.parseFrom(state.encoded);
+    }
+
+    @Test
+    public void benchmarkCodec() throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(MessageCodecBenchmark.class.getName() + ".")
+            .addProfiler(GCProfiler.class)
+            .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        for(RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            StringBuilder params = new StringBuilder();
+            for(String key : result.getParams().getParamsKeys()) {
+                params.append(key).append('=').append(result.getParams().getParam(key)).append(' ');
+            }
+            Result<?> allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf("%-28s %-48s %10.1f ns/message %10.1f bytes allocated/message%n", benchmark, params,
+                result.getPrimaryResult().getScore(), allocated.getScore());
+
+            if(benchmark.equals("parseTelemetryAliased")
+                && result.getParams().getParam("frameLength").equals(Integer.toString(USLP_MAX_FRAME_LENGTH))) {
+                assertTrue(allocated.getScore() < USLP_MAX_FRAME_LENGTH, "aliasing parse copies the frame data");
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cdds.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event of a TM archive writing buffered data to its file or syncing the file to disk
+ */
+@Name("cdds.ArchiveFlush")
+@Label("Archive Flush")
+@Category({ "CDDS", "Archive" })
+@Description("A TM archive writing buffered messages or syncing its file")
+@StackTrace(false)
+@Threshold("20 ms")
+public class ArchiveFlushEvent extends jdk.jfr.Event {
+
+    public static final String BUFFER = "buffer";
+    public static final String BLOCK = "block";
+    public static final String SYNC = "sync";
+
+    @Label("Archive")
+    @Description("The name of the recorder or the archive file")
+    public String archive;
+
+    @Label("Kind")
+    @Description("buffer, block or sync")
+    public String kind;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Records")
+    public long records;
+}
@@ -0,0 +1,58 @@
+package cdds.jfr;
+
+import cdds.service.common.GrpcUtil;
+import io.grpc.ServerCall;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of the authorization decision for an endpoint requested by a user
+ */
+@Name("cdds.Authorization")
+@Label("Authorization")
+@Category({ "CDDS", "Security" })
+@Description("Authorization decision for the endpoint requested in the call meta data")
+@StackTrace(false)
+public class AuthorizationEvent extends jdk.jfr.Event {
+
+    @Label("Service")
+    public String service;
+
+    @Label("Endpoint")
+    @Description("The canonical endpoint string")
+    public String endpoint;
+
+    @Label("Subject")
+    @Description("The Subject Alternative Names of the user certificate, empty without TLS")
+    public String subject;
+
+    @Label("Authorized")
+    public boolean authorized;
+
+    @Label("Reason")
+    @Description("The reason of a denied authorization")
+    public String reason;
+
+    /**
+     * Commits the event if enabled. The subject is only read from the call if the event is committed.
+     * @param service       TM or TC
+     * @param endpoint      The canonical endpoint string
+     * @param call          The authorized call
+     * @param authorized    The decision
+     * @param reason        The reason of a denied authorization, null if authorized
+     */
+    public static void commit(String service, String endpoint, ServerCall<?, ?> call, boolean authorized, String reason) {
+        AuthorizationEvent event = new AuthorizationEvent();
+        if(event.shouldCommit()) {
+            event.service = service;
+            event.endpoint = endpoint;
+            event.subject = String.join(",", GrpcUtil.getSan(call));
+            event.authorized = authorized;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package cdds.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event of a stream held back by flow control, from the stream found not ready
+ * to the following on ready. Stalls shorter than the threshold are not recorded.
+ */
+@Name("cdds.BackpressureStall")
+@Label("Backpressure Stall")
+@Category({ "CDDS", "Stream" })
+@Description("A stream not ready to send, from isReady() false to the following on ready")
+@StackTrace(false)
+@Threshold("10 ms")
+public class BackpressureStallEvent extends jdk.jfr.Event {
+
+    @Label("Service")
+    public String service;
+
+    @Label("Endpoint")
+    @Description("The canonical endpoint string")
+    public String endpoint;
+}
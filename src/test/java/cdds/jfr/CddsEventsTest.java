@@ -0,0 +1,152 @@
+package cdds.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telecommand.TelecommandMessage;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequest;
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.MetricsRegistry;
+import cdds.service.common.ProviderServer;
+import cdds.service.tc.TcServiceProvider;
+import cdds.service.tc.TcServiceUser;
+import cdds.service.tm.TmProductionNFrames;
+import cdds.service.tm.TmServiceProvider;
+import cdds.service.tm.TmServiceUser;
+import cdds.tm.archive.TmBlockArchiveWriter;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Test for the CDDS JFR events
+ *
+ * 1) testEvents - Records with all CDDS events at threshold 0 while streaming TM, sending a TC, opening an
+ *                 unauthorized TM endpoint and writing a block archive, checks the recorded events
+ */
+public class CddsEventsTest {
+
+    private static final int PROVIDER_PORT = 7683;
+    private static final int FRAME_LENGTH = 1115;
+    private static final String[] EVENTS = { "cdds.StreamOpen", "cdds.StreamClose", "cdds.Authorization",
+        "cdds.BackpressureStall", "cdds.TcRequest", "cdds.ArchiveFlush" };
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    private final TmServiceEndpoint unAuthorizedTmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "unAuthorizedGroundStation",
+        "theSpacecraft", 4711, FrameVersion.AOS, 1);
+
+    private final TcServiceEndpoint tcEndpoint = TcServiceUser.getTcEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, 1);
+
+    @Test
+    public void testEvents() throws Exception {
+        final long numFrames = 10_000;
+        Path recordingFile = Files.createTempFile("cdds-events", ".jfr");
+
+        try(Recording recording = new Recording()) {
+            for(String event : EVENTS) {
+                recording.enable(event).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            TmServiceProvider tmProvider = new TmServiceProvider();
+            tmProvider.setMetricsRegistry(new MetricsRegistry());
+            tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+            TcServiceProvider tcService = new TcServiceProvider();
+            tcService.setMetricsRegistry(new MetricsRegistry());
+            ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider, tcService});
+            server.start();
+            tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+            tcService.addAuthorizedTcEndpoint(tcEndpoint);
+
+            try {
+                TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+                tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+                tmServiceUser.waitForTmFrames(30_000);
+                tmServiceUser.shutdown();
+
+                TmServiceUser unAuthorizedUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+                unAuthorizedUser.openTelemetryEndpoint(unAuthorizedTmEndpoint, 0, 0);
+                assertNotNull(unAuthorizedUser.getLastError(5_000));
+                unAuthorizedUser.shutdown();
+
+                TcServiceUser tcServiceUser = TcServiceUser.buildUnsecureTcServiceUser("localhost", PROVIDER_PORT);
+                tcServiceUser.openTelecommandEndpoint(tcEndpoint);
+                tcServiceUser.sendTelecommand(TelecommandMessage.newBuilder()
+                    .setRadiationRequest(TelecommandRadiationRequest.newBuilder().setCommandId(42).build())
+                    .build());
+                tcServiceUser.waitForTcReports(2);
+                tcServiceUser.stop();
+                tcServiceUser.shutdown();
+            } finally {
+                server.stop();
+            }
+
+            Path archiveFile = Files.createTempFile("cdds-events", ".tmb");
+            try(TmBlockArchiveWriter writer = new TmBlockArchiveWriter(archiveFile)) {
+                for(long idx = 0; idx < 10; idx++) {
+                    writer.write(TelemetryMessage.newBuilder()
+                        .setSequenceNumber(idx)
+                        .setTelemetry(TelemetryData.newBuilder().setData(ByteString.copyFrom(new byte[FRAME_LENGTH])).build())
+                        .build());
+                }
+            }
+            Files.delete(archiveFile);
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        Map<String, List<RecordedEvent>> events;
+        try {
+            events = RecordingFile.readAllEvents(recordingFile).stream()
+                .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+        } finally {
+            Files.delete(recordingFile);
+        }
+        events.forEach((name, recorded) -> System.out.println(name + ": " + recorded.size()));
+
+        String tmKey = MetricsRegistry.endpointKey(tmEndpoint);
+        assertTrue(events.get("cdds.StreamOpen").stream()
+            .anyMatch(event -> tmKey.equals(event.getString("endpoint")) && "TM".equals(event.getString("service"))));
+        assertTrue(events.get("cdds.StreamClose").stream()
+            .anyMatch(event -> tmKey.equals(event.getString("endpoint"))
+                && StreamCloseEvent.COMPLETED.equals(event.getString("reason"))));
+        assertTrue(events.get("cdds.StreamClose").stream().anyMatch(event -> "TC".equals(event.getString("service"))));
+        assertFalse(events.get("cdds.BackpressureStall").isEmpty());
+
+        List<RecordedEvent> authorizations = events.get("cdds.Authorization");
+        assertTrue(authorizations.stream().anyMatch(event -> tmKey.equals(event.getString("endpoint")) && event.getBoolean("authorized")));
+        assertTrue(authorizations.stream().anyMatch(event -> MetricsRegistry.endpointKey(unAuthorizedTmEndpoint).equals(event.getString("endpoint"))
+            && event.getBoolean("authorized") == false));
+
+        RecordedEvent tcRequest = events.get("cdds.TcRequest").get(0);
+        assertEquals(42, tcRequest.getLong("commandId"));
+        assertEquals(2, tcRequest.getInt("numReports"));
+        assertEquals("RADIATION", tcRequest.getString("lastReport"));
+
+        RecordedEvent archiveFlush = events.get("cdds.ArchiveFlush").get(0);
+        assertEquals(ArchiveFlushEvent.BLOCK, archiveFlush.getString("kind"));
+        assertEquals(10, archiveFlush.getLong("records"));
+    }
+}
@@ -0,0 +1,58 @@
+package cdds.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a closed TM or TC stream. The event begins when the stream is opened,
+ * its duration is the lifetime of the stream.
+ */
+@Name("cdds.StreamClose")
+@Label("Stream Close")
+@Category({ "CDDS", "Stream" })
+@Description("A TM or TC stream closed, the duration is the lifetime of the stream")
+@StackTrace(false)
+public class StreamCloseEvent extends jdk.jfr.Event {
+
+    public static final String COMPLETED = "completed";
+    public static final String ERROR = "error";
+    public static final String CANCELLED = "cancelled";
+
+    @Label("Service")
+    public String service;
+
+    @Label("Endpoint")
+    @Description("The canonical endpoint string")
+    public String endpoint;
+
+    @Label("Reason")
+    @Description("completed, error or cancelled")
+    public String reason;
+
+    /**
+     * Creates the event of a stream being opened and begins it
+     * @return The event to commit on close
+     */
+    public static StreamCloseEvent begin(String service, String endpoint) {
+        StreamCloseEvent event = new StreamCloseEvent();
+        event.service = service;
+        event.endpoint = endpoint;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event and commits it if enabled and above the threshold
+     * @param reason    completed, error or cancelled
+     */
+    public void commit(String reason) {
+        end();
+        if(shouldCommit()) {
+            this.reason = reason;
+            commit();
+        }
+    }
+}
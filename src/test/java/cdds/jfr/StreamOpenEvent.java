@@ -0,0 +1,39 @@
+package cdds.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event of a TM or TC stream opened by a user for an endpoint
+ */
+@Name("cdds.StreamOpen")
+@Label("Stream Open")
+@Category({ "CDDS", "Stream" })
+@Description("A TM or TC stream opened for an endpoint")
+@StackTrace(false)
+public class StreamOpenEvent extends jdk.jfr.Event {
+
+    @Label("Service")
+    public String service;
+
+    @Label("Endpoint")
+    @Description("The canonical endpoint string")
+    public String endpoint;
+
+    /**
+     * Commits the event if enabled
+     * @param service   TM or TC
+     * @param endpoint  The canonical endpoint string
+     */
+    public static void commit(String service, String endpoint) {
+        StreamOpenEvent event = new StreamOpenEvent();
+        if(event.shouldCommit()) {
+            event.service = service;
+            event.endpoint = endpoint;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package cdds.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event of a TC request, from its reception to the last report sent in response
+ */
+@Name("cdds.TcRequest")
+@Label("TC Request")
+@Category({ "CDDS", "Telecommand" })
+@Description("A TC request from its reception by the provider to the last report sent in response")
+@StackTrace(false)
+@Threshold("10 ms")
+public class TcRequestEvent extends jdk.jfr.Event {
+
+    @Label("Endpoint")
+    @Description("The canonical endpoint string")
+    public String endpoint;
+
+    @Label("Command ID")
+    public long commandId;
+
+    @Label("Request")
+    @Description("The type of the request, e.g. RADIATIONREQUEST")
+    public String request;
+
+    @Label("Reports")
+    @Description("The number of reports sent in response")
+    public int numReports;
+
+    @Label("Last Report")
+    @Description("The type of the last report, e.g. RADIATION")
+    public String lastReport;
+}
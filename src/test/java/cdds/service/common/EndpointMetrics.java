@@ -0,0 +1,293 @@
+package cdds.service.common;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import ccsds.cdds.v1.Telecommand.TelecommandReport;
+
+/**
+ * The metrics of one service endpoint, shared by all streams of the endpoint.
+ *
+ * The counters are LongAdders, the streams of the endpoint count on their own cells without contending
+ * with each other. The queue depth is a gauge read from the queue when the metrics are read.
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean {
+
+    private static final TelecommandReport.ReportCase[] REPORT_CASES = TelecommandReport.ReportCase.values();
+
+    private static final LongSupplier NO_QUEUE = () -> 0;
+
+    private final String endpoint;
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder onReadyCount = new LongAdder();
+    private final LongAdder backpressureStalls = new LongAdder();
+    private final LongAdder streamsOpened = new LongAdder();
+    private final LongAdder streamsClosed = new LongAdder();
+    private final LongAdder authorizationFailures = new LongAdder();
+    private final LongAdder[] tcReports = new LongAdder[REPORT_CASES.length];
+
+    private volatile LongSupplier queueDepth = NO_QUEUE;
+
+    /**
+     * Creates the metrics with all counters at 0
+     * @param endpoint  The canonical endpoint string, see MetricsRegistry
+     */
+    public EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+        for(int idx = 0; idx < tcReports.length; idx++) {
+            tcReports[idx] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts a frame or message sent to the user
+     * @param numBytes  The serialized size of the message
+     */
+    public void frameSent(int numBytes) {
+        framesSent.increment();
+        bytesSent.add(numBytes);
+    }
+
+    /**
+     * Counts a frame or message received from the user
+     * @param numBytes  The serialized size of the message
+     */
+    public void frameReceived(int numBytes) {
+        framesReceived.increment();
+        bytesReceived.add(numBytes);
+    }
+
+    public void onReady() {
+        onReadyCount.increment();
+    }
+
+    public void backpressureStall() {
+        backpressureStalls.increment();
+    }
+
+    public void streamOpened() {
+        streamsOpened.increment();
+    }
+
+    public void streamClosed() {
+        streamsClosed.increment();
+    }
+
+    public void authorizationFailure() {
+        authorizationFailures.increment();
+    }
+
+    /**
+     * Counts a TC report sent to the user by its type
+     * @param tcReport  The sent report
+     */
+    public void tcReportSent(TelecommandReport tcReport) {
+        tcReports[tcReport.getReportCase().ordinal()].increment();
+    }
+
+    /**
+     * Sets the gauge of the queue depth, e.g. the number of messages in the backlog of the endpoint
+     * @param queueDepth    Called when the metrics are read, null for no queue
+     */
+    public void setQueueDepth(LongSupplier queueDepth) {
+        this.queueDepth = queueDepth != null ? queueDepth : NO_QUEUE;
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getOnReadyCount() {
+        return onReadyCount.sum();
+    }
+
+    @Override
+    public long getBackpressureStalls() {
+        return backpressureStalls.sum();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    @Override
+    public long getStreamsOpened() {
+        return streamsOpened.sum();
+    }
+
+    @Override
+    public long getStreamsClosed() {
+        return streamsClosed.sum();
+    }
+
+    @Override
+    public long getAuthorizationFailures() {
+        return authorizationFailures.sum();
+    }
+
+    /**
+     * @param reportCase    The report type
+     * @return              The number of sent TC reports of the type
+     */
+    public long getTcReports(TelecommandReport.ReportCase reportCase) {
+        return tcReports[reportCase.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getTcReports() {
+        Map<String, Long> reports = new LinkedHashMap<>();
+        for(TelecommandReport.ReportCase reportCase : REPORT_CASES) {
+            if(reportCase != TelecommandReport.ReportCase.REPORT_NOT_SET) {
+                reports.put(reportCase.name(), getTcReports(reportCase));
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * @return The current values of all metrics
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * The values of the metrics of an endpoint at a point in time.
+     * The counters are read one after the other, not atomically with respect to concurrent streams.
+     */
+    public static class Snapshot {
+
+        private final String endpoint;
+        private final long framesSent;
+        private final long bytesSent;
+        private final long framesReceived;
+        private final long bytesReceived;
+        private final long onReadyCount;
+        private final long backpressureStalls;
+        private final long queueDepth;
+        private final long streamsOpened;
+        private final long streamsClosed;
+        private final long authorizationFailures;
+        private final Map<TelecommandReport.ReportCase, Long> tcReports;
+
+        private Snapshot(EndpointMetrics metrics) {
+            this.endpoint = metrics.endpoint;
+            this.framesSent = metrics.getFramesSent();
+            this.bytesSent = metrics.getBytesSent();
+            this.framesReceived = metrics.getFramesReceived();
+            this.bytesReceived = metrics.getBytesReceived();
+            this.onReadyCount = metrics.getOnReadyCount();
+            this.backpressureStalls = metrics.getBackpressureStalls();
+            this.queueDepth = metrics.getQueueDepth();
+            this.streamsOpened = metrics.getStreamsOpened();
+            this.streamsClosed = metrics.getStreamsClosed();
+            this.authorizationFailures = metrics.getAuthorizationFailures();
+
+            Map<TelecommandReport.ReportCase, Long> reports = new EnumMap<>(TelecommandReport.ReportCase.class);
+            for(TelecommandReport.ReportCase reportCase : REPORT_CASES) {
+                long count = metrics.getTcReports(reportCase);
+                if(count > 0) {
+                    reports.put(reportCase, count);
+                }
+            }
+            this.tcReports = Collections.unmodifiableMap(reports);
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public long getFramesSent() {
+            return framesSent;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public long getFramesReceived() {
+            return framesReceived;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getOnReadyCount() {
+            return onReadyCount;
+        }
+
+        public long getBackpressureStalls() {
+            return backpressureStalls;
+        }
+
+        public long getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getStreamsOpened() {
+            return streamsOpened;
+        }
+
+        public long getStreamsClosed() {
+            return streamsClosed;
+        }
+
+        /**
+         * @return The number of streams open at the time of the snapshot
+         */
+        public long getStreamsActive() {
+            return streamsOpened - streamsClosed;
+        }
+
+        public long getAuthorizationFailures() {
+            return authorizationFailures;
+        }
+
+        /**
+         * @return The number of sent TC reports by type, types not sent are left out
+         */
+        public Map<TelecommandReport.ReportCase, Long> getTcReports() {
+            return tcReports;
+        }
+
+        @Override
+        public String toString() {
+            return endpoint + ": sent " + framesSent + " frames " + bytesSent + " bytes, received " + framesReceived
+                + " frames " + bytesReceived + " bytes, on ready " + onReadyCount + ", stalls " + backpressureStalls
+                + ", queue " + queueDepth + ", streams opened " + streamsOpened + " closed " + streamsClosed
+                + ", authorization failures " + authorizationFailures + ", TC reports " + tcReports;
+        }
+    }
+}
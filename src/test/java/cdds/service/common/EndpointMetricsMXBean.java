@@ -0,0 +1,49 @@
+package cdds.service.common;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of one service endpoint, registered by the MetricsRegistry
+ * as cdds:type=EndpointMetrics,endpoint="<canonical endpoint>"
+ */
+public interface EndpointMetricsMXBean {
+
+    /**
+     * @return The canonical endpoint string the metrics are kept for
+     */
+    String getEndpoint();
+
+    long getFramesSent();
+
+    long getBytesSent();
+
+    long getFramesReceived();
+
+    long getBytesReceived();
+
+    /**
+     * @return The number of on ready handler invocations of the streams
+     */
+    long getOnReadyCount();
+
+    /**
+     * @return The number of times a stream was found not ready to send
+     */
+    long getBackpressureStalls();
+
+    /**
+     * @return The number of messages queued for the endpoint at the time of the call
+     */
+    long getQueueDepth();
+
+    long getStreamsOpened();
+
+    long getStreamsClosed();
+
+    long getAuthorizationFailures();
+
+    /**
+     * @return The number of sent TC reports by report type, e.g. ACK or RADIATION
+     */
+    Map<String, Long> getTcReports();
+}
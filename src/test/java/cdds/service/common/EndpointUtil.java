@@ -3,6 +3,7 @@ package cdds.service.common;
 import ccsds.cdds.v1.Types.GvcId;
 import ccsds.cdds.v1.Types.GvcIdList;
 import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
 
 public class EndpointUtil {
     public static final String EQ = "=";
@@ -44,6 +45,39 @@ public class EndpointUtil {
         return s.toString();
     }
 
+    public static String toString(TmServiceEndpoint ep) {
+        return toString(null, ep);
+    }
+
+    public static String toString(String prefix, TmServiceEndpoint ep) {
+        StringBuilder s = new StringBuilder();
+
+        if(prefix != null) {
+            s.append(prefix + DOT);
+        }
+
+        s.append(ep.getServiceProvider() + DOT);
+        if(ep.hasTerminal()) {
+            s.append(ep.getTerminal() + DOT);
+        }
+        s.append(ep.getServiceUser());
+
+        if(ep.hasGvcIds()) {
+            s.append(EndpointUtil.toString(ep.getGvcIds()));
+        } else if(ep.hasFrameQuality()) {
+            s.append(DOT + "quality=" + ep.getFrameQuality());
+        } else {
+            s.append(DOT + "no tm type set");
+        }
+        s.append(DOT + "qos=" + ep.getQos());
+
+        if(ep.hasEndpointName()) {
+            s.append(DOT + ep.getEndpointName());
+        }
+
+        return s.toString();
+    }
+
     /** 
      * String for given GVC ID List
      */
@@ -0,0 +1,92 @@
+package cdds.service.common;
+
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * A ServerCallStreamObserver forwarding all calls to a delegate.
+ * Allows to decorate the stream handed to a production, e.g. to record the sent messages,
+ * while the production keeps using isReady() and setOnReadyHandler() of the underlying call.
+ */
+public class ForwardingServerCallStreamObserver<RespT> extends ServerCallStreamObserver<RespT> {
+
+    protected final ServerCallStreamObserver<RespT> delegate;
+
+    /**
+     * Creates the forwarding stream observer
+     * @param delegate  The stream observer to forward to
+     */
+    public ForwardingServerCallStreamObserver(ServerCallStreamObserver<RespT> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void onNext(RespT value) {
+        delegate.onNext(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        delegate.onError(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        delegate.onCompleted();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return delegate.isCancelled();
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+        delegate.setOnCancelHandler(onCancelHandler);
+    }
+
+    @Override
+    public void setOnReadyThreshold(int numBytes) {
+        delegate.setOnReadyThreshold(numBytes);
+    }
+
+    @Override
+    public void setCompression(String compression) {
+        delegate.setCompression(compression);
+    }
+
+    @Override
+    public void disableAutoRequest() {
+        delegate.disableAutoRequest();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void disableAutoInboundFlowControl() {
+        delegate.disableAutoInboundFlowControl();
+    }
+
+    @Override
+    public boolean isReady() {
+        return delegate.isReady();
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        delegate.setOnReadyHandler(onReadyHandler);
+    }
+
+    @Override
+    public void request(int count) {
+        delegate.request(count);
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+        delegate.setMessageCompression(enable);
+    }
+
+    @Override
+    public void setOnCloseHandler(Runnable onCloseHandler) {
+        delegate.setOnCloseHandler(onCloseHandler);
+    }
+}
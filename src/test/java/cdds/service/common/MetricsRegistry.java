@@ -0,0 +1,159 @@
+package cdds.service.common;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+
+/**
+ * Registry of the metrics of the service endpoints, keyed by the canonical endpoint string.
+ *
+ * The metrics of an endpoint are created on first use and shared by all its streams, the streams look them up
+ * once when opened and count without further lookups. With an MBean server each endpoint is registered as
+ * cdds:type=EndpointMetrics,endpoint="<canonical endpoint>". The pull API snapshot() reads all endpoints.
+ */
+public class MetricsRegistry {
+
+    public static final String JMX_DOMAIN = "cdds";
+
+    public static final String TM_PREFIX = "tm";
+
+    public static final String TC_PREFIX = "tc";
+
+    /** The endpoint of calls without endpoint meta data, following the TM or TC prefix */
+    public static final String UNKNOWN_ENDPOINT = "unknown";
+
+    /**
+     * The endpoint counting the rejected calls for endpoints not authorized, following the TM or TC prefix.
+     * The endpoints requested by unauthorized users are not registered, the registry only grows by configured endpoints.
+     */
+    public static final String UNAUTHORIZED_ENDPOINT = "unauthorized";
+
+    private static final Logger LOG = LogManager.getLogger("cdds.metrics");
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry(ManagementFactory.getPlatformMBeanServer());
+
+    private final Map<String, EndpointMetrics> metrics = new ConcurrentHashMap<>();
+
+    private final MBeanServer mbeanServer;
+
+    /**
+     * Creates a registry without JMX exposure
+     */
+    public MetricsRegistry() {
+        this(null);
+    }
+
+    /**
+     * Creates a registry exposing the endpoint metrics on the given MBean server
+     * @param mbeanServer   The MBean server, null for no JMX exposure
+     */
+    public MetricsRegistry(MBeanServer mbeanServer) {
+        this.mbeanServer = mbeanServer;
+    }
+
+    /**
+     * @return The registry used by the service providers unless set otherwise, exposed on the platform MBean server
+     */
+    public static MetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return The canonical endpoint string of the TM endpoint
+     */
+    public static String endpointKey(TmServiceEndpoint tmEndpoint) {
+        return EndpointUtil.toString(TM_PREFIX, tmEndpoint);
+    }
+
+    /**
+     * @return The canonical endpoint string of the TC endpoint
+     */
+    public static String endpointKey(TcServiceEndpoint tcEndpoint) {
+        return EndpointUtil.toString(TC_PREFIX, tcEndpoint);
+    }
+
+    /**
+     * @param endpoint  The canonical endpoint string
+     * @return          The JMX name of the endpoint metrics
+     */
+    public static ObjectName objectName(String endpoint) throws MalformedObjectNameException {
+        return new ObjectName(JMX_DOMAIN + ":type=EndpointMetrics,endpoint=" + ObjectName.quote(endpoint));
+    }
+
+    /**
+     * Gets the metrics of the endpoint, created and registered on first use
+     * @param endpoint  The canonical endpoint string
+     * @return          The metrics of the endpoint
+     */
+    public EndpointMetrics get(String endpoint) {
+        EndpointMetrics endpointMetrics = metrics.get(endpoint);
+        if(endpointMetrics != null) {
+            return endpointMetrics;
+        }
+        return metrics.computeIfAbsent(endpoint, this::register);
+    }
+
+    public EndpointMetrics get(TmServiceEndpoint tmEndpoint) {
+        return get(endpointKey(tmEndpoint));
+    }
+
+    public EndpointMetrics get(TcServiceEndpoint tcEndpoint) {
+        return get(endpointKey(tcEndpoint));
+    }
+
+    /**
+     * @return The metrics of all endpoints, sorted by the canonical endpoint string
+     */
+    public Map<String, EndpointMetrics.Snapshot> snapshot() {
+        Map<String, EndpointMetrics.Snapshot> snapshot = new TreeMap<>();
+        metrics.forEach((endpoint, endpointMetrics) -> snapshot.put(endpoint, endpointMetrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * @param endpoint  The canonical endpoint string
+     * @return          The metrics of the endpoint, null if nothing was counted for the endpoint
+     */
+    public EndpointMetrics.Snapshot snapshot(String endpoint) {
+        EndpointMetrics endpointMetrics = metrics.get(endpoint);
+        return endpointMetrics != null ? endpointMetrics.snapshot() : null;
+    }
+
+    /**
+     * Removes the metrics of an endpoint and its MBean. Streams still open keep counting on the removed metrics.
+     * @param endpoint  The canonical endpoint string
+     */
+    public void remove(String endpoint) {
+        if(metrics.remove(endpoint) != null && mbeanServer != null) {
+            try {
+                mbeanServer.unregisterMBean(objectName(endpoint));
+            } catch(JMException e) {
+                LOG.warn("Failed to unregister the metrics of endpoint " + endpoint + ": " + e);
+            }
+        }
+    }
+
+    private EndpointMetrics register(String endpoint) {
+        EndpointMetrics endpointMetrics = new EndpointMetrics(endpoint);
+        if(mbeanServer != null) {
+            try {
+                mbeanServer.registerMBean(endpointMetrics, objectName(endpoint));
+            } catch(JMException e) {
+                LOG.warn("Failed to register the metrics of endpoint " + endpoint + ": " + e);
+            }
+        }
+        return endpointMetrics;
+    }
+}
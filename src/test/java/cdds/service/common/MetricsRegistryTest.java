@@ -0,0 +1,194 @@
+package cdds.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.openmbean.TabularData;
+
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Telecommand.TelecommandMessage;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequest;
+import ccsds.cdds.v1.Telecommand.TelecommandReport;
+import ccsds.cdds.v1.Telecommand.TelecommandStatusReportRequest;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.tc.TcServiceProvider;
+import cdds.service.tc.TcServiceUser;
+import cdds.service.tm.TmProductionNFrames;
+import cdds.service.tm.TmServiceProvider;
+import cdds.service.tm.TmServiceUser;
+
+/**
+ * Test for the endpoint metrics registry
+ *
+ * 1) testTmStream - Streams TM frames and checks the sent frames and bytes, on ready and the stream open / close,
+ *                   read from the snapshot and over JMX
+ * 2) testTcReports - Sends TC radiation and report requests and checks the received TC and the reports by type
+ * 3) testAuthorizationFailure - Opens an unauthorized TM endpoint and checks the failure counted under the unauthorized key
+ * 4) testRemove - Removes the metrics of an endpoint together with its MBean
+ */
+public class MetricsRegistryTest {
+
+    private static final int PROVIDER_PORT = 7682;
+    private static final int FRAME_LENGTH = 1115;
+    private static final long TIMEOUT = 5_000;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    private final TmServiceEndpoint unAuthorizedTmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "unAuthorizedGroundStation",
+        "theSpacecraft", 4711, FrameVersion.AOS, 1);
+
+    private final TcServiceEndpoint tcEndpoint = TcServiceUser.getTcEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, 1);
+
+    @Test
+    public void testTmStream() throws Exception {
+        final long numFrames = 10_000;
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry(mbeanServer);
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.setMetricsRegistry(registry);
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        try {
+            TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+            tmServiceUser.waitForTmFrames(30_000);
+            tmServiceUser.whenCompleted().get(TIMEOUT, TimeUnit.MILLISECONDS);
+            tmServiceUser.shutdown();
+        } finally {
+            server.stop();
+        }
+
+        String key = MetricsRegistry.endpointKey(tmEndpoint);
+        assertEquals(key, registry.snapshot().keySet().iterator().next());
+        EndpointMetrics.Snapshot snapshot = registry.snapshot(key);
+        System.out.println(snapshot);
+
+        assertEquals(numFrames, snapshot.getFramesSent());
+        assertTrue(snapshot.getBytesSent() > numFrames * FRAME_LENGTH);
+        assertTrue(snapshot.getOnReadyCount() >= 1);
+        assertEquals(1, snapshot.getStreamsOpened());
+        assertEquals(1, snapshot.getStreamsClosed());
+        assertEquals(0, snapshot.getStreamsActive());
+        assertEquals(0, snapshot.getAuthorizationFailures());
+
+        assertEquals(numFrames, mbeanServer.getAttribute(MetricsRegistry.objectName(key), "FramesSent"));
+        assertEquals(snapshot.getBytesSent(), mbeanServer.getAttribute(MetricsRegistry.objectName(key), "BytesSent"));
+    }
+
+    @Test
+    public void testTcReports() throws Exception {
+        final int numRadiations = 3;
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry(mbeanServer);
+
+        TcServiceProvider tcService = new TcServiceProvider();
+        tcService.setMetricsRegistry(registry);
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tcService});
+        server.start();
+        tcService.addAuthorizedTcEndpoint(tcEndpoint);
+
+        String key = MetricsRegistry.endpointKey(tcEndpoint);
+        try {
+            TcServiceUser tcServiceUser = TcServiceUser.buildUnsecureTcServiceUser("localhost", PROVIDER_PORT);
+            tcServiceUser.openTelecommandEndpoint(tcEndpoint);
+            for(int commandId = 1; commandId <= numRadiations; commandId++) {
+                tcServiceUser.sendTelecommand(TelecommandMessage.newBuilder()
+                    .setRadiationRequest(TelecommandRadiationRequest.newBuilder().setCommandId(commandId).build())
+                    .build());
+            }
+            tcServiceUser.sendTelecommand(TelecommandMessage.newBuilder()
+                .setReportRequest(TelecommandStatusReportRequest.newBuilder().build())
+                .build());
+            tcServiceUser.waitForTcReports(2 * numRadiations + 1);
+            tcServiceUser.stop();
+
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            while(registry.snapshot(key).getStreamsClosed() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            tcServiceUser.shutdown();
+        } finally {
+            server.stop();
+        }
+
+        EndpointMetrics.Snapshot snapshot = registry.snapshot(key);
+        System.out.println(snapshot);
+
+        assertEquals(numRadiations + 1, snapshot.getFramesReceived());
+        assertTrue(snapshot.getBytesReceived() > 0);
+        assertEquals(2 * numRadiations + 1, snapshot.getFramesSent());
+        assertEquals(numRadiations, snapshot.getTcReports().get(TelecommandReport.ReportCase.ACK));
+        assertEquals(numRadiations, snapshot.getTcReports().get(TelecommandReport.ReportCase.RADIATION));
+        assertEquals(1, snapshot.getTcReports().get(TelecommandReport.ReportCase.PROVIDERSTATUS));
+        assertNull(snapshot.getTcReports().get(TelecommandReport.ReportCase.FAILURE));
+        assertEquals(1, snapshot.getStreamsOpened());
+        assertEquals(1, snapshot.getStreamsClosed());
+
+        TabularData tcReports = (TabularData) mbeanServer.getAttribute(MetricsRegistry.objectName(key), "TcReports");
+        assertEquals((long) numRadiations, tcReports.get(new Object[] { "ACK" }).get("value"));
+    }
+
+    @Test
+    public void testAuthorizationFailure() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.setMetricsRegistry(registry);
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(10, FRAME_LENGTH));
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        try {
+            TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            tmServiceUser.openTelemetryEndpoint(unAuthorizedTmEndpoint, 0, 0);
+            assertNotNull(tmServiceUser.getLastError(TIMEOUT));
+            tmServiceUser.shutdown();
+        } finally {
+            server.stop();
+        }
+
+        Map<String, EndpointMetrics.Snapshot> snapshot = registry.snapshot();
+        System.out.println(snapshot);
+        // counted under one key, the endpoint requested by the user is not registered
+        assertEquals(1, snapshot.get(MetricsRegistry.TM_PREFIX + EndpointUtil.DOT + MetricsRegistry.UNAUTHORIZED_ENDPOINT)
+            .getAuthorizationFailures());
+        assertNull(snapshot.get(MetricsRegistry.endpointKey(unAuthorizedTmEndpoint)));
+        assertNull(snapshot.get(MetricsRegistry.endpointKey(tmEndpoint)));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+        MetricsRegistry registry = new MetricsRegistry(mbeanServer);
+
+        String key = MetricsRegistry.endpointKey(tmEndpoint);
+        EndpointMetrics metrics = registry.get(tmEndpoint);
+        metrics.frameSent(100);
+        metrics.setQueueDepth(() -> 42);
+        assertEquals(metrics, registry.get(key));
+        assertEquals(42L, mbeanServer.getAttribute(MetricsRegistry.objectName(key), "QueueDepth"));
+        assertEquals(100, registry.snapshot(key).getBytesSent());
+
+        registry.remove(key);
+        assertNull(registry.snapshot(key));
+        assertTrue(mbeanServer.isRegistered(MetricsRegistry.objectName(key)) == false);
+        assertEquals(0, registry.get(key).getBytesSent());
+    }
+}
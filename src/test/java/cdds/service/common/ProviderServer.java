@@ -5,6 +5,9 @@ import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -25,10 +28,31 @@ import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
 
 /**
  * Test service provider for CDDS services. 
+ *
+ * The execution mode selects the threads running the service calls: the default cached thread pool of gRPC,
+ * the transport threads (direct), a fixed ForkJoinPool or a virtual thread per call on JDK 21 and later.
+ * Services blocking in their calls, e.g. a TC provider waiting on hardware, scale with virtual threads
+ * to thousands of concurrent calls without a platform thread each. Direct execution must not block.
+ * The transport profile tunes the Netty transport, see TransportProfile.
  */
 public class ProviderServer {
+
+    /**
+     * The threads running the service calls
+     */
+    public enum ExecutionMode {
+        DEFAULT,        // the cached thread pool of gRPC, a platform thread per concurrently running call
+        DIRECT,         // the transport threads, calls must not block
+        FORK_JOIN,      // a ForkJoinPool with a thread per processor
+        VIRTUAL_THREAD  // a virtual thread per call on JDK 21 and later, otherwise DEFAULT
+    }
+
     private final int port;
     private final Server gRpcServer;
+    private final ExecutorService executor;         // the executor created for the execution mode, null if none
+    private final ExecutionMode executionMode;      // the execution mode in effect
+    private final TransportProfile transportProfile;
+    private final TransportProfile.EventLoops eventLoops; // the event loop groups created for the profile, null if none
     private static final Logger LOG = LogManager.getLogger("cdds.provider.server.");
 
     /**
@@ -37,12 +61,33 @@ public class ProviderServer {
      * @param services      The services to provide
      */
     public ProviderServer(int port, InterceptedService[] services) {
-        this(Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create()), port, services);
+        this(port, services, ExecutionMode.DEFAULT);
+    }
+
+    /**
+     * Creates a CDDS provider server without authentication for testing
+     * @param port
+     * @param services      The services to provide
+     * @param mode          The threads running the service calls
+     */
+    public ProviderServer(int port, InterceptedService[] services, ExecutionMode mode) {
+        this(Grpc.newServerBuilderForPort(port, InsecureServerCredentials.create()), port, services, mode);
+    }
+
+    /**
+     * Creates a CDDS provider server without authentication for testing
+     * @param port
+     * @param services      The services to provide
+     * @param mode          The threads running the service calls
+     * @param profile       The tuning of the transport
+     */
+    public ProviderServer(int port, InterceptedService[] services, ExecutionMode mode, TransportProfile profile) {
+        this(NettyServerBuilder.forPort(port), port, services, mode, profile);
     }
 
     /**
      * Creates a CDDS service provider with mTLS and SSL
-     * @param address       The address to use (port)
+     * @param address       The address to use (port and transport profile)
      * @param services      The services to provide
      * @throws IOException  Thrown if the certificate files are not found
      */
@@ -51,7 +96,9 @@ public class ProviderServer {
              services,
              resourceToFile(address.getRootCertificateFile()),
              resourceToFile(address.getCertificateFile()),
-             resourceToFile(address.getPrivateKeyFile())
+             resourceToFile(address.getPrivateKeyFile()),
+             ExecutionMode.DEFAULT,
+             TransportProfile.of(address)
         );
     } 
 
@@ -68,7 +115,46 @@ public class ProviderServer {
                           File caCertificateFile,
                           File providerCertificateFile,
                           File providerKeyFile) throws IOException {
+        this(port, services, caCertificateFile, providerCertificateFile, providerKeyFile, ExecutionMode.DEFAULT);
+    }
+
+    /**
+     * Creates a  CDDS server running CDDS services on the given port using mTLS and SSL .
+     * @param port
+     * @param caCertificateFile
+     * @param providerCertificateFile
+     * @param providerKeyFile
+     * @param mode                      The threads running the service calls
+     * @throws IOException 
+     */
+    public ProviderServer(int port,
+                          InterceptedService[] services,
+                          File caCertificateFile,
+                          File providerCertificateFile,
+                          File providerKeyFile,
+                          ExecutionMode mode) throws IOException {
+        this(port, services, caCertificateFile, providerCertificateFile, providerKeyFile, mode, TransportProfile.DEFAULT);
+    }
+
+    /**
+     * Creates a  CDDS server running CDDS services on the given port using mTLS and SSL .
+     * @param port
+     * @param caCertificateFile
+     * @param providerCertificateFile
+     * @param providerKeyFile
+     * @param mode                      The threads running the service calls
+     * @param profile                   The tuning of the transport
+     * @throws IOException 
+     */
+    public ProviderServer(int port,
+                          InterceptedService[] services,
+                          File caCertificateFile,
+                          File providerCertificateFile,
+                          File providerKeyFile,
+                          ExecutionMode mode,
+                          TransportProfile profile) throws IOException {
         this.port = port;
+        this.transportProfile = profile;
         
         if(caCertificateFile.exists() == false) {
             throw new IOException("CA certificate file not found: " + caCertificateFile);
@@ -82,6 +168,8 @@ public class ProviderServer {
             throw new IOException("Provider key file not found: " + providerKeyFile);
         }
 
+        eventLoops = profile.newEventLoops();
+
         try {
                 SslContext sslContext = GrpcSslContexts.forServer(
                     providerCertificateFile,
@@ -90,8 +178,12 @@ public class ProviderServer {
                     .clientAuth(ClientAuth.REQUIRE) // Enforce mTLS
                     .build();
             
-        NettyServerBuilder serverBuilder = NettyServerBuilder.forPort(port)
+        NettyServerBuilder serverBuilder = profile.apply(NettyServerBuilder.forPort(port), eventLoops)
                 .sslContext(sslContext);
+
+        executor = newExecutor(mode);
+        executionMode = effectiveMode(mode, executor);
+        applyExecutor(serverBuilder, executionMode, executor);
         
         // call intercept before adding the service to intercept
         Arrays.stream(services)
@@ -105,11 +197,14 @@ public class ProviderServer {
                 
         } catch(SSLException sslEx) {
             LOG.warn("Exception creating secure server: " + sslEx);
+            if(eventLoops != null) {
+                eventLoops.shutdown();
+            }
             throw sslEx;
         }
     
         LOG.info("Secure Server started, listening on " + port + "\n\tCA: " + caCertificateFile + "\n\tserver cert: " + providerCertificateFile
-            + "\n\tserver key: " + providerKeyFile);
+            + "\n\tserver key: " + providerKeyFile + "\n\texecution: " + executionMode + "\n\ttransport: " + transportProfile);
     
     }
 
@@ -119,10 +214,39 @@ public class ProviderServer {
      * @param port          The port to use
      */
     public ProviderServer(ServerBuilder<?> serverBuilder, int port, InterceptedService[] services) {
+        this(serverBuilder, port, services, ExecutionMode.DEFAULT);
+    }
+
+    /**
+     * Creates a TC server running one TC service on the given port.
+     * @param serverBuilder The server builder to use
+     * @param port          The port to use
+     * @param mode          The threads running the service calls
+     */
+    public ProviderServer(ServerBuilder<?> serverBuilder, int port, InterceptedService[] services, ExecutionMode mode) {
+        this(serverBuilder, port, services, mode, TransportProfile.DEFAULT);
+    }
+
+    /**
+     * Creates the server from a server builder, a NettyServerBuilder unless the transport profile is DEFAULT
+     */
+    private ProviderServer(ServerBuilder<?> serverBuilder, int port, InterceptedService[] services, ExecutionMode mode,
+                           TransportProfile profile) {
         this.port = port;
+        this.transportProfile = profile;
+        eventLoops = profile.newEventLoops();
+        if(eventLoops != null) {
+            profile.apply((NettyServerBuilder) serverBuilder, eventLoops);
+        }
+
+        executor = newExecutor(mode);
+        executionMode = effectiveMode(mode, executor);
+        applyExecutor(serverBuilder, executionMode, executor);
         
-        //
-        Arrays.stream(services).forEach(service -> {serverBuilder.intercept(service.getServiceInterceptor());});
+        // allow services w/o meta data
+        Arrays.stream(services)
+            .filter(service -> service.getServiceInterceptor() != null)
+            .forEach(service -> {serverBuilder.intercept(service.getServiceInterceptor());});
         
         Arrays.stream(services).forEach(service -> {serverBuilder.addService(service.getBindableService());});
         
@@ -134,7 +258,7 @@ public class ProviderServer {
      */
     public void start() throws IOException {
         gRpcServer.start();
-        LOG.info("Server started, listening on " + port);
+        LOG.info("Server started, listening on " + port + ", execution: " + executionMode + ", transport: " + transportProfile);
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
@@ -159,6 +283,60 @@ public class ProviderServer {
         if (gRpcServer != null) {
             gRpcServer.shutdown().awaitTermination(30, TimeUnit.SECONDS);
         }
+        if (executor != null) {
+            executor.shutdown();
+        }
+        if (eventLoops != null) {
+            eventLoops.shutdown();
+        }
+    }
+
+    /**
+     * @return The execution mode in effect, DEFAULT if virtual threads were requested but are not available
+     */
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * @return The transport profile of the server
+     */
+    public TransportProfile getTransportProfile() {
+        return transportProfile;
+    }
+
+    /**
+     * Creates the executor of the execution mode
+     * @return The executor, null for the modes without own executor or if virtual threads are not available
+     */
+    private static ExecutorService newExecutor(ExecutionMode mode) {
+        switch(mode) {
+            case FORK_JOIN:
+                return new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                    ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true); // FIFO for the serialized call tasks
+            case VIRTUAL_THREAD:
+                try {
+                    // Java 21, called by reflection to build for Java 11
+                    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                } catch(ReflectiveOperationException ex) {
+                    LOG.warn("Virtual threads not available on Java " + Runtime.version().feature() + ", using the default executor");
+                    return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    private static ExecutionMode effectiveMode(ExecutionMode mode, ExecutorService executor) {
+        return mode == ExecutionMode.VIRTUAL_THREAD && executor == null ? ExecutionMode.DEFAULT : mode;
+    }
+
+    private static void applyExecutor(ServerBuilder<?> serverBuilder, ExecutionMode mode, ExecutorService executor) {
+        if(mode == ExecutionMode.DIRECT) {
+            serverBuilder.directExecutor();
+        } else if(executor != null) {
+            serverBuilder.executor(executor);
+        }
     }
 
     /**
@@ -0,0 +1,211 @@
+package cdds.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Telecommand.TelecommandMessage;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequest;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequestAck;
+import ccsds.cdds.v1.Telecommand.TelecommandReport;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tc.TcServiceProviderGrpc;
+import ccsds.cdds.v1.tc.TcServiceProviderGrpc.TcServiceProviderImplBase;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.tm.TmProductionNFrames;
+import cdds.service.tm.TmServiceProvider;
+import cdds.service.tm.TmServiceUser;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.ServerInterceptor;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Benchmark of the execution modes of the provider server (unsecure).
+ * Run with: mvn test -Pbenchmark -Dtest=ProviderServerBenchmark
+ *
+ * 1) benchmarkTmStream - Streams TM frames of 1115 bytes to an aliasing TM user, reports the frame rate
+ * 2) benchmarkBlockingTc - Opens 1000 concurrent TC streams, each sending 10 radiation requests one after
+ *                          the other to a provider blocking 5 ms per request as if waiting on hardware.
+ *                          Reports the requests per second and the peak number of threads of the JVM.
+ *
+ * Direct execution blocks the transport threads, a fixed pool bounds the concurrently blocked calls
+ * to its threads. The default pool starts a platform thread per blocked call, virtual threads
+ * (JDK 21 and later) serve each blocked call without a platform thread.
+ */
+@Tag("benchmark")
+public class ProviderServerBenchmark {
+
+    private static final int PROVIDER_PORT = 7677;
+    private static final int FRAME_LENGTH = 1115;
+    private static final long NUM_FRAMES = 200_000;
+    private static final long TIMEOUT = 60_000;
+
+    private static final int NUM_TC_STREAMS = 1000;
+    private static final int NUM_TC_REQUESTS = 10;
+    private static final long TC_BLOCK_MILLIS = 5;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void benchmarkTmStream() throws IOException, TimeLimitExceededException, InterruptedException {
+        for(int run = 0; run < 2; run++) {
+            for(ProviderServer.ExecutionMode mode : ProviderServer.ExecutionMode.values()) {
+                TmServiceProvider tmProvider = new TmServiceProvider();
+                tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(NUM_FRAMES, FRAME_LENGTH));
+                ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider}, mode);
+                server.start();
+                tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+                TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+
+                long start = System.nanoTime();
+                tmServiceUser.openTelemetryEndpoint(tmEndpoint, NUM_FRAMES, 0);
+                tmServiceUser.waitForTmFrames(TIMEOUT);
+                long nanos = System.nanoTime() - start;
+
+                tmServiceUser.shutdown();
+                server.stop();
+
+                System.out.println(String.format("TM %-14s (%-14s) %10.1f k frames/s",
+                    mode, server.getExecutionMode(), NUM_FRAMES * 1E6 / nanos));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkBlockingTc() throws IOException, InterruptedException {
+        for(int run = 0; run < 2; run++) {
+            for(ProviderServer.ExecutionMode mode : ProviderServer.ExecutionMode.values()) {
+                runBlockingTc(mode);
+            }
+        }
+    }
+
+    private void runBlockingTc(ProviderServer.ExecutionMode mode) throws IOException, InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{new BlockingTcProvider()}, mode);
+        server.start();
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build();
+        TcServiceProviderGrpc.TcServiceProviderStub stub = TcServiceProviderGrpc.newStub(channel);
+
+        threads.resetPeakThreadCount();
+        CountDownLatch done = new CountDownLatch(NUM_TC_STREAMS);
+        AtomicLong numReports = new AtomicLong();
+
+        long start = System.nanoTime();
+        for(int idx = 0; idx < NUM_TC_STREAMS; idx++) {
+            TcRequester requester = new TcRequester(done, numReports);
+            requester.provider = stub.openTelecommandEndpoint(requester);
+            requester.sendNext();
+        }
+        boolean completed = done.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        long nanos = System.nanoTime() - start;
+
+        channel.shutdownNow();
+        channel.awaitTermination(5, TimeUnit.SECONDS);
+        server.stop();
+
+        System.out.println(String.format("TC %-14s (%-14s) %10.1f requests/s %6d peak threads%s",
+            mode, server.getExecutionMode(), numReports.get() * 1E9 / nanos, threads.getPeakThreadCount(),
+            completed ? "" : " (timeout)"));
+        assertEquals(NUM_TC_STREAMS * NUM_TC_REQUESTS, numReports.get());
+    }
+
+    /**
+     * TC provider blocking in each request, acknowledged after the block
+     */
+    private static class BlockingTcProvider extends TcServiceProviderImplBase implements InterceptedService {
+
+        @Override
+        public StreamObserver<TelecommandMessage> openTelecommandEndpoint(StreamObserver<TelecommandReport> tcUserStream) {
+            return new StreamObserver<TelecommandMessage>() {
+                @Override
+                public void onNext(TelecommandMessage tc) {
+                    try {
+                        Thread.sleep(TC_BLOCK_MILLIS); // waiting on the hardware
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    tcUserStream.onNext(TelecommandReport.newBuilder()
+                        .setCommandId(tc.getRadiationRequest().getCommandId())
+                        .setAck(TelecommandRadiationRequestAck.getDefaultInstance())
+                        .build());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    tcUserStream.onCompleted();
+                }
+            };
+        }
+
+        @Override
+        public BindableService getBindableService() {
+            return this;
+        }
+
+        @Override
+        public ServerInterceptor getServiceInterceptor() {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the next radiation request of a TC stream on the report of the previous one
+     */
+    private static class TcRequester implements StreamObserver<TelecommandReport> {
+
+        private final CountDownLatch done;
+        private final AtomicLong numReports;
+        private StreamObserver<TelecommandMessage> provider;
+        private int numSent = 0;
+
+        TcRequester(CountDownLatch done, AtomicLong numReports) {
+            this.done = done;
+            this.numReports = numReports;
+        }
+
+        void sendNext() {
+            provider.onNext(TelecommandMessage.newBuilder()
+                .setRadiationRequest(TelecommandRadiationRequest.newBuilder().setCommandId(numSent++).build())
+                .build());
+        }
+
+        @Override
+        public void onNext(TelecommandReport tcReport) {
+            numReports.incrementAndGet();
+            if(numSent < NUM_TC_REQUESTS) {
+                sendNext();
+            } else {
+                provider.onCompleted();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+}
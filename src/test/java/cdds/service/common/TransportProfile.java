@@ -0,0 +1,173 @@
+package cdds.service.common;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.CddsServiceProvider.ServiceProviderAddress;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.ChannelOption;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.WriteBufferWaterMark;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * Named tunings of the Netty transport of provider servers and user channels.
+ *
+ * A profile selects the native epoll transport where available (Linux), otherwise NIO, the number of event loop
+ * threads, the HTTP/2 flow control window per stream and the write buffer watermarks of the connection.
+ * The flow control window bounds the bytes in flight per stream before the receiver acknowledges them,
+ * the watermarks the bytes queued for sending before the channel reports itself not ready and the stream
+ * holds back the sender. Each server gets event loop groups of its own with the threads of the profile,
+ * created by newEventLoops() and shut down with the server. User channels run on the shared event loops of
+ * gRPC, which use the native transport where available as well.
+ *
+ * DEFAULT leaves the transport of gRPC untouched.
+ */
+public enum TransportProfile {
+
+    DEFAULT(0, 0, 0, 0),
+    LOW_LATENCY(1, 1024 * 1024, 8 * 1024, 32 * 1024),                       // TC: few small messages, no queuing
+    HIGH_THROUGHPUT(1, 16 * 1024 * 1024, 8 * 1024 * 1024, 32 * 1024 * 1024), // TM: large windows, deep write buffers
+    MANY_ENDPOINTS(2, 64 * 1024, 32 * 1024, 64 * 1024);                     // monitoring: many small streams
+
+    private static final Logger LOG = LogManager.getLogger("cdds.transport");
+
+    private final int threadsPerProcessor;      // event loop threads per available processor
+    private final int flowControlWindow;        // the HTTP/2 flow control window per stream in bytes
+    private final int lowWaterMark;             // the write buffer size making the channel writable again
+    private final int highWaterMark;            // the write buffer size making the channel not writable
+
+    private TransportProfile(int threadsPerProcessor, int flowControlWindow, int lowWaterMark, int highWaterMark) {
+        this.threadsPerProcessor = threadsPerProcessor;
+        this.flowControlWindow = flowControlWindow;
+        this.lowWaterMark = lowWaterMark;
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * Selects the profile of a service provider address
+     * @param address   The address with the optional transport profile name
+     * @return          The named profile, DEFAULT if the address names none
+     * @throws IllegalArgumentException if the name is not a profile
+     */
+    public static TransportProfile of(ServiceProviderAddress address) {
+        if(address.hasTransportProfile() == false || address.getTransportProfile().isBlank()) {
+            return DEFAULT;
+        }
+        try {
+            return valueOf(address.getTransportProfile().trim().toUpperCase(Locale.ROOT));
+        } catch(IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown transport profile: " + address.getTransportProfile(), ex);
+        }
+    }
+
+    /**
+     * @return true if the profiles use the native epoll transport, false for NIO
+     */
+    public static boolean isEpoll() {
+        return Epoll.isAvailable();
+    }
+
+    /**
+     * @return The number of event loop threads of the profile, 0 for the default of gRPC
+     */
+    public int getEventLoopThreads() {
+        return threadsPerProcessor * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return The HTTP/2 flow control window per stream in bytes, 0 for the default of gRPC
+     */
+    public int getFlowControlWindow() {
+        return flowControlWindow;
+    }
+
+    /**
+     * Creates the event loop groups of a server with the threads of the profile
+     * @return The event loop groups to pass to apply() and to shut down with the server, null for DEFAULT
+     */
+    public EventLoops newEventLoops() {
+        if(this == DEFAULT) {
+            return null;
+        }
+        String name = "cdds-" + name().toLowerCase(Locale.ROOT).replace('_', '-');
+        LOG.info("Transport profile " + this + ": " + (isEpoll() ? "epoll" : "NIO") + ", " + getEventLoopThreads()
+            + " event loop threads, flow control window " + flowControlWindow + ", write buffer watermarks "
+            + lowWaterMark + "/" + highWaterMark);
+        return new EventLoops(newEventLoopGroup(1, new DefaultThreadFactory(name + "-boss", true)),
+            newEventLoopGroup(getEventLoopThreads(), new DefaultThreadFactory(name, true)));
+    }
+
+    /**
+     * Applies the profile to a server builder
+     * @param serverBuilder The builder of the provider server
+     * @param eventLoops    The event loop groups of the server created by newEventLoops(), null for DEFAULT
+     * @return              The builder
+     */
+    public NettyServerBuilder apply(NettyServerBuilder serverBuilder, EventLoops eventLoops) {
+        if(this == DEFAULT) {
+            return serverBuilder;
+        }
+
+        Class<? extends ServerChannel> channelType = isEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+        return serverBuilder
+            .bossEventLoopGroup(eventLoops.bossGroup)
+            .workerEventLoopGroup(eventLoops.workerGroup)
+            .channelType(channelType)
+            .flowControlWindow(flowControlWindow)
+            .withChildOption(ChannelOption.TCP_NODELAY, true)
+            .withChildOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(lowWaterMark, highWaterMark));
+    }
+
+    /**
+     * Applies the profile to a channel builder, the channel uses the shared event loops of gRPC
+     * @param channelBuilder    The builder of the user channel
+     * @return                  The builder
+     */
+    public NettyChannelBuilder apply(NettyChannelBuilder channelBuilder) {
+        if(this == DEFAULT) {
+            return channelBuilder;
+        }
+
+        return channelBuilder
+            .flowControlWindow(flowControlWindow)
+            .withOption(ChannelOption.TCP_NODELAY, true)
+            .withOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(lowWaterMark, highWaterMark));
+    }
+
+    private static EventLoopGroup newEventLoopGroup(int threads, DefaultThreadFactory threadFactory) {
+        return isEpoll() ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * The event loop groups of a server
+     */
+    public static final class EventLoops {
+
+        private final EventLoopGroup bossGroup;
+        private final EventLoopGroup workerGroup;
+
+        private EventLoops(EventLoopGroup bossGroup, EventLoopGroup workerGroup) {
+            this.bossGroup = bossGroup;
+            this.workerGroup = workerGroup;
+        }
+
+        /**
+         * Shuts the event loop groups down, after the server has terminated
+         */
+        public void shutdown() {
+            bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+            workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+        }
+    }
+}
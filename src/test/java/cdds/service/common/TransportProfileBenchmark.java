@@ -0,0 +1,218 @@
+package cdds.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Telecommand.TelecommandMessage;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequest;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequestAck;
+import ccsds.cdds.v1.Telecommand.TelecommandReport;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tc.TcServiceProviderGrpc;
+import ccsds.cdds.v1.tc.TcServiceProviderGrpc.TcServiceProviderImplBase;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.tm.TmProductionNFrames;
+import cdds.service.tm.TmServiceProvider;
+import cdds.service.tm.TmServiceUser;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerInterceptor;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Benchmark of the transport profiles (unsecure), server and user with the same profile.
+ * Run with: mvn test -Pbenchmark -Dtest=TransportProfileBenchmark
+ *
+ * 1) benchmarkTmStream - Streams TM frames of 1115 bytes to an aliasing TM user, reports the frame rate
+ * 2) benchmarkTcRoundTrip - Sends TCs one after the other on one stream, each after the report of the previous,
+ *                           reports the mean round trip time
+ * 3) benchmarkManyStreams - Opens 2000 concurrent TC streams of 20 requests each, one after the other per stream,
+ *                           as many small monitoring endpoints would, reports the requests per second
+ */
+@Tag("benchmark")
+public class TransportProfileBenchmark {
+
+    private static final int PROVIDER_PORT = 7679;
+    private static final int FRAME_LENGTH = 1115;
+    private static final long NUM_FRAMES = 200_000;
+    private static final long TIMEOUT = 60_000;
+
+    private static final int NUM_ROUND_TRIPS = 20_000;
+    private static final int NUM_STREAMS = 2000;
+    private static final int NUM_STREAM_REQUESTS = 20;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void benchmarkTmStream() throws IOException, TimeLimitExceededException, InterruptedException {
+        System.out.println("Transport: " + (TransportProfile.isEpoll() ? "epoll" : "NIO"));
+        for(int run = 0; run < 2; run++) {
+            for(TransportProfile profile : TransportProfile.values()) {
+                TmServiceProvider tmProvider = new TmServiceProvider();
+                tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(NUM_FRAMES, FRAME_LENGTH));
+                ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider},
+                    ProviderServer.ExecutionMode.DEFAULT, profile);
+                server.start();
+                tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+                TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT, profile);
+
+                long start = System.nanoTime();
+                tmServiceUser.openTelemetryEndpoint(tmEndpoint, NUM_FRAMES, 0);
+                tmServiceUser.waitForTmFrames(TIMEOUT);
+                long nanos = System.nanoTime() - start;
+
+                tmServiceUser.shutdown();
+                server.stop();
+
+                System.out.println(String.format("TM %-16s %10.1f k frames/s", profile, NUM_FRAMES * 1E6 / nanos));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkTcRoundTrip() throws IOException, InterruptedException {
+        for(int run = 0; run < 2; run++) {
+            for(TransportProfile profile : TransportProfile.values()) {
+                long nanos = runTcStreams(profile, 1, NUM_ROUND_TRIPS);
+                System.out.println(String.format("TC round trip %-16s %8.1f us", profile, nanos / 1E3 / NUM_ROUND_TRIPS));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkManyStreams() throws IOException, InterruptedException {
+        for(int run = 0; run < 2; run++) {
+            for(TransportProfile profile : TransportProfile.values()) {
+                long nanos = runTcStreams(profile, NUM_STREAMS, NUM_STREAM_REQUESTS);
+                System.out.println(String.format("%d streams %-16s %10.1f requests/s", NUM_STREAMS, profile,
+                    NUM_STREAMS * NUM_STREAM_REQUESTS * 1E9 / nanos));
+            }
+        }
+    }
+
+    /**
+     * Runs TC streams against an acknowledging provider
+     * @return The nanoseconds until all streams completed
+     */
+    private long runTcStreams(TransportProfile profile, int numStreams, int numRequests) throws IOException, InterruptedException {
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{new AckTcProvider()},
+            ProviderServer.ExecutionMode.DIRECT, profile);
+        server.start();
+        ManagedChannel channel = profile.apply(NettyChannelBuilder.forAddress("localhost", PROVIDER_PORT))
+            .usePlaintext().directExecutor().build();
+        TcServiceProviderGrpc.TcServiceProviderStub stub = TcServiceProviderGrpc.newStub(channel);
+
+        CountDownLatch done = new CountDownLatch(numStreams);
+        AtomicLong numReports = new AtomicLong();
+
+        long start = System.nanoTime();
+        for(int idx = 0; idx < numStreams; idx++) {
+            TcRequester requester = new TcRequester(numRequests, done, numReports);
+            requester.provider = stub.openTelecommandEndpoint(requester);
+            requester.sendNext();
+        }
+        done.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        long nanos = System.nanoTime() - start;
+
+        channel.shutdownNow();
+        channel.awaitTermination(5, TimeUnit.SECONDS);
+        server.stop();
+
+        assertEquals((long) numStreams * numRequests, numReports.get());
+        return nanos;
+    }
+
+    /**
+     * TC provider acknowledging each request
+     */
+    private static class AckTcProvider extends TcServiceProviderImplBase implements InterceptedService {
+
+        @Override
+        public StreamObserver<TelecommandMessage> openTelecommandEndpoint(StreamObserver<TelecommandReport> tcUserStream) {
+            return new StreamObserver<TelecommandMessage>() {
+                @Override
+                public void onNext(TelecommandMessage tc) {
+                    tcUserStream.onNext(TelecommandReport.newBuilder()
+                        .setCommandId(tc.getRadiationRequest().getCommandId())
+                        .setAck(TelecommandRadiationRequestAck.getDefaultInstance())
+                        .build());
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                }
+
+                @Override
+                public void onCompleted() {
+                    tcUserStream.onCompleted();
+                }
+            };
+        }
+
+        @Override
+        public BindableService getBindableService() {
+            return this;
+        }
+
+        @Override
+        public ServerInterceptor getServiceInterceptor() {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the next radiation request of a TC stream on the report of the previous one
+     */
+    private static class TcRequester implements StreamObserver<TelecommandReport> {
+
+        private final int numRequests;
+        private final CountDownLatch done;
+        private final AtomicLong numReports;
+        private StreamObserver<TelecommandMessage> provider;
+        private int numSent = 0;
+
+        TcRequester(int numRequests, CountDownLatch done, AtomicLong numReports) {
+            this.numRequests = numRequests;
+            this.done = done;
+            this.numReports = numReports;
+        }
+
+        void sendNext() {
+            provider.onNext(TelecommandMessage.newBuilder()
+                .setRadiationRequest(TelecommandRadiationRequest.newBuilder().setCommandId(numSent++).build())
+                .build());
+        }
+
+        @Override
+        public void onNext(TelecommandReport tcReport) {
+            numReports.incrementAndGet();
+            if(numSent < numRequests) {
+                sendNext();
+            } else {
+                provider.onCompleted();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            done.countDown();
+        }
+    }
+}
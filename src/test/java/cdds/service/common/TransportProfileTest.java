@@ -0,0 +1,125 @@
+package cdds.service.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.CddsServiceProvider.ServiceProviderAddress;
+import ccsds.cdds.v1.Telecommand.TelecommandMessage;
+import ccsds.cdds.v1.Telecommand.TelecommandRadiationRequest;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.tc.TcServiceProvider;
+import cdds.service.tc.TcServiceUser;
+import cdds.service.tm.TmProductionNFrames;
+import cdds.service.tm.TmServiceProvider;
+import cdds.service.tm.TmServiceUser;
+
+/**
+ * Test for the transport profiles
+ *
+ * 1) testOf - Selects profiles from service provider addresses, with and without profile name
+ * 2) testTmStream - Streams TM frames with the same profile on server and user for each profile
+ * 3) testSecureTc - Sends TCs over mTLS with the profiles selected by the addresses of provider and user
+ */
+public class TransportProfileTest {
+
+    private static final int PROVIDER_PORT = 7678;
+    private static final int FRAME_LENGTH = 1115;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    private final TcServiceEndpoint tcEndpoint = TcServiceUser.getTcEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, 1);
+
+    @Test
+    public void testOf() {
+        ServiceProviderAddress.Builder address = ServiceProviderAddress.newBuilder().setAddress("localhost").setPort(PROVIDER_PORT);
+        assertEquals(TransportProfile.DEFAULT, TransportProfile.of(address.build()));
+        assertEquals(TransportProfile.DEFAULT, TransportProfile.of(address.setTransportProfile(" ").build()));
+        assertEquals(TransportProfile.HIGH_THROUGHPUT, TransportProfile.of(address.setTransportProfile("HIGH_THROUGHPUT").build()));
+        assertEquals(TransportProfile.MANY_ENDPOINTS, TransportProfile.of(address.setTransportProfile("many_endpoints ").build()));
+        assertThrows(IllegalArgumentException.class, () -> TransportProfile.of(address.setTransportProfile("FASTEST").build()));
+
+        assertEquals(0, TransportProfile.DEFAULT.getEventLoopThreads());
+        assertEquals(16 * 1024 * 1024, TransportProfile.HIGH_THROUGHPUT.getFlowControlWindow());
+        System.out.println("Transport: " + (TransportProfile.isEpoll() ? "epoll" : "NIO"));
+    }
+
+    @Test
+    public void testTmStream() throws IOException, InterruptedException, TimeLimitExceededException {
+        final long numFrames = 10_000;
+
+        for(TransportProfile profile : TransportProfile.values()) {
+            TmServiceProvider tmProvider = new TmServiceProvider();
+            tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+            ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider},
+                ProviderServer.ExecutionMode.DEFAULT, profile);
+            server.start();
+            tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+            TmServiceUser tmServiceUser = null;
+            try {
+                tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT, profile);
+                tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+                tmServiceUser.waitForTmFrames(30_000);
+                assertEquals(numFrames, tmServiceUser.getNumFramesReceived());
+            } finally {
+                if(tmServiceUser != null) {
+                    tmServiceUser.shutdown();
+                }
+                server.stop();
+            }
+            assertEquals(profile, server.getTransportProfile());
+        }
+    }
+
+    @Test
+    public void testSecureTc() throws IOException, InterruptedException, TimeLimitExceededException {
+        ServiceProviderAddress providerAddress = ServiceProviderAddress.newBuilder()
+            .setServiceProvider("theProvider")
+            .setAddress("localhost")
+            .setPort(PROVIDER_PORT)
+            .setRootCertificateFile("cert/cdds-ca.pem")
+            .setCertificateFile("cert/cdds-provider.pem")
+            .setPrivateKeyFile("cert/cdds-provider.key")
+            .setTransportProfile("LOW_LATENCY")
+            .build();
+
+        ServiceProviderAddress userAddress = providerAddress.toBuilder()
+            .setCertificateFile("cert/cdds-user.pem")
+            .setPrivateKeyFile("cert/cdds-user.key")
+            .build();
+
+        TcServiceProvider tcService = new TcServiceProvider();
+        ProviderServer server = new ProviderServer(providerAddress, new InterceptedService[]{tcService});
+        server.start();
+        tcService.addAuthorizedTcEndpoint(tcEndpoint);
+
+        TcServiceUser tcServiceUser = null;
+        try {
+            assertEquals(TransportProfile.LOW_LATENCY, server.getTransportProfile());
+            tcServiceUser = TcServiceUser.buildSecureTcService(userAddress);
+            tcServiceUser.openTelecommandEndpoint(tcEndpoint);
+            for(int commandId = 1; commandId <= 3; commandId++) {
+                tcServiceUser.sendTelecommand(TelecommandMessage.newBuilder()
+                    .setRadiationRequest(TelecommandRadiationRequest.newBuilder().setCommandId(commandId).build())
+                    .build());
+            }
+            tcServiceUser.waitForTcReports(6, 30_000); // the first TLS handshake of a cold JVM is slow
+        } finally {
+            if(tcServiceUser != null) {
+                tcServiceUser.stop();
+                tcServiceUser.shutdown();
+            }
+            server.stop();
+        }
+    }
+}
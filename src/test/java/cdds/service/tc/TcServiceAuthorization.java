@@ -11,7 +11,10 @@ import org.apache.logging.log4j.Logger;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import cdds.jfr.AuthorizationEvent;
+import cdds.service.common.EndpointUtil;
 import cdds.service.common.GrpcUtil;
+import cdds.service.common.MetricsRegistry;
 import cdds.service.common.ProtoJsonUtil;
 import io.grpc.Context;
 import io.grpc.Contexts;
@@ -37,8 +40,12 @@ public class TcServiceAuthorization implements ServerInterceptor {
     // used by the TC Provider to read the intercepted meta data TC_ENDPOINT from the call context
     public static final Context.Key<byte[]> TC_ENDPOINT_CTX_KEY = Context.key(TC_ENDPOINT);
 
+    private static final String SERVICE = "TC";
+
     private static final Logger LOG = LogManager.getLogger("cdds.tc.authorization.");
 
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+
     private final Set<TcServiceEndpoint> authorizedTcEndpoints = new LinkedHashSet<>();
 
     /**
@@ -64,6 +71,9 @@ public class TcServiceAuthorization implements ServerInterceptor {
 
             if(endpointBytes == null) {
                 LOG.warn("Failed to read endpoint metadata " + TC_ENDPOINT_KEY);
+                String unknownEndpoint = MetricsRegistry.TC_PREFIX + EndpointUtil.DOT + MetricsRegistry.UNKNOWN_ENDPOINT;
+                metricsRegistry.get(unknownEndpoint).authorizationFailure();
+                AuthorizationEvent.commit(SERVICE, unknownEndpoint, call, false, "No TC_ENDPOINT meta data provided");
                 call.close(Status.PERMISSION_DENIED.withDescription("No TC_ENDPOINT meta data provided"),
                         new Metadata());
                 return null;
@@ -77,9 +87,14 @@ public class TcServiceAuthorization implements ServerInterceptor {
                 if (isEndpointAuthorized(GrpcUtil.getSan(call), tcEndpoint) == true) {
                     LOG.info("Authorize TC service meta data for \n'" + TC_ENDPOINT + "':\n" + new String(endpointBytes)
                         + "\nSAN: " + GrpcUtil.getSan(call));
+                    AuthorizationEvent.commit(SERVICE, MetricsRegistry.endpointKey(tcEndpoint), call, true, null);
                 } else {
                     LOG.warn("TC service meta data, invalid TC_ENDPOINT provided:\n" + tcEndpoint 
                         + "\nauthorized endpoints:\n" + authorizedTcEndpoints);
+                    metricsRegistry.get(MetricsRegistry.TC_PREFIX + EndpointUtil.DOT + MetricsRegistry.UNAUTHORIZED_ENDPOINT)
+                        .authorizationFailure();
+                    AuthorizationEvent.commit(SERVICE, MetricsRegistry.endpointKey(tcEndpoint), call, false,
+                        "Invalid TC_ENDPOINT meta data provided");
 
                     Metadata endpointTrailer = new Metadata();
                     endpointTrailer.put(TC_ENDPOINT_KEY, ProtoJsonUtil.toJsonUtf8(TcServiceEndpoint.newBuilder()
@@ -104,6 +119,14 @@ public class TcServiceAuthorization implements ServerInterceptor {
         //return next.startCall(call, headers);
     }
 
+    /**
+     * Sets the registry counting the authorization failures by endpoint
+     * @param metricsRegistry   The registry, by default MetricsRegistry.getDefault()
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
     /**
      * Check if the given TC endpoint is authorized for one of the Subject Alternative Names
      * @param sanList       The list of Subject Alternative Names 
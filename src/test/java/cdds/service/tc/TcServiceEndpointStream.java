@@ -1,5 +1,7 @@
 package cdds.service.tc;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -14,6 +16,10 @@ import ccsds.cdds.v1.Telecommand.UplinkStatus;
 import ccsds.cdds.v1.Types.ApertureId;
 import ccsds.cdds.v1.Types.ProductionState;
 import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpoint;
+import cdds.jfr.StreamCloseEvent;
+import cdds.jfr.StreamOpenEvent;
+import cdds.jfr.TcRequestEvent;
+import cdds.service.common.EndpointMetrics;
 import cdds.service.common.EndpointUtil;
 import cdds.service.common.ProtoJsonUtil;
 import cdds.util.TimeUtil;
@@ -22,36 +28,81 @@ import io.grpc.stub.StreamObserver;
 /**
  * Simple TC endpoint stream. Receives TC from the user;
  * each received TC is responded with an ACK and RADIATION message.
+ * Received TC, sent reports by type and the stream open and close are counted in the endpoint metrics.
+ * The stream open and close and the time from each TC to its last report are recorded as JFR events.
  */
 public class TcServiceEndpointStream implements StreamObserver<TelecommandMessage> {
 
     private final StreamObserver<TelecommandReport> tcUserStream;
     private final Logger LOG;
+
+    private final EndpointMetrics metrics;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final StreamCloseEvent closeEvent;
+
+    private static final String SERVICE = "TC";
     
     @SuppressWarnings("unused")
     private final TcServiceEndpoint tcEndPoint;
 
-    public TcServiceEndpointStream(StreamObserver<TelecommandReport> tcUserStream, TcServiceEndpoint tcEndPoint) {
+    /**
+     * Creates the endpoint stream and counts the stream as opened
+     * @param tcUserStream  The user stream to send the TC reports
+     * @param tcEndPoint    The endpoint of the stream
+     * @param metrics       The metrics of the endpoint
+     */
+    public TcServiceEndpointStream(StreamObserver<TelecommandReport> tcUserStream, TcServiceEndpoint tcEndPoint,
+        EndpointMetrics metrics) {
         this.tcUserStream = tcUserStream;
         this.tcEndPoint = tcEndPoint;
+        this.metrics = metrics;
         LOG = LogManager.getLogger(EndpointUtil.toString("cdds.tc.provider", tcEndPoint));
+        metrics.streamOpened();
+        StreamOpenEvent.commit(SERVICE, metrics.getEndpoint());
+        closeEvent = StreamCloseEvent.begin(SERVICE, metrics.getEndpoint());
     }
 
     @Override
     public void onCompleted() {
         LOG.info("stopped on user request");
+        close(StreamCloseEvent.COMPLETED);
         tcUserStream.onCompleted();
     }
 
     @Override
     public void onError(Throwable t) {
         LOG.warn("Error: " + t);
+        close(StreamCloseEvent.ERROR);
+    }
+
+    private void close(String reason) {
+        if(closed.compareAndSet(false, true)) {
+            metrics.streamClosed();
+            closeEvent.commit(reason);
+        }
+    }
+
+    /**
+     * Sends the report to the user and counts it by its type
+     * @param requestEvent  The event of the TC request the report responds to
+     */
+    private void send(TelecommandReport tcReport, TcRequestEvent requestEvent) {
+        tcUserStream.onNext(tcReport);
+        metrics.frameSent(tcReport.getSerializedSize());
+        metrics.tcReportSent(tcReport);
+        requestEvent.numReports++;
+        requestEvent.lastReport = tcReport.getReportCase().name();
     }
 
     @SuppressWarnings("unused")
     @Override
     public void onNext(TelecommandMessage tc) {
-        
+        metrics.frameReceived(tc.getSerializedSize());
+        TcRequestEvent requestEvent = new TcRequestEvent();
+        requestEvent.begin();
+
         try {
             byte[] endpointBytes = TcServiceAuthorization.TC_ENDPOINT_CTX_KEY.get();    // get the tc-endpoint-bin meta data
              TcServiceEndpoint tcEndPointRuntime = ProtoJsonUtil.fromJson(endpointBytes, TcServiceEndpoint.newBuilder());              // decode the endpoint from JSON
@@ -73,7 +124,7 @@ public class TcServiceEndpointStream implements StreamObserver<TelecommandMessag
                 .build())
             .setAck(TelecommandRadiationRequestAck.newBuilder().build())
             .build();
-            tcUserStream.onNext(tcReport);
+            send(tcReport, requestEvent);
 
             // send a radiation report
             tcReport = TelecommandReport.newBuilder().setCommandId(tc.getRadiationRequest().getCommandId())
@@ -88,7 +139,7 @@ public class TcServiceEndpointStream implements StreamObserver<TelecommandMessag
                 .setRadiationStopTime(TimeUtil.now())
                 .build())
             .build();
-            tcUserStream.onNext(tcReport);
+            send(tcReport, requestEvent);
 
 
         } else if(tc.hasReportRequest()) {
@@ -106,8 +157,16 @@ public class TcServiceEndpointStream implements StreamObserver<TelecommandMessag
                 .setNumberOfTelecommandsRadiated(8)
                 .build())
             .build();
-            tcUserStream.onNext(tcReport);
+            send(tcReport, requestEvent);
+
+        }
 
+        requestEvent.end();
+        if(requestEvent.shouldCommit()) {
+            requestEvent.endpoint = metrics.getEndpoint();
+            requestEvent.commandId = tc.getRadiationRequest().getCommandId();
+            requestEvent.request = tc.getRequestCase().name();
+            requestEvent.commit();
         }
     }
                 
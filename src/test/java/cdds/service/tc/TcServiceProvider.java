@@ -19,6 +19,7 @@ import ccsds.cdds.v1.tc.CddsTcService.TcServiceEndpointList;
 import ccsds.cdds.v1.tc.TcServiceProviderGrpc.TcServiceProviderImplBase;
 import cdds.service.common.GrpcUtil;
 import cdds.service.common.InterceptedService;
+import cdds.service.common.MetricsRegistry;
 import cdds.service.common.ProtoJsonUtil;
 import io.grpc.BindableService;
 import io.grpc.ServerInterceptor;
@@ -36,6 +37,8 @@ public class TcServiceProvider extends TcServiceProviderImplBase implements Inte
 
     private final List<TcServiceEndpoint> tcEndpoints = Collections.synchronizedList(new ArrayList<>());
 
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+
     @Override
     public void getEndpoints(NoArg request, StreamObserver<TcServiceEndpointList> responseObserver) {
         LOG.info("get endpoints called. Total endpoints: " + tcEndpoints.size());
@@ -77,7 +80,7 @@ public class TcServiceProvider extends TcServiceProviderImplBase implements Inte
                 LOG.info("Open TC stream for endpoint\n" + tcEndpoint);
             }
             // in this simple example the TC Provider has only one (static) endpoint.
-            return new TcServiceEndpointStream(tcUserStream, tcEndpoint);
+            return new TcServiceEndpointStream(tcUserStream, tcEndpoint, metricsRegistry.get(tcEndpoint));
         } catch (InvalidProtocolBufferException e) {
             e.printStackTrace();
         }
@@ -85,6 +88,22 @@ public class TcServiceProvider extends TcServiceProviderImplBase implements Inte
         return null;
     }
 
+    /**
+     * Sets the registry counting the streams of all endpoints, used by streams opened after this call
+     * @param metricsRegistry   The registry, by default MetricsRegistry.getDefault()
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        tcAuthorization.setMetricsRegistry(metricsRegistry);
+    }
+
+    /**
+     * @return The registry counting the streams of all endpoints
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
     @Override
     public BindableService getBindableService() {
         return this;
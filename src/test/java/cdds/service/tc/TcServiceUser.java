@@ -32,6 +32,7 @@ import cdds.service.common.ClientMetaDataInterceptor;
 import cdds.service.common.EndpointUtil;
 import cdds.service.common.ProtoJsonUtil;
 import cdds.service.common.ProviderServer;
+import cdds.service.common.TransportProfile;
 import io.grpc.Channel;
 import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
@@ -66,9 +67,20 @@ public class TcServiceUser {
         return new TcServiceUser(ManagedChannelBuilder.forAddress(host, port).usePlaintext().build());
     } 
 
+    /**
+     * Constructs and TC service user and connects to the provider, w/o security.
+     * @param host      The host of the TC provider
+     * @param port      The port of the TC provider
+     * @param profile   The tuning of the transport
+     * @throws InvalidProtocolBufferException
+     */
+    public static TcServiceUser buildUnsecureTcServiceUser(String host, int port, TransportProfile profile) throws InvalidProtocolBufferException {
+        return new TcServiceUser(profile.apply(NettyChannelBuilder.forAddress(host, port)).usePlaintext().build());
+    } 
+
     /**
      * Creates a TC User using an mTLS channel with the given address and configuration 
-     * @param address       The address of the TC provider
+     * @param address       The address of the TC provider, selects the transport profile
      * @return the created service user
      */
     public static TcServiceUser buildSecureTcService(ServiceProviderAddress address) throws SSLException, InvalidProtocolBufferException {
@@ -76,7 +88,8 @@ public class TcServiceUser {
                                     address.getPort(),
                                     ProviderServer.resourceToFile(address.getRootCertificateFile()),
                                     ProviderServer.resourceToFile(address.getCertificateFile()),
-                                    ProviderServer.resourceToFile(address.getPrivateKeyFile())); 
+                                    ProviderServer.resourceToFile(address.getPrivateKeyFile()),
+                                    TransportProfile.of(address)); 
     } 
 
     /**
@@ -95,6 +108,27 @@ public class TcServiceUser {
                                                      File caCertificateFile,
                                                      File userCertificateFile,
                                                      File userKeyFile) throws SSLException, InvalidProtocolBufferException {
+        return buildSecureTcService(host, port, caCertificateFile, userCertificateFile, userKeyFile, TransportProfile.DEFAULT);
+    }
+
+    /**
+     * Creates a TC User using an mTLS channel with the given arguments
+     * @param host                  The host of the TC provider service
+     * @param port                  The port of the TC provider service
+     * @param caCertificateFile     The CA certificate to verify the provider certificate
+     * @param userCertificateFile   The user certificate presented to the provider
+     * @param userKeyFile           The private user key for the mTLS handshake
+     * @param profile               The tuning of the transport
+     * @return                      The created TcServiceUser object.
+     * @throws SSLException
+     * @throws InvalidProtocolBufferException 
+     */
+    public static TcServiceUser buildSecureTcService(String host,
+                                                     int port,
+                                                     File caCertificateFile,
+                                                     File userCertificateFile,
+                                                     File userKeyFile,
+                                                     TransportProfile profile) throws SSLException, InvalidProtocolBufferException {
 
         SslContext sslContext =
             GrpcSslContexts.forClient()
@@ -105,12 +139,13 @@ public class TcServiceUser {
                 .build();
 
         ManagedChannel channel =
-            NettyChannelBuilder.forAddress(host, port)
+            profile.apply(NettyChannelBuilder.forAddress(host, port))
                 .sslContext(sslContext)
                 .build();
     
         LogManager.getLogger().info("Secure TC Service User, host: " + host + " port: " + port + 
-            " created using \n\tCA: " + caCertificateFile + "\n\tuser cert: " + userCertificateFile + "\n\tuser key: " + userKeyFile);
+            " created using \n\tCA: " + caCertificateFile + "\n\tuser cert: " + userCertificateFile + "\n\tuser key: " + userKeyFile
+            + "\n\ttransport: " + profile);
 
         return new TcServiceUser(channel);            
     }
@@ -271,13 +306,23 @@ public class TcServiceUser {
     }
 
     /**
-     * Waits until the given number of reports received or timeout occurs
+     * Waits until the given number of reports received or timeout of 1000 ms occurs
      * @return Returns the number of received reports.
      * @throws TimeLimitExceededException 
      */
     public long waitForTcReports(long numReports) throws TimeLimitExceededException {
+        return waitForTcReports(numReports, 1000);
+    }
+
+    /**
+     * Waits until the given number of reports received or timeout occurs
+     * @param numReports    The number of reports to wait for
+     * @param timeout       The timeout in ms
+     * @return Returns the number of received reports.
+     * @throws TimeLimitExceededException 
+     */
+    public long waitForTcReports(long numReports, long timeout) throws TimeLimitExceededException {
 
-        final long timeout = 1000;
         long deadline = System.currentTimeMillis() + timeout; 
 
         synchronized(numReportsReceived) {
@@ -0,0 +1,114 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.tm.CddsTmService.TelemetryMessageBatch;
+import cdds.tm.EncodedTelemetryMessage;
+
+/**
+ * A TelemetryMessageBatch in its serialized wire format. TelemetryMessages and EncodedTelemetryMessages
+ * are appended as serialized elements of the repeated messages field, no TelemetryMessageBatch is built.
+ */
+public class EncodedTelemetryBatch {
+
+    private static final int MESSAGES_FIELD = TelemetryMessageBatch.MESSAGES_FIELD_NUMBER;
+
+    private byte[] buffer;
+    private CodedOutputStream output;
+    private int outputOffset = 0;   // the offset of the output in the buffer
+    private int numMessages = 0;
+
+    /**
+     * Creates an empty batch
+     * @param capacity  The initial capacity in bytes, the batch grows beyond if needed
+     */
+    public EncodedTelemetryBatch(int capacity) {
+        buffer = new byte[capacity];
+        output = CodedOutputStream.newInstance(buffer);
+    }
+
+    /**
+     * Appends a message
+     * @param tmMessage The message to append
+     */
+    public void add(TelemetryMessage tmMessage) {
+        int length = tmMessage.getSerializedSize();
+        ensureCapacity(length);
+        try {
+            output.writeTag(MESSAGES_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(length);
+            tmMessage.writeTo(output);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // capacity is ensured
+        }
+        numMessages++;
+    }
+
+    /**
+     * Appends an encoded message, the payload is copied into the batch
+     * @param tmMessage The message to append
+     */
+    public void add(EncodedTelemetryMessage tmMessage) {
+        int length = tmMessage.getSerializedSize();
+        ensureCapacity(length);
+        try {
+            output.writeTag(MESSAGES_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            output.writeUInt32NoTag(length);
+            output.writeRawBytes(tmMessage.getBuffer(), 0, tmMessage.getEncodedLength());
+            output.writeRawBytes(tmMessage.getPayload());
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // capacity is ensured
+        }
+        numMessages++;
+    }
+
+    /**
+     * @return The number of messages in the batch
+     */
+    public int getNumMessages() {
+        return numMessages;
+    }
+
+    /**
+     * @return The length of the serialized batch
+     */
+    public int getSerializedSize() {
+        return outputOffset + output.getTotalBytesWritten();
+    }
+
+    /**
+     * @return The buffer holding the serialized batch from index 0 to getSerializedSize()
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Parses the serialized batch
+     * @return The parsed batch
+     * @throws InvalidProtocolBufferException
+     */
+    public TelemetryMessageBatch toBatch() throws InvalidProtocolBufferException {
+        return TelemetryMessageBatch.parser().parseFrom(buffer, 0, getSerializedSize());
+    }
+
+    /**
+     * Grows the buffer to hold a message of the given length with its tag and length prefix
+     */
+    private void ensureCapacity(int messageLength) {
+        int required = 1 + CodedOutputStream.computeUInt32SizeNoTag(messageLength) + messageLength;
+        if(output.spaceLeft() < required) {
+            int size = getSerializedSize();
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, size + required));
+            output = CodedOutputStream.newInstance(buffer, size, buffer.length - size);
+            outputOffset = size;
+        }
+    }
+}
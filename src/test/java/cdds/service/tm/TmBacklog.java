@@ -0,0 +1,324 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.util.TimeUtil;
+
+/**
+ * Backlog of the TM messages of an endpoint not yet sent to a stream which is not ready, stored off-heap.
+ *
+ * The serialized messages are stored in direct blocks taken from a pool shared by all backlogs, each message
+ * contiguous in a block after its length. Blocks are returned to the pool when read. The stored message bytes
+ * are limited, when the limit is hit messages are dropped by policy and the number of dropped messages is
+ * reported by a SyncNotify dataDiscarded at the position of the gap: before the oldest kept message when
+ * dropping the oldest, after the newest kept message when dropping the newest.
+ *
+ * The backlog is not thread safe, the TmBacklogStream serializes the access. The metrics may be read by any thread.
+ */
+public class TmBacklog {
+
+    /**
+     * The message dropped when the limit is hit
+     */
+    public enum DropPolicy {
+        DROP_OLDEST,    // drop the oldest messages to store the new message
+        DROP_NEWEST     // drop the new message
+    }
+
+    /** The size of the pooled blocks, larger messages get a block of their own */
+    static final int BLOCK_SIZE = 256 * 1024;
+
+    private static final int MAX_POOLED_BLOCKS = 64;
+
+    private static final Queue<ByteBuffer> BLOCK_POOL = new ConcurrentLinkedQueue<>();
+
+    private static final int SKIP_MARKER = -1;  // the next message starts in the next block
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final long maxBytes;
+    private final DropPolicy policy;
+
+    private final ArrayDeque<ByteBuffer> blocks = new ArrayDeque<>();
+    private int readOffset = 0;     // in the first block
+    private int writeOffset = 0;    // in the last block
+
+    private long pendingDiscarded = 0;  // dropped messages not yet reported
+
+    private volatile long numMessages = 0;
+    private volatile long numBytes = 0;
+    private volatile long highWaterBytes = 0;
+    private volatile long numDropped = 0;
+
+    /**
+     * Creates the backlog
+     * @param maxBytes  The maximum number of serialized message bytes stored
+     * @param policy    The message dropped when the limit is hit
+     */
+    public TmBacklog(long maxBytes, DropPolicy policy) {
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    /**
+     * @return The message dropped when the limit is hit
+     */
+    public DropPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return true if no message is stored
+     */
+    public boolean isEmpty() {
+        return numMessages == 0;
+    }
+
+    /**
+     * Stores a message, dropping by policy if the limit is hit
+     * @param tmMessage The message to store
+     * @return          false if the message was dropped
+     */
+    public boolean offer(TelemetryMessage tmMessage) {
+        int length = tmMessage.getSerializedSize();
+        if(makeRoom(length) == false) {
+            return false;
+        }
+        ByteBuffer target = allocate(length);
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(target);
+            tmMessage.writeTo(output);
+            output.flush();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // the space is allocated
+        }
+        return true;
+    }
+
+    /**
+     * Stores an encoded message, dropping by policy if the limit is hit
+     * @param tmMessage The message to store
+     * @return          false if the message was dropped
+     */
+    public boolean offer(EncodedTelemetryMessage tmMessage) {
+        int length = tmMessage.getSerializedSize();
+        if(makeRoom(length) == false) {
+            return false;
+        }
+        ByteBuffer target = allocate(length);
+        target.put(tmMessage.getBuffer(), 0, tmMessage.getEncodedLength());
+        tmMessage.getPayload().copyTo(target);
+        return true;
+    }
+
+    /**
+     * Returns the oldest message. The message refers to the off-heap block and is valid until remove().
+     * @return The oldest message, null if empty
+     */
+    public EncodedTelemetryMessage peek() {
+        if(isEmpty()) {
+            return null;
+        }
+        skipToMessage();
+        ByteBuffer block = blocks.peekFirst();
+        int length = block.getInt(readOffset);
+        ByteBuffer message = block.duplicate();
+        message.limit(readOffset + 4 + length).position(readOffset + 4);
+        return new EncodedTelemetryMessage(NO_BYTES, 0, UnsafeByteOperations.unsafeWrap(message.slice()));
+    }
+
+    /**
+     * Removes the oldest message
+     */
+    public void remove() {
+        if(isEmpty()) {
+            return;
+        }
+        skipToMessage();
+        int length = blocks.peekFirst().getInt(readOffset);
+        readOffset += 4 + length;
+        numMessages--;
+        numBytes -= length;
+        if(numMessages == 0) {
+            releaseAll();
+        }
+    }
+
+    /**
+     * Returns and resets the number of dropped messages to report at the current position of the stream.
+     * These are the messages dropped before the oldest message (DROP_OLDEST) or before the next message (DROP_NEWEST).
+     * @return The number of dropped messages to report
+     */
+    public long takeDiscarded() {
+        long discarded = pendingDiscarded;
+        pendingDiscarded = 0;
+        return discarded;
+    }
+
+    /**
+     * Drops all messages without reporting them, e.g. when the stream is closed
+     * @return The number of dropped messages
+     */
+    public long clear() {
+        long cleared = numMessages;
+        numMessages = 0;
+        numBytes = 0;
+        pendingDiscarded = 0;
+        releaseAll();
+        return cleared;
+    }
+
+    /**
+     * @return The number of stored messages
+     */
+    public long getNumMessages() {
+        return numMessages;
+    }
+
+    /**
+     * @return The number of stored message bytes
+     */
+    public long getNumBytes() {
+        return numBytes;
+    }
+
+    /**
+     * @return The maximum number of message bytes stored at any time
+     */
+    public long getHighWaterBytes() {
+        return highWaterBytes;
+    }
+
+    /**
+     * @return The number of messages dropped by policy
+     */
+    public long getNumDropped() {
+        return numDropped;
+    }
+
+    /**
+     * Creates the SyncNotify reporting dropped messages
+     * @param discarded The number of dropped messages
+     * @return          The SyncNotify message, without sequence number
+     */
+    public static TelemetryMessage discardedNotify(long discarded) {
+        return TelemetryMessage.newBuilder()
+            .setSyncNotify(SyncNotify.newBuilder()
+                .setTime(TimeUtil.now())
+                .setDataDiscarded(discarded)
+                .build())
+            .build();
+    }
+
+    /**
+     * Drops messages by policy until the message fits
+     * @return true if the message can be stored
+     */
+    private boolean makeRoom(int length) {
+        if(policy == DropPolicy.DROP_OLDEST) {
+            while(isEmpty() == false && numBytes + length > maxBytes) {
+                remove();
+                drop();
+            }
+        }
+        if(numBytes + length > maxBytes) {
+            drop();
+            return false;
+        }
+
+        if(policy == DropPolicy.DROP_NEWEST && pendingDiscarded > 0) {
+            // report the gap after the newest kept message, the report is not limited
+            TelemetryMessage notify = discardedNotify(takeDiscarded());
+            int notifyLength = notify.getSerializedSize();
+            ByteBuffer target = allocate(notifyLength);
+            try {
+                CodedOutputStream output = CodedOutputStream.newInstance(target);
+                notify.writeTo(output);
+                output.flush();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
+    }
+
+    private void drop() {
+        pendingDiscarded++;
+        numDropped++;
+    }
+
+    /**
+     * Allocates a message in the last block or a new block and accounts for it
+     * @return The buffer to write the message to, positioned at the message and limited to its length
+     */
+    private ByteBuffer allocate(int length) {
+        ByteBuffer block = blocks.peekLast();
+        if(block == null || block.capacity() - writeOffset < 4 + length) {
+            if(block != null && block.capacity() - writeOffset >= 4) {
+                block.putInt(writeOffset, SKIP_MARKER);
+            }
+            block = acquireBlock(4 + length);
+            blocks.addLast(block);
+            writeOffset = 0;
+        }
+
+        block.putInt(writeOffset, length);
+        ByteBuffer target = block.duplicate();
+        target.limit(writeOffset + 4 + length).position(writeOffset + 4);
+        writeOffset += 4 + length;
+
+        numMessages++;
+        numBytes += length;
+        if(numBytes > highWaterBytes) {
+            highWaterBytes = numBytes;
+        }
+        return target;
+    }
+
+    /**
+     * Moves the read offset to the next message, releasing read blocks
+     */
+    private void skipToMessage() {
+        ByteBuffer block = blocks.peekFirst();
+        while(block.capacity() - readOffset < 4 || block.getInt(readOffset) == SKIP_MARKER) {
+            releaseBlock(blocks.pollFirst());
+            block = blocks.peekFirst();
+            readOffset = 0;
+        }
+    }
+
+    private void releaseAll() {
+        ByteBuffer block;
+        while((block = blocks.pollFirst()) != null) {
+            releaseBlock(block);
+        }
+        readOffset = 0;
+        writeOffset = 0;
+    }
+
+    private static ByteBuffer acquireBlock(int minSize) {
+        if(minSize > BLOCK_SIZE) {
+            return ByteBuffer.allocateDirect(minSize);
+        }
+        ByteBuffer block = BLOCK_POOL.poll();
+        return block != null ? block : ByteBuffer.allocateDirect(BLOCK_SIZE);
+    }
+
+    private static void releaseBlock(ByteBuffer block) {
+        if(block.capacity() == BLOCK_SIZE && BLOCK_POOL.size() < MAX_POOLED_BLOCKS) {
+            block.clear();
+            BLOCK_POOL.offer(block);
+        }
+    }
+}
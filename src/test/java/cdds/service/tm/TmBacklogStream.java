@@ -0,0 +1,170 @@
+package cdds.service.tm;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.service.common.ForwardingServerCallStreamObserver;
+import cdds.tm.EncodedTelemetryMessage;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * TM user stream decoupling the production from the user with the backlog of the endpoint.
+ *
+ * The stream is always ready towards the production, a live feed cannot be paused. Messages are sent
+ * directly while the user stream is ready and the backlog is empty, otherwise they are stored in the backlog
+ * and sent from the on ready handler of the user stream. The on ready handler of the production is run after
+ * the backlog is sent, the completion of the production is forwarded after the last stored message.
+ */
+public class TmBacklogStream extends ForwardingServerCallStreamObserver<TelemetryMessage>
+    implements TmMessageMarshaller.EncodedMessageStream {
+
+    private final TmBacklog tmBacklog;
+
+    private volatile Runnable onReadyHandler;
+    private volatile Runnable onCancelHandler;
+
+    // guarded by this
+    private boolean completed = false;  // by the production
+    private boolean closed = false;     // towards the user
+
+    /**
+     * Creates the backlog stream. Messages left in the backlog by a previous stream are dropped.
+     * @param tmUserStream  The user stream to send the TM
+     * @param tmBacklog     The backlog of the endpoint
+     */
+    public TmBacklogStream(ServerCallStreamObserver<TelemetryMessage> tmUserStream, TmBacklog tmBacklog) {
+        super(tmUserStream);
+        this.tmBacklog = tmBacklog;
+        synchronized(tmBacklog) {
+            tmBacklog.clear();
+        }
+        delegate.setOnReadyHandler(this::onReady);
+        delegate.setOnCancelHandler(this::onCancel);
+    }
+
+    @Override
+    public void onNext(TelemetryMessage tmMessage) {
+        synchronized(tmBacklog) {
+            if(closed) {
+                return;
+            }
+            if(sendBacklog()) {
+                delegate.onNext(tmMessage);
+            } else {
+                tmBacklog.offer(tmMessage);
+            }
+        }
+    }
+
+    @Override
+    public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+        synchronized(tmBacklog) {
+            if(closed) {
+                return;
+            }
+            if(sendBacklog()) {
+                TmMessageMarshaller.onNext(delegate, tmMessage);
+            } else {
+                tmBacklog.offer(tmMessage);
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        synchronized(tmBacklog) {
+            if(closed) {
+                return;
+            }
+            closed = true;
+            tmBacklog.clear();
+            delegate.onError(t);
+        }
+    }
+
+    @Override
+    public void onCompleted() {
+        synchronized(tmBacklog) {
+            completed = true;
+            sendBacklog();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        this.onReadyHandler = onReadyHandler;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+        this.onCancelHandler = onCancelHandler;
+    }
+
+    /**
+     * @return The backlog of the stream
+     */
+    public TmBacklog getTmBacklog() {
+        return tmBacklog;
+    }
+
+    private void onReady() {
+        synchronized(tmBacklog) {
+            sendBacklog();
+        }
+        Runnable handler = onReadyHandler;
+        if(handler != null) {
+            handler.run();
+        }
+    }
+
+    private void onCancel() {
+        synchronized(tmBacklog) {
+            closed = true;
+            tmBacklog.clear();
+        }
+        Runnable handler = onCancelHandler;
+        if(handler != null) {
+            handler.run();
+        }
+    }
+
+    /**
+     * Sends the stored messages while the user stream is ready, reporting dropped messages at their position.
+     * Completes the user stream after the last message if the production completed.
+     * @return true if a message can be sent directly
+     */
+    private boolean sendBacklog() {
+        while(closed == false && tmBacklog.isEmpty() == false && delegate.isReady()) {
+            if(tmBacklog.getPolicy() == TmBacklog.DropPolicy.DROP_OLDEST) {
+                reportDiscarded();
+            }
+            TmMessageMarshaller.onNext(delegate, tmBacklog.peek()); // copied by the stream before returning
+            tmBacklog.remove();
+        }
+
+        if(closed || tmBacklog.isEmpty() == false) {
+            return false;
+        }
+        if(completed) {
+            reportDiscarded();
+            closed = true;
+            delegate.onCompleted();
+            return false;
+        }
+        if(delegate.isReady() == false) {
+            return false;
+        }
+        reportDiscarded();
+        return true;
+    }
+
+    private void reportDiscarded() {
+        long discarded = tmBacklog.takeDiscarded();
+        if(discarded > 0) {
+            delegate.onNext(TmBacklog.discardedNotify(discarded));
+        }
+    }
+}
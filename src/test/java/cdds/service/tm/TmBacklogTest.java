@@ -0,0 +1,256 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProviderServer;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Test for the TM backlog
+ *
+ * 1) testDropOldest - Sends more messages than the backlog holds to a stream not ready,
+ *                     checks the newest messages are sent after a SyncNotify with the dropped count
+ * 2) testDropNewest - As testDropOldest, checks the oldest messages are sent followed by
+ *                     a SyncNotify with the dropped count before the completion
+ * 3) testBacklogEndpoint - Receives frames from a production never held back by the stream,
+ *                          checks that all frames are received in sequence
+ */
+public class TmBacklogTest {
+
+    private static final int PROVIDER_PORT = 7674;
+    private static final int FRAME_LENGTH = 1115;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    private final ByteString frameData = ByteString.copyFrom(TestTelemetryFile.getFrameData(FRAME_LENGTH));
+
+    @Test
+    public void testDropOldest() throws InvalidProtocolBufferException {
+        final int numMessages = 1000;
+        final int messageLength = TEMPLATE.encodedSize(999, 0, -1, FRAME_LENGTH);
+        final int kept = 300; // spans several blocks
+
+        TmBacklog backlog = new TmBacklog((long) kept * messageLength, TmBacklog.DropPolicy.DROP_OLDEST);
+        MessageCollector collector = new MessageCollector();
+        TmBacklogStream stream = new TmBacklogStream(collector, backlog);
+
+        // the first messages are sent directly
+        sendMessages(stream, 0, 10);
+        collector.ready = false;
+        sendMessages(stream, 10, numMessages);
+        stream.onCompleted();
+        assertFalse(collector.completed);
+
+        assertEquals(kept, backlog.getNumMessages());
+        assertEquals((long) kept * messageLength, backlog.getNumBytes());
+        assertEquals((long) kept * messageLength, backlog.getHighWaterBytes());
+        assertEquals(numMessages - 10 - kept, backlog.getNumDropped());
+
+        collector.ready = true;
+        collector.onReadyHandler.run();
+        assertTrue(collector.completed);
+        assertTrue(backlog.isEmpty());
+        assertEquals(0, backlog.getNumBytes());
+
+        List<TelemetryMessage> messages = collector.messages;
+        assertEquals(10 + 1 + kept, messages.size());
+        assertSequence(messages.subList(0, 10), 0);
+        assertDiscarded(messages.get(10), numMessages - 10 - kept);
+        assertSequence(messages.subList(11, messages.size()), numMessages - kept);
+    }
+
+    @Test
+    public void testDropNewest() throws InvalidProtocolBufferException {
+        final int numMessages = 1000;
+        final int messageLength = TEMPLATE.encodedSize(999, 0, -1, FRAME_LENGTH);
+        final int kept = 300;
+
+        TmBacklog backlog = new TmBacklog((long) kept * messageLength, TmBacklog.DropPolicy.DROP_NEWEST);
+        MessageCollector collector = new MessageCollector();
+        TmBacklogStream stream = new TmBacklogStream(collector, backlog);
+
+        collector.ready = false;
+        sendMessages(stream, 0, numMessages);
+        assertEquals(kept, backlog.getNumMessages());
+        assertEquals(numMessages - kept, backlog.getNumDropped());
+
+        // the stream catches up, the gap is reported before the next message
+        collector.ready = true;
+        collector.onReadyHandler.run();
+        sendMessages(stream, numMessages, numMessages + 10);
+
+        // the stream falls behind again, the gap is reported before the completion
+        collector.ready = false;
+        sendMessages(stream, numMessages + 10, 2 * numMessages);
+        stream.onCompleted();
+        collector.ready = true;
+        collector.onReadyHandler.run();
+        assertTrue(collector.completed);
+
+        List<TelemetryMessage> messages = collector.messages;
+        assertEquals(kept + 1 + 10 + kept + 1, messages.size());
+        assertSequence(messages.subList(0, kept), 0);
+        assertDiscarded(messages.get(kept), numMessages - kept);
+        assertSequence(messages.subList(kept + 1, kept + 11), numMessages);
+        assertSequence(messages.subList(kept + 11, 2 * kept + 11), numMessages + 10);
+        assertDiscarded(messages.get(messages.size() - 1), numMessages - 10 - kept);
+        assertEquals(2 * (numMessages - kept) - 10, backlog.getNumDropped());
+    }
+
+    @Test
+    public void testBacklogEndpoint() throws IOException, InterruptedException, TimeLimitExceededException {
+        final long numFrames = 20_000;
+
+        TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+            4711, FrameVersion.AOS, 1);
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+        TmBacklog tmBacklog = new TmBacklog(64 * 1024 * 1024, TmBacklog.DropPolicy.DROP_OLDEST);
+        tmProvider.addTmBacklog(tmEndpoint, tmBacklog);
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        try {
+            TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+            tmServiceUser.waitForTmFrames(30_000);
+            tmServiceUser.shutdown();
+
+            assertEquals(numFrames - 1, tmServiceUser.getLastSequenceNumber());
+            assertEquals(0, tmServiceUser.getNumDataDiscarded());
+            assertEquals(0, tmBacklog.getNumDropped());
+            assertTrue(tmBacklog.getHighWaterBytes() > 0);
+            System.out.println("TM backlog high-water mark: " + tmBacklog.getHighWaterBytes() + " bytes");
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Sends messages from first to last - 1, alternating encoded and built messages
+     */
+    private void sendMessages(TmBacklogStream stream, long first, long last) throws InvalidProtocolBufferException {
+        for(long seq = first; seq < last; seq++) {
+            if(seq % 2 == 0) {
+                TmMessageMarshaller.onNext(stream, TEMPLATE.wrap(seq, 0, -1, frameData));
+            } else {
+                stream.onNext(TEMPLATE.encode(seq, 0, -1, frameData).toMessage());
+            }
+        }
+    }
+
+    private void assertSequence(List<TelemetryMessage> messages, long first) {
+        for(int idx = 0; idx < messages.size(); idx++) {
+            assertEquals(first + idx, messages.get(idx).getSequenceNumber());
+            assertEquals(frameData, messages.get(idx).getTelemetry().getData());
+        }
+    }
+
+    private static void assertDiscarded(TelemetryMessage tmMessage, long discarded) {
+        assertTrue(tmMessage.hasSyncNotify());
+        assertFalse(tmMessage.hasSequenceNumber());
+        assertEquals(discarded, tmMessage.getSyncNotify().getDataDiscarded());
+    }
+
+    /**
+     * User stream collecting the sent messages, ready as set by the test
+     */
+    static class MessageCollector extends ServerCallStreamObserver<TelemetryMessage>
+        implements TmMessageMarshaller.EncodedMessageStream {
+
+        final List<TelemetryMessage> messages = new ArrayList<>();
+        boolean ready = true;
+        boolean completed = false;
+        Runnable onReadyHandler;
+        Runnable onCancelHandler;
+
+        @Override
+        public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+            try {
+                messages.add(tmMessage.toMessage());
+            } catch(InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            messages.add(tmMessage);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+            this.onCancelHandler = onCancelHandler;
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
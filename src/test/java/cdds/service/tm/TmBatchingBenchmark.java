@@ -0,0 +1,69 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProviderServer;
+
+/**
+ * Benchmark of the unbatched and the batched TM stream of TmServiceTest (unsecure, aliasing user) for
+ * small, medium and large frames.
+ * Run with: mvn test -Pbenchmark -Dtest=TmBatchingBenchmark
+ *
+ * Reports the frame rate and the bit rate of the frame data. Batching saves the per message overhead
+ * of the transport, the more the smaller the frames are.
+ */
+@Tag("benchmark")
+public class TmBatchingBenchmark {
+
+    private static final int PROVIDER_PORT = 7670;
+    private static final int[] FRAME_LENGTHS = { 128, 1115, 8920 };
+    private static final long NUM_BYTES = 200_000_000L;
+    private static final long TIMEOUT = 60_000;
+    private static final int NUM_RUNS = 2;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void benchmarkTmStream() throws IOException, TimeLimitExceededException, InterruptedException {
+        for(int run = 0; run < NUM_RUNS; run++) {
+            for(int frameLength : FRAME_LENGTHS) {
+                runTmStream(frameLength, false);
+                runTmStream(frameLength, true);
+            }
+        }
+    }
+
+    private void runTmStream(int frameLength, boolean batching)
+            throws IOException, TimeLimitExceededException, InterruptedException {
+        final long numFrames = NUM_BYTES / frameLength;
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, frameLength));
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+        tmServiceUser.setBatching(batching);
+
+        long start = System.nanoTime();
+        tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+        tmServiceUser.waitForTmFrames(TIMEOUT);
+        long nanos = System.nanoTime() - start;
+
+        tmServiceUser.shutdown();
+        server.stop();
+
+        System.out.println(String.format("%5d bytes %-9s %10.1f k frames/s %8.1f Mbit/s",
+            frameLength, batching ? "batched" : "unbatched", numFrames * 1E6 / nanos, numFrames * frameLength * 8 * 1E3 / nanos));
+    }
+}
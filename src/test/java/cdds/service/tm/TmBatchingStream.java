@@ -0,0 +1,310 @@
+package cdds.service.tm;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.tm.CddsTmService.TelemetryMessageBatch;
+import cdds.tm.EncodedTelemetryMessage;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * TM user stream collecting the sent messages into batches sent on a batched stream.
+ *
+ * A batch is sent when it reaches the maximum size or number of messages or when the linger time since
+ * its first message expired, whichever comes first. The linger time adapts to the load: a batch less than
+ * half full on expiry of the linger time halves it down to zero, a full batch doubles it up to the maximum.
+ * With a linger time of zero each message is sent immediately unless messages follow each other closer than
+ * the minimum linger time. Low rate streams thus send each message without delay, high rate streams send
+ * full batches.
+ *
+ * Productions use the stream like the user stream of openTelemetryEndpoint, isReady() and the handlers
+ * refer to the batched stream. A batch whose linger time expires while the batched stream is not ready
+ * is sent on the next onReady, before the onReady handler of the production runs.
+ */
+public class TmBatchingStream extends ServerCallStreamObserver<TelemetryMessage>
+    implements TmMessageMarshaller.EncodedMessageStream {
+
+    /** Default maximum size of a batch */
+    public static final int DEFAULT_MAX_BATCH_BYTES = 64 * 1024;
+
+    /** Default maximum number of messages of a batch */
+    public static final int DEFAULT_MAX_BATCH_MESSAGES = 256;
+
+    /** Default maximum linger time */
+    public static final long DEFAULT_MAX_LINGER_NANOS = 5_000_000;
+
+    /** The linger time started with when the load increases */
+    static final long MIN_LINGER_NANOS = 100_000;
+
+    private static final ScheduledExecutorService LINGER_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TM batch linger thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final LingerTimer SYSTEM_TIMER = (task, delayNanos) ->
+        LINGER_SCHEDULER.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+
+    /**
+     * Timer running the linger expiry, replaced by tests to expire linger times deterministically
+     */
+    interface LingerTimer {
+
+        /**
+         * @param task          The task to run
+         * @param delayNanos    The delay in nanoseconds
+         */
+        void schedule(Runnable task, long delayNanos);
+    }
+
+    private final ServerCallStreamObserver<Object> tmBatchStream;
+    private final int maxBatchBytes;
+    private final int maxBatchMessages;
+    private final long maxLingerNanos;
+    private final LongSupplier nanoClock;
+    private final LingerTimer lingerTimer;
+
+    // guarded by this
+    private EncodedTelemetryBatch batch;
+    private long batchNumber = 0;
+    private long lingerNanos;
+    private long lastSendNanos = 0;
+    private boolean lingerExpired = false;
+    private boolean completed = false;
+
+    private long numBatches = 0;
+    private long numMessages = 0;
+
+    /**
+     * Creates the batching stream with the default limits
+     * @param tmBatchStream     The batched user stream, bound with the TmMessageMarshaller
+     */
+    public TmBatchingStream(ServerCallStreamObserver<TelemetryMessageBatch> tmBatchStream) {
+        this(tmBatchStream, DEFAULT_MAX_BATCH_BYTES, DEFAULT_MAX_BATCH_MESSAGES, DEFAULT_MAX_LINGER_NANOS);
+    }
+
+    /**
+     * Creates the batching stream
+     * @param tmBatchStream     The batched user stream, bound with the TmMessageMarshaller
+     * @param maxBatchBytes     The maximum size of a batch, a larger message is sent in a batch of its own
+     * @param maxBatchMessages  The maximum number of messages of a batch
+     * @param maxLingerNanos    The maximum time a message waits for the batch to fill
+     */
+    public TmBatchingStream(ServerCallStreamObserver<TelemetryMessageBatch> tmBatchStream, int maxBatchBytes,
+            int maxBatchMessages, long maxLingerNanos) {
+        this(tmBatchStream, maxBatchBytes, maxBatchMessages, maxLingerNanos, System::nanoTime, SYSTEM_TIMER);
+    }
+
+    /**
+     * Creates the batching stream on the given clock and linger timer
+     * @param tmBatchStream     The batched user stream, bound with the TmMessageMarshaller
+     * @param maxBatchBytes     The maximum size of a batch, a larger message is sent in a batch of its own
+     * @param maxBatchMessages  The maximum number of messages of a batch
+     * @param maxLingerNanos    The maximum time a message waits for the batch to fill
+     * @param nanoClock         The clock in nanoseconds the linger time is measured with
+     * @param lingerTimer       The timer running the linger expiry
+     */
+    @SuppressWarnings("unchecked")
+    TmBatchingStream(ServerCallStreamObserver<TelemetryMessageBatch> tmBatchStream, int maxBatchBytes,
+            int maxBatchMessages, long maxLingerNanos, LongSupplier nanoClock, LingerTimer lingerTimer) {
+        this.tmBatchStream = (ServerCallStreamObserver<Object>) (ServerCallStreamObserver<?>) tmBatchStream;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchMessages = maxBatchMessages;
+        this.maxLingerNanos = maxLingerNanos;
+        this.lingerNanos = maxLingerNanos;
+        this.nanoClock = nanoClock;
+        this.lingerTimer = lingerTimer;
+    }
+
+    @Override
+    public synchronized void onNext(TelemetryMessage tmMessage) {
+        prepareBatch(tmMessage.getSerializedSize());
+        batch.add(tmMessage);
+        batchAdded();
+    }
+
+    @Override
+    public synchronized void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+        prepareBatch(tmMessage.getSerializedSize());
+        batch.add(tmMessage);
+        batchAdded();
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        sendBatch();
+        completed = true;
+        tmBatchStream.onError(t);
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        sendBatch();
+        completed = true;
+        tmBatchStream.onCompleted();
+    }
+
+    /**
+     * @return The number of batches sent
+     */
+    public synchronized long getNumBatches() {
+        return numBatches;
+    }
+
+    /**
+     * @return The number of messages sent
+     */
+    public synchronized long getNumMessages() {
+        return numMessages;
+    }
+
+    /**
+     * @return The current linger time in nanoseconds
+     */
+    public synchronized long getLingerNanos() {
+        return lingerNanos;
+    }
+
+    /**
+     * Sends the current batch if the message does not fit and creates a new batch if needed
+     */
+    private void prepareBatch(int messageLength) {
+        if(completed) {
+            throw new IllegalStateException("TM batching stream already completed");
+        }
+        if(batch != null && batch.getSerializedSize() + messageLength + 6 > maxBatchBytes) {
+            sendFullBatch();
+        }
+        if(batch == null) {
+            batch = new EncodedTelemetryBatch(Math.max(maxBatchBytes, messageLength + 6));
+        }
+    }
+
+    /**
+     * Sends the batch if full or if messages are sent immediately, otherwise lets the first message of a batch linger
+     */
+    private void batchAdded() {
+        if(batch.getNumMessages() >= maxBatchMessages || batch.getSerializedSize() >= maxBatchBytes) {
+            sendFullBatch();
+            return;
+        }
+
+        long now = nanoClock.getAsLong();
+        if(lingerNanos == 0) {
+            if(now - lastSendNanos >= MIN_LINGER_NANOS) {
+                sendBatch(); // light load, send without delay
+                return;
+            }
+            lingerNanos = MIN_LINGER_NANOS; // messages follow closely, start batching
+        }
+
+        if(batch.getNumMessages() == 1) {
+            final long lingeringBatch = batchNumber;
+            lingerTimer.schedule(() -> lingerExpired(lingeringBatch), lingerNanos);
+        }
+    }
+
+    private synchronized void lingerExpired(long lingeringBatch) {
+        if(lingeringBatch != batchNumber || batch == null || completed) {
+            return; // the batch has been sent already
+        }
+        lingerExpired = true;
+        sendExpiredBatch();
+    }
+
+    /**
+     * Sends the batch whose linger time expired once the batched stream is ready
+     */
+    private void sendExpiredBatch() {
+        if(lingerExpired == false || tmBatchStream.isReady() == false) {
+            return; // sent on the next onReady
+        }
+        boolean halfFull = 2 * batch.getNumMessages() >= maxBatchMessages || 2 * batch.getSerializedSize() >= maxBatchBytes;
+        sendBatch();
+        if(halfFull == false) {
+            lingerNanos = lingerNanos / 2 >= MIN_LINGER_NANOS ? lingerNanos / 2 : 0;
+        }
+    }
+
+    private void sendFullBatch() {
+        sendBatch();
+        lingerNanos = Math.min(maxLingerNanos, Math.max(MIN_LINGER_NANOS, 2 * lingerNanos));
+    }
+
+    private void sendBatch() {
+        if(batch == null) {
+            return;
+        }
+        numBatches++;
+        numMessages += batch.getNumMessages();
+        tmBatchStream.onNext(batch);
+        batch = null;
+        batchNumber++;
+        lingerExpired = false;
+        lastSendNanos = nanoClock.getAsLong();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return tmBatchStream.isCancelled();
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+        tmBatchStream.setOnCancelHandler(onCancelHandler);
+    }
+
+    @Override
+    public void setCompression(String compression) {
+        tmBatchStream.setCompression(compression);
+    }
+
+    @Override
+    public boolean isReady() {
+        return tmBatchStream.isReady();
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        tmBatchStream.setOnReadyHandler(() -> {
+            synchronized(this) {
+                sendExpiredBatch();
+            }
+            onReadyHandler.run();
+        });
+    }
+
+    @Override
+    public void setOnReadyThreshold(int numBytes) {
+        tmBatchStream.setOnReadyThreshold(numBytes);
+    }
+
+    @Override
+    public void disableAutoRequest() {
+        tmBatchStream.disableAutoRequest();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void disableAutoInboundFlowControl() {
+        tmBatchStream.disableAutoInboundFlowControl();
+    }
+
+    @Override
+    public void request(int count) {
+        tmBatchStream.request(count);
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+        tmBatchStream.setMessageCompression(enable);
+    }
+
+    @Override
+    public void setOnCloseHandler(Runnable onCloseHandler) {
+        tmBatchStream.setOnCloseHandler(onCloseHandler);
+    }
+}
@@ -0,0 +1,343 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TelemetryMessageBatch;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import cdds.service.common.ClientMetaDataInterceptor;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import cdds.tm.frame.TransferFrameHeader;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Test for the batched TM stream
+ *
+ * 1) testBurst - Sends a burst of messages and checks that full batches are sent in order
+ * 2) testLowRate - Sends messages at a low rate and checks that the linger time drops to zero
+ *                  and each message is sent without delay, on a manual clock and linger timer
+ * 3) testLingerNotReady - Expires the linger time while the batched stream is not ready and checks
+ *                         that the batch is sent on the next onReady
+ * 4) testBatchedEndpoint - Receives frames on a batched endpoint with copied and aliased frame data
+ *                          and checks the sequence, data and data link continuity of each frame
+ */
+public class TmBatchingStreamTest {
+
+    private static final int PROVIDER_PORT = 7669;
+    private static final int FRAME_LENGTH = 1115;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    private final ByteString frameData = ByteString.copyFrom(TestTelemetryFile.getFrameData(FRAME_LENGTH));
+
+    @Test
+    public void testBurst() throws IOException {
+        final int numMessages = 1000;
+        final int maxBatchMessages = 16;
+        BatchCollector collector = new BatchCollector();
+        TmBatchingStream stream = new TmBatchingStream(collector.asBatchStream(), 1024 * 1024, maxBatchMessages, 1_000_000_000L);
+
+        for(int seq = 0; seq < numMessages; seq++) {
+            if(seq % 2 == 0) {
+                stream.onNextEncoded(TEMPLATE.wrap(seq, seq, -1, frameData));
+            } else {
+                stream.onNext(TEMPLATE.encode(seq, seq, -1, frameData).toMessage());
+            }
+        }
+        stream.onCompleted();
+
+        assertTrue(collector.completed);
+        assertEquals(numMessages, stream.getNumMessages());
+        assertEquals((numMessages + maxBatchMessages - 1) / maxBatchMessages, collector.batches.size());
+        assertEquals(stream.getNumBatches(), collector.batches.size());
+
+        long seq = 0;
+        for(TelemetryMessageBatch batch : collector.batches) {
+            for(TelemetryMessage tmMessage : batch.getMessagesList()) {
+                assertEquals(seq++, tmMessage.getSequenceNumber());
+                assertEquals(frameData, tmMessage.getTelemetry().getData());
+            }
+        }
+        assertEquals(numMessages, seq);
+    }
+
+    @Test
+    public void testLowRate() throws IOException {
+        final long maxLingerNanos = 2_000_000;
+        BatchCollector collector = new BatchCollector();
+        ManualTimer timer = new ManualTimer();
+        TmBatchingStream stream = new TmBatchingStream(collector.asBatchStream(), 64 * 1024, 256, maxLingerNanos,
+            timer::nanoTime, timer);
+
+        // each message lingers alone until the linger time dropped to zero
+        int seq = 0;
+        while(stream.getLingerNanos() > 0) {
+            stream.onNextEncoded(TEMPLATE.wrap(seq++, 0, -1, frameData));
+            assertEquals(seq - 1, stream.getNumBatches());
+            timer.advance(2 * maxLingerNanos);
+            assertEquals(seq, stream.getNumBatches());
+            assertTrue(seq < 100, "linger time not decreasing");
+        }
+
+        long sentBefore = stream.getNumBatches();
+        for(int idx = 0; idx < 5; idx++) {
+            timer.advance(TmBatchingStream.MIN_LINGER_NANOS);
+            stream.onNextEncoded(TEMPLATE.wrap(seq++, 0, -1, frameData));
+            assertEquals(sentBefore + idx + 1, stream.getNumBatches()); // sent without delay
+        }
+
+        // a message following within the minimum linger time starts batching again
+        stream.onNextEncoded(TEMPLATE.wrap(seq++, 0, -1, frameData));
+        assertEquals(sentBefore + 5, stream.getNumBatches());
+        assertEquals(TmBatchingStream.MIN_LINGER_NANOS, stream.getLingerNanos());
+        timer.advance(TmBatchingStream.MIN_LINGER_NANOS);
+        assertEquals(sentBefore + 6, stream.getNumBatches());
+        stream.onCompleted();
+
+        assertEquals(seq, stream.getNumMessages());
+        assertEquals(seq, collector.batches.size());
+    }
+
+    @Test
+    public void testLingerNotReady() throws IOException {
+        BatchCollector collector = new BatchCollector();
+        ManualTimer timer = new ManualTimer();
+        TmBatchingStream stream = new TmBatchingStream(collector.asBatchStream(), 64 * 1024, 256, 1_000_000,
+            timer::nanoTime, timer);
+        AtomicLong numOnReady = new AtomicLong();
+        stream.setOnReadyHandler(numOnReady::incrementAndGet);
+
+        stream.onNextEncoded(TEMPLATE.wrap(0, 0, -1, frameData));
+        collector.ready = false;
+        timer.advance(1_000_000);
+        assertEquals(0, stream.getNumBatches()); // the expired batch waits for the stream to become ready
+        stream.onNextEncoded(TEMPLATE.wrap(1, 0, -1, frameData));
+        assertEquals(0, stream.getNumBatches());
+
+        collector.ready = true;
+        collector.onReadyHandler.run();
+        assertEquals(1, stream.getNumBatches());
+        assertEquals(2, stream.getNumMessages());
+        assertEquals(1, numOnReady.get());
+
+        collector.onReadyHandler.run(); // nothing left to send
+        assertEquals(1, stream.getNumBatches());
+        assertEquals(2, numOnReady.get());
+    }
+
+    @Test
+    public void testBatchedEndpoint() throws IOException, InterruptedException, ExecutionException, TimeoutException, TimeLimitExceededException {
+        final long numFrames = 20_000;
+
+        TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+            4711, FrameVersion.AOS, 1);
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        ClientMetaDataInterceptor interceptor = new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY);
+        interceptor.setMetaData(ProtoJsonUtil.toJsonUtf8(tmEndpoint));
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build();
+
+        try {
+            for(boolean aliasing : new boolean[] { false, true }) {
+                tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+
+                AtomicLong numReceived = new AtomicLong();
+                CompletableFuture<Void> completed = new CompletableFuture<>();
+                TmMessageMarshaller.openTelemetryEndpointBatched(TmServiceProviderGrpc.newStub(ClientInterceptors.intercept(channel, interceptor)),
+                    NoArg.getDefaultInstance(), aliasing, new StreamObserver<TelemetryMessage>() {
+                        @Override
+                        public void onNext(TelemetryMessage tmMessage) {
+                            try {
+                                assertEquals(numReceived.get(), tmMessage.getSequenceNumber());
+                                // the AOS primary header with the frame count is generated, followed by the frame data
+                                ByteString data = tmMessage.getTelemetry().getData();
+                                assertEquals(frameData.substring(6), data.substring(6));
+                                assertEquals(numReceived.get(), new TransferFrameHeader().wrap(data).virtualChannelFrameCount());
+                                assertEquals(numReceived.get() == 0 ? -1 : 0, tmMessage.getTelemetry().getMetaData(0).getDataLinkContinuity());
+                                numReceived.incrementAndGet();
+                            } catch(Throwable t) {
+                                completed.completeExceptionally(t);
+                            }
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            completed.completeExceptionally(t);
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            completed.complete(null);
+                        }
+                    });
+
+                assertNull(completed.get(30, TimeUnit.SECONDS));
+                assertEquals(numFrames, numReceived.get());
+            }
+
+            // the TM service user delivers the batched frames like unbatched ones
+            tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+            TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            tmServiceUser.setBatching(true);
+            tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+            tmServiceUser.waitForTmFrames(30_000);
+            tmServiceUser.shutdown();
+        } finally {
+            channel.shutdown();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+            server.stop();
+        }
+    }
+
+    /**
+     * Batched stream collecting the sent batches
+     */
+    private static class BatchCollector extends ServerCallStreamObserver<Object> {
+
+        final List<TelemetryMessageBatch> batches = new ArrayList<>();
+        boolean completed = false;
+        boolean ready = true;
+        Runnable onReadyHandler;
+
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<TelemetryMessageBatch> asBatchStream() {
+            return (ServerCallStreamObserver<TelemetryMessageBatch>) (ServerCallStreamObserver<?>) this;
+        }
+
+        @Override
+        public void onNext(Object batch) {
+            try {
+                // the batching stream sends encoded batches, the TmMessageMarshaller streams them
+                batches.add(((EncodedTelemetryBatch) batch).toBatch());
+            } catch(InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            throw new IllegalStateException(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+            this.onReadyHandler = onReadyHandler;
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+
+    /**
+     * Clock and linger timer advanced by the test, running the tasks due on the test thread
+     */
+    private static class ManualTimer implements TmBatchingStream.LingerTimer {
+
+        private final List<Long> due = new ArrayList<>();
+        private final List<Runnable> tasks = new ArrayList<>();
+        private long now = 0;
+
+        long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public void schedule(Runnable task, long delayNanos) {
+            due.add(now + delayNanos);
+            tasks.add(task);
+        }
+
+        /**
+         * Advances the clock, running each task due at its due time
+         */
+        void advance(long nanos) {
+            long until = now + nanos;
+            for(int idx = nextDue(until); idx >= 0; idx = nextDue(until)) {
+                now = due.remove(idx);
+                tasks.remove(idx).run();
+            }
+            now = until;
+        }
+
+        private int nextDue(long until) {
+            int next = -1;
+            for(int idx = 0; idx < due.size(); idx++) {
+                if(due.get(idx) <= until && (next < 0 || due.get(idx) < due.get(next))) {
+                    next = idx;
+                }
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import cdds.service.common.ClientMetaDataInterceptor;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Benchmark of the TM fan-out hub (unsecure, 1115 byte frames) for 1 to 50 streams, each on its own channel.
+ * Run with: mvn test -Pbenchmark -Dtest=TmFanOutBenchmark
+ *
+ * Reports the time the producer needs per published frame, which does not depend on the number of
+ * streams, and the delivery time per frame and stream until all streams completed.
+ */
+@Tag("benchmark")
+public class TmFanOutBenchmark {
+
+    private static final int PROVIDER_PORT = 7673;
+    private static final int FRAME_LENGTH = 1115;
+    private static final int NUM_FRAMES = 20_000;
+    private static final int[] NUM_SUBSCRIBERS = { 1, 10, 50 };
+    private static final int NUM_RUNS = 3;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    private final ByteString frameData = ByteString.copyFrom(TestTelemetryFile.getFrameData(FRAME_LENGTH));
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void benchmarkFanOut() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        for(int run = 0; run < NUM_RUNS; run++) {
+            for(int numSubscribers : NUM_SUBSCRIBERS) {
+                runFanOut(numSubscribers);
+            }
+        }
+    }
+
+    private void runFanOut(int numSubscribers) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        TmFanOutHubTest.ControlledProduction production = new TmFanOutHubTest.ControlledProduction();
+        TmFanOutHub hub = new TmFanOutHub(production, 2 * NUM_FRAMES, TmFanOutHub.SlowConsumerPolicy.DROP);
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, hub);
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        List<ManagedChannel> channels = new ArrayList<>();
+        List<TmFanOutHubTest.FrameCounter> subscribers = new ArrayList<>();
+        ClientMetaDataInterceptor interceptor = new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY);
+        interceptor.setMetaData(ProtoJsonUtil.toJsonUtf8(tmEndpoint));
+        for(int idx = 0; idx < numSubscribers; idx++) {
+            ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build();
+            channels.add(channel);
+            TmFanOutHubTest.FrameCounter subscriber = new TmFanOutHubTest.FrameCounter(false);
+            subscribers.add(subscriber);
+            TmServiceProviderGrpc.newStub(ClientInterceptors.intercept(channel, interceptor))
+                .openTelemetryEndpoint(NoArg.getDefaultInstance(), subscriber);
+        }
+        while(hub.getNumSubscribers() < numSubscribers) {
+            Thread.sleep(10);
+        }
+
+        StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+        long start = System.nanoTime();
+        for(int seq = 0; seq < NUM_FRAMES; seq++) {
+            TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(seq, 0, -1, frameData));
+        }
+        producer.onCompleted();
+        long publishNanos = System.nanoTime() - start;
+
+        long numReceived = 0;
+        for(TmFanOutHubTest.FrameCounter subscriber : subscribers) {
+            subscriber.closed.get(120, TimeUnit.SECONDS);
+            numReceived += subscriber.numFrames;
+        }
+        long nanos = System.nanoTime() - start;
+
+        for(ManagedChannel channel : channels) {
+            channel.shutdownNow();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        server.stop();
+
+        System.out.println(String.format("%3d streams: publish %7.1f ns/frame, delivery %7.1f ns/frame/stream, %8.1f Mbit/s total, %d of %d frames received",
+            numSubscribers, (double) publishNanos / NUM_FRAMES, (double) nanos / ((long) NUM_FRAMES * numSubscribers),
+            numReceived * FRAME_LENGTH * 8 * 1E3 / nanos, numReceived, (long) NUM_FRAMES * numSubscribers));
+    }
+}
@@ -0,0 +1,321 @@
+package cdds.service.tm;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.util.TimeUtil;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * TM production fanning out the TM of a single source production to all streams opened for the endpoint.
+ *
+ * The source production is started once, on the first stream, and writes each message once into a ring.
+ * Messages are kept encoded, a TelemetryMessage is serialized once for all streams. The ring has a single
+ * writer and no locks: the producer stores the message in its slot and then publishes its position.
+ * Each stream reads from its own cursor as long as it is ready, a stream that is not ready does not
+ * stall the producer. A stream falling behind by the capacity of the ring is handled by the policy:
+ * it either continues with the oldest message still in the ring after a SyncNotify reporting the
+ * number of dropped messages in dataDiscarded, or it is closed with RESOURCE_EXHAUSTED.
+ *
+ * A stream that caught up parks and is woken by the producer on the next message. The drain of a stream is
+ * scheduled on the transition of its drain counter from idle, a stream that is draining already is not
+ * scheduled again. The SyncNotify of dropped messages is sent by the drain when the stream is ready.
+ *
+ * Streams opened later start with the next message published. The source production sees a stream
+ * which is always ready, productions sending from the on ready handler start on a producer thread.
+ */
+public class TmFanOutHub implements TmProduction {
+
+    /**
+     * The handling of a stream falling behind by the capacity of the ring
+     */
+    public enum SlowConsumerPolicy {
+        DROP,       // drop the overwritten messages, report them in a SyncNotify dataDiscarded
+        DISCONNECT  // close the stream with RESOURCE_EXHAUSTED
+    }
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.fanout");
+
+    private static final ExecutorService DRAIN_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "TM fan-out thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final TmProduction source;
+    private final SlowConsumerPolicy policy;
+    private final EncodedTelemetryMessage[] ring;
+    private final int mask;
+
+    private final AtomicLong published = new AtomicLong(-1);    // the position of the last published message
+    private volatile long endPosition = Long.MAX_VALUE;         // the position following the last message when completed
+    private volatile Throwable error;
+
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong numDropped = new AtomicLong();
+    private final AtomicLong numDisconnected = new AtomicLong();
+
+    /**
+     * Creates the fan-out hub
+     * @param source    The source production
+     * @param capacity  The number of messages in the ring, rounded up to a power of two
+     * @param policy    The handling of streams falling behind by the capacity
+     */
+    public TmFanOutHub(TmProduction source, int capacity, SlowConsumerPolicy policy) {
+        this.source = source;
+        this.policy = policy;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new EncodedTelemetryMessage[size];
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void startTmEndpointService(TmServiceEndpoint tmEndpoint, StreamObserver<TelemetryMessage> tmUserStream) {
+        Subscriber subscriber = new Subscriber((ServerCallStreamObserver<TelemetryMessage>) tmUserStream, published.get() + 1);
+        subscribers.add(subscriber);
+        subscriber.stream.setOnCancelHandler(() -> subscribers.remove(subscriber));
+        subscriber.stream.setOnReadyHandler(subscriber::drain);
+
+        if(started.compareAndSet(false, true)) {
+            LOG.info("Start TM fan-out production for endpoint\n" + tmEndpoint);
+            source.startTmEndpointService(tmEndpoint, new ProducerStream());
+        }
+    }
+
+    @Override
+    public void stopTmEndpointService(TmServiceEndpoint tmEndpoint) {
+        source.stopTmEndpointService(tmEndpoint);
+    }
+
+    /**
+     * @return The number of subscribed streams
+     */
+    public int getNumSubscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return The number of messages published by the source production
+     */
+    public long getNumPublished() {
+        return published.get() + 1;
+    }
+
+    /**
+     * @return The number of messages dropped for slow streams, summed over the streams
+     */
+    public long getNumDropped() {
+        return numDropped.get();
+    }
+
+    /**
+     * @return The number of streams closed for being slow
+     */
+    public long getNumDisconnected() {
+        return numDisconnected.get();
+    }
+
+    /**
+     * Publishes a message, called by the producer only
+     */
+    private void publish(EncodedTelemetryMessage tmMessage) {
+        long position = published.get() + 1;
+        ring[(int) position & mask] = tmMessage;
+        published.set(position); // a full fence, the parked subscribers are read after it
+
+        // streams not ready are not draining, check them for overrun twice per ring cycle
+        boolean checkOverrun = (position & (mask >> 1)) == 0;
+        for(Subscriber subscriber : subscribers) {
+            if(subscriber.parked.get() && subscriber.parked.compareAndSet(true, false)) {
+                subscriber.wake();
+            } else if(checkOverrun && position - subscriber.cursor >= mask) {
+                subscriber.wake();
+            }
+        }
+    }
+
+    /**
+     * Ends the fan-out after the last message, called by the producer only
+     */
+    private void complete(Throwable t) {
+        error = t;
+        endPosition = published.get() + 1;
+        for(Subscriber subscriber : subscribers) {
+            subscriber.wake();
+        }
+    }
+
+    /**
+     * A stream reading from the ring. The drain counter guarantees a single sending thread at any time.
+     */
+    private class Subscriber {
+        private final ServerCallStreamObserver<TelemetryMessage> stream;
+        private final AtomicInteger drainCounter = new AtomicInteger();
+        private final AtomicBoolean parked = new AtomicBoolean(false); // waiting for the next message
+        private final Runnable drainTask = this::drainLoop;
+        private volatile long cursor;   // the position of the next message to send, written by the draining thread
+
+        // only accessed by the draining thread
+        private boolean closed = false;
+        private long dropped = 0;       // the number of dropped messages to report
+
+        Subscriber(ServerCallStreamObserver<TelemetryMessage> stream, long cursor) {
+            this.stream = stream;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Schedules the drain on a fan-out thread unless the stream is draining already, called by the producer
+         */
+        void wake() {
+            if(drainCounter.getAndIncrement() == 0) {
+                DRAIN_EXECUTOR.execute(drainTask);
+            }
+        }
+
+        /**
+         * Sends the published messages while the stream is ready, called by the on ready handler
+         */
+        void drain() {
+            if(drainCounter.getAndIncrement() == 0) {
+                drainLoop();
+            }
+        }
+
+        /**
+         * Sends until no drain is missed, called by the thread that moved the drain counter from idle
+         */
+        private void drainLoop() {
+            int missed = 1;
+            do {
+                try {
+                    sendPublished();
+                } catch(Exception ex) {
+                    LOG.warn("TM fan-out to stream failed: " + ex);
+                    close();
+                }
+                missed = drainCounter.addAndGet(-missed);
+            } while(missed != 0);
+        }
+
+        private void sendPublished() {
+            while(closed == false) {
+                long position = cursor;
+                long last = published.get();
+
+                if(last - position >= mask) {
+                    overrun(last);
+                    continue;
+                }
+
+                if(position > last) {
+                    if(position >= endPosition) {
+                        if(error != null) {
+                            stream.onError(error);
+                        } else {
+                            stream.onCompleted();
+                        }
+                        close();
+                        return;
+                    }
+                    parked.set(true);
+                    if(published.get() >= position || position >= endPosition) {
+                        continue; // published meanwhile, the wake up is spurious
+                    }
+                    return;
+                }
+
+                if(stream.isReady() == false) {
+                    return; // the on ready handler or an overrun check continues
+                }
+
+                if(dropped > 0) {
+                    stream.onNext(TelemetryMessage.newBuilder()
+                        .setSyncNotify(SyncNotify.newBuilder()
+                            .setTime(TimeUtil.now())
+                            .setDataDiscarded(dropped)
+                            .build())
+                        .build());
+                    dropped = 0;
+                    continue;
+                }
+
+                EncodedTelemetryMessage tmMessage = ring[(int) position & mask];
+                if(published.get() - position >= mask) {
+                    continue; // the slot may have been overwritten while reading it
+                }
+                TmMessageMarshaller.onNext(stream, tmMessage);
+                cursor = position + 1;
+            }
+        }
+
+        /**
+         * Handles the overrun of the stream according to the policy, the dropped messages are reported
+         * before the next message
+         */
+        private void overrun(long last) {
+            long oldest = last - mask + 1; // the slot of last + 1 may be being written
+
+            if(policy == SlowConsumerPolicy.DISCONNECT) {
+                LOG.warn("TM fan-out stream behind by " + (last + 1 - cursor) + " messages, disconnected");
+                numDisconnected.incrementAndGet();
+                stream.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("TM stream behind by more than " + mask + " messages")
+                    .asRuntimeException());
+                close();
+                return;
+            }
+
+            numDropped.addAndGet(oldest - cursor);
+            dropped += oldest - cursor;
+            cursor = oldest;
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+    }
+
+    /**
+     * The stream of the source production, publishing into the ring
+     */
+    private class ProducerStream extends TmProducerStream {
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            byte[] bytes = tmMessage.toByteArray();
+            publish(new EncodedTelemetryMessage(bytes, bytes.length));
+        }
+
+        @Override
+        public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+            publish(tmMessage);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            complete(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            complete(null);
+        }
+    }
+}
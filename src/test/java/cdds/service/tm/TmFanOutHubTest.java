@@ -0,0 +1,261 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import cdds.service.common.ClientMetaDataInterceptor;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Test for the TM fan-out hub
+ *
+ * 1) testFanOut - Fans out the frames of one production to several streams,
+ *                 checks that each stream receives all frames in sequence
+ * 2) testSlowConsumer - Fans out to a stream reading all frames and a stream not reading until
+ *                       the production completed, for the drop and the disconnect policy
+ */
+public class TmFanOutHubTest {
+
+    private static final int PROVIDER_PORT = 7672;
+    private static final int FRAME_LENGTH = 1115;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    private final ByteString frameData = ByteString.copyFrom(TestTelemetryFile.getFrameData(FRAME_LENGTH));
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void testFanOut() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final int numFrames = 5_000;
+        final int numSubscribers = 5;
+
+        ControlledProduction production = new ControlledProduction();
+        TmFanOutHub hub = new TmFanOutHub(production, 8192, TmFanOutHub.SlowConsumerPolicy.DROP);
+        ProviderServer server = startProvider(hub);
+        List<ManagedChannel> channels = new ArrayList<>();
+
+        try {
+            List<FrameCounter> subscribers = new ArrayList<>();
+            for(int idx = 0; idx < numSubscribers; idx++) {
+                subscribers.add(subscribe(channels, false));
+            }
+            awaitSubscribers(hub, numSubscribers);
+
+            StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+            for(int seq = 0; seq < numFrames; seq++) {
+                if(seq % 10 == 0) {
+                    producer.onNext(TEMPLATE.encode(seq, 0, -1, frameData).toMessage());
+                } else {
+                    TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(seq, 0, -1, frameData));
+                }
+            }
+            producer.onCompleted();
+
+            for(FrameCounter subscriber : subscribers) {
+                assertEquals(Status.Code.OK, subscriber.closed.get(30, TimeUnit.SECONDS).getCode());
+                assertTrue(subscriber.ordered);
+                assertEquals(numFrames, subscriber.numFrames);
+                assertEquals(0, subscriber.numDiscarded);
+            }
+            assertEquals(numFrames, hub.getNumPublished());
+            assertEquals(0, hub.getNumDropped());
+        } finally {
+            shutdown(channels, server);
+        }
+    }
+
+    @Test
+    public void testSlowConsumer() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final int numFrames = 5_000;
+
+        for(TmFanOutHub.SlowConsumerPolicy policy : TmFanOutHub.SlowConsumerPolicy.values()) {
+            ControlledProduction production = new ControlledProduction();
+            TmFanOutHub hub = new TmFanOutHub(production, 1024, policy);
+            ProviderServer server = startProvider(hub);
+            List<ManagedChannel> channels = new ArrayList<>();
+
+            try {
+                FrameCounter fast = subscribe(channels, false);
+                FrameCounter slow = subscribe(channels, true);
+                awaitSubscribers(hub, 2);
+
+                // the producer is not stalled by the slow stream, paced by the fast stream for it to keep up
+                StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+                for(int seq = 0; seq < numFrames; seq++) {
+                    TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(seq, 0, -1, frameData));
+                    while(seq - fast.numFrames > 256 && fast.closed.isDone() == false) {
+                        Thread.sleep(1);
+                    }
+                }
+                producer.onCompleted();
+
+                assertEquals(Status.Code.OK, fast.closed.get(30, TimeUnit.SECONDS).getCode());
+                assertTrue(fast.ordered);
+                assertEquals(0, fast.numDiscarded);
+                assertEquals(numFrames, fast.numFrames);
+
+                slow.call.request(Integer.MAX_VALUE);
+                Status slowStatus = slow.closed.get(30, TimeUnit.SECONDS);
+                assertTrue(slow.ordered);
+                if(policy == TmFanOutHub.SlowConsumerPolicy.DROP) {
+                    assertEquals(Status.Code.OK, slowStatus.getCode());
+                    assertTrue(slow.numDiscarded > 0);
+                    assertEquals(numFrames, slow.numFrames + slow.numDiscarded);
+                    assertEquals(slow.numDiscarded, hub.getNumDropped());
+                } else {
+                    assertEquals(Status.Code.RESOURCE_EXHAUSTED, slowStatus.getCode());
+                    assertTrue(slow.numFrames < numFrames);
+                    assertEquals(1, hub.getNumDisconnected());
+                }
+                System.out.println(policy + ": slow stream received " + slow.numFrames + " frames, "
+                    + slow.numDiscarded + " discarded");
+            } finally {
+                shutdown(channels, server);
+            }
+        }
+    }
+
+    private ProviderServer startProvider(TmFanOutHub hub) throws IOException {
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, hub);
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+        return server;
+    }
+
+    /**
+     * Opens a TM stream on its own channel
+     * @param slow  true to request no messages until the test requests them
+     */
+    private FrameCounter subscribe(List<ManagedChannel> channels, boolean slow) throws IOException {
+        ClientMetaDataInterceptor interceptor = new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY);
+        interceptor.setMetaData(ProtoJsonUtil.toJsonUtf8(tmEndpoint));
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build();
+        channels.add(channel);
+
+        FrameCounter counter = new FrameCounter(slow);
+        TmServiceProviderGrpc.newStub(ClientInterceptors.intercept(channel, interceptor))
+            .openTelemetryEndpoint(NoArg.getDefaultInstance(), counter);
+        return counter;
+    }
+
+    private static void awaitSubscribers(TmFanOutHub hub, int numSubscribers) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while(hub.getNumSubscribers() < numSubscribers && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(numSubscribers, hub.getNumSubscribers());
+    }
+
+    private static void shutdown(List<ManagedChannel> channels, ProviderServer server) throws InterruptedException {
+        for(ManagedChannel channel : channels) {
+            channel.shutdownNow();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        server.stop();
+    }
+
+    /**
+     * Source production handing its stream to the test
+     */
+    static class ControlledProduction implements TmProduction {
+
+        final CompletableFuture<StreamObserver<TelemetryMessage>> producer = new CompletableFuture<>();
+
+        @Override
+        public void startTmEndpointService(TmServiceEndpoint tmEndpoint, StreamObserver<TelemetryMessage> tmUserStream) {
+            producer.complete(tmUserStream);
+        }
+
+        @Override
+        public void stopTmEndpointService(TmServiceEndpoint tmEndpoint) {
+        }
+    }
+
+    /**
+     * Counts the received frames and discarded frames and checks the sequence numbers increase
+     */
+    static class FrameCounter implements ClientResponseObserver<NoArg, TelemetryMessage> {
+
+        final boolean slow;
+        final CompletableFuture<Status> closed = new CompletableFuture<>();
+        volatile ClientCallStreamObserver<NoArg> call;
+        volatile long numFrames = 0;
+        volatile long numDiscarded = 0;
+        volatile boolean ordered = true;
+        private long lastSequenceNumber = -1;
+
+        FrameCounter(boolean slow) {
+            this.slow = slow;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<NoArg> call) {
+            this.call = call;
+            if(slow) {
+                call.disableAutoRequestWithInitial(0);
+            }
+        }
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            if(tmMessage.hasSyncNotify()) {
+                numDiscarded += tmMessage.getSyncNotify().getDataDiscarded();
+                return;
+            }
+            if(tmMessage.getSequenceNumber() <= lastSequenceNumber) {
+                ordered = false;
+            }
+            lastSequenceNumber = tmMessage.getSequenceNumber();
+            numFrames++;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            closed.complete(Status.fromThrowable(t));
+        }
+
+        @Override
+        public void onCompleted() {
+            closed.complete(Status.OK);
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package cdds.service.tm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.GvcId;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.tm.frame.GvcIdKey;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Demultiplexes the TM of a master channel production to the streams of the endpoints subscribed to the GVCIDs.
+ *
+ * The GVCID of each frame is read from the primary header in the frame data and looked up in a routing table
+ * keyed by the packed GvcIdKey. The table uses open addressing on a primitive int array, is immutable and
+ * replaced when streams are opened or closed. Routing a frame creates no objects: pre-encoded messages are
+ * passed on unchanged to all matching streams. An endpoint GVCID without VC ID subscribes to all VCs of the
+ * master channel. SyncNotify messages are sent to all streams.
+ *
+ * The source production is started once, on the first stream. It sees a stream which is always ready,
+ * productions sending from the on ready handler start on a producer thread. Streams are never waited for,
+ * a TmBacklog for the endpoints keeps the TM of streams not ready.
+ */
+public class TmGvcIdDemux {
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.demux");
+
+    private static final int NO_FRAME = -2;  // the message carries no frame data
+
+    // TelemetryMessage.telemetry and TelemetryData.data, both length delimited
+    private static final int TAG_TELEMETRY = (TelemetryMessage.TELEMETRY_FIELD_NUMBER << 3) | 2;
+    private static final int TAG_DATA = (TelemetryData.DATA_FIELD_NUMBER << 3) | 2;
+
+    private final TmProduction source;
+
+    // guarded by this, the routing table is rebuilt from it
+    private final Map<Integer, Set<Subscriber>> subscriptions = new HashMap<>();
+    private final Set<Subscriber> subscribers = new LinkedHashSet<>();
+    private boolean started = false;
+    private boolean completed = false;
+    private Throwable error;
+
+    private volatile RoutingTable routingTable = new RoutingTable(subscriptions, subscribers);
+
+    // written by the producer only
+    private volatile long numRouted = 0;
+    private volatile long numUnrouted = 0;
+
+    /**
+     * Creates the demultiplexer
+     * @param source    The production of the master channel, or of several master channels
+     */
+    public TmGvcIdDemux(TmProduction source) {
+        this.source = source;
+    }
+
+    /**
+     * Returns the production of an endpoint, to be added to the TmServiceProvider for the endpoint.
+     * Streams opened for the endpoint receive the frames of the GVCIDs of the endpoint.
+     * @param tmEndpoint    The endpoint
+     * @return              The production of the endpoint
+     */
+    public TmProduction getTmProduction(TmServiceEndpoint tmEndpoint) {
+        return new EndpointProduction(keysOf(tmEndpoint));
+    }
+
+    /**
+     * @return The number of subscribed streams
+     */
+    public synchronized int getNumSubscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return The number of frames sent to at least one stream
+     */
+    public long getNumRouted() {
+        return numRouted;
+    }
+
+    /**
+     * @return The number of frames without a subscribed stream or with an unknown GVCID
+     */
+    public long getNumUnrouted() {
+        return numUnrouted;
+    }
+
+    /**
+     * @return The GVCID keys of the endpoint, a GVCID without VC ID expanded to all VCs of the master channel
+     */
+    static int[] keysOf(TmServiceEndpoint tmEndpoint) {
+        Set<Integer> keys = new LinkedHashSet<>();
+        for(GvcId gvcId : tmEndpoint.getGvcIds().getGvcIdList()) {
+            if(gvcId.hasVirtualChannelId()) {
+                keys.add(GvcIdKey.of(gvcId));
+                continue;
+            }
+            int numVcs = gvcId.getVersion() == FrameVersion.TM_TC_SDLP ? 8 : 64;
+            for(int vcId = 0; vcId < numVcs; vcId++) {
+                keys.add(GvcIdKey.of(gvcId.getVersionValue(), gvcId.getSpacecraftId(), vcId));
+            }
+        }
+        return keys.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private synchronized void subscribe(Subscriber subscriber, TmServiceEndpoint tmEndpoint) {
+        if(completed) {
+            if(error != null) {
+                subscriber.stream.onError(error);
+            } else {
+                subscriber.stream.onCompleted();
+            }
+            return;
+        }
+
+        subscribers.add(subscriber);
+        for(int key : subscriber.keys) {
+            subscriptions.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(subscriber);
+        }
+        routingTable = new RoutingTable(subscriptions, subscribers);
+
+        if(started == false) {
+            started = true;
+            LOG.info("Start TM demultiplexed production with endpoint\n" + tmEndpoint);
+            source.startTmEndpointService(tmEndpoint, new ProducerStream());
+        }
+    }
+
+    private synchronized void unsubscribe(Subscriber subscriber) {
+        if(subscribers.remove(subscriber) == false) {
+            return;
+        }
+        for(int key : subscriber.keys) {
+            Set<Subscriber> route = subscriptions.get(key);
+            route.remove(subscriber);
+            if(route.isEmpty()) {
+                subscriptions.remove(key);
+            }
+        }
+        routingTable = new RoutingTable(subscriptions, subscribers);
+    }
+
+    private void complete(Throwable t) {
+        List<Subscriber> closing;
+        synchronized(this) {
+            completed = true;
+            error = t;
+            closing = new ArrayList<>(subscribers);
+        }
+        for(Subscriber subscriber : closing) {
+            try {
+                if(t != null) {
+                    subscriber.stream.onError(t);
+                } else {
+                    subscriber.stream.onCompleted();
+                }
+            } catch(Exception ex) {
+                LOG.warn("TM demultiplexer failed to close stream: " + ex);
+            }
+            unsubscribe(subscriber);
+        }
+    }
+
+    /**
+     * Sends a message to the streams subscribed to the GVCID, called by the producer only
+     * @param gvcIdKey  The GVCID key of the frame, NO_FRAME for messages sent to all streams
+     */
+    private void route(int gvcIdKey, Object tmMessage) {
+        RoutingTable table = routingTable;
+        Subscriber[] route = gvcIdKey == NO_FRAME ? table.all : table.lookup(gvcIdKey);
+        if(route == null) {
+            numUnrouted++;
+            return;
+        }
+
+        for(Subscriber subscriber : route) {
+            try {
+                if(tmMessage instanceof EncodedTelemetryMessage) {
+                    TmMessageMarshaller.onNext(subscriber.stream, (EncodedTelemetryMessage) tmMessage);
+                } else {
+                    subscriber.stream.onNext((TelemetryMessage) tmMessage);
+                }
+            } catch(Exception ex) {
+                LOG.warn("TM demultiplexer failed to send to stream: " + ex);
+                unsubscribe(subscriber);
+            }
+        }
+        if(gvcIdKey != NO_FRAME) {
+            numRouted++;
+        }
+    }
+
+    /**
+     * Immutable routing table from the GVCID key to the subscribed streams, open addressing with linear probing
+     */
+    private static class RoutingTable {
+        private final int[] keys;
+        private final Subscriber[][] routes;
+        private final int mask;
+        private final Subscriber[] all;
+
+        RoutingTable(Map<Integer, Set<Subscriber>> subscriptions, Set<Subscriber> subscribers) {
+            int size = Integer.highestOneBit(Math.max(2, 2 * subscriptions.size()) - 1) << 1; // at most half full
+            keys = new int[size];
+            routes = new Subscriber[size][];
+            mask = size - 1;
+            all = subscribers.toArray(new Subscriber[0]);
+
+            Arrays.fill(keys, GvcIdKey.UNKNOWN);
+            for(Map.Entry<Integer, Set<Subscriber>> subscription : subscriptions.entrySet()) {
+                int idx = slot(subscription.getKey());
+                while(keys[idx] != GvcIdKey.UNKNOWN) {
+                    idx = (idx + 1) & mask;
+                }
+                keys[idx] = subscription.getKey();
+                routes[idx] = subscription.getValue().toArray(new Subscriber[0]);
+            }
+        }
+
+        Subscriber[] lookup(int key) {
+            if(key < 0) {
+                return null;
+            }
+            int idx = slot(key);
+            int entry;
+            while((entry = keys[idx]) != GvcIdKey.UNKNOWN) {
+                if(entry == key) {
+                    return routes[idx];
+                }
+                idx = (idx + 1) & mask;
+            }
+            return null;
+        }
+
+        private int slot(int key) {
+            return (key * 0x9E3779B9 >>> 16) & mask;
+        }
+    }
+
+    /**
+     * A stream subscribed to the GVCID keys of its endpoint
+     */
+    private static class Subscriber {
+        private final ServerCallStreamObserver<TelemetryMessage> stream;
+        private final int[] keys;
+
+        Subscriber(ServerCallStreamObserver<TelemetryMessage> stream, int[] keys) {
+            this.stream = stream;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * The production of an endpoint, subscribing its streams
+     */
+    private class EndpointProduction implements TmProduction {
+        private final int[] keys;
+
+        EndpointProduction(int[] keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void startTmEndpointService(TmServiceEndpoint tmEndpoint, StreamObserver<TelemetryMessage> tmUserStream) {
+            Subscriber subscriber = new Subscriber((ServerCallStreamObserver<TelemetryMessage>) tmUserStream, keys);
+            subscriber.stream.setOnCancelHandler(() -> unsubscribe(subscriber));
+            subscribe(subscriber, tmEndpoint);
+        }
+
+        @Override
+        public void stopTmEndpointService(TmServiceEndpoint tmEndpoint) {
+            // the source production runs for all endpoints
+        }
+    }
+
+    /**
+     * The stream of the source production, routing each message
+     */
+    private class ProducerStream extends TmProducerStream {
+
+        // the encoded message scanned by gvcIdKey(EncodedTelemetryMessage)
+        private byte[] scanBytes;
+        private int scanLength;
+        private ByteString scanPayload;
+        private int scanPosition;
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            int gvcIdKey = tmMessage.hasTelemetry() ? GvcIdKey.fromFrame(tmMessage.getTelemetry().getData()) : NO_FRAME;
+            route(gvcIdKey, tmMessage);
+        }
+
+        @Override
+        public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+            route(gvcIdKey(tmMessage), tmMessage);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            complete(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            complete(null);
+        }
+
+        /**
+         * Reads the GVCID from the frame data of an encoded TelemetryMessage. The message is scanned in its
+         * wire format across the bytes and the payload, the split differs between the producers: the payload
+         * may be the frame data, a whole serialized message or empty.
+         * @return The GVCID key, GvcIdKey.UNKNOWN for an unknown GVCID or NO_FRAME without frame data
+         */
+        private int gvcIdKey(EncodedTelemetryMessage tmMessage) {
+            scanBytes = tmMessage.getBuffer();
+            scanLength = tmMessage.getEncodedLength();
+            scanPayload = tmMessage.getPayload();
+            try {
+                return gvcIdKey(scanLength + scanPayload.size());
+            } finally {
+                scanPayload = null; // valid until the message is sent
+            }
+        }
+
+        private int gvcIdKey(int length) {
+            scanPosition = 0;
+            int end = length;
+            while(scanPosition < end) {
+                int tag = readVarint(end);
+                if(tag == TAG_TELEMETRY) {
+                    end = Math.min(end, readVarint(end) + scanPosition); // continue in the TelemetryData
+                } else if(tag == TAG_DATA) {
+                    int dataLength = readVarint(end);
+                    int offset = scanPosition;
+                    if(dataLength < 4 || offset + 4 > end) {
+                        return GvcIdKey.UNKNOWN;
+                    }
+                    return GvcIdKey.fromHeader(byteAt(offset), byteAt(offset + 1), byteAt(offset + 2), byteAt(offset + 3));
+                } else if(skipField(tag, end) == false) {
+                    return GvcIdKey.UNKNOWN;
+                }
+            }
+            return NO_FRAME;
+        }
+
+        private boolean skipField(int tag, int end) {
+            switch(tag & 0x07) {
+                case 0:
+                    readVarint(end);
+                    return true;
+                case 1:
+                    scanPosition += 8;
+                    return true;
+                case 2:
+                    int fieldLength = readVarint(end);
+                    scanPosition += fieldLength;
+                    return fieldLength >= 0;
+                case 5:
+                    scanPosition += 4;
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private int readVarint(int end) {
+            int value = 0;
+            for(int shift = 0; shift < 64 && scanPosition < end; shift += 7) {
+                int b = byteAt(scanPosition++);
+                if(shift < 32) {
+                    value |= (b & 0x7f) << shift;
+                }
+                if(b < 0x80) {
+                    return value;
+                }
+            }
+            return value;
+        }
+
+        /**
+         * @return The byte at the position of the encoded message, unsigned
+         */
+        private int byteAt(int position) {
+            return position < scanLength ? scanBytes[position] & 0xff : scanPayload.byteAt(position - scanLength) & 0xff;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package cdds.service.tm;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Benchmark of the GVCID demultiplexer routing 1115 byte AOS frames of 8 spacecraft with 64 VCs each
+ * to 512 streams subscribed to one VC each. 10% of the frames have no subscribed stream.
+ * Run with: mvn test -Pbenchmark -Dtest=TmGvcIdDemuxBenchmark
+ *
+ * Reports the frames routed per second on the producer thread and the bytes allocated per frame,
+ * for messages with the frame as payload and for messages encoded into one buffer.
+ * The streams only count, the cost of sending is not included.
+ */
+@Tag("benchmark")
+public class TmGvcIdDemuxBenchmark {
+
+    private static final int FRAME_LENGTH = 1115;
+    private static final int NUM_SPACECRAFT = 8;
+    private static final int NUM_VCS = 64;
+    private static final int NUM_FRAMES = 20_000_000;
+    private static final int NUM_RUNS = 3;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    @Test
+    public void benchmarkDemux() throws InterruptedException, ExecutionException, TimeoutException {
+        TmFanOutHubTest.ControlledProduction production = new TmFanOutHubTest.ControlledProduction();
+        TmGvcIdDemux demux = new TmGvcIdDemux(production);
+
+        List<CountingStream> streams = new ArrayList<>();
+        List<EncodedTelemetryMessage> wrapped = new ArrayList<>();
+        List<EncodedTelemetryMessage> encoded = new ArrayList<>();
+        for(int scId = 1; scId <= NUM_SPACECRAFT; scId++) {
+            for(int vcId = 0; vcId < NUM_VCS; vcId++) {
+                TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "sc" + scId,
+                    scId, FrameVersion.AOS, vcId);
+                CountingStream stream = new CountingStream();
+                demux.getTmProduction(tmEndpoint).startTmEndpointService(tmEndpoint, stream);
+                streams.add(stream);
+            }
+        }
+        for(int scId = 1; scId <= NUM_SPACECRAFT + 1; scId++) { // the last spacecraft has no stream
+            for(int vcId = 0; vcId < NUM_VCS; vcId++) {
+                byte[] frame = TestTelemetryFile.getFrameData(FRAME_LENGTH);
+                frame[0] = (byte) (0x40 | (scId >>> 2));
+                frame[1] = (byte) (((scId & 0x03) << 6) | vcId);
+                wrapped.add(TEMPLATE.wrap(wrapped.size(), 0, -1, ByteString.copyFrom(frame)));
+                encoded.add(TEMPLATE.encode(encoded.size(), 0, -1, ByteString.copyFrom(frame)));
+            }
+        }
+
+        StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+        for(int run = 0; run < NUM_RUNS; run++) {
+            runDemux("payload", producer, wrapped.toArray(new EncodedTelemetryMessage[0]), demux);
+            runDemux("buffer", producer, encoded.toArray(new EncodedTelemetryMessage[0]), demux);
+        }
+        producer.onCompleted();
+
+        long received = streams.stream().mapToLong(stream -> stream.numFrames).sum();
+        System.out.println("Routed " + demux.getNumRouted() + ", not routed " + demux.getNumUnrouted()
+            + ", received " + received);
+    }
+
+    private static void runDemux(String encoding, StreamObserver<TelemetryMessage> producer,
+            EncodedTelemetryMessage[] messages, TmGvcIdDemux demux) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+
+        for(int idx = 0; idx < NUM_FRAMES; idx++) {
+            TmMessageMarshaller.onNext(producer, messages[idx % messages.length]);
+        }
+
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        System.out.printf("%-8s %,12.0f frames/s %6.1f ns/frame %8.3f bytes allocated/frame%n", encoding,
+            NUM_FRAMES * 1e9 / nanos, (double) nanos / NUM_FRAMES, (double) allocated / NUM_FRAMES);
+    }
+
+    /**
+     * Stream counting the frames
+     */
+    private static class CountingStream extends ServerCallStreamObserver<TelemetryMessage>
+        implements TmMessageMarshaller.EncodedMessageStream {
+
+        long numFrames = 0;
+
+        @Override
+        public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+            numFrames++;
+        }
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            numFrames++;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
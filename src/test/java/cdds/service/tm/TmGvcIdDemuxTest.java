@@ -0,0 +1,237 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.GvcId;
+import ccsds.cdds.v1.Types.GvcIdList;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProviderServer;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import cdds.tm.frame.GvcIdKey;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Test for the GVCID demultiplexer
+ *
+ * 1) testRouting - Routes TM, AOS and USLP frames to endpoints subscribed to single VCs, to all VCs
+ *                  of a master channel and to several GVCIDs, checks the frames received by each
+ *                  stream and the frames not routed before and after a stream is cancelled
+ * 2) testBacklogChain - Routes the messages returned by a TmBacklog, holding each message whole in the payload
+ * 3) testDemuxEndpoints - Receives the frames of two VCs of one production on two endpoints
+ *                         with the TmServiceUser
+ */
+public class TmGvcIdDemuxTest {
+
+    private static final int PROVIDER_PORT = 7675;
+    private static final int FRAME_LENGTH = 1115;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    @Test
+    public void testRouting() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        TmFanOutHubTest.ControlledProduction production = new TmFanOutHubTest.ControlledProduction();
+        TmGvcIdDemux demux = new TmGvcIdDemux(production);
+
+        TmBacklogTest.MessageCollector aosVc1 = subscribe(demux, endpoint(gvcId(FrameVersion.AOS, 0x42, 1)));
+        TmBacklogTest.MessageCollector aosAll = subscribe(demux, endpoint(GvcId.newBuilder()
+            .setVersion(FrameVersion.AOS).setSpacecraftId(0x42).build()));
+        TmBacklogTest.MessageCollector tmVc5 = subscribe(demux, endpoint(gvcId(FrameVersion.TM_TC_SDLP, 0x123, 5)));
+        TmBacklogTest.MessageCollector uslpAndTm = subscribe(demux, endpoint(gvcId(FrameVersion.USLP, 0x4321, 33),
+            gvcId(FrameVersion.TM_TC_SDLP, 0x123, 5)));
+        assertEquals(4, demux.getNumSubscribers());
+
+        ByteString aos1 = aosFrame(0x42, 1);
+        ByteString aos2 = aosFrame(0x42, 2);
+        ByteString tm5 = tmFrame(0x123, 5);
+        ByteString tm6 = tmFrame(0x123, 6);
+        ByteString uslp33 = uslpFrame(0x4321, 33);
+        ByteString unknown = frame(0x80, 0, 0, 0); // version 2
+        assertEquals(GvcIdKey.of(FrameVersion.USLP_VALUE, 0x4321, 33), GvcIdKey.fromFrame(uslp33));
+
+        // pre-encoded with the frame as payload, encoded into one buffer and built messages
+        StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+        TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(0, 0, -1, aos1));
+        TmMessageMarshaller.onNext(producer, TEMPLATE.encode(1, 0, -1, aos2));
+        producer.onNext(TEMPLATE.encode(2, 0, -1, tm5).toMessage());
+        TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(3, 0, -1, tm6));
+        TmMessageMarshaller.onNext(producer, TEMPLATE.encode(4, 0, -1, uslp33));
+        TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(5, 0, -1, unknown));
+        producer.onNext(TelemetryMessage.newBuilder()
+            .setSyncNotify(SyncNotify.newBuilder().setDataDiscarded(7).build())
+            .build());
+        assertEquals(4, demux.getNumRouted());
+        assertEquals(2, demux.getNumUnrouted());
+
+        aosAll.onCancelHandler.run();
+        assertEquals(3, demux.getNumSubscribers());
+        TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(6, 0, -1, aos2));
+        assertEquals(3, demux.getNumUnrouted());
+        producer.onCompleted();
+
+        assertReceived(aosVc1, 0);
+        assertReceived(aosAll, 0, 1);
+        assertReceived(tmVc5, 2);
+        assertReceived(uslpAndTm, 2, 4);
+        assertTrue(aosVc1.completed && tmVc5.completed && uslpAndTm.completed);
+        assertEquals(0, demux.getNumSubscribers());
+    }
+
+    @Test
+    public void testBacklogChain() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        TmFanOutHubTest.ControlledProduction production = new TmFanOutHubTest.ControlledProduction();
+        TmGvcIdDemux demux = new TmGvcIdDemux(production);
+        TmBacklogTest.MessageCollector aosVc1 = subscribe(demux, endpoint(gvcId(FrameVersion.AOS, 0x42, 1)));
+        TmBacklogTest.MessageCollector tmVc5 = subscribe(demux, endpoint(gvcId(FrameVersion.TM_TC_SDLP, 0x123, 5)));
+
+        // the backlog stores each message whole and returns it as the payload of the encoded message
+        TmBacklog tmBacklog = new TmBacklog(1024 * 1024, TmBacklog.DropPolicy.DROP_OLDEST);
+        tmBacklog.offer(TEMPLATE.wrap(0, 0, -1, aosFrame(0x42, 1)));
+        tmBacklog.offer(TEMPLATE.encode(1, 0, -1, tmFrame(0x123, 5)));
+        tmBacklog.offer(TEMPLATE.encode(2, 0, -1, aosFrame(0x42, 2)).toMessage());
+        tmBacklog.offer(TEMPLATE.wrap(3, 0, -1, tmFrame(0x123, 5)));
+        tmBacklog.offer(TelemetryMessage.newBuilder()
+            .setSyncNotify(SyncNotify.newBuilder().setDataDiscarded(7).build())
+            .build());
+
+        StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+        while(tmBacklog.isEmpty() == false) {
+            TmMessageMarshaller.onNext(producer, tmBacklog.peek());
+            tmBacklog.remove();
+        }
+        producer.onCompleted();
+
+        assertEquals(3, demux.getNumRouted());
+        assertEquals(1, demux.getNumUnrouted());
+        assertReceived(aosVc1, 0);
+        assertReceived(tmVc5, 1, 3);
+    }
+
+    @Test
+    public void testDemuxEndpoints() throws IOException, InterruptedException, ExecutionException, TimeoutException,
+            TimeLimitExceededException {
+        final int numFrames = 10_000;
+
+        TmServiceEndpoint vc1Endpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+            0x42, FrameVersion.AOS, 1);
+        TmServiceEndpoint vc2Endpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+            0x42, FrameVersion.AOS, 2);
+
+        TmFanOutHubTest.ControlledProduction production = new TmFanOutHubTest.ControlledProduction();
+        TmGvcIdDemux demux = new TmGvcIdDemux(production);
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(vc1Endpoint, demux.getTmProduction(vc1Endpoint));
+        tmProvider.addTmProduction(vc2Endpoint, demux.getTmProduction(vc2Endpoint));
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(vc1Endpoint);
+        tmProvider.addAuthorizedTmEndpoint(vc2Endpoint);
+
+        try {
+            TmServiceUser vc1User = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            vc1User.openTelemetryEndpoint(vc1Endpoint, numFrames / 2, 0);
+            TmServiceUser vc2User = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            vc2User.openTelemetryEndpoint(vc2Endpoint, numFrames / 2, 0);
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while(demux.getNumSubscribers() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, demux.getNumSubscribers());
+
+            // even sequence numbers on VC 1, odd on VC 2
+            ByteString[] frames = { aosFrame(0x42, 1), aosFrame(0x42, 2) };
+            StreamObserver<TelemetryMessage> producer = production.producer.get(5, TimeUnit.SECONDS);
+            for(int seq = 0; seq < numFrames; seq++) {
+                TmMessageMarshaller.onNext(producer, TEMPLATE.wrap(seq, 0, -1, frames[seq % 2]));
+            }
+            producer.onCompleted();
+
+            vc1User.waitForTmFrames(30_000);
+            vc2User.waitForTmFrames(30_000);
+            assertEquals(numFrames - 2, vc1User.getLastSequenceNumber());
+            assertEquals(numFrames - 1, vc2User.getLastSequenceNumber());
+            assertEquals(numFrames, demux.getNumRouted());
+            vc1User.shutdown();
+            vc2User.shutdown();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static TmBacklogTest.MessageCollector subscribe(TmGvcIdDemux demux, TmServiceEndpoint tmEndpoint) {
+        TmBacklogTest.MessageCollector collector = new TmBacklogTest.MessageCollector();
+        demux.getTmProduction(tmEndpoint).startTmEndpointService(tmEndpoint, collector);
+        return collector;
+    }
+
+    /**
+     * Checks the frames received with the given sequence numbers, followed by the SyncNotify
+     */
+    private static void assertReceived(TmBacklogTest.MessageCollector collector, long... sequenceNumbers) {
+        List<TelemetryMessage> messages = collector.messages;
+        assertEquals(sequenceNumbers.length + 1, messages.size());
+        for(int idx = 0; idx < sequenceNumbers.length; idx++) {
+            assertEquals(sequenceNumbers[idx], messages.get(idx).getSequenceNumber());
+        }
+        assertEquals(7, messages.get(sequenceNumbers.length).getSyncNotify().getDataDiscarded());
+    }
+
+    private static TmServiceEndpoint endpoint(GvcId... gvcIds) {
+        return TmServiceEndpoint.newBuilder()
+            .setServiceProvider("myProvider")
+            .setTerminal("myGroundStation")
+            .setServiceUser("theSpacecraft")
+            .setGvcIds(GvcIdList.newBuilder().addAllGvcId(List.of(gvcIds)).build())
+            .build();
+    }
+
+    private static GvcId gvcId(FrameVersion version, int scId, int vcId) {
+        return GvcId.newBuilder().setVersion(version).setSpacecraftId(scId).setVirtualChannelId(vcId).build();
+    }
+
+    private static ByteString tmFrame(int scId, int vcId) {
+        return frame((scId >>> 4) & 0x3f, ((scId & 0x0f) << 4) | (vcId << 1), 0, 0);
+    }
+
+    private static ByteString aosFrame(int scId, int vcId) {
+        return frame(0x40 | (scId >>> 2), ((scId & 0x03) << 6) | vcId, 0, 0);
+    }
+
+    private static ByteString uslpFrame(int scId, int vcId) {
+        return frame(0xc0 | (scId >>> 12), (scId >>> 4) & 0xff, ((scId & 0x0f) << 4) | (vcId >>> 3), (vcId & 0x07) << 5);
+    }
+
+    private static ByteString frame(int b0, int b1, int b2, int b3) {
+        byte[] frame = TestTelemetryFile.getFrameData(FRAME_LENGTH);
+        frame[0] = (byte) b0;
+        frame[1] = (byte) b1;
+        frame[2] = (byte) b2;
+        frame[3] = (byte) b3;
+        return ByteString.copyFrom(frame);
+    }
+}
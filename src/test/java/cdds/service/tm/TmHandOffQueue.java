@@ -0,0 +1,116 @@
+package cdds.service.tm;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Hands the messages received by a transport thread over to a delivery thread.
+ *
+ * The queue is a bounded ring with a single producer, the transport thread, and a single consumer and no locks:
+ * the producer stores the message in its slot and then publishes the tail, the consumer clears the slot and then
+ * publishes the head. The producer never waits, the ring holds one message per credit of the inbound flow control
+ * of the stream: the stream requests getCapacity() messages initially and the consumer releases the delivered
+ * messages to request as many again. Slow handlers hold back the provider through the flow control of the stream
+ * without holding back the transport thread. The consumer drains the ring as a task of the executor,
+ * the drain counter guarantees a single draining thread at any time.
+ *
+ * The end of the stream is handed over after the last message.
+ */
+class TmHandOffQueue {
+
+    private final Object[] ring;
+    private final int mask;
+    private final Executor executor;
+    private final Consumer<Object> sink;
+    private final IntConsumer releaseHandler;
+    private final Runnable endHandler;
+
+    private final AtomicLong head = new AtomicLong();   // the position of the next message to deliver
+    private final AtomicLong tail = new AtomicLong();   // the position of the next message to offer
+    private final AtomicInteger drainCounter = new AtomicInteger();
+
+    private volatile boolean ended = false;
+    private boolean endDelivered = false;               // only accessed by the draining thread
+
+    /**
+     * Creates the queue
+     * @param capacity          The number of messages in the ring, rounded up to a power of two
+     * @param executor          The executor running the delivery
+     * @param sink              Called with each message by the delivery thread
+     * @param releaseHandler    Called by the delivery thread with the number of delivered messages whose slots are free again
+     * @param endHandler        Called by the delivery thread after the last message once the end was offered
+     */
+    TmHandOffQueue(int capacity, Executor executor, Consumer<Object> sink, IntConsumer releaseHandler, Runnable endHandler) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Object[size];
+        this.mask = size - 1;
+        this.executor = executor;
+        this.sink = sink;
+        this.releaseHandler = releaseHandler;
+        this.endHandler = endHandler;
+    }
+
+    /**
+     * @return The number of messages the ring holds, the number of messages to request initially
+     */
+    int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Hands a message over, never waits. Called by the producer only.
+     * @param message   The message to deliver
+     * @throws IllegalStateException If the ring is full, more messages were received than requested
+     */
+    void offer(Object message) {
+        long position = tail.get();
+        if(position - head.get() == ring.length) {
+            throw new IllegalStateException("TM hand-off queue full, received more than the " + ring.length + " requested messages");
+        }
+
+        ring[(int) position & mask] = message;
+        tail.lazySet(position + 1);
+        schedule();
+    }
+
+    /**
+     * Hands the end of the stream over. Called by the producer only, after the last message.
+     */
+    void end() {
+        ended = true;
+        schedule();
+    }
+
+    private void schedule() {
+        if(drainCounter.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            long start = head.get();
+            long position = start;
+            while(position != tail.get()) {
+                int slot = (int) position & mask;
+                Object message = ring[slot];
+                ring[slot] = null;
+                head.lazySet(++position);
+                sink.accept(message);
+            }
+            if(position != start) {
+                releaseHandler.accept((int) (position - start));
+            }
+
+            if(ended && endDelivered == false && position == tail.get()) {
+                endDelivered = true;
+                endHandler.run();
+            }
+            missed = drainCounter.addAndGet(-missed);
+        } while(missed != 0);
+    }
+}
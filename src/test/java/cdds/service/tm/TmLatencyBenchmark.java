@@ -0,0 +1,104 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProviderServer;
+import cdds.util.LatencyHistogram;
+import cdds.util.TimeUtil;
+
+/**
+ * Benchmark of the end to end latency of TM frames from their receive time to the arrival at the TM user.
+ * Run with: mvn test -Pbenchmark -Dtest=TmLatencyBenchmark
+ *
+ * A paced production offers frames of 1115 bytes at each offered load, the frame handler of the user records
+ * the arrival time minus the receive time in a latency histogram. The receive time is the due time of each frame,
+ * frames held back by flow control keep it, which corrects for coordinated omission. The first second of each
+ * run warms up and is not recorded. Reports p50, p99, p99.9 and max for a plaintext and an mTLS server.
+ *
+ * The offered loads in frames per second can be set with -Dcdds.latency.loads=1000,10000
+ */
+@Tag("benchmark")
+public class TmLatencyBenchmark {
+
+    private static final int PROVIDER_PORT = 7680;
+    private static final int FRAME_LENGTH = 1115;
+    private static final int WARMUP_SECONDS = 1;
+    private static final int MEASURE_SECONDS = 5;
+    private static final String OFFERED_LOADS = "1000,10000,50000";
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void benchmarkLatency() throws Exception {
+        long[] loads = Arrays.stream(System.getProperty("cdds.latency.loads", OFFERED_LOADS).split(","))
+            .mapToLong(load -> Long.parseLong(load.trim()))
+            .toArray();
+
+        for(boolean secure : new boolean[] { false, true }) {
+            for(long load : loads) {
+                LatencyHistogram.Snapshot latency = measure(secure, load);
+                System.out.println(String.format("%-9s %8d frames/s: %s", secure ? "mTLS" : "plaintext", load, latency));
+                assertEquals(load * MEASURE_SECONDS, latency.getTotalCount());
+            }
+        }
+    }
+
+    /**
+     * Streams frames at the offered load and records their latency after the warm up
+     * @return The recorded latencies
+     */
+    private LatencyHistogram.Snapshot measure(boolean secure, long framesPerSecond)
+        throws IOException, InterruptedException, ExecutionException, TimeoutException {
+
+        final long numWarmup = framesPerSecond * WARMUP_SECONDS;
+        final long numFrames = numWarmup + framesPerSecond * MEASURE_SECONDS;
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionPaced(numFrames, FRAME_LENGTH, framesPerSecond));
+        ProviderServer server = secure
+            ? new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider},
+                ProviderServer.resourceToFile("cert/cdds-ca.pem"),
+                ProviderServer.resourceToFile("cert/cdds-provider.pem"),
+                ProviderServer.resourceToFile("cert/cdds-provider.key"))
+            : new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        TmServiceUser tmServiceUser = secure
+            ? TmServiceUser.buildSecureTmService("localhost", PROVIDER_PORT,
+                ProviderServer.resourceToFile("cert/cdds-ca.pem"),
+                ProviderServer.resourceToFile("cert/cdds-user.pem"),
+                ProviderServer.resourceToFile("cert/cdds-user.key"))
+            : TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        tmServiceUser.setFrameHandler(tmMessage -> {
+            long arrival = TimeUtil.preciseNanos();
+            if(tmMessage.getSequenceNumber() >= numWarmup) {
+                histogram.record(arrival - TimeUtil.toNanos(tmMessage.getTelemetry().getMetaData(0).getReceiveTime()));
+            }
+        });
+
+        try {
+            tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0)
+                .get(WARMUP_SECONDS + MEASURE_SECONDS + 60, TimeUnit.SECONDS);
+        } finally {
+            tmServiceUser.shutdown();
+            server.stop();
+        }
+        return histogram.snapshot();
+    }
+}
@@ -0,0 +1,353 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import com.google.protobuf.UnsafeByteOperations;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.tm.CddsTmService.TelemetryMessageBatch;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc.TmServiceProviderStub;
+import cdds.tm.EncodedTelemetryMessage;
+import io.grpc.Detachable;
+import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
+import io.grpc.KnownLength;
+import io.grpc.MethodDescriptor;
+import io.grpc.MethodDescriptor.Marshaller;
+import io.grpc.ServerMethodDefinition;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.ServiceDescriptor;
+import io.grpc.Status;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Marshaller for the messages of openTelemetryEndpoint and openTelemetryEndpointBatched.
+ *
+ * Sending, the marshaller accepts EncodedTelemetryMessages and EncodedTelemetryBatches besides TelemetryMessages and
+ * TelemetryMessageBatches and hands them to gRPC as they are, without serializing. The encoded bytes and a heap payload are written straight into the transport buffer. A direct
+ * payload is written through a small chunk buffer, gRPC's framer only accepts arrays.
+ *
+ * Receiving, an aliasing marshaller parses the message from the received transport buffers. The frame data is a slice
+ * of these buffers and not copied. The buffers are released once the message has been delivered to the stream observer,
+ * see openTelemetryEndpoint(). The receiving side parses both sent forms as TelemetryMessage, the wire format is the same.
+ */
+public class TmMessageMarshaller implements Marshaller<Object> {
+
+    /**
+     * A stream accepting encoded messages besides TelemetryMessages, e.g. a stream decorating the user stream
+     */
+    public interface EncodedMessageStream {
+
+        /**
+         * Sends an encoded message
+         * @param tmMessage The encoded message
+         */
+        void onNextEncoded(EncodedTelemetryMessage tmMessage);
+    }
+
+    /**
+     * A user stream receiving the batches of a batched stream as they are, e.g. to hand them over in one piece
+     */
+    public interface BatchStream {
+
+        /**
+         * Receives a batch
+         * @param tmBatch   The batch of TM messages
+         */
+        void onNextBatch(TelemetryMessageBatch tmBatch);
+    }
+
+    private static final TmMessageMarshaller TM_MARSHALLER = new TmMessageMarshaller(TelemetryMessage.getDefaultInstance(), false);
+
+    private static final TmMessageMarshaller BATCH_MARSHALLER = new TmMessageMarshaller(TelemetryMessageBatch.getDefaultInstance(), false);
+
+    private final Marshaller<Message> protoMarshaller;
+
+    private final Parser<? extends Message> parser;
+
+    private final boolean aliasing;
+
+    private InputStream retained;   // the detached stream holding the buffers of the last aliased message
+
+    /**
+     * Creates the marshaller
+     * @param prototype The TelemetryMessage or TelemetryMessageBatch prototype
+     * @param aliasing  true to parse messages aliasing the received buffers. The buffers have to be released by
+     *                  release() after the message is processed, an aliasing marshaller serves a single call.
+     */
+    @SuppressWarnings("unchecked")
+    private TmMessageMarshaller(Message prototype, boolean aliasing) {
+        this.protoMarshaller = (Marshaller<Message>) (Marshaller<?>) ProtoUtils.marshaller(prototype);
+        this.parser = prototype.getParserForType();
+        this.aliasing = aliasing;
+    }
+
+    @Override
+    public InputStream stream(Object value) {
+        if(value instanceof EncodedTelemetryMessage) {
+            EncodedTelemetryMessage tmMessage = (EncodedTelemetryMessage) value;
+            return new EncodedMessageInputStream(tmMessage.getBuffer(), tmMessage.getEncodedLength(), tmMessage.getPayload());
+        } else if(value instanceof EncodedTelemetryBatch) {
+            EncodedTelemetryBatch tmBatch = (EncodedTelemetryBatch) value;
+            return new EncodedMessageInputStream(tmBatch.getBuffer(), tmBatch.getSerializedSize(), ByteString.EMPTY);
+        }
+        return protoMarshaller.stream((Message) value);
+    }
+
+    @Override
+    public Object parse(InputStream stream) {
+        if(aliasing && stream instanceof Detachable && stream instanceof HasByteBuffer
+            && ((HasByteBuffer) stream).byteBufferSupported()) {
+            release();
+            retained = ((Detachable) stream).detach();
+            try {
+                return parseAliased(retained, parser);
+            } catch(IOException e) {
+                release();
+                throw Status.INTERNAL.withDescription("Invalid TM message").withCause(e).asRuntimeException();
+            }
+        }
+        return protoMarshaller.parse(stream);
+    }
+
+    /**
+     * Parses the message from the buffers of the detached stream. The stream is marked to keep
+     * the buffers skipped over until the stream is closed.
+     */
+    private static Message parseAliased(InputStream detached, Parser<? extends Message> parser) throws IOException {
+        detached.mark(detached.available());
+
+        ByteString bytes = ByteString.EMPTY;
+        while(detached.available() > 0) {
+            ByteBuffer buffer = ((HasByteBuffer) detached).getByteBuffer();
+            bytes = bytes.concat(UnsafeByteOperations.unsafeWrap(buffer));
+            detached.skip(buffer.remaining());
+        }
+
+        // the wrapped buffers are immutable for protobuf, which allows the bytes fields to alias them
+        CodedInputStream input = bytes.newCodedInput();
+        input.enableAliasing(true);
+        Message message = parser.parseFrom(input, ExtensionRegistryLite.getEmptyRegistry());
+        input.checkLastTagWas(0);
+        return message;
+    }
+
+    /**
+     * Releases the buffers of the last aliased message
+     */
+    private void release() {
+        if(retained != null) {
+            try {
+                retained.close();
+            } catch(IOException e) {
+                // closing releases the buffers, nothing to handle
+            }
+            retained = null;
+        }
+    }
+
+    /**
+     * Sends an encoded message on a TM user stream. The stream must belong to a call of a service
+     * bound with bindService() or be an EncodedMessageStream.
+     * @param tmUserStream  The TM user stream
+     * @param tmMessage     The encoded message
+     */
+    @SuppressWarnings("unchecked")
+    public static void onNext(StreamObserver<TelemetryMessage> tmUserStream, EncodedTelemetryMessage tmMessage) {
+        if(tmUserStream instanceof EncodedMessageStream) {
+            ((EncodedMessageStream) tmUserStream).onNextEncoded(tmMessage);
+        } else {
+            // the call marshals with TmMessageMarshaller, which accepts the encoded message
+            ((StreamObserver<Object>) (StreamObserver<?>) tmUserStream).onNext(tmMessage);
+        }
+    }
+
+    /**
+     * Binds the TM service with this marshaller for the responses of openTelemetryEndpoint and openTelemetryEndpointBatched
+     * @param tmService     The TM service definition as bound by the generated code
+     * @return              The service definition using this marshaller
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public static ServerServiceDefinition bindService(ServerServiceDefinition tmService) {
+        String openTelemetryEndpoint = TmServiceProviderGrpc.getOpenTelemetryEndpointMethod().getFullMethodName();
+        String openTelemetryEndpointBatched = TmServiceProviderGrpc.getOpenTelemetryEndpointBatchedMethod().getFullMethodName();
+
+        ServiceDescriptor.Builder serviceDescriptor = ServiceDescriptor.newBuilder(tmService.getServiceDescriptor().getName())
+            .setSchemaDescriptor(tmService.getServiceDescriptor().getSchemaDescriptor());
+        ServerMethodDefinition<?, ?>[] methods = tmService.getMethods().toArray(new ServerMethodDefinition<?, ?>[0]);
+
+        for(int idx = 0; idx < methods.length; idx++) {
+            MethodDescriptor method = methods[idx].getMethodDescriptor();
+            TmMessageMarshaller marshaller = method.getFullMethodName().equals(openTelemetryEndpoint) ? TM_MARSHALLER
+                : method.getFullMethodName().equals(openTelemetryEndpointBatched) ? BATCH_MARSHALLER : null;
+            if(marshaller != null) {
+                method = method.toBuilder(method.getRequestMarshaller(), marshaller).build();
+                methods[idx] = ServerMethodDefinition.create(method, (io.grpc.ServerCallHandler) methods[idx].getServerCallHandler());
+            }
+            serviceDescriptor.addMethod(methods[idx].getMethodDescriptor());
+        }
+
+        ServerServiceDefinition.Builder service = ServerServiceDefinition.builder(serviceDescriptor.build());
+        for(ServerMethodDefinition<?, ?> method : methods) {
+            service.addMethod(method);
+        }
+        return service.build();
+    }
+
+    /**
+     * Opens a TM stream with the frame data of the received messages aliasing the transport buffers.
+     * The data is valid until onNext() returns, a TM user stream retaining the data beyond has to copy it.
+     * @param tmProviderStub    The stub of the TM provider, its channel and call options are used
+     * @param request           The request
+     * @param tmUserStream      The stream observer receiving the TM messages
+     */
+    public static void openTelemetryEndpoint(TmServiceProviderStub tmProviderStub, NoArg request,
+            StreamObserver<TelemetryMessage> tmUserStream) {
+        open(tmProviderStub, TmServiceProviderGrpc.getOpenTelemetryEndpointMethod(),
+            new TmMessageMarshaller(TelemetryMessage.getDefaultInstance(), true), request, tmUserStream);
+    }
+
+    /**
+     * Opens a batched TM stream and delivers the messages of the received batches one by one,
+     * or the batches as they are to a BatchStream.
+     * With aliasing, the frame data is valid until onNext() returns, a TM user stream retaining the data beyond has to copy it.
+     * @param tmProviderStub    The stub of the TM provider, its channel and call options are used
+     * @param request           The request
+     * @param aliasing          true to alias the frame data of the received messages, false to copy it
+     * @param tmUserStream      The stream observer receiving the TM messages
+     */
+    public static void openTelemetryEndpointBatched(TmServiceProviderStub tmProviderStub, NoArg request, boolean aliasing,
+            StreamObserver<TelemetryMessage> tmUserStream) {
+        open(tmProviderStub, TmServiceProviderGrpc.getOpenTelemetryEndpointBatchedMethod(),
+            new TmMessageMarshaller(TelemetryMessageBatch.getDefaultInstance(), aliasing), request, tmUserStream);
+    }
+
+    private static void open(TmServiceProviderStub tmProviderStub, MethodDescriptor<NoArg, ?> generatedMethod,
+            TmMessageMarshaller marshaller, NoArg request, StreamObserver<TelemetryMessage> tmUserStream) {
+        MethodDescriptor<NoArg, Object> method = generatedMethod
+            .toBuilder(ProtoUtils.marshaller(NoArg.getDefaultInstance()), marshaller)
+            .build();
+
+        // gRPC parses and delivers a message in one task, the buffers are released after delivery
+        ClientCalls.asyncServerStreamingCall(tmProviderStub.getChannel().newCall(method, tmProviderStub.getCallOptions()),
+            request, new ClientResponseObserver<NoArg, Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void beforeStart(ClientCallStreamObserver<NoArg> requestStream) {
+                    if(tmUserStream instanceof ClientResponseObserver) {
+                        ((ClientResponseObserver<NoArg, TelemetryMessage>) tmUserStream).beforeStart(requestStream);
+                    }
+                }
+
+                @Override
+                public void onNext(Object message) {
+                    try {
+                        if(message instanceof TelemetryMessageBatch && tmUserStream instanceof BatchStream) {
+                            ((BatchStream) tmUserStream).onNextBatch((TelemetryMessageBatch) message);
+                        } else if(message instanceof TelemetryMessageBatch) {
+                            for(TelemetryMessage tmMessage : ((TelemetryMessageBatch) message).getMessagesList()) {
+                                tmUserStream.onNext(tmMessage);
+                            }
+                        } else {
+                            tmUserStream.onNext((TelemetryMessage) message);
+                        }
+                    } finally {
+                        marshaller.release();
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    marshaller.release();
+                    tmUserStream.onError(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    marshaller.release();
+                    tmUserStream.onCompleted();
+                }
+            });
+    }
+
+    /**
+     * Input stream of an encoded message or batch. gRPC drains it into its buffers, the encoded bytes and the payload
+     * in one write each.
+     */
+    private static class EncodedMessageInputStream extends InputStream implements KnownLength, Drainable {
+
+        private final byte[] bytes;
+        private final int length;
+        private final ByteString payload;
+        private int position = 0;
+
+        EncodedMessageInputStream(byte[] bytes, int length, ByteString payload) {
+            this.bytes = bytes;
+            this.length = length;
+            this.payload = payload;
+        }
+
+        @Override
+        public int drainTo(OutputStream target) throws IOException {
+            int drained = available();
+            if(position < length) {
+                target.write(bytes, position, length - position);
+                EncodedTelemetryMessage.writePayload(payload, target);
+            } else {
+                EncodedTelemetryMessage.writePayload(payload.substring(position - length), target);
+            }
+            position += drained;
+            return drained;
+        }
+
+        @Override
+        public int available() {
+            return length + payload.size() - position;
+        }
+
+        @Override
+        public int read() {
+            if(available() == 0) {
+                return -1;
+            }
+            int value = position < length ? bytes[position] : payload.byteAt(position - length);
+            position++;
+            return value & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int readLength) {
+            int available = available();
+            if(available == 0) {
+                return -1;
+            }
+            readLength = Math.min(readLength, available);
+
+            int copied = 0;
+            if(position < length) {
+                copied = Math.min(readLength, length - position);
+                System.arraycopy(bytes, position, buffer, offset, copied);
+            }
+            if(copied < readLength) {
+                int payloadOffset = position + copied - length;
+                payload.substring(payloadOffset, payloadOffset + readLength - copied).copyTo(buffer, offset + copied);
+            }
+            position += readLength;
+            return readLength;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import cdds.service.common.ClientMetaDataInterceptor;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import io.grpc.ClientInterceptors;
+import io.grpc.Drainable;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Test for the TM message marshaller
+ *
+ * 1) testEncodedStream - Streams encoded messages with heap and direct payloads, drained and read,
+ *                        and compares them with the serialized messages
+ * 2) testAliasingEndpoint - Receives zero copy encoded frames with the frame data aliasing the transport buffers
+ *                           and checks the data of each frame during delivery
+ */
+public class TmMessageMarshallerTest {
+
+    private static final int PROVIDER_PORT = 7667;
+    private static final int FRAME_LENGTH = 1115;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    @Test
+    public void testEncodedStream() throws IOException {
+        byte[] frame = TestTelemetryFile.getFrameData(FRAME_LENGTH);
+        ByteBuffer directFrame = ByteBuffer.allocateDirect(FRAME_LENGTH).put(frame).flip();
+
+        for(ByteString data : new ByteString[] { ByteString.copyFrom(frame), UnsafeByteOperations.unsafeWrap(directFrame), ByteString.EMPTY }) {
+            EncodedTelemetryMessage copied = TEMPLATE.encode(42, 1_000_000_007L, -1, data);
+            EncodedTelemetryMessage wrapped = TEMPLATE.wrap(42, 1_000_000_007L, -1, data);
+            byte[] expected = copied.toMessage().toByteArray();
+
+            assertEquals(expected.length, wrapped.getSerializedSize());
+            assertEquals(copied.toMessage(), wrapped.toMessage());
+
+            for(EncodedTelemetryMessage tmMessage : new EncodedTelemetryMessage[] { copied, wrapped }) {
+                ByteArrayOutputStream drained = new ByteArrayOutputStream();
+                InputStream stream = marshallerStream(tmMessage);
+                assertEquals(expected.length, ((Drainable) stream).drainTo(drained));
+                assertArrayEquals(expected, drained.toByteArray());
+
+                // read in odd pieces across the encoded bytes and the payload
+                stream = marshallerStream(tmMessage);
+                ByteArrayOutputStream read = new ByteArrayOutputStream();
+                read.write(stream.read());
+                byte[] piece = new byte[17];
+                int length;
+                while((length = stream.read(piece, 0, piece.length)) > 0) {
+                    read.write(piece, 0, length);
+                }
+                assertArrayEquals(expected, read.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testAliasingEndpoint() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final long numFrames = 20_000;
+        final ByteString expectedData = ByteString.copyFrom(TestTelemetryFile.getFrameData(FRAME_LENGTH));
+
+        TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+            4711, FrameVersion.AOS, 1);
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH, TmProductionNFrames.Encoding.ZERO_COPY));
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        ClientMetaDataInterceptor interceptor = new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY);
+        interceptor.setMetaData(ProtoJsonUtil.toJsonUtf8(tmEndpoint));
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build();
+
+        AtomicLong numReceived = new AtomicLong();
+        AtomicLong numDirect = new AtomicLong();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        try {
+            TmMessageMarshaller.openTelemetryEndpoint(TmServiceProviderGrpc.newStub(ClientInterceptors.intercept(channel, interceptor)),
+                NoArg.getDefaultInstance(), new StreamObserver<TelemetryMessage>() {
+                    @Override
+                    public void onNext(TelemetryMessage tmMessage) {
+                        try {
+                            ByteString data = tmMessage.getTelemetry().getData();
+                            assertEquals(numReceived.get(), tmMessage.getSequenceNumber());
+                            assertEquals(expectedData.substring(6), data.substring(6)); // after the generated AOS header
+                            if(data.asReadOnlyByteBuffer().isDirect()) {
+                                numDirect.incrementAndGet(); // a slice of the transport buffer
+                            }
+                            numReceived.incrementAndGet();
+                        } catch(Throwable t) {
+                            completed.completeExceptionally(t);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        completed.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        completed.complete(null);
+                    }
+                });
+
+            assertNull(completed.get(30, TimeUnit.SECONDS));
+            System.out.println("Received " + numReceived.get() + " frames, " + numDirect.get() + " aliasing direct transport buffers");
+            assertEquals(numFrames, numReceived.get());
+        } finally {
+            channel.shutdown();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+            server.stop();
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static InputStream marshallerStream(EncodedTelemetryMessage tmMessage) {
+        return ((MethodDescriptor) TmMessageMarshaller.bindService(new TmServiceProvider().bindService())
+            .getMethod(TmServiceProviderGrpc.getOpenTelemetryEndpointMethod().getFullMethodName())
+            .getMethodDescriptor()).streamResponse(tmMessage);
+    }
+}
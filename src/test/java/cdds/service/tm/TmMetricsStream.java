@@ -0,0 +1,146 @@
+package cdds.service.tm;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.jfr.BackpressureStallEvent;
+import cdds.jfr.StreamCloseEvent;
+import cdds.jfr.StreamOpenEvent;
+import cdds.service.common.EndpointMetrics;
+import cdds.service.common.ForwardingServerCallStreamObserver;
+import cdds.tm.EncodedTelemetryMessage;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * TM user stream counting the sent messages and the flow control of the stream in the metrics of its endpoint.
+ *
+ * A backpressure stall is counted when the stream is found not ready after having been ready,
+ * polling a stream that stays not ready counts once. The stream is counted as closed once, on completion,
+ * error or cancellation by the user.
+ *
+ * The stream open and close and the backpressure stalls are also recorded as JFR events.
+ */
+public class TmMetricsStream extends ForwardingServerCallStreamObserver<TelemetryMessage>
+    implements TmMessageMarshaller.EncodedMessageStream {
+
+    private static final String SERVICE = "TM";
+
+    private final EndpointMetrics metrics;
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final StreamCloseEvent closeEvent;
+
+    private volatile boolean stalled = false;
+
+    private volatile BackpressureStallEvent stallEvent;
+
+    private volatile Runnable onReadyHandler;
+    private volatile Runnable onCancelHandler;
+
+    /**
+     * Creates the metrics stream and counts the stream as opened
+     * @param tmUserStream  The user stream to send the TM
+     * @param metrics       The metrics of the endpoint
+     */
+    public TmMetricsStream(ServerCallStreamObserver<TelemetryMessage> tmUserStream, EndpointMetrics metrics) {
+        super(tmUserStream);
+        this.metrics = metrics;
+        metrics.streamOpened();
+        StreamOpenEvent.commit(SERVICE, metrics.getEndpoint());
+        closeEvent = StreamCloseEvent.begin(SERVICE, metrics.getEndpoint());
+        delegate.setOnReadyHandler(this::onReady);
+        delegate.setOnCancelHandler(this::onCancel);
+    }
+
+    @Override
+    public void onNext(TelemetryMessage tmMessage) {
+        delegate.onNext(tmMessage);
+        metrics.frameSent(tmMessage.getSerializedSize());
+    }
+
+    @Override
+    public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+        TmMessageMarshaller.onNext(delegate, tmMessage);
+        metrics.frameSent(tmMessage.getSerializedSize());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        close(StreamCloseEvent.ERROR);
+        delegate.onError(t);
+    }
+
+    @Override
+    public void onCompleted() {
+        close(StreamCloseEvent.COMPLETED);
+        delegate.onCompleted();
+    }
+
+    @Override
+    public boolean isReady() {
+        boolean ready = delegate.isReady();
+        if(ready) {
+            if(stalled) {
+                endStall();
+            }
+        } else if(stalled == false) {
+            stalled = true;
+            metrics.backpressureStall();
+            BackpressureStallEvent event = new BackpressureStallEvent();
+            if(event.isEnabled()) {
+                event.begin();
+                stallEvent = event;
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        this.onReadyHandler = onReadyHandler;
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+        this.onCancelHandler = onCancelHandler;
+    }
+
+    private void onReady() {
+        endStall();
+        metrics.onReady();
+        Runnable handler = onReadyHandler;
+        if(handler != null) {
+            handler.run();
+        }
+    }
+
+    private void onCancel() {
+        close(StreamCloseEvent.CANCELLED);
+        Runnable handler = onCancelHandler;
+        if(handler != null) {
+            handler.run();
+        }
+    }
+
+    private void endStall() {
+        stalled = false;
+        BackpressureStallEvent event = stallEvent;
+        if(event != null) {
+            stallEvent = null;
+            event.end();
+            if(event.shouldCommit()) {
+                event.service = SERVICE;
+                event.endpoint = metrics.getEndpoint();
+                event.commit();
+            }
+        }
+    }
+
+    private void close(String reason) {
+        if(closed.compareAndSet(false, true)) {
+            metrics.streamClosed();
+            closeEvent.commit(reason);
+        }
+    }
+}
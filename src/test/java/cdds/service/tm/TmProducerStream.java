@@ -0,0 +1,58 @@
+package cdds.service.tm;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * The stream passed to a source production feeding several user streams, as the TmFanOutHub and the
+ * TmGvcIdDemux do. It is always ready, the users are decoupled by the implementation. An on ready handler
+ * is run once on a producer thread of a shared pool, a production sending from it sends until it completes.
+ */
+abstract class TmProducerStream extends ServerCallStreamObserver<TelemetryMessage>
+    implements TmMessageMarshaller.EncodedMessageStream {
+
+    private static final ExecutorService PRODUCER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "TM producer thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        PRODUCER_EXECUTOR.execute(onReadyHandler);
+    }
+
+    @Override
+    public void setOnCancelHandler(Runnable onCancelHandler) {
+    }
+
+    @Override
+    public void setCompression(String compression) {
+    }
+
+    @Override
+    public void setMessageCompression(boolean enable) {
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void disableAutoInboundFlowControl() {
+    }
+
+    @Override
+    public void request(int count) {
+    }
+}
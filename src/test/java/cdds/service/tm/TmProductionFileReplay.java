@@ -0,0 +1,263 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.tm.archive.MappedTmFile;
+import cdds.tm.archive.TmArchiveIndex;
+import cdds.util.TimeUtil;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * TM production replaying a recorded file of delimited TelemetryMessages.
+ *
+ * The file is memory mapped and the frame data of the sent messages refers to the mapped file,
+ * the frames are not copied to the heap. Like TmProductionNFrames, frames are only sent while the
+ * stream is ready. Frames are paced as fast as possible, by their receive times or by a fixed bit rate.
+ */
+public class TmProductionFileReplay implements TmProduction {
+
+    /**
+     * The pacing of the replayed frames
+     */
+    public enum Pacing {
+        AS_FAST_AS_POSSIBLE,    // send as fast as the stream accepts the frames
+        RECEIVE_TIME,           // reproduce the spacing of the receive times, scaled by the speed factor
+        BIT_RATE                // send the frame data with a fixed bit rate
+    }
+
+    // frames due within the slack are sent immediately, which bounds the scheduling rate for high bit rates
+    private static final long PACING_SLACK_NANOS = 1_000_000;
+
+    private static final ScheduledExecutorService PACING_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "TM replay pacing thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.production");
+
+    private final Path tmFile;
+    private final Pacing pacing;
+    private final double pacingValue;
+
+    private final Map<TmServiceEndpoint, Set<Replay>> replays = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a replay sending as fast as possible
+     * @param tmFile    The file of delimited TelemetryMessages
+     */
+    public TmProductionFileReplay(Path tmFile) {
+        this(tmFile, Pacing.AS_FAST_AS_POSSIBLE, 0);
+    }
+
+    /**
+     * Creates a replay with the given pacing
+     * @param tmFile        The file of delimited TelemetryMessages
+     * @param pacing        The pacing mode
+     * @param pacingValue   The speed factor for RECEIVE_TIME (2.0 is twice real-time), the bit rate in bit/s of the
+     *                      frame data for BIT_RATE. Ignored for AS_FAST_AS_POSSIBLE.
+     */
+    public TmProductionFileReplay(Path tmFile, Pacing pacing, double pacingValue) {
+        if(pacing != Pacing.AS_FAST_AS_POSSIBLE && pacingValue <= 0) {
+            throw new IllegalArgumentException("Pacing value must be positive for " + pacing + ": " + pacingValue);
+        }
+        this.tmFile = tmFile;
+        this.pacing = pacing;
+        this.pacingValue = pacingValue;
+    }
+
+    @Override
+    public void startTmEndpointService(TmServiceEndpoint tmEndpoint, StreamObserver<TelemetryMessage> tmUserStream) {
+        final ServerCallStreamObserver<TelemetryMessage> tmUserStreamObserver = (ServerCallStreamObserver<TelemetryMessage>) tmUserStream;
+
+        try {
+            Replay replay = new Replay(tmEndpoint, tmUserStreamObserver, new MappedTmFile(tmFile));
+            replays.computeIfAbsent(tmEndpoint, ep -> ConcurrentHashMap.newKeySet()).add(replay);
+
+            // only called when stream is ready
+            tmUserStreamObserver.setOnReadyHandler(replay::drain);
+            tmUserStreamObserver.setOnCancelHandler(replay::stop);
+        } catch(IOException ex) {
+            LOG.warn("Failed to open TM replay file " + tmFile + ": " + ex);
+            tmUserStream.onError(ex);
+        }
+    }
+
+    @Override
+    public void stopTmEndpointService(TmServiceEndpoint tmEndpoint) {
+        Set<Replay> endpointReplays = replays.remove(tmEndpoint);
+        if(endpointReplays != null) {
+            endpointReplays.forEach(Replay::stop);
+        }
+    }
+
+    /**
+     * Replays the file to one stream. Frames are sent by the on ready handler of the stream as long as
+     * they are due and the stream is ready. Frames not yet due are sent by the pacing scheduler.
+     * The drain counter guarantees a single sending thread at any time.
+     */
+    private class Replay {
+        private final TmServiceEndpoint tmEndpoint;
+        private final ServerCallStreamObserver<TelemetryMessage> tmUserStream;
+        private final MappedTmFile file;
+
+        private final AtomicInteger drainCounter = new AtomicInteger();
+        private volatile boolean stopped = false;
+
+        // only accessed by the draining thread
+        private boolean completed = false;
+        private boolean timerPending = false;
+        private TelemetryMessage pending;
+        private long pendingDueNanos;
+        private long offset = 0;
+        private long startNanos = 0;
+        private long firstReceiveTime = Long.MIN_VALUE;
+        private long lastReceiveTime = Long.MIN_VALUE;
+        private long bitsSent = 0;
+        private long framesSent = 0;
+        private long numBackpressure = 0;
+
+        Replay(TmServiceEndpoint tmEndpoint, ServerCallStreamObserver<TelemetryMessage> tmUserStream, MappedTmFile file) {
+            this.tmEndpoint = tmEndpoint;
+            this.tmUserStream = tmUserStream;
+            this.file = file;
+        }
+
+        void stop() {
+            stopped = true;
+            drain();
+        }
+
+        /**
+         * Sends the due frames, called by the on ready handler and the pacing scheduler
+         */
+        void drain() {
+            if(drainCounter.getAndIncrement() != 0) {
+                return; // the draining thread sends
+            }
+
+            int missed = 1;
+            do {
+                try {
+                    sendDueFrames();
+                } catch(Exception ex) {
+                    LOG.warn("TM replay of " + tmFile + " failed: " + ex);
+                    finish();
+                    if(stopped == false) {
+                        tmUserStream.onError(ex);
+                    }
+                }
+                missed = drainCounter.addAndGet(-missed);
+            } while(missed != 0);
+        }
+
+        private void sendDueFrames() throws IOException {
+            if(startNanos == 0) {
+                startNanos = System.nanoTime();
+            }
+
+            while(completed == false) {
+                if(stopped) {
+                    finish();
+                    return;
+                }
+
+                if(pending == null && readNextFrame() == false) {
+                    tmUserStream.onNext(TelemetryMessage.newBuilder()
+                        .setSyncNotify(SyncNotify.newBuilder()
+                            .setTime(TimeUtil.now())
+                            .setEndOfData(true)
+                            .build())
+                        .build());
+                    tmUserStream.onCompleted();
+                    finish();
+                    return;
+                }
+
+                long waitNanos = startNanos + pendingDueNanos - System.nanoTime();
+                if(waitNanos > PACING_SLACK_NANOS) {
+                    if(timerPending == false) {
+                        timerPending = true;
+                        PACING_SCHEDULER.schedule(() -> {
+                            timerPending = false; // drain() below publishes the flag to the draining thread
+                            drain();
+                        }, waitNanos, TimeUnit.NANOSECONDS);
+                    }
+                    return;
+                }
+
+                if(tmUserStream.isReady() == false) {
+                    numBackpressure++;
+                    return; // the on ready handler continues
+                }
+
+                tmUserStream.onNext(pending);
+                pending = null;
+                framesSent++;
+            }
+        }
+
+        /**
+         * Reads the next frame from the mapped file and computes when it is due relative to the start of the replay
+         * @return false at the end of the file
+         */
+        private boolean readNextFrame() throws IOException {
+            if(file.readRecord(offset) == false) {
+                return false;
+            }
+            offset = file.nextRecordOffset();
+            pending = file.parseMessage(true); // frame data refers to the mapped file
+
+            if(pacing == Pacing.RECEIVE_TIME) {
+                lastReceiveTime = TmArchiveIndex.receiveTime(pending, lastReceiveTime);
+                if(firstReceiveTime == Long.MIN_VALUE) {
+                    firstReceiveTime = lastReceiveTime;
+                }
+                pendingDueNanos = (long) ((lastReceiveTime - firstReceiveTime) / pacingValue);
+            } else if(pacing == Pacing.BIT_RATE) {
+                pendingDueNanos = (long) (bitsSent * 1E9 / pacingValue);
+                if(pending.hasTelemetry()) {
+                    bitsSent += pending.getTelemetry().getData().size() * 8L;
+                }
+            }
+            return true;
+        }
+
+        private void finish() {
+            if(completed) {
+                return;
+            }
+            completed = true;
+            pending = null;
+
+            try {
+                file.close();
+            } catch(IOException ex) {
+                LOG.warn("Failed to close TM replay file " + tmFile + ": " + ex);
+            }
+
+            Set<Replay> endpointReplays = replays.get(tmEndpoint);
+            if(endpointReplays != null) {
+                endpointReplays.remove(this);
+            }
+
+            LOG.info("TM replay of " + tmFile + " sent " + framesSent + " messages in "
+                + (System.nanoTime() - startNanos) / 1_000_000 + " ms, backpressure events: " + numBackpressure);
+        }
+    }
+}
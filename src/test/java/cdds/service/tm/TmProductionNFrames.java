@@ -4,20 +4,32 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
 import ccsds.cdds.v1.Telemetry.TelemetryData;
 import ccsds.cdds.v1.Telemetry.TelemetryMessage;
 import ccsds.cdds.v1.Types.Annotation;
 import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.GvcId;
 import ccsds.cdds.v1.Types.ReceptionMetaData;
 import ccsds.cdds.v1.Types.Value;
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
 import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import cdds.tm.frame.DataLinkContinuity;
+import cdds.tm.frame.TransferFrameHeader;
 import cdds.util.TimeUtil;
 import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 /**
  * Test TM production to send N TM frames
+ *
+ * The frames simulate a continuous channel of the first GVCID of the endpoint: frame N gets a primary header with
+ * the GVCID and the frame count N wrapping like the counts of the frame version. The data link continuity of the
+ * frame is computed from the generated header as read by a receiver, with a tracker per stream. The header is
+ * prepended to the shared frame data, the frame data is not copied.
  */
 public class TmProductionNFrames implements TmProduction {
 
@@ -33,17 +45,58 @@ public class TmProductionNFrames implements TmProduction {
 
     final ByteString data;
 
+    /**
+     * The creation of the sent TM messages
+     */
+    public enum Encoding {
+        BUILDER,    // build and serialize each message
+        TEMPLATE,   // encode each message from a template, the frame data is copied into the encoded message
+        ZERO_COPY   // encode each message up to the frame data from a template, the frame data is referred to
+    }
+
+    private final Encoding encoding;
+
+    private final TmMessageTemplate tmTemplate;
+
     private static final Logger LOG = LogManager.getLogger("cdds.tm.production");
 
     /**
-     * Constructs the TM production object
+     * Constructs the TM production object sending pre-encoded TM messages referring to the frame data
      * @param numFramesToSend
      */
     public TmProductionNFrames(long numFramesToSend, int frameLength) {
+        this(numFramesToSend, frameLength, Encoding.ZERO_COPY);
+    }
+
+    /**
+     * Constructs the TM production object
+     * @param numFramesToSend
+     * @param frameLength
+     * @param encoding          The creation of the sent TM messages
+     */
+    public TmProductionNFrames(long numFramesToSend, int frameLength, Encoding encoding) {
         this.numFramesToSend = numFramesToSend;
         this.frameLength = frameLength;
+        this.encoding = encoding;
         data = ByteString.copyFrom(TestTelemetryFile.getFrameData(this.frameLength));
-    } 
+        tmTemplate = new TmMessageTemplate(TelemetryData.newBuilder()
+            .addMetaData(ReceptionMetaData.newBuilder()
+                    .setApertureId(ApertureId.newBuilder()
+                            .setLocalForm("NNO1")
+                            .build())
+                    .build())
+            .addPrivateAnnotation(testAnnotation())
+            .build());
+    }
+
+    private static Annotation testAnnotation() {
+        return Annotation.newBuilder()
+                .setName("test-anno")
+                .setValue(Value.newBuilder()
+                        .setStringValue("test-anno-val")
+                        .build())
+                .build();
+    }
 
     @Override
     public void startTmEndpointService(TmServiceEndpoint tmEndpoint, StreamObserver<TelemetryMessage> tmUserStream) {
@@ -63,19 +116,43 @@ public class TmProductionNFrames implements TmProduction {
 
         final ServerCallStreamObserver<TelemetryMessage> tmUserStreamObserver = (ServerCallStreamObserver<TelemetryMessage>) tmUserStream;
 
+        final SimulatedChannel channel = tmEndpoint.getGvcIds().getGvcIdCount() > 0
+            ? new SimulatedChannel(tmEndpoint.getGvcIds().getGvcId(0)) : null;
+
         // only called when stream is ready
-        tmUserStreamObserver.setOnReadyHandler(() -> sendData(tmUserStreamObserver));
+        tmUserStreamObserver.setOnReadyHandler(() -> sendData(tmUserStreamObserver, channel));
     }
 
     /**
      * Sends the remaining data from framesSent to numFramesToSend
      * @param tmUserStream
+     * @param channel       The simulated channel of the stream, null for none
      */
-    private void sendData(StreamObserver<TelemetryMessage> tmUserStream) {
+    private void sendData(StreamObserver<TelemetryMessage> tmUserStream, SimulatedChannel channel) {
         final ServerCallStreamObserver<TelemetryMessage> tmUserStreamObserver = (ServerCallStreamObserver<TelemetryMessage>) tmUserStream;
 
         for (long frameNumber=framesSent; frameNumber<numFramesToSend; frameNumber++, framesSent++) {
+            if (tmUserStreamObserver != null && tmUserStreamObserver.isReady() == false &&
+                framesSent < numFramesToSend) {
+                numBackpressure++;
+                break; // leave the for loop
+            }
+
+            final ByteString frame = channel != null ? channel.frame(frameNumber) : data;
+            final long dataLinkContinuity = channel != null ? channel.dataLinkContinuity(frame) : DataLinkContinuity.UNKNOWN;
+
+            if (encoding == Encoding.ZERO_COPY) {
+                TmMessageMarshaller.onNext(tmUserStream,
+                    tmTemplate.wrap(frameNumber, TimeUtil.nowNanos(), dataLinkContinuity, frame));
+                continue;
+            } else if (encoding == Encoding.TEMPLATE) {
+                TmMessageMarshaller.onNext(tmUserStream,
+                    tmTemplate.encode(frameNumber, TimeUtil.nowNanos(), dataLinkContinuity, frame));
+                continue;
+            }
+
             TelemetryMessage tmMessage = TelemetryMessage.newBuilder()
+                    .setSequenceNumber(frameNumber)
                     .setTelemetry(
                             TelemetryData.newBuilder()
                                     .addMetaData(0, ReceptionMetaData.newBuilder()
@@ -83,24 +160,13 @@ public class TmProductionNFrames implements TmProduction {
                                                     .setLocalForm("NNO1")
                                                     .build())
                                             .setReceiveTime(TimeUtil.now())
-                                            .setDataLinkContinuity(-1)
+                                            .setDataLinkContinuity(dataLinkContinuity)
                                             .build())
-                                    .addPrivateAnnotation(Annotation.newBuilder()
-                                            .setName("test-anno")
-                                            .setValue(Value.newBuilder()
-                                                    .setStringValue("test-anno-val")
-                                                    .build())
-                                            .build())
-                                    .setData(data)
+                                    .addPrivateAnnotation(testAnnotation())
+                                    .setData(frame)
                                     .build())
                     .build();
 
-            if (tmUserStreamObserver != null && tmUserStreamObserver.isReady() == false &&
-                framesSent < numFramesToSend) {
-                numBackpressure++;
-                break; // leave the for loop
-            }
-
             tmUserStream.onNext(tmMessage);
         }
 
@@ -120,4 +186,94 @@ public class TmProductionNFrames implements TmProduction {
     @Override
     public void stopTmEndpointService(TmServiceEndpoint tmEndpoint) {
     }
+
+    /**
+     * The simulated channel of a stream, only used by the on ready handler of the stream
+     */
+    private final class SimulatedChannel {
+
+        private final GvcId gvcId;
+        private final boolean masterChannel;
+        private final int headerLength;
+        private final ByteString body;  // the frame data following the primary header
+
+        private final TransferFrameHeader header = new TransferFrameHeader();
+        private final DataLinkContinuity continuity = new DataLinkContinuity();
+
+        SimulatedChannel(GvcId gvcId) {
+            this.gvcId = gvcId;
+            masterChannel = gvcId.hasVirtualChannelId() == false;
+            int length = headerLength(gvcId.getVersion());
+            headerLength = length <= data.size() ? length : 0;
+            body = data.substring(headerLength);
+        }
+
+        /**
+         * @return The frame data with the primary header of the frame with the given number
+         */
+        ByteString frame(long frameNumber) {
+            if(headerLength == 0) {
+                return data;
+            }
+            byte[] primaryHeader = new byte[headerLength];
+            data.substring(0, headerLength).copyTo(primaryHeader, 0);
+            int scId = gvcId.getSpacecraftId();
+            int vcId = gvcId.getVirtualChannelId();
+            switch(gvcId.getVersion()) {
+                case TM_TC_SDLP:
+                    primaryHeader[0] = (byte) ((scId >>> 4) & 0x3f);
+                    primaryHeader[1] = (byte) (((scId & 0x0f) << 4) | ((vcId & 0x07) << 1));
+                    primaryHeader[2] = (byte) frameNumber;  // master channel frame count
+                    primaryHeader[3] = (byte) frameNumber;  // the only VC of the master channel
+                    break;
+                case AOS:
+                    primaryHeader[0] = (byte) (0x40 | ((scId >>> 2) & 0x3f));
+                    primaryHeader[1] = (byte) (((scId & 0x03) << 6) | (vcId & 0x3f));
+                    primaryHeader[2] = (byte) (frameNumber >>> 16);
+                    primaryHeader[3] = (byte) (frameNumber >>> 8);
+                    primaryHeader[4] = (byte) frameNumber;
+                    primaryHeader[5] = 0;                   // no VC frame count cycle
+                    break;
+                case USLP:
+                    primaryHeader[0] = (byte) (0xc0 | ((scId >>> 12) & 0x0f));
+                    primaryHeader[1] = (byte) (scId >>> 4);
+                    primaryHeader[2] = (byte) (((scId & 0x0f) << 4) | ((vcId >>> 3) & 0x07));
+                    primaryHeader[3] = (byte) ((vcId & 0x07) << 5);
+                    primaryHeader[4] = (byte) ((data.size() - 1) >>> 8);
+                    primaryHeader[5] = (byte) (data.size() - 1);
+                    primaryHeader[6] = 4;                   // 4 octets of VC frame count
+                    primaryHeader[7] = (byte) (frameNumber >>> 24);
+                    primaryHeader[8] = (byte) (frameNumber >>> 16);
+                    primaryHeader[9] = (byte) (frameNumber >>> 8);
+                    primaryHeader[10] = (byte) frameNumber;
+                    break;
+                default:
+                    break;
+            }
+            return UnsafeByteOperations.unsafeWrap(primaryHeader).concat(body);
+        }
+
+        /**
+         * @return The data link continuity of the frame, read from its primary header
+         */
+        long dataLinkContinuity(ByteString frame) {
+            header.wrap(frame);
+            return masterChannel ? continuity.masterChannel(header) : continuity.virtualChannel(header);
+        }
+    }
+
+    /**
+     * @return The length of the generated primary header of the frame version, 0 for none
+     */
+    private static int headerLength(FrameVersion version) {
+        switch(version) {
+            case TM_TC_SDLP:
+            case AOS:
+                return 6;
+            case USLP:
+                return 11;  // with 4 octets of VC frame count
+            default:
+                return 0;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+package cdds.service.tm;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import cdds.tm.frame.DataLinkContinuity;
+import cdds.util.TimeUtil;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Test TM production sending N TM frames at a fixed rate, as received from the space link
+ *
+ * Frame N is due at the start plus N times the frame interval and its receive time is that due time, read from
+ * the precise clock of TimeUtil. A frame held back by the flow control of the stream is sent late but keeps its
+ * due receive time, as a ground station would keep receiving frames while the user is slow. The latency from the
+ * receive time to the arrival at the user therefore includes the time the frame waited for its predecessors,
+ * which corrects the measurement for coordinated omission.
+ */
+public class TmProductionPaced implements TmProduction {
+
+    private static final long NOT_READY_PARK_NANOS = 10_000;
+
+    private final long numFramesToSend;
+    private final long frameIntervalNanos;
+    private final ByteString data;
+    private final TmMessageTemplate tmTemplate;
+
+    private volatile long numLate = 0;
+    private volatile boolean stopped = false;
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.production");
+
+    /**
+     * Constructs the paced TM production
+     * @param numFramesToSend   The number of frames to send
+     * @param frameLength       The length of each frame
+     * @param framesPerSecond   The offered load
+     */
+    public TmProductionPaced(long numFramesToSend, int frameLength, double framesPerSecond) {
+        this.numFramesToSend = numFramesToSend;
+        this.frameIntervalNanos = (long) (1E9 / framesPerSecond);
+        this.data = ByteString.copyFrom(TestTelemetryFile.getFrameData(frameLength));
+        this.tmTemplate = new TmMessageTemplate(TelemetryData.newBuilder()
+            .addMetaData(ReceptionMetaData.newBuilder()
+                    .setApertureId(ApertureId.newBuilder()
+                            .setLocalForm("NNO1")
+                            .build())
+                    .build())
+            .build());
+    }
+
+    @Override
+    public void startTmEndpointService(TmServiceEndpoint tmEndpoint, StreamObserver<TelemetryMessage> tmUserStream) {
+        final ServerCallStreamObserver<TelemetryMessage> tmUserStreamObserver = (ServerCallStreamObserver<TelemetryMessage>) tmUserStream;
+
+        Thread productionThread = new Thread(() -> sendData(tmUserStreamObserver), "TM paced production thread");
+        productionThread.setDaemon(true);
+        productionThread.start();
+    }
+
+    /**
+     * Sends each frame at its due time or, if late, as soon as the stream is ready
+     */
+    private void sendData(ServerCallStreamObserver<TelemetryMessage> tmUserStream) {
+        final long start = TimeUtil.preciseNanos();
+
+        for(long frameNumber = 0; frameNumber < numFramesToSend; frameNumber++) {
+            final long dueTime = start + frameNumber * frameIntervalNanos;
+
+            long wait = dueTime - TimeUtil.preciseNanos();
+            while(wait > 0) {
+                LockSupport.parkNanos(wait);
+                wait = dueTime - TimeUtil.preciseNanos();
+            }
+
+            if(tmUserStream.isReady() == false) {
+                numLate++;
+                do {
+                    if(stopped || tmUserStream.isCancelled()) {
+                        LOG.info("TM paced production stopped after " + frameNumber + " frames");
+                        return;
+                    }
+                    LockSupport.parkNanos(NOT_READY_PARK_NANOS);
+                } while(tmUserStream.isReady() == false);
+            }
+
+            TmMessageMarshaller.onNext(tmUserStream, tmTemplate.wrap(frameNumber, dueTime, DataLinkContinuity.UNKNOWN, data));
+        }
+
+        LOG.info("TM paced production sent " + numFramesToSend + " frames, held back by flow control: " + numLate);
+        tmUserStream.onCompleted();
+    }
+
+    /**
+     * @return The number of frames held back by the flow control of the stream
+     */
+    public long getNumLate() {
+        return numLate;
+    }
+
+    @Override
+    public void stopTmEndpointService(TmServiceEndpoint tmEndpoint) {
+        stopped = true;
+    }
+}
@@ -0,0 +1,42 @@
+package cdds.service.tm;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.service.common.ForwardingServerCallStreamObserver;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.tm.archive.TmRecorder;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * TM user stream recording every sent message. The message is handed to the recorder after
+ * it has been passed to the stream, the recorder only enqueues it.
+ */
+public class TmRecordingStream extends ForwardingServerCallStreamObserver<TelemetryMessage>
+    implements TmMessageMarshaller.EncodedMessageStream {
+
+    private final TmRecorder tmRecorder;
+
+    /**
+     * Creates the recording stream
+     * @param tmUserStream  The user stream to send the TM
+     * @param tmRecorder    The recorder of the sent TM
+     */
+    public TmRecordingStream(ServerCallStreamObserver<TelemetryMessage> tmUserStream, TmRecorder tmRecorder) {
+        super(tmUserStream);
+        this.tmRecorder = tmRecorder;
+    }
+
+    @Override
+    public void onNext(TelemetryMessage tmMessage) {
+        delegate.onNext(tmMessage);
+        tmRecorder.record(tmMessage);
+    }
+
+    /**
+     * Sends the encoded message and records its bytes, the message is not parsed
+     */
+    @Override
+    public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+        TmMessageMarshaller.onNext(delegate, tmMessage);
+        tmRecorder.record(tmMessage);
+    }
+}
@@ -0,0 +1,304 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.protobuf.WireFormat;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.util.TimeUtil;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Bounded replay buffer of the TM messages sent on the streams of an endpoint, indexed by sequence number.
+ * A user reconnecting after a lost connection resumes after the last sequence number received and
+ * gets the missed messages replayed before the live TM continues.
+ *
+ * The serialized messages are kept in a ring of bytes, their sequence numbers, offsets and lengths in
+ * primitive arrays. The oldest messages are evicted when the maximum number of messages or bytes is reached.
+ * Only messages with a sequence number above the last appended one are kept, replayed messages or
+ * messages without sequence number are not. Replayed messages are sent as slices of the ring.
+ */
+public class TmReplayBuffer {
+
+    private static final byte[] NO_BYTES = new byte[0];
+
+    private final byte[] data;
+    private final long[] sequenceNumbers;
+    private final int[] offsets;
+    private final int[] lengths;
+
+    // guarded by this
+    private int first = 0;          // index of the oldest message
+    private int count = 0;          // number of messages
+    private int writeOffset = 0;    // offset in data of the next message
+    private long nextSequenceNumber = -1; // the sequence number following the last appended message, -1 if none
+
+    private long numReplayed = 0;
+    private long numDiscarded = 0;
+
+    /**
+     * Creates the replay buffer
+     * @param maxMessages   The maximum number of messages kept
+     * @param maxBytes      The maximum number of serialized message bytes kept
+     */
+    public TmReplayBuffer(int maxMessages, int maxBytes) {
+        data = new byte[maxBytes];
+        sequenceNumbers = new long[maxMessages];
+        offsets = new int[maxMessages];
+        lengths = new int[maxMessages];
+    }
+
+    /**
+     * Appends a sent message
+     * @param tmMessage The sent message
+     */
+    public synchronized void append(TelemetryMessage tmMessage) {
+        if(tmMessage.hasSequenceNumber() == false || isNext(tmMessage.getSequenceNumber()) == false) {
+            return;
+        }
+        int length = tmMessage.getSerializedSize();
+        int offset = allocate(tmMessage.getSequenceNumber(), length);
+        if(offset < 0) {
+            return;
+        }
+        try {
+            CodedOutputStream output = CodedOutputStream.newInstance(data, offset, length);
+            tmMessage.writeTo(output);
+            output.checkNoSpaceLeft();
+        } catch(IOException e) {
+            throw new UncheckedIOException(e); // the space is allocated
+        }
+    }
+
+    /**
+     * Appends a sent encoded message, the message is copied into the buffer
+     * @param tmMessage The sent message
+     */
+    public synchronized void append(EncodedTelemetryMessage tmMessage) {
+        long sequenceNumber = readSequenceNumber(tmMessage.getBuffer(), tmMessage.getEncodedLength());
+        if(sequenceNumber < 0 || isNext(sequenceNumber) == false) {
+            return;
+        }
+        int offset = allocate(sequenceNumber, tmMessage.getSerializedSize());
+        if(offset < 0) {
+            return;
+        }
+        System.arraycopy(tmMessage.getBuffer(), 0, data, offset, tmMessage.getEncodedLength());
+        tmMessage.getPayload().copyTo(data, offset + tmMessage.getEncodedLength());
+    }
+
+    /**
+     * Starts a replay of the messages following the given sequence number. If messages following the
+     * sequence number have been evicted already, a SyncNotify reporting the number of evicted messages
+     * in dataDiscarded is sent first. The SyncNotify has no sequence number.
+     * @param resumeAfter   The last sequence number received by the user
+     * @return              The replay, sent to a stream with Replay.send()
+     */
+    public Replay replay(long resumeAfter) {
+        return new Replay(resumeAfter + 1);
+    }
+
+    /**
+     * @return The number of messages in the buffer
+     */
+    public synchronized int getNumMessages() {
+        return count;
+    }
+
+    /**
+     * @return The sequence number of the oldest message in the buffer, -1 if empty
+     */
+    public synchronized long getOldestSequenceNumber() {
+        return count > 0 ? sequenceNumbers[first] : -1;
+    }
+
+    /**
+     * @return The number of messages replayed in total
+     */
+    public synchronized long getNumReplayed() {
+        return numReplayed;
+    }
+
+    /**
+     * @return The number of messages reported as discarded in total
+     */
+    public synchronized long getNumDiscarded() {
+        return numDiscarded;
+    }
+
+    /**
+     * @return true if a replay has a message or a discard report to send
+     */
+    private synchronized boolean hasNext(Replay replay) {
+        long oldest = count > 0 ? sequenceNumbers[first] : nextSequenceNumber;
+        return oldest > replay.nextSequenceNumber || find(replay.nextSequenceNumber) >= 0;
+    }
+
+    /**
+     * Sends the message following the position of a replay, or the SyncNotify reporting the messages
+     * evicted since. The message is sent from the ring, the lock keeps it from being overwritten meanwhile.
+     * @return false if there is no message to replay
+     */
+    private synchronized boolean sendNext(Replay replay, StreamObserver<TelemetryMessage> tmUserStream) {
+        long oldest = count > 0 ? sequenceNumbers[first] : nextSequenceNumber;
+        if(oldest > replay.nextSequenceNumber) {
+            long discarded = oldest - replay.nextSequenceNumber;
+            replay.nextSequenceNumber = oldest;
+            replay.numDiscarded += discarded;
+            numDiscarded += discarded;
+            tmUserStream.onNext(TelemetryMessage.newBuilder()
+                .setSyncNotify(SyncNotify.newBuilder()
+                    .setTime(TimeUtil.now())
+                    .setDataDiscarded(discarded)
+                    .build())
+                .build());
+            return true;
+        }
+
+        int entry = find(replay.nextSequenceNumber);
+        if(entry < 0) {
+            return false;
+        }
+        TmMessageMarshaller.onNext(tmUserStream, new EncodedTelemetryMessage(NO_BYTES, 0,
+            UnsafeByteOperations.unsafeWrap(data, offsets[entry], lengths[entry])));
+        replay.nextSequenceNumber = sequenceNumbers[entry] + 1;
+        replay.numReplayed++;
+        numReplayed++;
+        return true;
+    }
+
+    /**
+     * Finds the oldest message with at least the given sequence number, the sequence numbers ascend from first
+     * @return The index of the message, -1 if none
+     */
+    private int find(long sequenceNumber) {
+        int low = 0;
+        int high = count;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(sequenceNumbers[(first + mid) % sequenceNumbers.length] < sequenceNumber) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < count ? (first + low) % sequenceNumbers.length : -1;
+    }
+
+    private boolean isNext(long sequenceNumber) {
+        return sequenceNumber >= nextSequenceNumber;
+    }
+
+    /**
+     * Allocates the space of a message, evicting the oldest messages as needed
+     * @return The offset of the message in data, -1 if the message exceeds the buffer
+     */
+    private int allocate(long sequenceNumber, int length) {
+        nextSequenceNumber = sequenceNumber + 1;
+        if(length > data.length) {
+            clear(); // the buffer cannot hold the message, resuming before it reports all as discarded
+            return -1;
+        }
+
+        int offset = writeOffset;
+        boolean wrapped = offset + length > data.length;
+        if(wrapped) {
+            offset = 0;
+        }
+        while(count > 0 && (count == sequenceNumbers.length
+                || overlaps(first, offset, offset + length)
+                || (wrapped && overlaps(first, writeOffset, data.length)))) {
+            first = (first + 1) % sequenceNumbers.length;
+            count--;
+        }
+        if(count == 0) {
+            first = 0;
+        }
+
+        int entry = (first + count) % sequenceNumbers.length;
+        sequenceNumbers[entry] = sequenceNumber;
+        offsets[entry] = offset;
+        lengths[entry] = length;
+        count++;
+        writeOffset = offset + length;
+        return offset;
+    }
+
+    private boolean overlaps(int entry, int start, int end) {
+        return offsets[entry] < end && start < offsets[entry] + lengths[entry];
+    }
+
+    private void clear() {
+        first = 0;
+        count = 0;
+        writeOffset = 0;
+    }
+
+    /**
+     * Replay of the buffered messages following a sequence number. The replay is sent while the stream is ready
+     * and continued on the next call, typically from the on ready handler of the stream. Messages appended
+     * meanwhile are part of the replay. A replay must be sent by one thread at a time.
+     */
+    public class Replay {
+
+        private long nextSequenceNumber;    // the sequence number of the next message to replay
+        private long numReplayed = 0;
+        private long numDiscarded = 0;
+
+        private Replay(long nextSequenceNumber) {
+            this.nextSequenceNumber = nextSequenceNumber;
+        }
+
+        /**
+         * Sends the next messages of the replay while the stream is ready
+         * @param tmUserStream  The stream to send to
+         * @return              true if the replay is complete, false if the stream is not ready
+         */
+        public boolean send(ServerCallStreamObserver<TelemetryMessage> tmUserStream) {
+            while(hasNext(this)) {
+                if(tmUserStream.isReady() == false) {
+                    return false;
+                }
+                sendNext(this, tmUserStream);
+            }
+            return true;
+        }
+
+        /**
+         * @return The number of messages replayed
+         */
+        public long getNumReplayed() {
+            return numReplayed;
+        }
+
+        /**
+         * @return The number of discarded messages reported
+         */
+        public long getNumDiscarded() {
+            return numDiscarded;
+        }
+    }
+
+    /**
+     * Reads the sequence number of a serialized TelemetryMessage, the first field if present
+     * @return The sequence number, -1 if the message has none
+     */
+    static long readSequenceNumber(byte[] bytes, int length) {
+        try {
+            CodedInputStream input = CodedInputStream.newInstance(bytes, 0, length);
+            if(input.readTag() == (TelemetryMessage.SEQUENCENUMBER_FIELD_NUMBER << 3 | WireFormat.WIRETYPE_VARINT)) {
+                return input.readInt64();
+            }
+        } catch(IOException e) {
+            // not a valid message, not kept
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,280 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import cdds.service.common.ClientMetaDataInterceptor;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.MetricsRegistry;
+import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import cdds.tm.EncodedTelemetryMessage;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Test for the TM replay buffer
+ *
+ * 1) testEviction - Appends more messages than the buffer holds and checks the replayed messages
+ *                   and the reported discarded messages for several resume points, sent while the stream is ready
+ * 2) testResume - Drops the connection of a TM stream and resumes it with the TmServiceUser,
+ *                 checks that all frames are received in sequence and the replayed frames are not counted again
+ */
+public class TmReplayBufferTest {
+
+    private static final int PROVIDER_PORT = 7671;
+    private static final int FRAME_LENGTH = 1115;
+
+    private static final TmMessageTemplate TEMPLATE = new TmMessageTemplate(TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .build());
+
+    private final ByteString frameData = ByteString.copyFrom(TestTelemetryFile.getFrameData(FRAME_LENGTH));
+
+    @Test
+    public void testEviction() throws IOException {
+        final int messageLength = TEMPLATE.encodedSize(999, 0, -1, FRAME_LENGTH);
+        final int maxBytes = 10 * messageLength + messageLength / 2; // 10 messages, wraps with waste
+
+        // limited by bytes
+        TmReplayBuffer buffer = new TmReplayBuffer(100, maxBytes);
+        for(int seq = 0; seq < 1000; seq++) {
+            if(seq % 2 == 0) {
+                buffer.append(TEMPLATE.wrap(seq, 0, -1, frameData));
+            } else {
+                buffer.append(TEMPLATE.encode(seq, 0, -1, frameData).toMessage());
+            }
+        }
+        buffer.append(TEMPLATE.encode(500, 0, -1, frameData).toMessage()); // already appended, not kept
+        assertEquals(10, buffer.getNumMessages());
+        assertEquals(990, buffer.getOldestSequenceNumber());
+        assertReplay(buffer, 995, 0, 996, 999);
+        assertReplay(buffer, 989, 0, 990, 999);
+        assertReplay(buffer, 899, 90, 990, 999);
+        assertReplay(buffer, 999, 0, -1, -1);
+
+        // limited by messages
+        buffer = new TmReplayBuffer(4, maxBytes);
+        for(int seq = 0; seq < 50; seq++) {
+            buffer.append(TEMPLATE.wrap(seq, 0, -1, frameData));
+        }
+        assertEquals(4, buffer.getNumMessages());
+        assertReplay(buffer, -1, 46, 46, 49);
+        assertEquals(4, buffer.getNumReplayed());
+        assertEquals(46, buffer.getNumDiscarded());
+    }
+
+    @Test
+    public void testResume() throws IOException, InterruptedException, ExecutionException, TimeoutException, TimeLimitExceededException {
+        final long numFrames = 20_000;
+        final long dropAfter = 3_000;
+
+        TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+            4711, FrameVersion.AOS, 1);
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+        TmReplayBuffer tmReplayBuffer = new TmReplayBuffer(10_000, 16 * 1024 * 1024);
+        tmProvider.addTmReplayBuffer(tmEndpoint, tmReplayBuffer);
+        tmProvider.setMetricsRegistry(new MetricsRegistry());
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        ClientMetaDataInterceptor interceptor = new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY);
+        interceptor.setMetaData(ProtoJsonUtil.toJsonUtf8(tmEndpoint));
+        ManagedChannel channel = ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build();
+
+        try {
+            // receive frames in sequence and drop the stream, the provider keeps sending until it notices
+            CompletableFuture<Long> dropped = new CompletableFuture<>();
+            TmServiceProviderGrpc.newStub(ClientInterceptors.intercept(channel, interceptor))
+                .openTelemetryEndpoint(NoArg.getDefaultInstance(), new ClientResponseObserver<NoArg, TelemetryMessage>() {
+                    private ClientCallStreamObserver<NoArg> call;
+                    private long lastSequenceNumber = -1;
+
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<NoArg> call) {
+                        this.call = call;
+                    }
+
+                    @Override
+                    public void onNext(TelemetryMessage tmMessage) {
+                        if(tmMessage.getSequenceNumber() != lastSequenceNumber + 1) {
+                            dropped.completeExceptionally(new AssertionError("Unexpected sequence number " + tmMessage.getSequenceNumber()));
+                        }
+                        lastSequenceNumber = tmMessage.getSequenceNumber();
+                        if(lastSequenceNumber == dropAfter) {
+                            call.cancel("dropped by test", null);
+                            dropped.complete(lastSequenceNumber);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        dropped.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        dropped.completeExceptionally(new AssertionError("Completed before the drop"));
+                    }
+                });
+            long resumeAfter = dropped.get(30, TimeUnit.SECONDS);
+            Thread.sleep(500); // let the provider notice the cancellation
+
+            TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            tmServiceUser.setSequenceTracker(new TmSequenceTracker());
+            tmServiceUser.resumeTelemetryEndpoint(tmEndpoint, numFrames - resumeAfter - 1, 0, resumeAfter);
+            tmServiceUser.waitForTmFrames(30_000);
+            tmServiceUser.shutdown();
+
+            assertEquals(numFrames - 1, tmServiceUser.getLastSequenceNumber());
+            assertEquals(0, tmServiceUser.getNumDataDiscarded());
+            assertEquals(numFrames - resumeAfter - 1, tmServiceUser.getSequenceTracker().getNumTracked());
+            assertEquals(0, tmServiceUser.getSequenceTracker().getNumGaps());
+            assertEquals(0, tmServiceUser.getSequenceTracker().getNumDuplicates());
+            // the replayed frames are not counted again
+            assertEquals(numFrames, tmProvider.getMetricsRegistry().get(tmEndpoint).getFramesSent());
+            System.out.println("Resumed after " + resumeAfter + ", replayed " + tmReplayBuffer.getNumReplayed() + " frames");
+        } finally {
+            channel.shutdown();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+            server.stop();
+        }
+    }
+
+    /**
+     * Replays from the buffer and checks the replayed sequence numbers. The replay is sent to a stream
+     * ready for one message at a time and continued like from its on ready handler.
+     * @param first     The first replayed sequence number, -1 if none is replayed
+     * @param last      The last replayed sequence number
+     */
+    private static void assertReplay(TmReplayBuffer buffer, long resumeAfter, long expectedDiscarded, long first, long last)
+            throws InvalidProtocolBufferException {
+        ReplayCollector collector = new ReplayCollector();
+        TmReplayBuffer.Replay replay = buffer.replay(resumeAfter);
+        int expectedMessages = (expectedDiscarded > 0 ? 1 : 0) + (first < 0 ? 0 : (int) (last - first + 1));
+        for(int sent = 0; sent < expectedMessages; sent++) {
+            assertFalse(replay.send(collector));
+            assertEquals(sent, collector.messages.size()); // the stream is not ready
+            collector.readyMessages++;
+        }
+        assertTrue(replay.send(collector));
+        assertEquals(expectedDiscarded, replay.getNumDiscarded());
+
+        List<TelemetryMessage> messages = collector.messages;
+        if(expectedDiscarded > 0) {
+            TelemetryMessage discarded = messages.remove(0);
+            assertFalse(discarded.hasSequenceNumber());
+            assertEquals(expectedDiscarded, discarded.getSyncNotify().getDataDiscarded());
+        }
+        if(first < 0) {
+            assertTrue(messages.isEmpty());
+            return;
+        }
+        assertEquals(last - first + 1, messages.size());
+        assertEquals(messages.size(), replay.getNumReplayed());
+        for(int idx = 0; idx < messages.size(); idx++) {
+            assertEquals(first + idx, messages.get(idx).getSequenceNumber());
+            assertEquals(FRAME_LENGTH, messages.get(idx).getTelemetry().getData().size());
+        }
+    }
+
+    /**
+     * Stream collecting the replayed messages, ready until the given number of messages is collected
+     */
+    private static class ReplayCollector extends ServerCallStreamObserver<TelemetryMessage>
+        implements TmMessageMarshaller.EncodedMessageStream {
+
+        final List<TelemetryMessage> messages = new ArrayList<>();
+        int readyMessages = 0;
+
+        @Override
+        public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+            try {
+                messages.add(tmMessage.toMessage());
+            } catch(InvalidProtocolBufferException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            messages.add(tmMessage);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+        }
+
+        @Override
+        public void onCompleted() {
+        }
+
+        @Override
+        public boolean isReady() {
+            return messages.size() < readyMessages;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void request(int count) {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package cdds.service.tm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.service.common.ForwardingServerCallStreamObserver;
+import cdds.tm.EncodedTelemetryMessage;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * TM user stream appending every sent message to the replay buffer of the endpoint.
+ * A message is appended after it has been passed to the stream, a message failing to be sent
+ * is sent again by the production on the next stream.
+ *
+ * A resumed stream first sends the replay from the on ready handler while the call stream is ready.
+ * The replay is sent on the call stream as passed to the provider, the messages have been recorded and
+ * counted when sent first. The stream is not ready towards the production until the replay is complete,
+ * the on ready handler of the production is run from then on.
+ */
+public class TmReplayStream extends ForwardingServerCallStreamObserver<TelemetryMessage>
+    implements TmMessageMarshaller.EncodedMessageStream {
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.provider");
+
+    private final TmReplayBuffer tmReplayBuffer;
+    private final TmReplayBuffer.Replay replay;
+    private final ServerCallStreamObserver<TelemetryMessage> callStream;
+
+    private final AtomicInteger drainCounter = new AtomicInteger();
+    private volatile boolean replaying;
+
+    private volatile Runnable onReadyHandler;
+
+    /**
+     * Creates the replay stream
+     * @param tmUserStream      The user stream to send the TM
+     * @param tmReplayBuffer    The replay buffer of the endpoint
+     */
+    public TmReplayStream(ServerCallStreamObserver<TelemetryMessage> tmUserStream, TmReplayBuffer tmReplayBuffer) {
+        this(tmUserStream, tmReplayBuffer, null, null);
+    }
+
+    /**
+     * Creates the replay stream of a resumed stream
+     * @param tmUserStream      The user stream to send the TM
+     * @param tmReplayBuffer    The replay buffer of the endpoint
+     * @param replay            The replay to send first, null if the stream is not resumed
+     * @param callStream        The stream of the call to send the replay, the user stream or one it forwards to
+     */
+    public TmReplayStream(ServerCallStreamObserver<TelemetryMessage> tmUserStream, TmReplayBuffer tmReplayBuffer,
+            TmReplayBuffer.Replay replay, ServerCallStreamObserver<TelemetryMessage> callStream) {
+        super(tmUserStream);
+        this.tmReplayBuffer = tmReplayBuffer;
+        this.replay = replay;
+        this.callStream = callStream;
+        replaying = replay != null;
+        if(replaying) {
+            delegate.setOnReadyHandler(this::onReady);
+        }
+    }
+
+    @Override
+    public void onNext(TelemetryMessage tmMessage) {
+        delegate.onNext(tmMessage);
+        tmReplayBuffer.append(tmMessage);
+    }
+
+    @Override
+    public void onNextEncoded(EncodedTelemetryMessage tmMessage) {
+        TmMessageMarshaller.onNext(delegate, tmMessage);
+        tmReplayBuffer.append(tmMessage);
+    }
+
+    @Override
+    public boolean isReady() {
+        return replaying == false && delegate.isReady();
+    }
+
+    @Override
+    public void setOnReadyHandler(Runnable onReadyHandler) {
+        if(replay != null) {
+            this.onReadyHandler = onReadyHandler;
+        } else {
+            delegate.setOnReadyHandler(onReadyHandler);
+        }
+    }
+
+    private void onReady() {
+        if(replaying) {
+            drainReplay();
+        }
+        Runnable handler = onReadyHandler;
+        if(replaying == false && handler != null) {
+            handler.run();
+        }
+    }
+
+    /**
+     * Sends the replay while the call stream is ready
+     */
+    private void drainReplay() {
+        if(drainCounter.getAndIncrement() != 0) {
+            return; // the draining thread sends
+        }
+
+        int missed = 1;
+        do {
+            if(replaying && replay.send(callStream)) {
+                replaying = false;
+                LOG.info("Replayed " + replay.getNumReplayed() + " TM messages, discarded: " + replay.getNumDiscarded());
+            }
+            missed = drainCounter.addAndGet(-missed);
+        } while(missed != 0);
+    }
+}
@@ -0,0 +1,273 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
+import cdds.service.common.ClientMetaDataInterceptor;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Scaling benchmark of one provider server with M TM endpoints opened by N users over K channels (unsecure).
+ * Run with: mvn test -Pbenchmark -Dtest=TmScalingBenchmark
+ *
+ * Each endpoint is a virtual channel of its own production of 1115 byte frames and is opened by one stream.
+ * The endpoints are spread round robin over the users, each user with its own endpoint meta data interceptor,
+ * the users round robin over the channels. The frames of a run are split evenly over the streams.
+ *
+ * For each configuration the benchmark reports the aggregate throughput, the fairness between the streams as
+ * Jain's index of the stream rates (1 for equal rates, 1/M if one stream got all) and the slowest to fastest
+ * stream rate, and the process CPU time per Mbit of server and users together. The results are written
+ * to target/benchmark/tm-scaling.json and target/benchmark/tm-scaling.csv to track regressions between releases.
+ */
+@Tag("benchmark")
+public class TmScalingBenchmark {
+
+    private static final int PROVIDER_PORT = 7681;
+    private static final int FRAME_LENGTH = 1115;
+    private static final long NUM_FRAMES = 200_000;
+    private static final long TIMEOUT = 120_000;
+    private static final Path RESULT_DIR = Paths.get("target", "benchmark");
+
+    /** The configurations: { M endpoints, N users, K channels } */
+    private static final int[][] CONFIGURATIONS = {
+        { 1, 1, 1 },
+        { 4, 1, 1 },
+        { 4, 4, 1 },
+        { 4, 4, 4 },
+        { 16, 4, 1 },
+        { 16, 16, 4 },
+        { 16, 16, 16 },
+        { 64, 16, 4 },
+        { 64, 64, 16 },
+        { 64, 64, 64 }
+    };
+
+    @Test
+    public void benchmarkScaling() throws Exception {
+        runConfiguration(4, 4, 4); // warm up
+
+        List<Result> results = new ArrayList<>();
+        for(int[] configuration : CONFIGURATIONS) {
+            Result result = runConfiguration(configuration[0], configuration[1], configuration[2]);
+            System.out.println(result);
+            results.add(result);
+        }
+        write(results);
+    }
+
+    private Result runConfiguration(int numEndpoints, int numUsers, int numChannels) throws Exception {
+        final long framesPerStream = NUM_FRAMES / numEndpoints;
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        List<TmServiceEndpoint> endpoints = new ArrayList<>();
+        for(int idx = 0; idx < numEndpoints; idx++) {
+            TmServiceEndpoint endpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+                4711 + idx / 64, FrameVersion.AOS, idx % 64);
+            endpoints.add(endpoint);
+            tmProvider.addTmProduction(endpoint, new TmProductionNFrames(framesPerStream, FRAME_LENGTH));
+        }
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        endpoints.forEach(tmProvider::addAuthorizedTmEndpoint);
+
+        List<ManagedChannel> channels = new ArrayList<>();
+        for(int idx = 0; idx < numChannels; idx++) {
+            channels.add(ManagedChannelBuilder.forAddress("localhost", PROVIDER_PORT).usePlaintext().directExecutor().build());
+        }
+        List<ClientMetaDataInterceptor> users = new ArrayList<>();
+        for(int idx = 0; idx < numUsers; idx++) {
+            users.add(new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY));
+        }
+
+        com.sun.management.OperatingSystemMXBean os =
+            (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long startCpu = os.getProcessCpuTime();
+        long start = System.nanoTime();
+
+        List<StreamCounter> streams = new ArrayList<>();
+        for(int idx = 0; idx < numEndpoints; idx++) {
+            int user = idx % numUsers;
+            ClientMetaDataInterceptor interceptor = users.get(user);
+            interceptor.setMetaData(ProtoJsonUtil.toJsonUtf8(endpoints.get(idx)));
+            StreamCounter stream = new StreamCounter(start);
+            streams.add(stream);
+            TmMessageMarshaller.openTelemetryEndpoint(
+                TmServiceProviderGrpc.newStub(ClientInterceptors.intercept(channels.get(user % numChannels), interceptor)),
+                NoArg.getDefaultInstance(), stream);
+        }
+
+        for(StreamCounter stream : streams) {
+            stream.closed.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        long nanos = System.nanoTime() - start;
+        long cpuNanos = os.getProcessCpuTime() - startCpu;
+
+        for(ManagedChannel channel : channels) {
+            channel.shutdownNow();
+            channel.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        server.stop();
+
+        Result result = new Result(numEndpoints, numUsers, numChannels, nanos, cpuNanos, streams);
+        assertEquals(framesPerStream * numEndpoints, result.numFrames);
+        return result;
+    }
+
+    /**
+     * Writes the results as JSON and CSV, replacing the results of the previous run
+     */
+    private static void write(List<Result> results) throws IOException {
+        Files.createDirectories(RESULT_DIR);
+
+        try(PrintWriter csv = new PrintWriter(Files.newBufferedWriter(RESULT_DIR.resolve("tm-scaling.csv"), StandardCharsets.UTF_8))) {
+            csv.println("endpoints,users,channels,frames,seconds,frames_per_second,mbit_per_second,fairness,min_max_ratio,cpu_ms_per_mbit");
+            for(Result result : results) {
+                csv.println(String.format(Locale.ROOT, "%d,%d,%d,%d,%.3f,%.1f,%.1f,%.4f,%.4f,%.3f",
+                    result.numEndpoints, result.numUsers, result.numChannels, result.numFrames, result.nanos / 1E9,
+                    result.framesPerSecond(), result.mbitPerSecond(), result.fairness, result.minMaxRatio, result.cpuMsPerMbit()));
+            }
+        }
+
+        try(PrintWriter json = new PrintWriter(Files.newBufferedWriter(RESULT_DIR.resolve("tm-scaling.json"), StandardCharsets.UTF_8))) {
+            json.println("{");
+            json.println("  \"benchmark\": \"" + TmScalingBenchmark.class.getSimpleName() + "\",");
+            json.println("  \"time\": \"" + Instant.now() + "\",");
+            json.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            json.println("  \"java\": \"" + System.getProperty("java.version") + "\",");
+            json.println("  \"frameLength\": " + FRAME_LENGTH + ",");
+            json.println("  \"results\": [");
+            for(int idx = 0; idx < results.size(); idx++) {
+                Result result = results.get(idx);
+                json.print(String.format(Locale.ROOT, "    { \"endpoints\": %d, \"users\": %d, \"channels\": %d, \"frames\": %d, "
+                    + "\"seconds\": %.3f, \"framesPerSecond\": %.1f, \"mbitPerSecond\": %.1f, \"fairness\": %.4f, "
+                    + "\"minMaxRatio\": %.4f, \"cpuMsPerMbit\": %.3f }",
+                    result.numEndpoints, result.numUsers, result.numChannels, result.numFrames, result.nanos / 1E9,
+                    result.framesPerSecond(), result.mbitPerSecond(), result.fairness, result.minMaxRatio, result.cpuMsPerMbit()));
+                json.println(idx < results.size() - 1 ? "," : "");
+            }
+            json.println("  ]");
+            json.println("}");
+        }
+        System.out.println("Results written to " + RESULT_DIR.toAbsolutePath());
+    }
+
+    /**
+     * The measurements of one configuration
+     */
+    private static class Result {
+
+        final int numEndpoints;
+        final int numUsers;
+        final int numChannels;
+        final long nanos;
+        final long cpuNanos;
+        final long numFrames;
+        final double fairness;      // Jain's fairness index of the stream rates
+        final double minMaxRatio;   // the slowest to the fastest stream rate
+
+        Result(int numEndpoints, int numUsers, int numChannels, long nanos, long cpuNanos, List<StreamCounter> streams) {
+            this.numEndpoints = numEndpoints;
+            this.numUsers = numUsers;
+            this.numChannels = numChannels;
+            this.nanos = nanos;
+            this.cpuNanos = cpuNanos;
+
+            long frames = 0;
+            double sum = 0;
+            double sumOfSquares = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            for(StreamCounter stream : streams) {
+                frames += stream.numFrames;
+                double rate = stream.numFrames * 1E9 / Math.max(1, stream.endNanos - stream.startNanos);
+                sum += rate;
+                sumOfSquares += rate * rate;
+                min = Math.min(min, rate);
+                max = Math.max(max, rate);
+            }
+            this.numFrames = frames;
+            this.fairness = sumOfSquares > 0 ? sum * sum / (streams.size() * sumOfSquares) : 0;
+            this.minMaxRatio = max > 0 ? min / max : 0;
+        }
+
+        double framesPerSecond() {
+            return numFrames * 1E9 / nanos;
+        }
+
+        double mbitPerSecond() {
+            return numFrames * FRAME_LENGTH * 8 * 1E3 / nanos;
+        }
+
+        double cpuMsPerMbit() {
+            return cpuNanos / 1E6 / (numFrames * FRAME_LENGTH * 8 / 1E6);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("M %2d endpoints, N %2d users, K %2d channels: %8.1f k frames/s %8.1f Mbit/s, "
+                + "fairness %.3f, min/max %.3f, %.3f CPU ms/Mbit", numEndpoints, numUsers, numChannels,
+                framesPerSecond() / 1E3, mbitPerSecond(), fairness, minMaxRatio, cpuMsPerMbit());
+        }
+    }
+
+    /**
+     * Counts the frames of one stream and the time of its completion
+     */
+    private static class StreamCounter implements StreamObserver<TelemetryMessage> {
+
+        final CompletableFuture<Void> closed = new CompletableFuture<>();
+        final long startNanos;
+        volatile long endNanos;
+        volatile long numFrames = 0;
+
+        StreamCounter(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            if(tmMessage.hasTelemetry()) {
+                numFrames++;
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            endNanos = System.nanoTime();
+            closed.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            endNanos = System.nanoTime();
+            closed.complete(null);
+        }
+    }
+}
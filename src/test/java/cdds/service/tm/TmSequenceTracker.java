@@ -0,0 +1,230 @@
+package cdds.service.tm;
+
+/**
+ * Tracks the sequence numbers received on a TM stream and detects gaps, duplicates and out of order messages.
+ *
+ * The sequence numbers seen within a window below the highest sequence number are kept in a bitmap of longs,
+ * indexed by the sequence number modulo the window size. A sequence number above the highest one reports the
+ * numbers in between as a gap and clears their bits, at most one pass over the bitmap for any jump. A sequence
+ * number within the window is a duplicate if its bit is set, otherwise it is out of order and fills a previously
+ * reported gap. A sequence number below the window restarts the tracking, e.g. after a restart of the provider.
+ *
+ * Tracking creates no objects. The tracker is not thread safe, it serves a single stream. The counters are plain
+ * fields, other threads reading them see the values with a delay.
+ */
+public class TmSequenceTracker {
+
+    /** Default window size */
+    public static final int DEFAULT_WINDOW_SIZE = 4096;
+
+    /**
+     * Listener to the detected events, called by the thread tracking the sequence numbers
+     */
+    public interface Listener {
+
+        /**
+         * The sequence numbers from first to last were skipped
+         */
+        default void onGap(long first, long last) {
+        }
+
+        /**
+         * The sequence number was received before
+         */
+        default void onDuplicate(long sequenceNumber) {
+        }
+
+        /**
+         * The sequence number was received after higher sequence numbers, it fills a reported gap
+         */
+        default void onOutOfOrder(long sequenceNumber) {
+        }
+
+        /**
+         * The sequence number is below the window, the tracking restarted with it
+         */
+        default void onRestart(long highestSequenceNumber, long sequenceNumber) {
+        }
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final long[] seen;
+    private final int windowSize;
+    private final long mask;
+    private final boolean dropDuplicates;
+    private final Listener listener;
+
+    private boolean started = false;
+    private long highest;
+    private long first;                         // the first sequence number since the start or restart
+
+    private long numTracked = 0;
+    private long numMissing = 0;       // reported in gaps and not received out of order
+    private long numGaps = 0;
+    private long numDuplicates = 0;
+    private long numOutOfOrder = 0;
+    private long numRestarts = 0;
+
+    /**
+     * Creates the tracker with the default window, keeping duplicates and without listener
+     */
+    public TmSequenceTracker() {
+        this(DEFAULT_WINDOW_SIZE, false, null);
+    }
+
+    /**
+     * Creates the tracker
+     * @param windowSize        The number of sequence numbers below the highest one tracked, rounded up to a multiple of 64
+     *                          and a power of two
+     * @param dropDuplicates    true to report duplicates as not to be processed
+     * @param listener          The listener to the detected events, null for none
+     */
+    public TmSequenceTracker(int windowSize, boolean dropDuplicates, Listener listener) {
+        this.windowSize = Math.max(64, Integer.highestOneBit(windowSize - 1) << 1);
+        this.seen = new long[this.windowSize >>> 6];
+        this.mask = this.windowSize - 1;
+        this.dropDuplicates = dropDuplicates;
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    /**
+     * Tracks a received sequence number
+     * @param sequenceNumber    The sequence number of the received message
+     * @return                  false for a duplicate to be dropped, true otherwise
+     */
+    public boolean track(long sequenceNumber) {
+        numTracked++;
+
+        if(started == false) {
+            started = true;
+            first = sequenceNumber;
+            highest = sequenceNumber;
+            set(sequenceNumber);
+            return true;
+        }
+
+        long delta = sequenceNumber - highest;
+        if(delta == 1) {
+            highest = sequenceNumber; // the usual case, the bit is the only one to clear
+            set(sequenceNumber);
+            return true;
+        }
+
+        if(delta > 0) {
+            if(delta > 1) {
+                numGaps++;
+                numMissing += delta - 1;
+                listener.onGap(highest + 1, sequenceNumber - 1);
+            }
+            clear(highest + 1, Math.min(delta, windowSize));
+            highest = sequenceNumber;
+            set(sequenceNumber);
+            return true;
+        }
+
+        if(-delta >= windowSize) {
+            numRestarts++;
+            listener.onRestart(highest, sequenceNumber);
+            clear(sequenceNumber, windowSize);
+            first = sequenceNumber;
+            highest = sequenceNumber;
+            set(sequenceNumber);
+            return true;
+        }
+
+        int bit = (int) (sequenceNumber & mask);
+        long word = seen[bit >>> 6];
+        long bitMask = 1L << bit;
+        if((word & bitMask) != 0) {
+            numDuplicates++;
+            listener.onDuplicate(sequenceNumber);
+            return dropDuplicates == false;
+        }
+
+        seen[bit >>> 6] = word | bitMask;
+        numOutOfOrder++;
+        if(sequenceNumber > first) {
+            numMissing--;   // fills a gap, numbers below the first one were never reported missing
+        }
+        listener.onOutOfOrder(sequenceNumber);
+        return true;
+    }
+
+    /**
+     * @return The highest sequence number tracked, -1 if none
+     */
+    public long getHighestSequenceNumber() {
+        return started ? highest : -1;
+    }
+
+    /**
+     * @return The number of tracked sequence numbers
+     */
+    public long getNumTracked() {
+        return numTracked;
+    }
+
+    /**
+     * @return The number of sequence numbers skipped in gaps and not received out of order
+     */
+    public long getNumMissing() {
+        return numMissing;
+    }
+
+    /**
+     * @return The number of gaps
+     */
+    public long getNumGaps() {
+        return numGaps;
+    }
+
+    /**
+     * @return The number of duplicate sequence numbers
+     */
+    public long getNumDuplicates() {
+        return numDuplicates;
+    }
+
+    /**
+     * @return The number of sequence numbers received out of order
+     */
+    public long getNumOutOfOrder() {
+        return numOutOfOrder;
+    }
+
+    /**
+     * @return The number of restarts of the tracking
+     */
+    public long getNumRestarts() {
+        return numRestarts;
+    }
+
+    private void set(long sequenceNumber) {
+        int bit = (int) (sequenceNumber & mask);
+        seen[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Clears the bits of count sequence numbers from first, count at most the window size
+     */
+    private void clear(long first, long count) {
+        if(count >= windowSize) {
+            for(int idx = 0; idx < seen.length; idx++) {
+                seen[idx] = 0;
+            }
+            return;
+        }
+
+        int bit = (int) (first & mask);
+        int remaining = (int) count;
+        while(remaining > 0) {
+            int offset = bit & 63;
+            int numBits = Math.min(64 - offset, remaining);
+            long bits = numBits == 64 ? -1L : ((1L << numBits) - 1) << offset;
+            seen[bit >>> 6] &= ~bits;
+            remaining -= numBits;
+            bit = (bit + numBits) & (int) mask;
+        }
+    }
+}
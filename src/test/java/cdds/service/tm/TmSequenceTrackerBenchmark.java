@@ -0,0 +1,88 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of the TM sequence tracker with the default window.
+ * Run with: mvn test -Pbenchmark -Dtest=TmSequenceTrackerBenchmark
+ *
+ * trackInSequence tracks consecutive sequence numbers, trackReordered swaps each pair of sequence numbers
+ * and drops every 16th, trackJumps jumps by a million every 1000 sequence numbers and back after 8 jumps.
+ * The GC profiler reports the bytes allocated per sequence number, the test fails if tracking allocates.
+ */
+@Tag("benchmark")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TmSequenceTrackerBenchmark {
+
+    private final TmSequenceTracker inSequenceTracker = new TmSequenceTracker(TmSequenceTracker.DEFAULT_WINDOW_SIZE, true, null);
+    private final TmSequenceTracker reorderedTracker = new TmSequenceTracker(TmSequenceTracker.DEFAULT_WINDOW_SIZE, true, null);
+    private final TmSequenceTracker jumpTracker = new TmSequenceTracker(TmSequenceTracker.DEFAULT_WINDOW_SIZE, true, null);
+
+    private long inSequence = 0;
+    private long reordered = 0;
+    private long jump = 0;
+
+    @Benchmark
+    public boolean trackInSequence() {
+        return inSequenceTracker.track(inSequence++);
+    }
+
+    @Benchmark
+    public boolean trackReordered() {
+        long seq = reordered++;
+        if((seq & 0x0f) == 0x0f) {
+            seq = reordered++;
+        }
+        return reorderedTracker.track(seq ^ 1);
+    }
+
+    @Benchmark
+    public boolean trackJumps() {
+        long seq = jump++;
+        return jumpTracker.track((seq % 1000) + ((seq / 1000) & 0x07) * 1_000_000);
+    }
+
+    @Test
+    public void benchmarkTracking() throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TmSequenceTrackerBenchmark.class.getName() + ".track")
+            .addProfiler(GCProfiler.class)
+            .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        for(RunResult result : results) {
+            Result<?> allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf("%-20s %6.2f ns/message %6.3f bytes allocated/message%n", result.getParams().getBenchmark()
+                .substring(result.getParams().getBenchmark().lastIndexOf('.') + 1), result.getPrimaryResult().getScore(),
+                allocated.getScore());
+            assertTrue(allocated.getScore() < 1, "tracking allocates");
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the TM sequence tracker
+ *
+ * 1) testInSequence - Tracks consecutive sequence numbers across several windows, nothing is reported
+ * 2) testGapAndReorder - Skips sequence numbers across bitmap words and receives them late out of order
+ *                        and duplicated, with and without dropping duplicates
+ * 3) testJumps - Jumps by millions forward and backward like after a restart of the provider and checks
+ *                that no bits of the previous window remain
+ */
+public class TmSequenceTrackerTest {
+
+    @Test
+    public void testInSequence() {
+        EventRecorder events = new EventRecorder();
+        TmSequenceTracker tracker = new TmSequenceTracker(100, false, events); // rounded to 128
+
+        for(long seq = 5; seq < 1005; seq++) {
+            assertTrue(tracker.track(seq));
+        }
+        assertEquals(1000, tracker.getNumTracked());
+        assertEquals(1004, tracker.getHighestSequenceNumber());
+        assertEquals(0, tracker.getNumGaps() + tracker.getNumMissing() + tracker.getNumDuplicates()
+            + tracker.getNumOutOfOrder() + tracker.getNumRestarts());
+        assertTrue(events.events.isEmpty());
+
+        // the last window is complete: each number is a duplicate, older numbers restart
+        assertTrue(tracker.track(1004 - 127));
+        assertEquals(1, tracker.getNumDuplicates());
+        assertTrue(tracker.track(1004 - 128));
+        assertEquals(1, tracker.getNumRestarts());
+        assertEquals(List.of("duplicate 877", "restart 1004 876"), events.events);
+    }
+
+    @Test
+    public void testGapAndReorder() {
+        EventRecorder events = new EventRecorder();
+        TmSequenceTracker tracker = new TmSequenceTracker(256, true, events);
+
+        tracker.track(60);
+        tracker.track(61);
+        tracker.track(130);     // gap 62..129 across the words 0, 1 and 2
+        tracker.track(131);
+        assertEquals(1, tracker.getNumGaps());
+        assertEquals(68, tracker.getNumMissing());
+
+        assertTrue(tracker.track(64));
+        assertTrue(tracker.track(127));
+        assertTrue(tracker.track(128));
+        assertEquals(3, tracker.getNumOutOfOrder());
+        assertEquals(65, tracker.getNumMissing());
+
+        assertFalse(tracker.track(64));     // dropped duplicates
+        assertFalse(tracker.track(131));
+        assertFalse(tracker.track(61));
+        assertEquals(3, tracker.getNumDuplicates());
+        assertEquals(List.of("gap 62 129", "out of order 64", "out of order 127", "out of order 128",
+            "duplicate 64", "duplicate 131", "duplicate 61"), events.events);
+
+        // numbers before the first one are late, but were never missing
+        assertTrue(tracker.track(50));
+        assertEquals(4, tracker.getNumOutOfOrder());
+        assertEquals(65, tracker.getNumMissing());
+
+        // keeps duplicates
+        tracker = new TmSequenceTracker(256, false, null);
+        tracker.track(1);
+        assertTrue(tracker.track(1));
+        assertEquals(1, tracker.getNumDuplicates());
+    }
+
+    @Test
+    public void testJumps() {
+        EventRecorder events = new EventRecorder();
+        TmSequenceTracker tracker = new TmSequenceTracker(1024, false, events);
+
+        for(long seq = 0; seq < 1024; seq++) {
+            tracker.track(seq);
+        }
+
+        // a jump by millions clears the whole window, the numbers of the old window are unknown there
+        tracker.track(5_000_000);
+        assertEquals(1, tracker.getNumGaps());
+        assertEquals(5_000_000 - 1024, tracker.getNumMissing());
+        assertTrue(tracker.track(5_000_000 - 1));
+        assertEquals(1, tracker.getNumOutOfOrder());
+
+        // a jump within the window clears the skipped numbers only
+        tracker.track(5_000_000 + 700);
+        assertTrue(tracker.track(5_000_000 + 300));
+        assertEquals(2, tracker.getNumOutOfOrder());
+        tracker.track(5_000_000 - 1);
+        assertEquals(1, tracker.getNumDuplicates());
+
+        // the provider restarted at 0
+        events.events.clear();
+        tracker.track(0);
+        tracker.track(2);
+        tracker.track(1);
+        assertEquals(1, tracker.getNumRestarts());
+        assertEquals(2, tracker.getHighestSequenceNumber());
+        assertEquals(List.of("restart 5000700 0", "gap 1 1", "out of order 1"), events.events);
+
+        // a jump beyond the int range
+        tracker.track(1L << 40);
+        assertEquals(1L << 40, tracker.getHighestSequenceNumber());
+        assertTrue(tracker.track((1L << 40) - 1023));
+        assertEquals(4, tracker.getNumOutOfOrder());
+    }
+
+    /**
+     * Records the events reported by a tracker
+     */
+    static class EventRecorder implements TmSequenceTracker.Listener {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onGap(long first, long last) {
+            events.add("gap " + first + " " + last);
+        }
+
+        @Override
+        public void onDuplicate(long sequenceNumber) {
+            events.add("duplicate " + sequenceNumber);
+        }
+
+        @Override
+        public void onOutOfOrder(long sequenceNumber) {
+            events.add("out of order " + sequenceNumber);
+        }
+
+        @Override
+        public void onRestart(long highestSequenceNumber, long sequenceNumber) {
+            events.add("restart " + highestSequenceNumber + " " + sequenceNumber);
+        }
+    }
+}
@@ -11,7 +11,10 @@ import org.apache.logging.log4j.Logger;
 import com.google.protobuf.InvalidProtocolBufferException;
 
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.jfr.AuthorizationEvent;
+import cdds.service.common.EndpointUtil;
 import cdds.service.common.GrpcUtil;
+import cdds.service.common.MetricsRegistry;
 import cdds.service.common.ProtoJsonUtil;
 import io.grpc.Context;
 import io.grpc.Contexts;
@@ -37,8 +40,20 @@ public class TmServiceAuthorization implements ServerInterceptor {
     // used by the TC Provider to read the intercepted meta data TM_ENDPOINT from the call context
     public static final Context.Key<byte[]> TM_ENDPOINT_CTX_KEY = Context.key(TM_ENDPOINT);
 
+    public static final String TM_RESUME_AFTER = "tm-resume-after";
+
+    // optionally put by the TM User to resume after the last received sequence number (decimal)
+    public static final Metadata.Key<String> TM_RESUME_AFTER_KEY = Metadata.Key.of(TM_RESUME_AFTER, Metadata.ASCII_STRING_MARSHALLER);
+
+    // used by the TM Provider to read the intercepted sequence number to resume after, null if not resuming
+    public static final Context.Key<Long> TM_RESUME_AFTER_CTX_KEY = Context.key(TM_RESUME_AFTER);
+
+    private static final String SERVICE = "TM";
+
     private static final Logger LOG = LogManager.getLogger("cdds.tm.authorization.");
 
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+
     private final Set<TmServiceEndpoint> authorizedTmEndpoints = new LinkedHashSet<>();
 
     /**
@@ -63,6 +78,9 @@ public class TmServiceAuthorization implements ServerInterceptor {
 
             if(endpointBytes == null) {
                 LOG.warn("Failed to read endpoint metadata " + TM_ENDPOINT_KEY);
+                String unknownEndpoint = MetricsRegistry.TM_PREFIX + EndpointUtil.DOT + MetricsRegistry.UNKNOWN_ENDPOINT;
+                metricsRegistry.get(unknownEndpoint).authorizationFailure();
+                AuthorizationEvent.commit(SERVICE, unknownEndpoint, call, false, "No TM_ENDPOINT meta data provided");
                 call.close(Status.PERMISSION_DENIED.withDescription("No TM_ENDPOINT meta data provided"),
                         new Metadata());
                 return null;
@@ -76,9 +94,14 @@ public class TmServiceAuthorization implements ServerInterceptor {
                 if (isEndpointAuthorized(GrpcUtil.getSan(call), tmEndpoint)) {    
                     LOG.info("Authorize TM service meta data for \n'" + TM_ENDPOINT + "':\n" + new String(endpointBytes)
                         + "\nSAN: " + GrpcUtil.getSan(call));
+                    AuthorizationEvent.commit(SERVICE, MetricsRegistry.endpointKey(tmEndpoint), call, true, null);
                 } else {
                     LOG.warn("TM service meta data, invalid TM_ENDPOINT provided:\n" + tmEndpoint 
                         + "\nauthorized endpoints:\n" + authorizedTmEndpoints);
+                    metricsRegistry.get(MetricsRegistry.TM_PREFIX + EndpointUtil.DOT + MetricsRegistry.UNAUTHORIZED_ENDPOINT)
+                        .authorizationFailure();
+                    AuthorizationEvent.commit(SERVICE, MetricsRegistry.endpointKey(tmEndpoint), call, false,
+                        "Invalid TM_ENDPOINT meta data provided");
                     
                     call.close(Status.PERMISSION_DENIED.withDescription("Invalid TM_ENDPOINT meta data provided"),
                             new Metadata());
@@ -90,6 +113,18 @@ public class TmServiceAuthorization implements ServerInterceptor {
 
             ctx = ctx.withValue(TM_ENDPOINT_CTX_KEY, endpointBytes);
 
+            String resumeAfter = headers.get(TM_RESUME_AFTER_KEY);
+            if(resumeAfter != null) {
+                try {
+                    ctx = ctx.withValue(TM_RESUME_AFTER_CTX_KEY, Long.parseLong(resumeAfter.trim()));
+                } catch(NumberFormatException e) {
+                    LOG.warn("Invalid " + TM_RESUME_AFTER + " meta data: " + resumeAfter);
+                    call.close(Status.INVALID_ARGUMENT.withDescription("Invalid TM_RESUME_AFTER meta data provided"),
+                            new Metadata());
+                    return null;
+                }
+            }
+
             return Contexts.interceptCall(ctx, call, headers, next);        
         }
        
@@ -97,6 +132,14 @@ public class TmServiceAuthorization implements ServerInterceptor {
         //return next.startCall(call, headers);
     }
 
+    /**
+     * Sets the registry counting the authorization failures by endpoint
+     * @param metricsRegistry   The registry, by default MetricsRegistry.getDefault()
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
     /**
      * Check if the given TM endpoint is authorized for one of the Subject Alternative Names
      * @param sanList       The list of Subject Alternative Names 
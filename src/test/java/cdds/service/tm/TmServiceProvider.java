@@ -16,14 +16,19 @@ import ccsds.cdds.v1.Telemetry;
 import ccsds.cdds.v1.Types;
 import ccsds.cdds.v1.Types.NoArg;
 import ccsds.cdds.v1.tm.CddsTmService;
+import ccsds.cdds.v1.tm.CddsTmService.TelemetryMessageBatch;
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpointList;
 import ccsds.cdds.v1.tm.TmServiceProviderGrpc.TmServiceProviderImplBase;
 import cdds.service.common.GrpcUtil;
+import cdds.service.common.EndpointMetrics;
 import cdds.service.common.InterceptedService;
+import cdds.service.common.MetricsRegistry;
 import cdds.service.common.ProtoJsonUtil;
+import cdds.tm.archive.TmRecorder;
 import io.grpc.BindableService;
 import io.grpc.ServerInterceptor;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 /**
@@ -39,6 +44,20 @@ public class TmServiceProvider extends TmServiceProviderImplBase implements Inte
 
     private final Map<TmServiceEndpoint, TmProduction> tmProductions = new ConcurrentHashMap<>();
 
+    private final Map<TmServiceEndpoint, TmRecorder> tmRecorders = new ConcurrentHashMap<>();
+
+    private final Map<TmServiceEndpoint, TmReplayBuffer> tmReplayBuffers = new ConcurrentHashMap<>();
+
+    private final Map<TmServiceEndpoint, TmBacklog> tmBacklogs = new ConcurrentHashMap<>();
+
+    private volatile MetricsRegistry metricsRegistry = MetricsRegistry.getDefault();
+
+    private volatile int maxBatchBytes = TmBatchingStream.DEFAULT_MAX_BATCH_BYTES;
+
+    private volatile int maxBatchMessages = TmBatchingStream.DEFAULT_MAX_BATCH_MESSAGES;
+
+    private volatile long maxLingerNanos = TmBatchingStream.DEFAULT_MAX_LINGER_NANOS;
+
     @Override
     public void getEndpoints(NoArg request, StreamObserver<TmServiceEndpointList> responseObserver)  {
         LOG.info("get endpoints called. Total endpoints: " + tmEndpoints.size());
@@ -67,6 +86,21 @@ public class TmServiceProvider extends TmServiceProviderImplBase implements Inte
     @Override
     public void openTelemetryEndpoint(Types.NoArg noArg,
             io.grpc.stub.StreamObserver<Telemetry.TelemetryMessage> tmUserStream) {
+        openTmStream((ServerCallStreamObserver<Telemetry.TelemetryMessage>) tmUserStream);
+    }
+
+    @Override
+    public void openTelemetryEndpointBatched(Types.NoArg noArg,
+            io.grpc.stub.StreamObserver<TelemetryMessageBatch> tmBatchStream) {
+        openTmStream(new TmBatchingStream((ServerCallStreamObserver<TelemetryMessageBatch>) tmBatchStream,
+            maxBatchBytes, maxBatchMessages, maxLingerNanos));
+    }
+
+    /**
+     * Starts the TM production of the endpoint in the call meta data on the given stream
+     * @param tmUserStream  The TM user stream, a TmBatchingStream for batched calls
+     */
+    private void openTmStream(ServerCallStreamObserver<Telemetry.TelemetryMessage> tmUserStream) {
         try {
             // get the tm-endpoint-bin meta data (JSON)
             byte[] endpointBytes = TmServiceAuthorization.TM_ENDPOINT_CTX_KEY.get(); 
@@ -87,6 +121,35 @@ public class TmServiceProvider extends TmServiceProviderImplBase implements Inte
                     LOG.info("Open TM stream for endpoint\n" + tmEndpoint);
                 }
 
+                ServerCallStreamObserver<Telemetry.TelemetryMessage> callStream = tmUserStream;
+                EndpointMetrics metrics = metricsRegistry.get(tmEndpoint);
+                tmUserStream = new TmMetricsStream(tmUserStream, metrics);
+
+                TmRecorder tmRecorder = tmRecorders.get(tmEndpoint);
+                if(tmRecorder != null) {
+                    tmUserStream = new TmRecordingStream(tmUserStream, tmRecorder);
+                }
+
+                Long resumeAfter = TmServiceAuthorization.TM_RESUME_AFTER_CTX_KEY.get();
+                TmReplayBuffer tmReplayBuffer = tmReplayBuffers.get(tmEndpoint);
+                if(tmReplayBuffer != null) {
+                    if(resumeAfter != null) {
+                        // the replay is sent on the call stream, the messages have been recorded and counted already
+                        LOG.info("Resume TM stream after sequence number " + resumeAfter);
+                        tmUserStream = new TmReplayStream(tmUserStream, tmReplayBuffer, tmReplayBuffer.replay(resumeAfter), callStream);
+                    } else {
+                        tmUserStream = new TmReplayStream(tmUserStream, tmReplayBuffer);
+                    }
+                } else if(resumeAfter != null) {
+                    LOG.warn("No TM replay buffer to resume after sequence number " + resumeAfter + " for endpoint:\n" + tmEndpoint);
+                }
+
+                TmBacklog tmBacklog = tmBacklogs.get(tmEndpoint);
+                if(tmBacklog != null) {
+                    tmUserStream = new TmBacklogStream(tmUserStream, tmBacklog);
+                    metrics.setQueueDepth(tmBacklog::getNumMessages);
+                }
+
                 tmProduction.startTmEndpointService(tmEndpoint, tmUserStream);
             } else {
                 LOG.warn("Failed to open TM stream, non-existing endpoint:\n" + tmEndpoint);
@@ -116,9 +179,94 @@ public class TmServiceProvider extends TmServiceProviderImplBase implements Inte
        tmProductions.remove(tmEndpoint); 
     }
 
+    /**
+     * Records the TM sent on the streams of the given endpoint
+     * @param tmEndpoint    The endpoint for which TM is recorded
+     * @param tmRecorder    The recorder. Closing the recorder is up to the caller.
+     */
+    public void addTmRecorder(TmServiceEndpoint tmEndpoint, TmRecorder tmRecorder) {
+        tmRecorders.put(tmEndpoint, tmRecorder);
+    }
+
+    /**
+     * Stops recording the TM of streams opened after this call for the given endpoint
+     * @param tmEndpoint    The TM endpoint identifying the associated recorder
+     */
+    public void removeTmRecorder(TmServiceEndpoint tmEndpoint) {
+        tmRecorders.remove(tmEndpoint);
+    }
+
+    /**
+     * Keeps the TM sent on the streams of the given endpoint for users resuming after a lost connection
+     * @param tmEndpoint        The endpoint for which TM is kept
+     * @param tmReplayBuffer    The replay buffer
+     */
+    public void addTmReplayBuffer(TmServiceEndpoint tmEndpoint, TmReplayBuffer tmReplayBuffer) {
+        tmReplayBuffers.put(tmEndpoint, tmReplayBuffer);
+    }
+
+    /**
+     * Stops keeping the TM of streams opened after this call for the given endpoint
+     * @param tmEndpoint    The TM endpoint identifying the associated replay buffer
+     */
+    public void removeTmReplayBuffer(TmServiceEndpoint tmEndpoint) {
+        tmReplayBuffers.remove(tmEndpoint);
+    }
+
+    /**
+     * Decouples the TM production of the given endpoint from its streams with a backlog.
+     * The production is never held back, messages the user cannot take are kept in the backlog
+     * and dropped by its policy when it is full.
+     * @param tmEndpoint    The endpoint for which TM is kept
+     * @param tmBacklog     The backlog, used by one stream at a time
+     */
+    public void addTmBacklog(TmServiceEndpoint tmEndpoint, TmBacklog tmBacklog) {
+        tmBacklogs.put(tmEndpoint, tmBacklog);
+    }
+
+    /**
+     * Streams opened after this call for the given endpoint hold back the TM production again
+     * @param tmEndpoint    The TM endpoint identifying the associated backlog
+     */
+    public void removeTmBacklog(TmServiceEndpoint tmEndpoint) {
+        tmBacklogs.remove(tmEndpoint);
+    }
+
+    /**
+     * Sets the limits of the batches sent on batched TM streams opened after this call
+     * @param maxBatchBytes     The maximum size of a batch
+     * @param maxBatchMessages  The maximum number of messages of a batch
+     * @param maxLingerNanos    The maximum time a message waits for the batch to fill
+     */
+    public void setTmBatchLimits(int maxBatchBytes, int maxBatchMessages, long maxLingerNanos) {
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxBatchMessages = maxBatchMessages;
+        this.maxLingerNanos = maxLingerNanos;
+    }
+
+    /**
+     * Sets the registry counting the streams of all endpoints, used by streams opened after this call
+     * @param metricsRegistry   The registry, by default MetricsRegistry.getDefault()
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        tmAuthorization.setMetricsRegistry(metricsRegistry);
+    }
+
+    /**
+     * @return The registry counting the streams of all endpoints
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * The service is bound with the TmMessageMarshaller for openTelemetryEndpoint,
+     * allowing productions to send pre-encoded TM messages.
+     */
     @Override
     public BindableService getBindableService() {
-        return this;
+        return () -> TmMessageMarshaller.bindService(bindService());
     }
 
     @Override
@@ -1,24 +1,43 @@
 package cdds.service.tm;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.naming.TimeLimitExceededException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
 import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
 import cdds.service.common.InterceptedService;
 import cdds.service.common.ProviderServer;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.archive.TmRecorder;
+import cdds.util.TimeUtil;
 
 /**
  * Test the communication among a TM service user and a TM service provider
@@ -27,6 +46,9 @@ public class TmServiceTest {
 
     private static final int PROVIDER_PORT = 7666;
 
+    // frames due within the pacing slack of 1 ms are sent ahead of time, plus the delivery jitter of single frames
+    private static final long PACING_TOLERANCE_NANOS = 10_000_000;
+
     final long numFrames = 750_000;
     final long timeout = 30_000;
     final int frameLength = 1115;
@@ -121,5 +143,140 @@ public class TmServiceTest {
         server.stop();
     }
 
+    /**
+     * Replays a recorded TM file with a fixed bit rate and records the sent TM
+     */
+    @Test
+    public void testTmFileReplayUnsecure() throws IOException, TimeLimitExceededException, InterruptedException {
+        final int numReplayFrames = 20_000;
+        final double bitRate = 100E6;
+
+        Path tmFile = writeReplayFile("replay.tlm", numReplayFrames, 0);
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(authorizedTmEndpoint1,
+            new TmProductionFileReplay(tmFile, TmProductionFileReplay.Pacing.BIT_RATE, bitRate));
+
+        TmRecorder tmRecorder = new TmRecorder(tmFile.resolveSibling("replay-recording"), "replay", 64 << 20, 0,
+            TmRecorder.Durability.GROUP_COMMIT, 100, numReplayFrames + 1);
+        tmProvider.addTmRecorder(authorizedTmEndpoint1, tmRecorder);
+
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(authorizedTmEndpoint1);
+
+        final TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+        long[] receiveNanos = receiveTimes(tmServiceUser, numReplayFrames);
+
+        tmServiceUser.openTelemetryEndpoint(authorizedTmEndpoint1, numReplayFrames, 1);
+
+        tmServiceUser.waitForTmFrames(timeout);
+        tmServiceUser.waitForSyncNotify(timeout); // end of data
+
+        tmServiceUser.shutdown();
+
+        server.stop();
+
+        tmRecorder.close();
+        assertEquals(numReplayFrames + 1, tmRecorder.getRecordedMessages());
+
+        // the frames are due by the bit rate from the start of the replay. The first frames are delayed by the start
+        // of the stream and the pacing sends the following ones back to back until they are due again, so the
+        // bit rate is taken over the second half of the replay.
+        int firstFrame = numReplayFrames / 2;
+        long expectedNanos = (long) ((numReplayFrames - 1 - firstFrame) * frameLength * 8 / bitRate * 1E9);
+        long elapsedNanos = receiveNanos[numReplayFrames - 1] - receiveNanos[firstFrame];
+        LOG.info("Replayed " + (numReplayFrames - firstFrame) + " frames in " + elapsedNanos / 1_000_000 + " ms, expected "
+            + expectedNanos / 1_000_000 + " ms, all " + numReplayFrames + " frames in "
+            + (receiveNanos[numReplayFrames - 1] - receiveNanos[0]) / 1_000_000 + " ms");
+        assertTrue(elapsedNanos >= expectedNanos - PACING_TOLERANCE_NANOS, "frames sent faster than the bit rate");
+    }
+
+    /**
+     * Replays a recorded TM file by the receive times with two speed factors and checks the spacing of the received frames
+     */
+    @Test
+    public void testTmFileReplayPacing() throws IOException, TimeLimitExceededException, InterruptedException {
+        final int numReplayFrames = 21;
+        final long framePeriod = 20_000_000; // 20 ms of receive time among the frames
+
+        Path tmFile = writeReplayFile("replay-paced.tlm", numReplayFrames, framePeriod);
+
+        for(double speed : new double[] { 1.0, 4.0 }) {
+            TmServiceProvider tmProvider = new TmServiceProvider();
+            tmProvider.addTmProduction(authorizedTmEndpoint1,
+                new TmProductionFileReplay(tmFile, TmProductionFileReplay.Pacing.RECEIVE_TIME, speed));
+            ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+            server.start();
+            tmProvider.addAuthorizedTmEndpoint(authorizedTmEndpoint1);
+
+            final TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            long[] receiveNanos = receiveTimes(tmServiceUser, numReplayFrames);
+            try {
+                tmServiceUser.openTelemetryEndpoint(authorizedTmEndpoint1, numReplayFrames, 1);
+                tmServiceUser.waitForTmFrames(timeout);
+                tmServiceUser.waitForSyncNotify(timeout);
+                tmServiceUser.shutdown();
+            } finally {
+                server.stop();
+            }
+
+            // the median gap between frames follows the receive times scaled by the speed, the elapsed time is taken
+            // from the second frame as the first is delayed by the start of the stream
+            long period = (long) (framePeriod / speed);
+            long[] gaps = new long[numReplayFrames - 2];
+            for(int idx = 2; idx < numReplayFrames; idx++) {
+                gaps[idx - 2] = receiveNanos[idx] - receiveNanos[idx - 1];
+            }
+            Arrays.sort(gaps);
+            long medianGap = gaps[gaps.length / 2];
+            long elapsed = receiveNanos[numReplayFrames - 1] - receiveNanos[1];
+            long expected = (numReplayFrames - 2) * period;
+            LOG.info("Replayed with speed " + speed + " in " + elapsed / 1_000_000 + " ms, expected " + expected / 1_000_000
+                + " ms, median gap " + medianGap / 1_000 + " us");
+
+            assertTrue(Math.abs(medianGap - period) <= period / 4, "speed " + speed + ": median gap " + medianGap / 1_000
+                + " us, expected " + period / 1_000 + " us");
+            assertTrue(elapsed >= expected - PACING_TOLERANCE_NANOS && elapsed <= expected + expected / 4 + 20 * PACING_TOLERANCE_NANOS,
+                "speed " + speed + ": replay took " + elapsed / 1_000_000 + " ms, expected " + expected / 1_000_000 + " ms");
+        }
+    }
 
-}
\ No newline at end of file
+    /**
+     * Writes a TM file of frames with receive times spaced by the frame period
+     */
+    private Path writeReplayFile(String fileName, int numReplayFrames, long framePeriod) throws IOException {
+        Path tmFile = Paths.get("target" + File.separatorChar + "tm-files" + File.separatorChar + fileName);
+        Files.createDirectories(tmFile.getParent());
+        ByteString data = ByteString.copyFrom(TestTelemetryFile.getFrameData(frameLength));
+        long startTime = TimeUtil.toNanos(TimeUtil.now());
+        try(OutputStream output = Files.newOutputStream(tmFile)) {
+            for(int idx = 0; idx < numReplayFrames; idx++) {
+                TelemetryMessage.newBuilder()
+                    .setSequenceNumber(idx)
+                    .setTelemetry(TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setReceiveTime(TimeUtil.fromNanos(startTime + idx * framePeriod))
+                            .setDataLinkContinuity(-1)
+                            .build())
+                        .setData(data)
+                        .build())
+                    .build()
+                    .writeDelimitedTo(output);
+            }
+        }
+        return tmFile;
+    }
+
+    /**
+     * @return The array the nanoTime of the reception of each frame is stored to by a frame handler of the user
+     */
+    private static long[] receiveTimes(TmServiceUser tmServiceUser, int numFrames) {
+        long[] receiveNanos = new long[numFrames];
+        AtomicInteger numReceived = new AtomicInteger();
+        tmServiceUser.setFrameHandler(tmMessage -> receiveNanos[numReceived.getAndIncrement()] = System.nanoTime());
+        return receiveNanos;
+    }
+}
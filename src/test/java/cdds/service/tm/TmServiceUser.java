@@ -2,12 +2,17 @@ package cdds.service.tm;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -16,12 +21,14 @@ import javax.naming.TimeLimitExceededException;
 import javax.net.ssl.SSLException;
 
 import com.google.protobuf.InvalidProtocolBufferException;
+import ccsds.cdds.v1.CddsServiceProvider.ServiceProviderAddress;
 import ccsds.cdds.v1.Telemetry.TelemetryMessage;
 import ccsds.cdds.v1.Types.EnumQoS;
 import ccsds.cdds.v1.Types.FrameVersion;
 import ccsds.cdds.v1.Types.GvcId;
 import ccsds.cdds.v1.Types.GvcIdList;
 import ccsds.cdds.v1.Types.NoArg;
+import ccsds.cdds.v1.tm.CddsTmService.TelemetryMessageBatch;
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
 import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpointList;
 import ccsds.cdds.v1.tm.TmServiceProviderGrpc;
@@ -29,39 +36,91 @@ import ccsds.cdds.v1.tm.TmServiceProviderGrpc.TmServiceProviderStub;
 import cdds.service.common.ClientMetaDataInterceptor;
 import cdds.service.common.EndpointUtil;
 import cdds.service.common.ProtoJsonUtil;
+import cdds.service.common.ProviderServer;
+import cdds.service.common.TransportProfile;
 import io.grpc.Channel;
 import io.grpc.ClientInterceptors;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslContext;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
 
 
 /**
- * Simple TM Service User to open a TM endpoint
- * and end TM messages. Allows to wait for responses.
+ * TM Service User to open TM endpoints and consume the received TM messages.
+ *
+ * Received frames and sync notifies are passed to the frame and sync notify handlers. The delivery mode selects
+ * the thread calling the handlers: the transport thread itself, or a delivery thread of an executor or a virtual
+ * thread per stream, to which the transport thread hands the messages over through a bounded ring without locks.
+ * The stream requests only as many messages as the ring holds, slow handlers hold back the provider through the
+ * flow control of the stream, never the transport thread. Handlers are called by one thread at a time,
+ * in the order of reception.
+ *
+ * The number of delivered frames and sync notifies can be awaited with CompletableFutures completed when
+ * a count is reached, the end of a stream with the future returned when opening it.
  */
 public class TmServiceUser {
 
+    /**
+     * The thread calling the frame and sync notify handlers
+     */
+    public enum Delivery {
+        INLINE,         // the transport thread, frame data aliasing the transport buffers is valid during the call only
+        EXECUTOR,       // a thread of the delivery executor, frames are handed over through a bounded ring
+        VIRTUAL_THREAD  // a virtual thread per stream on JDK 21 and later, otherwise as EXECUTOR
+    }
+
+    /** The default number of messages, or batches on batched streams, requested ahead of a delivery thread */
+    public static final int DEFAULT_DELIVERY_CAPACITY = 4096;
+
+    private static final ExecutorService DELIVERY_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "TM user delivery thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final TmServiceProviderStub tmProviderStub;             // the provider stub to open TM streams
-    private final StreamObserver<TelemetryMessage> tmUserStream;   // the stream to observer TM messages received
     private final ManagedChannel channel;
     private Throwable lastError;
     private final ClientMetaDataInterceptor interceptor = new ClientMetaDataInterceptor(TmServiceAuthorization.TM_ENDPOINT_KEY);
 
 
-    private final AtomicLong numFramesReceived = new AtomicLong(0);
+    private final CountConditions numFramesReceived = new CountConditions();
     private final AtomicLong numFramesExpected = new AtomicLong(0);
-    private final AtomicLong numSyncNotifyReceived = new AtomicLong(0);
+    private final CountConditions numSyncNotifyReceived = new CountConditions();
     private final AtomicLong numSyncNotifyExpected = new AtomicLong(0);
+    private final AtomicLong lastSequenceNumber = new AtomicLong(-1);
+    private final AtomicLong numDataDiscarded = new AtomicLong(0);
 
     private volatile long firstMessageTime = 0;
     private volatile long lastMessageTime = 0;
     private volatile int frameLength = 0;
     private volatile int protoTmLength = 0;
 
+    private volatile boolean dataAliasing = true;
+
+    private volatile boolean batching = false;
+
+    private volatile TmSequenceTracker sequenceTracker = null;
+
+    private volatile Consumer<TelemetryMessage> frameHandler = null;
+
+    private volatile Consumer<TelemetryMessage> syncNotifyHandler = null;
+
+    private volatile Delivery delivery = Delivery.INLINE;
+
+    private volatile Executor deliveryExecutor = null;
+
+    private volatile int deliveryCapacity = DEFAULT_DELIVERY_CAPACITY;
+
+    private volatile CompletableFuture<Void> streamCompletion = new CompletableFuture<>();
+
     private volatile Logger LOG;
 
     /**
@@ -79,6 +138,36 @@ public class TmServiceUser {
         return new TmServiceUser(channel);
     } 
 
+    /**
+     * Constructs and TM service user and connects to the provider, w/o security.
+     * @param host      The host of the TM provider
+     * @param port      The port of the TM provider
+     * @param profile   The tuning of the transport
+     * @throws InvalidProtocolBufferException
+     */
+    public static TmServiceUser buildUnsecureTmServiceUser(String host, int port, TransportProfile profile) throws InvalidProtocolBufferException {
+        ManagedChannel channel = profile.apply(NettyChannelBuilder.forAddress(host, port))
+            .usePlaintext()
+            .directExecutor() // improves performance by factor three
+            .build();
+
+        return new TmServiceUser(channel);
+    } 
+
+    /**
+     * Creates a TM User using an mTLS channel with the given address and configuration 
+     * @param address       The address of the TM provider, selects the transport profile
+     * @return the created service user
+     */
+    public static TmServiceUser buildSecureTmService(ServiceProviderAddress address) throws SSLException, InvalidProtocolBufferException {
+        return buildSecureTmService(address.getAddress(),
+                                    address.getPort(),
+                                    ProviderServer.resourceToFile(address.getRootCertificateFile()),
+                                    ProviderServer.resourceToFile(address.getCertificateFile()),
+                                    ProviderServer.resourceToFile(address.getPrivateKeyFile()),
+                                    TransportProfile.of(address)); 
+    } 
+
     /**
      * Created a TM User using an mTLS channel with the given arguments
      * @param host                  The host of the TM provider service
@@ -95,6 +184,27 @@ public class TmServiceUser {
                                                      File caCertificateFile,
                                                      File userCertificateFile,
                                                      File userKeyFile) throws SSLException, InvalidProtocolBufferException {
+        return buildSecureTmService(host, port, caCertificateFile, userCertificateFile, userKeyFile, TransportProfile.DEFAULT);
+    }
+
+    /**
+     * Created a TM User using an mTLS channel with the given arguments
+     * @param host                  The host of the TM provider service
+     * @param port                  The port of the TM provider service
+     * @param caCertificateFile     The CA certificate to verify the provider certificate
+     * @param userCertificateFile   The user certificate presented to the provider
+     * @param userKeyFile           The private user key for the mTLS handshake
+     * @param profile               The tuning of the transport
+     * @return                      The created TcServiceUser object.
+     * @throws SSLException
+     * @throws InvalidProtocolBufferException 
+     */
+    public static TmServiceUser buildSecureTmService(String host,
+                                                     int port,
+                                                     File caCertificateFile,
+                                                     File userCertificateFile,
+                                                     File userKeyFile,
+                                                     TransportProfile profile) throws SSLException, InvalidProtocolBufferException {
 
         SslContext sslContext =
             GrpcSslContexts.forClient()
@@ -105,19 +215,14 @@ public class TmServiceUser {
                 .build();
 
         ManagedChannel channel =
-            NettyChannelBuilder.forAddress(host, port)
-                //.eventLoopGroup(new NioEventLoopGroup(4))
-                //.channelType(NioSocketChannel.class)                
-                //.flowControlWindow(16 * 1024 * 1024)
-                //.withOption(ChannelOption.TCP_NODELAY, true)
-                //.withOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, 32 * 1024 * 1024)
-                //.withOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, 8 * 1024 * 1024)
+            profile.apply(NettyChannelBuilder.forAddress(host, port))
                 .directExecutor() // improves performance by factor three
                 .sslContext(sslContext)
                 .build();
     
         LogManager.getLogger().info("Secure TM Service User, host: " + host + " port: " + port + 
-            " created using \n\tCA: " + caCertificateFile + "\n\tuser cert: " + userCertificateFile + "\n\tuser key: " + userKeyFile);
+            " created using \n\tCA: " + caCertificateFile + "\n\tuser cert: " + userCertificateFile + "\n\tuser key: " + userKeyFile
+            + "\n\ttransport: " + profile);
 
         return new TmServiceUser(channel);            
     }
@@ -137,63 +242,6 @@ public class TmServiceUser {
         Channel interceptedChannel = ClientInterceptors.intercept(channel, interceptor);
         
         tmProviderStub = TmServiceProviderGrpc.newStub(interceptedChannel);
-
-        tmUserStream = new StreamObserver<TelemetryMessage>() {
-
-            @Override
-            public void onNext(TelemetryMessage tmMessage) {
-
-                if(tmMessage.hasTelemetry()) {
-                    if(firstMessageTime == 0) {
-                        firstMessageTime = System.nanoTime();
-                        frameLength = tmMessage.getTelemetry().getData().size(); // assume fix frame length, read only once
-                        protoTmLength = tmMessage.getSerializedSize();
-                    }
-
-                    long numFrames = TmServiceUser.this.numFramesReceived.incrementAndGet();
-                    if(numFrames >= TmServiceUser.this.numFramesExpected.get()) {
-                        lastMessageTime = System.nanoTime(); 
-                        synchronized(TmServiceUser.this.numFramesReceived) {
-                            TmServiceUser.this.numFramesReceived.notifyAll();
-                        }
-                    }
-
-                    if(LOG.isDebugEnabled()) { 
-                        LOG.debug("TM service user received " + numFrames + " frames:\n" + tmMessage);
-                    }
-                } else if(tmMessage.hasSyncNotify()) {
-                    if(firstMessageTime == 0) {
-                        firstMessageTime = System.nanoTime();
-                    }
-                    
-                    long numSyncNotifies = TmServiceUser.this.numSyncNotifyReceived.incrementAndGet(); 
-                    LOG.info("TM service user received " + numSyncNotifies + " sync notifies:\n" + tmMessage);
-
-                    if(numSyncNotifies >= TmServiceUser.this.numSyncNotifyReceived.get()) {
-                        lastMessageTime = System.nanoTime();
-                        synchronized(TmServiceUser.this.numSyncNotifyReceived) {
-                            TmServiceUser.this.numSyncNotifyReceived.notifyAll();
-                        }
-                    }
-                } else {
-                   LOG.info("TM service user received invalid TM message (not a frame or sync notify):\n" + tmMessage); 
-                }
-            }
-
-            @Override
-            public void onError(Throwable err) {
-               LOG.info("TM service user error called: " + err);
-                synchronized(this) {
-                    lastError = err;
-                    this.notifyAll();
-                }
-            }
-
-            @Override
-            public void onCompleted() {
-                LOG.info("TM service user completed called\"");
-            }
-        };
     }
 
     /**
@@ -243,9 +291,47 @@ public class TmServiceUser {
      * Call waitFor<TmFrames|SynNotify> to wait until reception.
      * @param   numExpectedFrames       The number of expected frames
      * @param   numExpectedSyncNotify   The number of expected sync notifies     
+     * @return  Completed after the last message of the stream was delivered, completed exceptionally on an error
      * @throws InvalidProtocolBufferException 
      */
-    public void openTelemetryEndpoint(TmServiceEndpoint tmEndpoint, long numExpectedFrames, long numExpectedSyncNotify) throws InvalidProtocolBufferException {
+    public CompletableFuture<Void> openTelemetryEndpoint(TmServiceEndpoint tmEndpoint, long numExpectedFrames, long numExpectedSyncNotify) throws InvalidProtocolBufferException {
+        return openTelemetryEndpoint(tmEndpoint, numExpectedFrames, numExpectedSyncNotify, tmProviderStub);
+    }
+
+    /**
+     * Reopens a TM stream after a lost connection, resuming after the given sequence number.
+     * The provider replays the missed messages before the live TM continues and reports messages
+     * no longer available in a SyncNotify dataDiscarded.
+     * @param   numExpectedFrames       The number of expected frames, including the frames received before
+     * @param   numExpectedSyncNotify   The number of expected sync notifies, including the sync notifies received before
+     * @param   resumeAfter             The last sequence number received, e.g. getLastSequenceNumber()
+     * @return  Completed after the last message of the stream was delivered, completed exceptionally on an error
+     * @throws InvalidProtocolBufferException
+     */
+    public CompletableFuture<Void> resumeTelemetryEndpoint(TmServiceEndpoint tmEndpoint, long numExpectedFrames, long numExpectedSyncNotify,
+            long resumeAfter) throws InvalidProtocolBufferException {
+        Metadata headers = new Metadata();
+        headers.put(TmServiceAuthorization.TM_RESUME_AFTER_KEY, Long.toString(resumeAfter));
+        return openTelemetryEndpoint(tmEndpoint, numExpectedFrames, numExpectedSyncNotify,
+            tmProviderStub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers)));
+    }
+
+    /**
+     * @return The sequence number of the last received message, -1 if none received
+     */
+    public long getLastSequenceNumber() {
+        return lastSequenceNumber.get();
+    }
+
+    /**
+     * @return The number of messages the provider reported as discarded in SyncNotify dataDiscarded
+     */
+    public long getNumDataDiscarded() {
+        return numDataDiscarded.get();
+    }
+
+    private CompletableFuture<Void> openTelemetryEndpoint(TmServiceEndpoint tmEndpoint, long numExpectedFrames, long numExpectedSyncNotify,
+            TmServiceProviderStub tmProviderStub) throws InvalidProtocolBufferException {
         LOG = LogManager.getLogger("cdds.tm.user." + EndpointUtil.toString(tmEndpoint.getGvcIds()) + "");
 
         // set the endpoint meta data into the interceptor
@@ -254,8 +340,132 @@ public class TmServiceUser {
         this.numFramesExpected.set(numExpectedFrames);
         this.numSyncNotifyExpected.set(numExpectedSyncNotify);
 
-        tmProviderStub.openTelemetryEndpoint(NoArg.newBuilder().build(), tmUserStream);
+        UserStream tmUserStream = new UserStream();
+        streamCompletion = tmUserStream.completion;
+
+        // handed over frame data must not alias the transport buffers
+        boolean aliasing = dataAliasing && tmUserStream.handOff == null;
+        if(batching) {
+            TmMessageMarshaller.openTelemetryEndpointBatched(tmProviderStub, NoArg.newBuilder().build(), aliasing, tmUserStream);
+        } else if(aliasing) {
+            TmMessageMarshaller.openTelemetryEndpoint(tmProviderStub, NoArg.newBuilder().build(), tmUserStream);
+        } else {
+            tmProviderStub.openTelemetryEndpoint(NoArg.newBuilder().build(), tmUserStream);
+        }
         LOG.info("Opened telemetry endpoint called");
+        return tmUserStream.completion;
+    }
+
+    /**
+     * Sets the handler of the received frames. Applies immediately, none by default.
+     * @param frameHandler  Called with each received TelemetryMessage holding a frame, null for none
+     */
+    public void setFrameHandler(Consumer<TelemetryMessage> frameHandler) {
+        this.frameHandler = frameHandler;
+    }
+
+    /**
+     * Sets the handler of the received sync notifies. Applies immediately, none by default.
+     * @param syncNotifyHandler Called with each received TelemetryMessage holding a SyncNotify, null for none
+     */
+    public void setSyncNotifyHandler(Consumer<TelemetryMessage> syncNotifyHandler) {
+        this.syncNotifyHandler = syncNotifyHandler;
+    }
+
+    /**
+     * Sets the thread calling the handlers with the default capacity and executor.
+     * Applies to TM streams opened afterwards, INLINE by default.
+     * @param delivery      The delivery mode
+     */
+    public void setDelivery(Delivery delivery) {
+        setDelivery(delivery, DEFAULT_DELIVERY_CAPACITY, null);
+    }
+
+    /**
+     * Sets the thread calling the handlers. Frame data handed over to a delivery thread is copied,
+     * data aliasing only applies to INLINE delivery. Applies to TM streams opened afterwards, INLINE by default.
+     * @param delivery      The delivery mode
+     * @param capacity      The number of messages, or batches on batched streams, requested ahead of the delivery
+     * @param executor      The executor running the EXECUTOR delivery, null for a shared cached thread pool
+     */
+    public void setDelivery(Delivery delivery, int capacity, Executor executor) {
+        this.delivery = delivery;
+        this.deliveryCapacity = capacity;
+        this.deliveryExecutor = executor;
+    }
+
+    /**
+     * Provides a future completed when the given number of frames is received
+     * @param numFrames     The number of frames, counted since the creation of the user
+     * @return              Completed with the number of received frames, completed exceptionally on a stream error
+     */
+    public CompletableFuture<Long> whenFramesReceived(long numFrames) {
+        return numFramesReceived.when(numFrames);
+    }
+
+    /**
+     * Provides a future completed when the given number of sync notifies is received
+     * @param numSyncNotify The number of sync notifies, counted since the creation of the user
+     * @return              Completed with the number of received sync notifies, completed exceptionally on a stream error
+     */
+    public CompletableFuture<Long> whenSyncNotifyReceived(long numSyncNotify) {
+        return numSyncNotifyReceived.when(numSyncNotify);
+    }
+
+    /**
+     * @return Completed after the last message of the last opened stream was delivered
+     */
+    public CompletableFuture<Void> whenCompleted() {
+        return streamCompletion;
+    }
+
+    /**
+     * @return The number of received frames
+     */
+    public long getNumFramesReceived() {
+        return numFramesReceived.get();
+    }
+
+    /**
+     * @return The number of received sync notifies
+     */
+    public long getNumSyncNotifyReceived() {
+        return numSyncNotifyReceived.get();
+    }
+
+    /**
+     * Sets whether the frame data of received messages aliases the transport buffers instead of being copied.
+     * Applies to TM streams opened afterwards, enabled by default.
+     * @param dataAliasing  true to alias the frame data, false to copy it
+     */
+    public void setDataAliasing(boolean dataAliasing) {
+        this.dataAliasing = dataAliasing;
+    }
+
+    /**
+     * Sets whether TM streams are opened as batched streams. The messages of received batches are
+     * delivered one by one like on unbatched streams. Applies to TM streams opened afterwards, disabled by default.
+     * @param batching      true to open batched streams
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Sets the tracker checking the sequence numbers of received messages for gaps, duplicates and
+     * messages out of order. Duplicates the tracker drops are not counted and not logged.
+     * Applies immediately, the tracker continues across reopened or resumed TM streams. Disabled by default.
+     * @param sequenceTracker   The tracker, null to disable tracking
+     */
+    public void setSequenceTracker(TmSequenceTracker sequenceTracker) {
+        this.sequenceTracker = sequenceTracker;
+    }
+
+    /**
+     * @return The tracker of the received sequence numbers, null if not tracking
+     */
+    public TmSequenceTracker getSequenceTracker() {
+        return sequenceTracker;
     }
 
     /**
@@ -315,32 +525,20 @@ public class TmServiceUser {
      * @return Returns the number of received reports.
      * @throws TimeLimitExceededException 
      */
-    private long waitForTmMessages(long numExpectedMessages, AtomicLong numReceivedTmMessages, long timeout, String messageType) throws TimeLimitExceededException {
-
-        long deadline = System.currentTimeMillis() + timeout + 200; // 200: a margin
-
-        synchronized(numReceivedTmMessages) {
-            while(numReceivedTmMessages.get() < numExpectedMessages) {
-                try {
-                    if(LOG.isDebugEnabled()) {
-                        LOG.debug("wait for " + numFramesReceived.get() + "/" + numExpectedMessages + " " + messageType + " received");
-                    }
-                    numReceivedTmMessages.wait(500);
-                    System.out.print("\rReceived: " + numReceivedTmMessages.get() 
-                        + " / " + numExpectedMessages + " messages");
-                    System.out.flush();
-                    if(LOG.isDebugEnabled()) {
-                        LOG.debug("wait for TM frames returned. Frames: " + numReceivedTmMessages.get());
-                    }
-                } catch (InterruptedException e) {
-                }
-                
-                if(System.currentTimeMillis() > deadline) {
-                    LOG.info("Timeout, did not receive " + numExpectedMessages + " within " + timeout + " ms");
-                    throw new TimeLimitExceededException("Did not receive " + numExpectedMessages + " TM messages within " + timeout + " ms");
-                }
-            }   
-            System.out.println();
+    private long waitForTmMessages(long numExpectedMessages, CountConditions numReceivedTmMessages, long timeout, String messageType) throws TimeLimitExceededException {
+
+        try {
+            numReceivedTmMessages.when(numExpectedMessages).get(timeout + 200, TimeUnit.MILLISECONDS); // 200: a margin
+        } catch(TimeoutException e) {
+            LOG.info("Timeout, did not receive " + numExpectedMessages + " within " + timeout + " ms, received: "
+                + numReceivedTmMessages.get());
+            throw new TimeLimitExceededException("Did not receive " + numExpectedMessages + " TM messages within " + timeout + " ms");
+        } catch(ExecutionException e) {
+            LOG.info("Stream failed before " + numExpectedMessages + " " + messageType + " received: " + e.getCause());
+            throw new TimeLimitExceededException("Stream failed before " + numExpectedMessages + " TM messages received: " + e.getCause());
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimeLimitExceededException("Interrupted before " + numExpectedMessages + " TM messages received");
         }
 
         final double duration = (lastMessageTime - firstMessageTime) / 1E9;
@@ -389,4 +587,277 @@ public class TmServiceUser {
 
         return null;
     }
+
+    /**
+     * Receives the TM messages of one stream on the transport thread and delivers them
+     * inline or hands them over to the delivery thread. A stream handing over requests the messages itself,
+     * as many as the hand-off queue holds and then one per delivered message or batch.
+     */
+    private class UserStream implements ClientResponseObserver<NoArg, TelemetryMessage>, TmMessageMarshaller.BatchStream {
+
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final TmHandOffQueue handOff;
+        private final ExecutorService streamExecutor;   // the virtual thread executor of the stream, shut down at the end
+        private volatile ClientCallStreamObserver<NoArg> callStream;
+        private volatile Throwable error;
+
+        UserStream() {
+            Delivery mode = delivery;
+            ExecutorService virtualThreads = mode == Delivery.VIRTUAL_THREAD ? newVirtualThreadExecutor() : null;
+            Executor executor = virtualThreads != null ? virtualThreads : deliveryExecutor != null ? deliveryExecutor : DELIVERY_EXECUTOR;
+
+            this.streamExecutor = virtualThreads;
+            this.handOff = mode == Delivery.INLINE ? null
+                : new TmHandOffQueue(deliveryCapacity, executor, this::deliverHandedOff, this::request, this::end);
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<NoArg> requestStream) {
+            if(handOff != null) {
+                callStream = requestStream;
+                requestStream.disableAutoRequestWithInitial(handOff.getCapacity());
+            }
+        }
+
+        @Override
+        public void onNext(TelemetryMessage tmMessage) {
+            if(firstMessageTime == 0) {
+                firstMessageTime = System.nanoTime();
+            }
+
+            if(handOff != null) {
+                handOff.offer(tmMessage);
+            } else {
+                receive(tmMessage);
+            }
+        }
+
+        @Override
+        public void onNextBatch(TelemetryMessageBatch tmBatch) {
+            if(firstMessageTime == 0) {
+                firstMessageTime = System.nanoTime();
+            }
+
+            if(handOff != null) {
+                handOff.offer(tmBatch);
+            } else {
+                tmBatch.getMessagesList().forEach(this::receive);
+            }
+        }
+
+        /**
+         * Delivers a message or batch handed over, called by the delivery thread
+         */
+        private void deliverHandedOff(Object message) {
+            if(message instanceof TelemetryMessageBatch) {
+                ((TelemetryMessageBatch) message).getMessagesList().forEach(this::receive);
+            } else {
+                receive((TelemetryMessage) message);
+            }
+        }
+
+        /**
+         * Requests more messages once handed over messages were delivered, called by the delivery thread
+         */
+        private void request(int numMessages) {
+            ClientCallStreamObserver<NoArg> stream = callStream;
+            if(stream != null) {
+                stream.request(numMessages);
+            }
+        }
+
+        /**
+         * Drops duplicates and delivers a message to the handlers, called by the transport or the delivery thread
+         */
+        private void receive(TelemetryMessage tmMessage) {
+            if(tmMessage.hasSequenceNumber()) {
+                TmSequenceTracker tracker = sequenceTracker;
+                if(tracker != null && tracker.track(tmMessage.getSequenceNumber()) == false) {
+                    return; // dropped duplicate
+                }
+                lastSequenceNumber.set(tmMessage.getSequenceNumber());
+            }
+
+            deliver(tmMessage);
+        }
+
+        @Override
+        public void onError(Throwable err) {
+            LOG.info("TM service user error called: " + err);
+            synchronized(TmServiceUser.this) {
+                lastError = err;
+                TmServiceUser.this.notifyAll();
+            }
+
+            error = err;
+            if(handOff != null) {
+                handOff.end();
+            } else {
+                end();
+            }
+        }
+
+        @Override
+        public void onCompleted() {
+            LOG.info("TM service user completed called");
+            if(handOff != null) {
+                handOff.end();
+            } else {
+                end();
+            }
+        }
+
+        /**
+         * Delivers a message to the handlers, called by the transport or the delivery thread
+         */
+        private void deliver(TelemetryMessage tmMessage) {
+            if(tmMessage.hasTelemetry()) {
+                if(frameLength == 0) {
+                    frameLength = tmMessage.getTelemetry().getData().size(); // assume fix frame length, read only once
+                    protoTmLength = tmMessage.getSerializedSize();
+                }
+
+                callHandler(frameHandler, tmMessage);
+
+                long numFrames = numFramesReceived.increment();
+                if(numFrames >= numFramesExpected.get()) {
+                    lastMessageTime = System.nanoTime();
+                }
+
+                if(LOG.isDebugEnabled()) { 
+                    LOG.debug("TM service user received " + numFrames + " frames:\n" + tmMessage);
+                }
+            } else if(tmMessage.hasSyncNotify()) {
+                if(tmMessage.getSyncNotify().hasDataDiscarded()) {
+                    numDataDiscarded.addAndGet(tmMessage.getSyncNotify().getDataDiscarded());
+                }
+
+                callHandler(syncNotifyHandler, tmMessage);
+
+                long numSyncNotifies = numSyncNotifyReceived.increment(); 
+                LOG.info("TM service user received " + numSyncNotifies + " sync notifies:\n" + tmMessage);
+
+                if(numSyncNotifies >= numSyncNotifyExpected.get()) {
+                    lastMessageTime = System.nanoTime();
+                }
+            } else {
+               LOG.info("TM service user received invalid TM message (not a frame or sync notify):\n" + tmMessage); 
+            }
+        }
+
+        private void callHandler(Consumer<TelemetryMessage> handler, TelemetryMessage tmMessage) {
+            if(handler == null) {
+                return;
+            }
+
+            try {
+                handler.accept(tmMessage);
+            } catch(RuntimeException ex) {
+                LOG.warn("TM service user handler failed: " + ex);
+            }
+        }
+
+        /**
+         * Ends the stream after the last message was delivered
+         */
+        private void end() {
+            if(streamExecutor != null) {
+                streamExecutor.shutdown();
+            }
+
+            if(error != null) {
+                numFramesReceived.fail(error);
+                numSyncNotifyReceived.fail(error);
+                completion.completeExceptionally(error);
+            } else {
+                completion.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task, available from JDK 21
+     * @return The executor, null if virtual threads are not available
+     */
+    private ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException ex) {
+            LOG.info("Virtual threads not available on Java " + Runtime.version().feature() + ", delivery by the executor");
+            return null;
+        }
+    }
+
+    /**
+     * A counter completing futures waiting for counts. The counter is incremented by a single thread
+     * without locking, only reaching the lowest awaited count takes the lock of the waiting futures.
+     */
+    private static class CountConditions {
+
+        private final AtomicLong count = new AtomicLong(0);
+        private final List<Long> counts = new ArrayList<>();
+        private final List<CompletableFuture<Long>> futures = new ArrayList<>();
+        private volatile long nextCount = Long.MAX_VALUE; // the lowest awaited count
+
+        long get() {
+            return count.get();
+        }
+
+        long increment() {
+            long value = count.incrementAndGet();
+            if(value >= nextCount) {
+                complete(value);
+            }
+            return value;
+        }
+
+        CompletableFuture<Long> when(long awaitedCount) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            synchronized(futures) {
+                counts.add(awaitedCount);
+                futures.add(future);
+                nextCount = Math.min(nextCount, awaitedCount);
+            }
+
+            // the count may have been reached before the awaited count was visible to the incrementing thread
+            long value = count.get();
+            if(value >= awaitedCount) {
+                complete(value);
+            }
+            return future;
+        }
+
+        void fail(Throwable error) {
+            synchronized(futures) {
+                futures.forEach(future -> future.completeExceptionally(error));
+                counts.clear();
+                futures.clear();
+                nextCount = Long.MAX_VALUE;
+            }
+        }
+
+        private void complete(long value) {
+            List<CompletableFuture<Long>> completed = new ArrayList<>();
+            synchronized(futures) {
+                long next = Long.MAX_VALUE;
+                Iterator<Long> countIter = counts.iterator();
+                Iterator<CompletableFuture<Long>> futureIter = futures.iterator();
+                while(countIter.hasNext()) {
+                    long awaitedCount = countIter.next();
+                    CompletableFuture<Long> future = futureIter.next();
+                    if(awaitedCount <= value) {
+                        completed.add(future);
+                        countIter.remove();
+                        futureIter.remove();
+                    } else {
+                        next = Math.min(next, awaitedCount);
+                    }
+                }
+                nextCount = next;
+            }
+
+            // outside the lock, dependent actions may run in the completing thread
+            completed.forEach(future -> future.complete(value));
+        }
+    }
 }
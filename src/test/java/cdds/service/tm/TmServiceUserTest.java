@@ -0,0 +1,151 @@
+package cdds.service.tm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProviderServer;
+import cdds.util.TimeUtil;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Test for the consumer API of the TM service user
+ *
+ * 1) testDelivery - Receives frames with a frame handler for each delivery mode on unbatched and batched streams,
+ *                   with a small hand-off ring limiting the requested messages, checks order, count conditions,
+ *                   completion and delivery thread
+ * 2) testSyncNotifyAndError - Receives a sync notify and a frame handed over to the delivery thread followed
+ *                             by a stream error, checks the handlers and the failed conditions
+ */
+public class TmServiceUserTest {
+
+    private static final int PROVIDER_PORT = 7676;
+    private static final int FRAME_LENGTH = 1115;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void testDelivery() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        final long numFrames = 20_000;
+
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        try {
+            for(TmServiceUser.Delivery delivery : TmServiceUser.Delivery.values()) {
+                for(boolean batching : new boolean[] {false, true}) {
+                    tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(numFrames, FRAME_LENGTH));
+
+                    TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+                    tmServiceUser.setDelivery(delivery, 64, null);
+                    tmServiceUser.setBatching(batching);
+
+                    AtomicLong numHandled = new AtomicLong();
+                    AtomicLong numUnordered = new AtomicLong();
+                    List<String> threads = new CopyOnWriteArrayList<>();
+                    tmServiceUser.setFrameHandler(tmMessage -> {
+                        if(tmMessage.getSequenceNumber() != numHandled.getAndIncrement()) {
+                            numUnordered.incrementAndGet();
+                        }
+                        if(threads.isEmpty()) {
+                            threads.add(Thread.currentThread().getName());
+                        }
+                    });
+
+                    CompletableFuture<Long> half = tmServiceUser.whenFramesReceived(numFrames / 2);
+                    CompletableFuture<Void> completion = tmServiceUser.openTelemetryEndpoint(tmEndpoint, numFrames, 0);
+                    CompletableFuture<Long> all = tmServiceUser.whenFramesReceived(numFrames);
+
+                    completion.get(30, TimeUnit.SECONDS);
+                    assertTrue(half.get(1, TimeUnit.SECONDS) >= numFrames / 2);
+                    assertEquals(numFrames, all.get(1, TimeUnit.SECONDS));
+                    assertEquals(numFrames, numHandled.get());
+                    assertEquals(0, numUnordered.get());
+                    assertEquals(numFrames, tmServiceUser.getNumFramesReceived());
+
+                    // already reached
+                    assertEquals(numFrames, tmServiceUser.whenFramesReceived(10).get(1, TimeUnit.SECONDS));
+                    tmServiceUser.shutdown();
+
+                    System.out.println(delivery + (batching ? " batched" : "") + " delivery by " + threads.get(0));
+                    if(delivery == TmServiceUser.Delivery.EXECUTOR) {
+                        assertEquals("TM user delivery thread", threads.get(0));
+                    }
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSyncNotifyAndError() throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        TmFanOutHubTest.ControlledProduction production = new TmFanOutHubTest.ControlledProduction();
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, production);
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        try {
+            TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+            tmServiceUser.setDelivery(TmServiceUser.Delivery.EXECUTOR);
+
+            List<TelemetryMessage> frames = new CopyOnWriteArrayList<>();
+            List<TelemetryMessage> syncNotifies = new CopyOnWriteArrayList<>();
+            tmServiceUser.setFrameHandler(frames::add);
+            tmServiceUser.setSyncNotifyHandler(syncNotifies::add);
+
+            CompletableFuture<Long> syncNotify = tmServiceUser.whenSyncNotifyReceived(1);
+            CompletableFuture<Long> twoFrames = tmServiceUser.whenFramesReceived(2);
+            CompletableFuture<Void> completion = tmServiceUser.openTelemetryEndpoint(tmEndpoint, 2, 1);
+
+            StreamObserver<TelemetryMessage> producer = production.producer.get(30, TimeUnit.SECONDS);
+            producer.onNext(TelemetryMessage.newBuilder()
+                .setSyncNotify(SyncNotify.newBuilder().setTime(TimeUtil.now()).setDataDiscarded(3).build())
+                .build());
+            producer.onNext(TelemetryMessage.newBuilder()
+                .setSequenceNumber(0)
+                .setTelemetry(TelemetryData.newBuilder().setData(ByteString.copyFromUtf8("frame")).build())
+                .build());
+
+            assertEquals(1, syncNotify.get(30, TimeUnit.SECONDS));
+            producer.onError(Status.INTERNAL.withDescription("production failed").asRuntimeException());
+
+            ExecutionException failed = assertThrows(ExecutionException.class, () -> completion.get(30, TimeUnit.SECONDS));
+            assertEquals(Status.Code.INTERNAL, Status.fromThrowable(failed.getCause()).getCode());
+            assertThrows(ExecutionException.class, () -> twoFrames.get(1, TimeUnit.SECONDS));
+
+            assertEquals(1, frames.size());
+            assertEquals(ByteString.copyFromUtf8("frame"), frames.get(0).getTelemetry().getData());
+            assertEquals(1, syncNotifies.size());
+            assertEquals(3, tmServiceUser.getNumDataDiscarded());
+            tmServiceUser.shutdown();
+        } finally {
+            server.stop();
+        }
+    }
+}
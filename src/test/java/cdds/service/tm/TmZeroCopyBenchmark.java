@@ -0,0 +1,94 @@
+package cdds.service.tm;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.TimeLimitExceededException;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.tm.CddsTmService.TmServiceEndpoint;
+import cdds.service.common.InterceptedService;
+import cdds.service.common.ProviderServer;
+
+/**
+ * Benchmark of the TM stream of TmServiceTest (unsecure, 1115 byte frames) for the message encodings
+ * of the production and with and without frame data aliasing at the user.
+ * Run with: mvn test -Pbenchmark -Dtest=TmZeroCopyBenchmark
+ *
+ * Reports the bit rate of the frame data and the heap bytes allocated per frame by all threads.
+ * Each heap copy of a frame is an allocation, the copies into the pooled transport buffers are not counted.
+ * Heap copies of the frame data per frame:
+ *   BUILDER, copying user      provider: serialization buffer, user: parse buffer and data field
+ *   TEMPLATE, copying user     provider: encoded message, user: parse buffer and data field
+ *   ZERO_COPY, copying user    user: parse buffer and data field
+ *   ZERO_COPY, aliasing user   none
+ */
+@Tag("benchmark")
+public class TmZeroCopyBenchmark {
+
+    private static final int PROVIDER_PORT = 7668;
+    private static final int FRAME_LENGTH = 1115;
+    private static final long NUM_FRAMES = 750_000;
+    private static final long TIMEOUT = 60_000;
+    private static final int NUM_RUNS = 3;
+
+    private final TmServiceEndpoint tmEndpoint = TmServiceUser.getTmEndpoint("myProvider", "myGroundStation", "theSpacecraft",
+        4711, FrameVersion.AOS, 1);
+
+    @Test
+    public void benchmarkTmStream() throws IOException, TimeLimitExceededException, InterruptedException {
+        for(int run = 0; run < NUM_RUNS; run++) {
+            runTmStream(TmProductionNFrames.Encoding.BUILDER, false);
+            runTmStream(TmProductionNFrames.Encoding.TEMPLATE, false);
+            runTmStream(TmProductionNFrames.Encoding.ZERO_COPY, false);
+            runTmStream(TmProductionNFrames.Encoding.ZERO_COPY, true);
+        }
+    }
+
+    private void runTmStream(TmProductionNFrames.Encoding encoding, boolean dataAliasing)
+            throws IOException, TimeLimitExceededException, InterruptedException {
+        TmServiceProvider tmProvider = new TmServiceProvider();
+        tmProvider.addTmProduction(tmEndpoint, new TmProductionNFrames(NUM_FRAMES, FRAME_LENGTH, encoding));
+        ProviderServer server = new ProviderServer(PROVIDER_PORT, new InterceptedService[]{tmProvider});
+        server.start();
+        tmProvider.addAuthorizedTmEndpoint(tmEndpoint);
+
+        TmServiceUser tmServiceUser = TmServiceUser.buildUnsecureTmServiceUser("localhost", PROVIDER_PORT);
+        tmServiceUser.setDataAliasing(dataAliasing);
+
+        Map<Long, Long> allocated = allocatedBytes();
+        long start = System.nanoTime();
+        tmServiceUser.openTelemetryEndpoint(tmEndpoint, NUM_FRAMES, 0);
+        tmServiceUser.waitForTmFrames(TIMEOUT);
+        long nanos = System.nanoTime() - start;
+
+        long allocatedSum = 0;
+        for(Map.Entry<Long, Long> thread : allocatedBytes().entrySet()) {
+            allocatedSum += thread.getValue() - allocated.getOrDefault(thread.getKey(), 0L);
+        }
+
+        tmServiceUser.shutdown();
+        server.stop();
+
+        System.out.println(String.format("%-10s %-9s %8.1f Mbit/s %10.1f bytes/frame allocated",
+            encoding, dataAliasing ? "aliasing" : "copying", NUM_FRAMES * FRAME_LENGTH * 8 * 1E3 / nanos,
+            (double) allocatedSum / NUM_FRAMES));
+    }
+
+    private static Map<Long, Long> allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] threadIds = threads.getAllThreadIds();
+        long[] allocated = threads.getThreadAllocatedBytes(threadIds);
+
+        Map<Long, Long> allocatedByThread = new HashMap<>();
+        for(int idx = 0; idx < threadIds.length; idx++) {
+            allocatedByThread.put(threadIds[idx], allocated[idx]);
+        }
+        return allocatedByThread;
+    }
+}
@@ -0,0 +1,165 @@
+package cdds.tm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.UnsafeByteOperations;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+
+/**
+ * A TelemetryMessage in its serialized wire format, e.g. created by a TmMessageTemplate.
+ * The bytes are sent as they are, without building and serializing a TelemetryMessage.
+ *
+ * The message consists of the encoded bytes followed by an optional payload. The payload allows to
+ * send the frame data, the last field of the message, from where it is without copying it into the
+ * encoded bytes, e.g. from a ByteString wrapping a buffer with UnsafeByteOperations.unsafeWrap().
+ */
+public class EncodedTelemetryMessage {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    // chunk buffer to write direct payloads to streams
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    private final byte[] bytes;
+    private final int length;
+    private final ByteString payload;
+
+    /**
+     * Creates the encoded message
+     * @param bytes     The buffer holding the serialized TelemetryMessage from index 0. The buffer must not be modified afterwards.
+     * @param length    The length of the serialized TelemetryMessage
+     */
+    public EncodedTelemetryMessage(byte[] bytes, int length) {
+        this(bytes, length, ByteString.EMPTY);
+    }
+
+    /**
+     * Creates the encoded message from encoded bytes and a payload
+     * @param bytes     The buffer holding the serialized TelemetryMessage up to the payload from index 0.
+     *                  The buffer must not be modified afterwards.
+     * @param length    The length of the serialized TelemetryMessage up to the payload
+     * @param payload   The payload completing the serialized message. The referenced data must not be modified
+     *                  until the message is sent.
+     */
+    public EncodedTelemetryMessage(byte[] bytes, int length, ByteString payload) {
+        this.bytes = bytes;
+        this.length = length;
+        this.payload = payload;
+    }
+
+    /**
+     * @return The length of the serialized message, including the payload
+     */
+    public int getSerializedSize() {
+        return length + payload.size();
+    }
+
+    /**
+     * @return The buffer holding the serialized message up to the payload from index 0 to getEncodedLength()
+     */
+    public byte[] getBuffer() {
+        return bytes;
+    }
+
+    /**
+     * @return The length of the serialized message in the buffer
+     */
+    public int getEncodedLength() {
+        return length;
+    }
+
+    /**
+     * @return The payload following the bytes in the buffer, empty if the buffer holds the complete message
+     */
+    public ByteString getPayload() {
+        return payload;
+    }
+
+    /**
+     * Writes the serialized message
+     * @param output        The stream to write to
+     * @throws IOException
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(bytes, 0, length);
+        writePayload(payload, output);
+    }
+
+    /**
+     * Writes a payload to a stream. A payload backed by an array is written from the array,
+     * ByteString.writeTo() would copy it first.
+     * @param payload       The payload to write
+     * @param output        The stream to write to
+     * @throws IOException
+     */
+    public static void writePayload(ByteString payload, OutputStream output) throws IOException {
+        if(payload.isEmpty() == false) {
+            UnsafeByteOperations.unsafeWriteTo(payload, new StreamByteOutput(output));
+        }
+    }
+
+    /**
+     * Parses the serialized message, e.g. for logging or recording
+     * @return The parsed TelemetryMessage
+     * @throws InvalidProtocolBufferException
+     */
+    public TelemetryMessage toMessage() throws InvalidProtocolBufferException {
+        if(payload.isEmpty()) {
+            return TelemetryMessage.parser().parseFrom(bytes, 0, length);
+        }
+        return TelemetryMessage.parser().parseFrom(UnsafeByteOperations.unsafeWrap(bytes, 0, length).concat(payload));
+    }
+
+    /**
+     * Writes the payload to a stream without copying arrays. Direct buffers are written in chunks.
+     */
+    private static class StreamByteOutput extends ByteOutput {
+
+        private final OutputStream output;
+
+        StreamByteOutput(OutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(byte value) throws IOException {
+            output.write(value);
+        }
+
+        @Override
+        public void write(byte[] value, int offset, int length) throws IOException {
+            output.write(value, offset, length);
+        }
+
+        @Override
+        public void writeLazy(byte[] value, int offset, int length) throws IOException {
+            output.write(value, offset, length);
+        }
+
+        @Override
+        public void write(ByteBuffer value) throws IOException {
+            if(value.hasArray()) {
+                output.write(value.array(), value.arrayOffset() + value.position(), value.remaining());
+                return;
+            }
+            byte[] chunk = CHUNK.get();
+            ByteBuffer source = value.duplicate();
+            while(source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                output.write(chunk, 0, length);
+            }
+        }
+
+        @Override
+        public void writeLazy(ByteBuffer value) throws IOException {
+            write(value);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package cdds.tm;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+
+/**
+ * Encodes TelemetryMessages carrying TelemetryData from a template.
+ *
+ * The constant parts of the message (aperture ID of the first reception meta data, further reception meta data,
+ * frame quality and private annotations) are serialized once. Per frame only the sequence number, the receive time
+ * and data link continuity of the first reception meta data and the frame data are encoded around the constant parts.
+ * No builders or messages are created per frame. The result is byte identical to the serialized TelemetryMessage
+ * built with the same values.
+ *
+ * The frame data is the last field of the message. wrap() encodes the message up to the data and refers to
+ * the data, which is then copied only once by the transport.
+ */
+public class TmMessageTemplate {
+
+    private static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    // TelemetryMessage
+    private static final int TAG_SEQUENCE_NUMBER = 0x08;       // 1, varint
+    private static final int TAG_TELEMETRY = 0x52;             // 10, length delimited
+    // TelemetryData
+    private static final int TAG_META_DATA = 0x0a;             // 1, length delimited
+    private static final int TAG_DATA = 0xf2;                  // 30, length delimited, 2 byte tag 0xf2 0x01
+    // ReceptionMetaData
+    private static final int TAG_RECEIVE_TIME = 0x0a;          // 1, length delimited
+    private static final int TAG_CONTINUITY = 0xa0;            // 20, varint, 2 byte tag 0xa0 0x01
+    // DateTime
+    private static final int TAG_DAYS = 0x08;                  // 1, varint
+    private static final int TAG_MS_OF_DAY = 0x50;             // 10, varint
+    private static final int TAG_PICO_SECS_OF_MS = 0xa0;       // 20, varint, 2 byte tag 0xa0 0x01
+
+    private final byte[] metaDataConstant;      // fields of the first ReceptionMetaData after the receive time
+    private final byte[] telemetryConstant;     // fields of the TelemetryData between the first ReceptionMetaData and data
+
+    /**
+     * Creates the template. The receive time and data link continuity of the first reception meta data
+     * and the data of the template are ignored.
+     * @param template  The TelemetryData providing the constant parts, must have a first reception meta data
+     */
+    public TmMessageTemplate(TelemetryData template) {
+        metaDataConstant = template.getMetaData(0).toBuilder()
+            .clearReceiveTime()
+            .clearDataLinkContinuity()
+            .build()
+            .toByteArray();
+
+        telemetryConstant = template.toBuilder()
+            .removeMetaData(0)
+            .clearData()
+            .build()
+            .toByteArray();
+    }
+
+    /**
+     * Provides the size of an encoded message
+     * @param sequenceNumber    The sequence number
+     * @param receiveTime       The receive time in nanoseconds since the CCSDS epoch
+     * @param continuity        The data link continuity
+     * @param dataLength        The length of the frame data
+     * @return                  The size of the encoded message
+     */
+    public int encodedSize(long sequenceNumber, long receiveTime, long continuity, int dataLength) {
+        int telemetryLength = telemetryLength(metaDataLength(dateTimeLength(receiveTime), continuity), dataLength);
+        return 1 + varintSize(sequenceNumber) + 1 + varintSize(telemetryLength) + telemetryLength;
+    }
+
+    /**
+     * Encodes a message into a new buffer
+     * @param sequenceNumber    The sequence number
+     * @param receiveTime       The receive time in nanoseconds since the CCSDS epoch
+     * @param continuity        The data link continuity
+     * @param data              The frame data
+     * @return                  The encoded message
+     */
+    public EncodedTelemetryMessage encode(long sequenceNumber, long receiveTime, long continuity, ByteString data) {
+        byte[] buffer = new byte[encodedSize(sequenceNumber, receiveTime, continuity, data.size())];
+        int length = encode(sequenceNumber, receiveTime, continuity, data, buffer, 0);
+        return new EncodedTelemetryMessage(buffer, length);
+    }
+
+    /**
+     * Encodes a message referring to the data instead of copying it. Only the part of the message
+     * up to the data is encoded into a new buffer, the data is sent from where it is.
+     * @param sequenceNumber    The sequence number
+     * @param receiveTime       The receive time in nanoseconds since the CCSDS epoch
+     * @param continuity        The data link continuity
+     * @param data              The frame data, e.g. wrapping a buffer with UnsafeByteOperations.unsafeWrap().
+     *                          The data must not be modified until the message is sent.
+     * @return                  The encoded message
+     */
+    public EncodedTelemetryMessage wrap(long sequenceNumber, long receiveTime, long continuity, ByteString data) {
+        byte[] buffer = new byte[encodedSize(sequenceNumber, receiveTime, continuity, data.size()) - data.size()];
+        int length = encodeHeader(sequenceNumber, receiveTime, continuity, data.size(), buffer, 0);
+        return new EncodedTelemetryMessage(buffer, length, data);
+    }
+
+    /**
+     * Encodes a message into the given buffer
+     * @param sequenceNumber    The sequence number
+     * @param receiveTime       The receive time in nanoseconds since the CCSDS epoch
+     * @param continuity        The data link continuity
+     * @param data              The frame data
+     * @param buffer            The buffer to encode to, must hold encodedSize() bytes from offset
+     * @param offset            The offset in the buffer
+     * @return                  The offset after the encoded message
+     */
+    public int encode(long sequenceNumber, long receiveTime, long continuity, ByteString data, byte[] buffer, int offset) {
+        int pos = encodeHeader(sequenceNumber, receiveTime, continuity, data.size(), buffer, offset);
+        data.copyTo(buffer, pos);
+        return pos + data.size();
+    }
+
+    /**
+     * Encodes a message up to the frame data into the given buffer. The encoded message is completed
+     * by the dataLength bytes of the frame data following the returned offset.
+     * @param sequenceNumber    The sequence number
+     * @param receiveTime       The receive time in nanoseconds since the CCSDS epoch
+     * @param continuity        The data link continuity
+     * @param dataLength        The length of the frame data
+     * @param buffer            The buffer to encode to, must hold encodedSize() - dataLength bytes from offset
+     * @param offset            The offset in the buffer
+     * @return                  The offset after the encoded part of the message, where the frame data starts
+     */
+    public int encodeHeader(long sequenceNumber, long receiveTime, long continuity, int dataLength, byte[] buffer, int offset) {
+        int dateTimeLength = dateTimeLength(receiveTime);
+        int metaDataLength = metaDataLength(dateTimeLength, continuity);
+        int telemetryLength = telemetryLength(metaDataLength, dataLength);
+
+        int pos = offset;
+        buffer[pos++] = TAG_SEQUENCE_NUMBER;
+        pos = writeVarint(sequenceNumber, buffer, pos);
+        buffer[pos++] = TAG_TELEMETRY;
+        pos = writeVarint(telemetryLength, buffer, pos);
+
+        // first reception meta data
+        buffer[pos++] = TAG_META_DATA;
+        pos = writeVarint(metaDataLength, buffer, pos);
+        buffer[pos++] = TAG_RECEIVE_TIME;
+        pos = writeVarint(dateTimeLength, buffer, pos);
+        pos = writeDateTime(receiveTime, buffer, pos);
+        System.arraycopy(metaDataConstant, 0, buffer, pos, metaDataConstant.length);
+        pos += metaDataConstant.length;
+        if(continuity != 0) {
+            buffer[pos++] = (byte) TAG_CONTINUITY;
+            buffer[pos++] = 0x01;
+            pos = writeVarint(continuity, buffer, pos);
+        }
+
+        System.arraycopy(telemetryConstant, 0, buffer, pos, telemetryConstant.length);
+        pos += telemetryConstant.length;
+
+        if(dataLength > 0) {
+            buffer[pos++] = (byte) TAG_DATA;
+            buffer[pos++] = 0x01;
+            pos = writeVarint(dataLength, buffer, pos);
+        }
+        return pos;
+    }
+
+    private int metaDataLength(int dateTimeLength, long continuity) {
+        return 1 + varintSize(dateTimeLength) + dateTimeLength
+            + metaDataConstant.length
+            + (continuity != 0 ? 2 + varintSize(continuity) : 0);
+    }
+
+    private int telemetryLength(int metaDataLength, int dataLength) {
+        return 1 + varintSize(metaDataLength) + metaDataLength
+            + telemetryConstant.length
+            + (dataLength > 0 ? 2 + varintSize(dataLength) + dataLength : 0);
+    }
+
+    /**
+     * @return The length of the DateTime message for the given time, zero fields are not serialized
+     */
+    private static int dateTimeLength(long time) {
+        long days = time / NANOS_PER_DAY;
+        long nanoOfDay = time % NANOS_PER_DAY;
+        long msOfDay = nanoOfDay / 1_000_000;
+        long picoSecsOfMs = (nanoOfDay % 1_000_000) * 1_000;
+
+        return (days != 0 ? 1 + varintSize(days) : 0)
+            + (msOfDay != 0 ? 1 + varintSize(msOfDay) : 0)
+            + (picoSecsOfMs != 0 ? 2 + varintSize(picoSecsOfMs) : 0);
+    }
+
+    private static int writeDateTime(long time, byte[] buffer, int pos) {
+        long days = time / NANOS_PER_DAY;
+        long nanoOfDay = time % NANOS_PER_DAY;
+        long msOfDay = nanoOfDay / 1_000_000;
+        long picoSecsOfMs = (nanoOfDay % 1_000_000) * 1_000;
+
+        if(days != 0) {
+            buffer[pos++] = TAG_DAYS;
+            pos = writeVarint(days, buffer, pos);
+        }
+        if(msOfDay != 0) {
+            buffer[pos++] = TAG_MS_OF_DAY;
+            pos = writeVarint(msOfDay, buffer, pos);
+        }
+        if(picoSecsOfMs != 0) {
+            buffer[pos++] = (byte) TAG_PICO_SECS_OF_MS;
+            buffer[pos++] = 0x01;
+            pos = writeVarint(picoSecsOfMs, buffer, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * @return The size of the value encoded as varint, 10 bytes for negative values
+     */
+    static int varintSize(long value) {
+        return value == 0 ? 1 : (63 - Long.numberOfLeadingZeros(value)) / 7 + 1;
+    }
+
+    static int writeVarint(long value, byte[] buffer, int pos) {
+        while((value & ~0x7fL) != 0) {
+            buffer[pos++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[pos++] = (byte) value;
+        return pos;
+    }
+}
@@ -0,0 +1,95 @@
+package cdds.tm;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.Annotation;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.Types.Value;
+import cdds.util.TimeUtil;
+
+/**
+ * Benchmark of the TM message creation: builder and serialization against the TM message template.
+ * Run with: mvn test -Pbenchmark
+ *
+ * Creates the serialized message of TmProductionNFrames per frame and reports the time
+ * and the allocated bytes per frame.
+ */
+@Tag("benchmark")
+public class TmMessageTemplateBenchmark {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 1_000_000;
+    private static final int NUM_RUNS = 5;
+
+    @Test
+    public void benchmarkEncode() {
+        ByteString data = ByteString.copyFrom(TestTelemetryFile.getFrameData(TM_FRAME_LENGTH));
+        Annotation annotation = Annotation.newBuilder()
+            .setName("test-anno")
+            .setValue(Value.newBuilder().setStringValue("test-anno-val").build())
+            .build();
+        TmMessageTemplate template = new TmMessageTemplate(TelemetryData.newBuilder()
+            .addMetaData(ReceptionMetaData.newBuilder()
+                .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                .build())
+            .addPrivateAnnotation(annotation)
+            .build());
+        byte[] buffer = new byte[template.encodedSize(Long.MAX_VALUE, Long.MAX_VALUE, -1, TM_FRAME_LENGTH)];
+
+        for(int run = 0; run < NUM_RUNS; run++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long bytes = 0;
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                TelemetryMessage tmMessage = TelemetryMessage.newBuilder()
+                    .setSequenceNumber(idx)
+                    .setTelemetry(TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setReceiveTime(TimeUtil.now())
+                            .setDataLinkContinuity(-1)
+                            .build())
+                        .addPrivateAnnotation(annotation)
+                        .setData(data)
+                        .build())
+                    .build();
+                bytes += tmMessage.toByteArray().length;
+            }
+            report("builder", System.nanoTime() - start, allocatedBytes() - allocated, bytes);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            bytes = 0;
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                bytes += template.encode(idx, TimeUtil.nowNanos(), -1, data).getSerializedSize();
+            }
+            report("template", System.nanoTime() - start, allocatedBytes() - allocated, bytes);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            bytes = 0;
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                bytes += template.encode(idx, TimeUtil.nowNanos(), -1, data, buffer, 0);
+            }
+            report("template to buffer", System.nanoTime() - start, allocatedBytes() - allocated, bytes);
+        }
+    }
+
+    private static void report(String encoder, long nanos, long allocated, long bytes) {
+        System.out.println(String.format("%-20s %8.1f ns/frame %10.1f bytes/frame allocated (%d bytes encoded)",
+            encoder, (double) nanos / NUM_TM_MESSAGES, (double) allocated / NUM_TM_MESSAGES, bytes));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,105 @@
+package cdds.tm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.Annotation;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameQuality;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import ccsds.cdds.v1.Types.Value;
+import cdds.util.TimeUtil;
+
+/**
+ * Test for the TM message template
+ *
+ * 1) testEncode - Encodes messages for a range of sequence numbers, times, continuities and data lengths
+ *                 and compares them with the serialized messages built with the same values
+ * 2) testEncodeToBuffer - Encodes several messages into one buffer and parses them back
+ */
+public class TmMessageTemplateTest {
+
+    private static final TelemetryData TEMPLATE = TelemetryData.newBuilder()
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+            .build())
+        .addMetaData(ReceptionMetaData.newBuilder()
+            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO2").build())
+            .setReceiveTime(TimeUtil.fromNanos(123_456_789))
+            .setDataLinkContinuity(3)
+            .build())
+        .setFrameQuality(FrameQuality.ERRED)
+        .addPrivateAnnotation(Annotation.newBuilder()
+            .setName("test-anno")
+            .setValue(Value.newBuilder().setStringValue("test-anno-val").build())
+            .build())
+        .build();
+
+    @Test
+    public void testEncode() throws IOException {
+        TmMessageTemplate template = new TmMessageTemplate(TEMPLATE);
+        long now = TimeUtil.nowNanos();
+        long[] sequenceNumbers = { 0, 1, 127, 128, 1L << 35, -1 };
+        long[] times = { 0, 999, 1_000_000, 86_400_000_000_000L, now, now - now % 1_000_000, now - now % 86_400_000_000_000L };
+        long[] continuities = { 0, -1, 1, 300, -12345 };
+        int[] dataLengths = { 0, 1, 127, 128, 1115, 70_000 };
+
+        int numEncoded = 0;
+        for(long sequenceNumber : sequenceNumbers) {
+            for(long time : times) {
+                for(long continuity : continuities) {
+                    for(int dataLength : dataLengths) {
+                        ByteString data = ByteString.copyFrom(TestTelemetryFile.getFrameData(dataLength));
+                        byte[] expected = buildMessage(sequenceNumber, time, continuity, data).toByteArray();
+
+                        EncodedTelemetryMessage encoded = template.encode(sequenceNumber, time, continuity, data);
+                        assertEquals(expected.length, template.encodedSize(sequenceNumber, time, continuity, dataLength));
+                        assertEquals(expected.length, encoded.getSerializedSize());
+                        assertArrayEquals(expected, encoded.getBuffer());
+                        numEncoded++;
+                    }
+                }
+            }
+        }
+        System.out.println("Encoded " + numEncoded + " messages identical to the built messages");
+    }
+
+    @Test
+    public void testEncodeToBuffer() throws IOException {
+        TmMessageTemplate template = new TmMessageTemplate(TEMPLATE);
+        ByteString data = ByteString.copyFrom(TestTelemetryFile.getFrameData(1115));
+        long startTime = TimeUtil.nowNanos();
+
+        byte[] buffer = new byte[10 * template.encodedSize(Long.MAX_VALUE, startTime, -1, data.size())];
+        int[] offsets = new int[11];
+        for(int idx = 0; idx < 10; idx++) {
+            offsets[idx + 1] = template.encode(idx, startTime + idx, -1, data, buffer, offsets[idx]);
+        }
+
+        for(int idx = 0; idx < 10; idx++) {
+            TelemetryMessage tmMessage = TelemetryMessage.parser().parseFrom(buffer, offsets[idx], offsets[idx + 1] - offsets[idx]);
+            assertEquals(buildMessage(idx, startTime + idx, -1, data), tmMessage);
+        }
+    }
+
+    private static TelemetryMessage buildMessage(long sequenceNumber, long time, long continuity, ByteString data) {
+        return TelemetryMessage.newBuilder()
+            .setSequenceNumber(sequenceNumber)
+            .setTelemetry(TEMPLATE.toBuilder()
+                .setMetaData(0, TEMPLATE.getMetaData(0).toBuilder()
+                    .setReceiveTime(TimeUtil.fromNanos(time))
+                    .setDataLinkContinuity(continuity)
+                    .build())
+                .setData(data)
+                .build())
+            .build();
+    }
+}
@@ -0,0 +1,203 @@
+package cdds.tm.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+
+/**
+ * Memory mapped access to a file of length delimited TelemetryMessages as written by writeDelimitedTo.
+ *
+ * The file is mapped in windows, which allows files larger than 2 GB. The cursor methods
+ * read one record at a given offset without parsing the message, so callers can decide to
+ * skip, skim or parse the message.
+ */
+public class MappedTmFile implements Closeable {
+
+    /** Default size of a mapped window */
+    public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final int MAX_VARINT32_LENGTH = 5;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long windowEnd = 0;
+
+    private long recordOffset = -1;     // file offset of the current record (length prefix)
+    private long messageOffset = -1;    // file offset of the current message
+    private int messageLength = 0;      // length of the current message
+
+    /**
+     * Opens the given file for memory mapped reading with the default window size
+     * @param file          The file of delimited TelemetryMessages
+     * @throws IOException  If the file cannot be opened
+     */
+    public MappedTmFile(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the given file for memory mapped reading
+     * @param file          The file of delimited TelemetryMessages
+     * @param windowSize    The size of the mapped windows. Records larger than a window are mapped in a dedicated window.
+     * @throws IOException  If the file cannot be opened
+     */
+    public MappedTmFile(Path file, int windowSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * @return The size of the mapped file
+     */
+    public long size() {
+        return fileSize;
+    }
+
+    /**
+     * Reads the record at the given offset. The message is not parsed.
+     * @param offset        The file offset of the record (the length prefix)
+     * @return              true if a complete record is present at the offset, false at the end of the file
+     *                      or for a truncated last record
+     * @throws IOException  If the file cannot be mapped or the length prefix is malformed
+     */
+    public boolean readRecord(long offset) throws IOException {
+        if(offset >= fileSize) {
+            return false;
+        }
+
+        map(offset, (int) Math.min(MAX_VARINT32_LENGTH, fileSize - offset));
+
+        int pos = (int) (offset - windowStart);
+        int length = 0;
+        int shift = 0;
+        int varintLength = 0;
+        while(true) {
+            if(offset + varintLength >= fileSize) {
+                return false; // truncated length prefix
+            }
+            byte b = window.get(pos + varintLength++);
+            length |= (b & 0x7f) << shift;
+            if(b >= 0) {
+                break;
+            }
+            shift += 7;
+            if(varintLength == MAX_VARINT32_LENGTH) {
+                throw new InvalidProtocolBufferException("Malformed record length at offset " + offset);
+            }
+        }
+
+        if(length < 0 || offset + varintLength + length > fileSize) {
+            return false; // truncated record, e.g. writer did not complete
+        }
+
+        recordOffset = offset;
+        messageOffset = offset + varintLength;
+        messageLength = length;
+
+        map(messageOffset, length);
+
+        return true;
+    }
+
+    /**
+     * @return The file offset of the current record
+     */
+    public long recordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * @return The file offset of the record following the current record
+     */
+    public long nextRecordOffset() {
+        return messageOffset + messageLength;
+    }
+
+    /**
+     * @return The length of the current message without the length prefix
+     */
+    public int messageLength() {
+        return messageLength;
+    }
+
+    /**
+     * @return The file offset of the current message
+     */
+    public long messageOffset() {
+        return messageOffset;
+    }
+
+    /**
+     * Provides the mapped window holding the current message. Use messagePosition() to locate the message.
+     * The returned buffer must not be modified and is only valid until the next readRecord call.
+     * @return The mapped window
+     */
+    public ByteBuffer window() {
+        return window;
+    }
+
+    /**
+     * @return The position of the current message within window()
+     */
+    public int messagePosition() {
+        return (int) (messageOffset - windowStart);
+    }
+
+    /**
+     * Provides a read only slice of the mapped file holding the current message
+     * @return The message bytes, without copy
+     */
+    public ByteBuffer messageBuffer() {
+        ByteBuffer slice = window.duplicate();
+        int pos = messagePosition();
+        slice.limit(pos + messageLength).position(pos);
+        return slice.slice();
+    }
+
+    /**
+     * Parses the current message
+     * @param alias     If true, the bytes fields of the parsed message refer to the mapped file instead of a heap copy.
+     *                  Aliased messages remain valid as long as the mapping is referenced.
+     * @return          The parsed message
+     * @throws InvalidProtocolBufferException If the record is not a valid TelemetryMessage
+     */
+    public TelemetryMessage parseMessage(boolean alias) throws InvalidProtocolBufferException {
+        CodedInputStream input = CodedInputStream.newInstance(messageBuffer());
+        input.enableAliasing(alias);
+        return TelemetryMessage.parser().parseFrom(input);
+    }
+
+    /**
+     * Ensures the given file range is mapped
+     */
+    private void map(long position, int length) throws IOException {
+        if(window != null && position >= windowStart && position + length <= windowEnd) {
+            return;
+        }
+
+        long size = Math.min(Math.max(windowSize, length), fileSize - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        windowStart = position;
+        windowEnd = position + size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
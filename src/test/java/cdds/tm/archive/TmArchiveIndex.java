@@ -0,0 +1,421 @@
+package cdds.tm.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Sparse index of a TM archive file. Each entry covers N consecutive records and holds
+ * the file offset of the first record, the receive time range and a GVCID mask of the covered records.
+ *
+ * The index is stored in a sidecar file next to the archive (archive file name + ".idx").
+ * The archive itself keeps the plain writeDelimitedTo framing. The sidecar file holds the modification time
+ * of the archive and a checksum of the head and tail of the indexed part, an index whose archive was rewritten
+ * is detected as stale.
+ */
+public class TmArchiveIndex {
+
+    /** Suffix of the index sidecar file */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /** Default number of records per index entry */
+    public static final int DEFAULT_RECORDS_PER_ENTRY = 1024;
+
+    private static final int MAGIC = 0x43444958; // CDIX
+    private static final int FORMAT_VERSION = 2;
+
+    /** Bytes at the head and at the tail of the indexed part of the archive covered by the checksum */
+    private static final int CHECKSUM_LENGTH = 4096;
+
+    private final int recordsPerEntry;
+
+    private int numEntries = 0;
+    private long[] offsets = new long[64];
+    private int[] counts = new int[64];
+    private long[] minTimes = new long[64];
+    private long[] maxTimes = new long[64];
+    private long[] gvcIdMasks = new long[64];
+
+    private long indexedLength = 0;     // length of the archive covered by the index
+    private long numRecords = 0;
+    private long lastTime = Long.MIN_VALUE;
+    private boolean timeOrdered = true;
+
+    private long archiveModified = 0;   // modification time of the archive when the index was written
+    private long archiveChecksum = 0;   // checksum of the indexed part of the archive when the index was written
+
+    /**
+     * Creates an empty index
+     * @param recordsPerEntry   The number of records covered by one index entry
+     */
+    public TmArchiveIndex(int recordsPerEntry) {
+        if(recordsPerEntry <= 0) {
+            throw new IllegalArgumentException("Records per index entry must be positive: " + recordsPerEntry);
+        }
+        this.recordsPerEntry = recordsPerEntry;
+    }
+
+    /**
+     * Adds a record to the index
+     * @param offset    The file offset of the record
+     * @param length    The length of the record including the length prefix
+     * @param time      The receive time of the record in nanoseconds since the CCSDS epoch
+     * @param gvcIdKey  The GVCID key of the record or GvcIdKey.UNKNOWN
+     */
+    public void add(long offset, int length, long time, int gvcIdKey) {
+        if(numEntries == 0 || counts[numEntries - 1] == recordsPerEntry) {
+            if(numEntries == offsets.length) {
+                grow();
+            }
+            offsets[numEntries] = offset;
+            counts[numEntries] = 0;
+            minTimes[numEntries] = Long.MAX_VALUE;
+            maxTimes[numEntries] = Long.MIN_VALUE;
+            gvcIdMasks[numEntries] = 0;
+            numEntries++;
+        }
+
+        int entry = numEntries - 1;
+        counts[entry]++;
+        minTimes[entry] = Math.min(minTimes[entry], time);
+        maxTimes[entry] = Math.max(maxTimes[entry], time);
+        gvcIdMasks[entry] |= gvcIdBit(gvcIdKey);
+
+        if(time < lastTime) {
+            timeOrdered = false;
+        }
+        lastTime = time;
+        numRecords++;
+        indexedLength = offset + length;
+    }
+
+    /**
+     * Adds a message to the index
+     * @param offset    The file offset of the record
+     * @param length    The length of the record including the length prefix
+     * @param tmMessage The message of the record
+     */
+    public void add(long offset, int length, TelemetryMessage tmMessage) {
+        add(offset, length, receiveTime(tmMessage, lastTime), gvcIdKey(tmMessage));
+    }
+
+    /**
+     * Adds the record skimmed by a skim reader extracting the receive time and GVCID
+     * @param offset        The file offset of the record
+     * @param length        The length of the record including the length prefix
+     * @param skimReader    The skim reader positioned on the record
+     */
+    public void add(long offset, int length, TmSkimReader skimReader) {
+        long time = skimReader.receiveTime();
+        add(offset, length, time == TmSkimReader.NO_TIME ? lastTime : time, skimReader.gvcIdKey());
+    }
+
+    /**
+     * @return The number of index entries
+     */
+    public int size() {
+        return numEntries;
+    }
+
+    /**
+     * @return The number of indexed records
+     */
+    public long numRecords() {
+        return numRecords;
+    }
+
+    /**
+     * @return The length of the archive covered by this index
+     */
+    public long indexedLength() {
+        return indexedLength;
+    }
+
+    /**
+     * @return true if the receive times of the indexed records never decrease
+     */
+    public boolean isTimeOrdered() {
+        return timeOrdered;
+    }
+
+    /**
+     * @return The file offset of the first record of the given entry
+     */
+    public long offset(int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * @return The number of records covered by the given entry
+     */
+    public int count(int entry) {
+        return counts[entry];
+    }
+
+    /**
+     * Finds the first entry which may contain records at or after the given time
+     * @param fromTime  The time in nanoseconds since the CCSDS epoch
+     * @return          The first candidate entry. Equals size() if no entry matches.
+     */
+    public int firstEntry(long fromTime) {
+        if(timeOrdered == false) {
+            return 0;
+        }
+
+        // entries are ordered by time, binary search the first entry ending at or after fromTime
+        int low = 0;
+        int high = numEntries;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(maxTimes[mid] < fromTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks if the given entry may contain records of the time range and GVCID
+     * @param entry     The index entry
+     * @param fromTime  The start of the time range (inclusive)
+     * @param toTime    The end of the time range (exclusive)
+     * @param gvcIdKey  The GVCID key or GvcIdKey.UNKNOWN to match any GVCID
+     * @return          true if the entry may hold matching records
+     */
+    public boolean matches(int entry, long fromTime, long toTime, int gvcIdKey) {
+        if(maxTimes[entry] < fromTime || minTimes[entry] >= toTime) {
+            return false;
+        }
+        return gvcIdKey == GvcIdKey.UNKNOWN || (gvcIdMasks[entry] & gvcIdBit(gvcIdKey)) != 0;
+    }
+
+    /**
+     * Checks if no entry after the given one can contain records before the given time
+     * @param entry     The index entry
+     * @param toTime    The end of the time range (exclusive)
+     * @return          true if the entry and all following entries are after the time range
+     */
+    public boolean isAfter(int entry, long toTime) {
+        return timeOrdered && minTimes[entry] >= toTime;
+    }
+
+    /**
+     * Writes the index to the given file with the modification time and checksum of the archive
+     * @param indexFile     The index sidecar file
+     * @param archiveFile   The indexed archive file
+     * @throws IOException
+     */
+    public void write(Path indexFile, Path archiveFile) throws IOException {
+        archiveModified = Files.getLastModifiedTime(archiveFile).toMillis();
+        archiveChecksum = checksum(archiveFile, indexedLength);
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(recordsPerEntry);
+            out.writeInt(numEntries);
+            out.writeLong(numRecords);
+            out.writeLong(indexedLength);
+            out.writeLong(lastTime);
+            out.writeBoolean(timeOrdered);
+            out.writeLong(archiveModified);
+            out.writeLong(archiveChecksum);
+
+            for(int entry = 0; entry < numEntries; entry++) {
+                out.writeLong(offsets[entry]);
+                out.writeInt(counts[entry]);
+                out.writeLong(minTimes[entry]);
+                out.writeLong(maxTimes[entry]);
+                out.writeLong(gvcIdMasks[entry]);
+            }
+        }
+    }
+
+    /**
+     * Checks if the archive was changed other than by appending records since the index was written.
+     * An archive of the indexed length modified since is stale as it was rewritten in place, a longer
+     * archive must keep the checksum of the indexed part.
+     * @param archiveFile   The indexed archive file
+     * @return              true if the index does not describe the archive
+     * @throws IOException
+     */
+    public boolean isStale(Path archiveFile) throws IOException {
+        long size = Files.size(archiveFile);
+        if(indexedLength > size) {
+            return true;
+        }
+        if(size == indexedLength && Files.getLastModifiedTime(archiveFile).toMillis() != archiveModified) {
+            return true;
+        }
+        return checksum(archiveFile, indexedLength) != archiveChecksum;
+    }
+
+    /**
+     * Reads an index from the given file
+     * @param indexFile     The index sidecar file
+     * @return              The read index
+     * @throws IOException  If the file cannot be read or is not an index
+     */
+    public static TmArchiveIndex read(Path indexFile) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Not a TM archive index: " + indexFile);
+            }
+
+            int version = in.readInt();
+            if(version != FORMAT_VERSION) {
+                throw new IOException("Unsupported TM archive index version " + version + ": " + indexFile);
+            }
+
+            TmArchiveIndex index = new TmArchiveIndex(in.readInt());
+            int entries = in.readInt();
+            index.numRecords = in.readLong();
+            index.indexedLength = in.readLong();
+            index.lastTime = in.readLong();
+            index.timeOrdered = in.readBoolean();
+            index.archiveModified = in.readLong();
+            index.archiveChecksum = in.readLong();
+
+            index.offsets = new long[Math.max(entries, 1)];
+            index.counts = new int[Math.max(entries, 1)];
+            index.minTimes = new long[Math.max(entries, 1)];
+            index.maxTimes = new long[Math.max(entries, 1)];
+            index.gvcIdMasks = new long[Math.max(entries, 1)];
+
+            for(int entry = 0; entry < entries; entry++) {
+                index.offsets[entry] = in.readLong();
+                index.counts[entry] = in.readInt();
+                index.minTimes[entry] = in.readLong();
+                index.maxTimes[entry] = in.readLong();
+                index.gvcIdMasks[entry] = in.readLong();
+            }
+            index.numEntries = entries;
+
+            return index;
+        }
+    }
+
+    /**
+     * Indexes the records of the archive from the indexed length to the end of the archive.
+     * Used to build an index for an existing archive or to catch up with records appended after the index was written.
+     * @param archive       The mapped archive
+     * @throws IOException
+     */
+    public void update(MappedTmFile archive) throws IOException {
+        long offset = indexedLength;
+        while(archive.readRecord(offset)) {
+            int length = (int) (archive.nextRecordOffset() - offset);
+            add(offset, length, archive.parseMessage(true));
+            offset = archive.nextRecordOffset();
+        }
+    }
+
+    /**
+     * Builds the index for an existing archive of delimited TelemetryMessages
+     * @param archiveFile       The archive file
+     * @param recordsPerEntry   The number of records per index entry
+     * @return                  The built index
+     * @throws IOException
+     */
+    public static TmArchiveIndex build(Path archiveFile, int recordsPerEntry) throws IOException {
+        TmArchiveIndex index = new TmArchiveIndex(recordsPerEntry);
+        try(MappedTmFile archive = new MappedTmFile(archiveFile)) {
+            index.update(archive);
+        }
+        return index;
+    }
+
+    /**
+     * @return The path of the index sidecar file for the given archive
+     */
+    public static Path indexFile(Path archiveFile) {
+        return archiveFile.resolveSibling(archiveFile.getFileName() + INDEX_SUFFIX);
+    }
+
+    /**
+     * Provides the receive time of a message: the receive time of the first reception meta data
+     * for telemetry data, the notification time for sync notifies.
+     * @param tmMessage     The message
+     * @param defaultTime   The time returned if the message has no time
+     * @return              The time in nanoseconds since the CCSDS epoch
+     */
+    public static long receiveTime(TelemetryMessage tmMessage, long defaultTime) {
+        if(tmMessage.hasTelemetry()) {
+            if(tmMessage.getTelemetry().getMetaDataCount() > 0
+                && tmMessage.getTelemetry().getMetaData(0).hasReceiveTime()) {
+                return TimeUtil.toNanos(tmMessage.getTelemetry().getMetaData(0).getReceiveTime());
+            }
+        } else if(tmMessage.hasSyncNotify() && tmMessage.getSyncNotify().hasTime()) {
+            return TimeUtil.toNanos(tmMessage.getSyncNotify().getTime());
+        }
+        return defaultTime;
+    }
+
+    /**
+     * @return The GVCID key of the frame carried by the message or GvcIdKey.UNKNOWN
+     */
+    public static int gvcIdKey(TelemetryMessage tmMessage) {
+        if(tmMessage.hasTelemetry()) {
+            return GvcIdKey.fromFrame(tmMessage.getTelemetry().getData());
+        }
+        return GvcIdKey.UNKNOWN;
+    }
+
+    /**
+     * Computes the CRC32 of the head and the tail of the first length bytes of the archive
+     */
+    private static long checksum(Path archiveFile, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        try(FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_LENGTH);
+            update(crc, channel, buffer, 0, Math.min(length, CHECKSUM_LENGTH));
+            if(length > CHECKSUM_LENGTH) {
+                long tail = Math.max(CHECKSUM_LENGTH, length - CHECKSUM_LENGTH);
+                update(crc, channel, buffer, tail, length - tail);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void update(CRC32 crc, FileChannel channel, ByteBuffer buffer, long position, long length) throws IOException {
+        buffer.clear().limit((int) length);
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archive shorter than the indexed length");
+            }
+        }
+        crc.update(buffer.flip());
+    }
+
+    /**
+     * Hashes a GVCID key to one bit of the 64 bit entry mask
+     */
+    private static long gvcIdBit(int gvcIdKey) {
+        int hash = gvcIdKey * 0x9e3779b9;
+        return 1L << (hash >>> 26);
+    }
+
+    private void grow() {
+        int capacity = offsets.length * 2;
+        offsets = Arrays.copyOf(offsets, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        minTimes = Arrays.copyOf(minTimes, capacity);
+        maxTimes = Arrays.copyOf(maxTimes, capacity);
+        gvcIdMasks = Arrays.copyOf(gvcIdMasks, capacity);
+    }
+}
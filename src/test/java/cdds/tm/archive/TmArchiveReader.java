@@ -0,0 +1,209 @@
+package cdds.tm.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.DateTime;
+import ccsds.cdds.v1.Types.GvcId;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Reads a memory mapped TM archive of delimited TelemetryMessages using the sparse sidecar index
+ * to seek to the records of a time range and GVCID.
+ *
+ * If the index sidecar file is missing or does not match the archive, e.g. the archive was rewritten,
+ * the index is built with one sequential pass and written next to the archive. Records appended after the index
+ * was written are indexed on open.
+ */
+public class TmArchiveReader implements Closeable {
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.archive");
+
+    private final MappedTmFile archive;
+    private final TmArchiveIndex index;
+
+    /**
+     * Opens an archive for reading
+     * @param archiveFile   The archive file
+     * @throws IOException
+     */
+    public TmArchiveReader(Path archiveFile) throws IOException {
+        this.archive = new MappedTmFile(archiveFile);
+        this.index = loadIndex(archiveFile, archive);
+    }
+
+    /**
+     * @return The index of the archive
+     */
+    public TmArchiveIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Queries the messages received in the given time range
+     * @param from  The start of the time range (inclusive)
+     * @param to    The end of the time range (exclusive)
+     * @return      An iterator over the messages of the time range in archive order
+     */
+    public Iterator<TelemetryMessage> query(DateTime from, DateTime to) {
+        return query(TimeUtil.toNanos(from), TimeUtil.toNanos(to), GvcIdKey.UNKNOWN);
+    }
+
+    /**
+     * Queries the frames of a GVCID received in the given time range
+     * @param from  The start of the time range (inclusive)
+     * @param to    The end of the time range (exclusive)
+     * @param gvcId The GVCID of the frames
+     * @return      An iterator over the messages of the time range and GVCID in archive order
+     */
+    public Iterator<TelemetryMessage> query(DateTime from, DateTime to, GvcId gvcId) {
+        return query(TimeUtil.toNanos(from), TimeUtil.toNanos(to), GvcIdKey.of(gvcId));
+    }
+
+    /**
+     * Queries the messages of a time range and GVCID. The frame data of returned messages
+     * refers to the mapped archive, no copy to the heap is made.
+     * @param fromTime  The start of the time range in nanoseconds since the CCSDS epoch (inclusive)
+     * @param toTime    The end of the time range in nanoseconds since the CCSDS epoch (exclusive)
+     * @param gvcIdKey  The GVCID key of the frames or GvcIdKey.UNKNOWN for all messages
+     * @return          An iterator over the matching messages in archive order
+     */
+    public Iterator<TelemetryMessage> query(long fromTime, long toTime, int gvcIdKey) {
+        return new RangeIterator(fromTime, toTime, gvcIdKey);
+    }
+
+    @Override
+    public void close() throws IOException {
+        archive.close();
+    }
+
+    /**
+     * Reads the index sidecar file, builds it if missing or stale and indexes appended records
+     */
+    private static TmArchiveIndex loadIndex(Path archiveFile, MappedTmFile archive) throws IOException {
+        Path indexFile = TmArchiveIndex.indexFile(archiveFile);
+        TmArchiveIndex index = null;
+
+        if(Files.exists(indexFile)) {
+            try {
+                index = TmArchiveIndex.read(indexFile);
+                if(index.isStale(archiveFile)) {
+                    LOG.warn("Index " + indexFile + " does not match the archive, rebuilding the index");
+                    index = null;
+                }
+            } catch(IOException ex) {
+                LOG.warn("Failed to read index " + indexFile + ", rebuilding the index: " + ex);
+            }
+        }
+
+        boolean modified = false;
+        if(index == null) {
+            index = new TmArchiveIndex(TmArchiveIndex.DEFAULT_RECORDS_PER_ENTRY);
+            modified = true;
+        }
+
+        if(index.indexedLength() < archive.size()) {
+            index.update(archive);
+            modified = true;
+        }
+
+        if(modified) {
+            try {
+                index.write(indexFile, archiveFile);
+                LOG.info("Wrote index " + indexFile + " with " + index.size() + " entries for " + index.numRecords() + " records");
+            } catch(IOException ex) {
+                LOG.warn("Failed to write index " + indexFile + ": " + ex);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Iterates the records of the index entries matching a time range and GVCID
+     */
+    private class RangeIterator implements Iterator<TelemetryMessage> {
+        private final long fromTime;
+        private final long toTime;
+        private final int gvcIdKey;
+
+        private int entry;
+        private int remainingInEntry = 0;
+        private long offset;
+        private TelemetryMessage next;
+
+        RangeIterator(long fromTime, long toTime, int gvcIdKey) {
+            this.fromTime = fromTime;
+            this.toTime = toTime;
+            this.gvcIdKey = gvcIdKey;
+            this.entry = index.firstEntry(fromTime) - 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while(next == null) {
+                    if(remainingInEntry == 0 && nextEntry() == false) {
+                        return false;
+                    }
+
+                    if(archive.readRecord(offset) == false) {
+                        remainingInEntry = 0;
+                        continue;
+                    }
+                    offset = archive.nextRecordOffset();
+                    remainingInEntry--;
+
+                    TelemetryMessage tmMessage = archive.parseMessage(true);
+                    long time = TmArchiveIndex.receiveTime(tmMessage, Long.MIN_VALUE);
+                    if(time >= fromTime && time < toTime
+                        && (gvcIdKey == GvcIdKey.UNKNOWN || TmArchiveIndex.gvcIdKey(tmMessage) == gvcIdKey)) {
+                        next = tmMessage;
+                    }
+                }
+                return true;
+            } catch(IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public TelemetryMessage next() {
+            if(hasNext() == false) {
+                throw new NoSuchElementException();
+            }
+            TelemetryMessage tmMessage = next;
+            next = null;
+            return tmMessage;
+        }
+
+        /**
+         * Advances to the next index entry matching the query
+         * @return false if no further entry can match
+         */
+        private boolean nextEntry() {
+            while(++entry < index.size()) {
+                if(index.isAfter(entry, toTime)) {
+                    entry = index.size();
+                    return false;
+                }
+                if(index.matches(entry, fromTime, toTime, gvcIdKey)) {
+                    offset = index.offset(entry);
+                    remainingInEntry = index.count(entry);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
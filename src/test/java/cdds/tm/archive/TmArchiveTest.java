@@ -0,0 +1,173 @@
+package cdds.tm.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.GvcId;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Test for the indexed TM archive
+ *
+ * 1) testTimeRangeQuery - Writes an archive of two VCs and queries a time range with and without GVCID
+ * 2) testIndexRebuild - Deletes the index of an archive, which is rebuilt by the reader
+ * 3) testStaleIndex - Rewrites an archive with the same length keeping the former index, which is rebuilt by the reader
+ */
+public class TmArchiveTest {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 10_000;
+    private static final int SPACECRAFT_ID = 71;
+    private static final long START_TIME = TimeUtil.toNanos(TimeUtil.now());
+    private static final long FRAME_PERIOD = 1_000_000; // 1 ms
+    private static String TM_OUT_DIR = "target" + File.separatorChar + "tm-files" + File.separatorChar ;
+
+    @BeforeAll
+    public static void createOutputDir() throws IOException {
+        Files.createDirectories(Paths.get(TM_OUT_DIR));
+    }
+
+    @Test
+    public void testTimeRangeQuery() throws IOException {
+        Path archiveFile = Paths.get(TM_OUT_DIR + "archive-query.tlm");
+        List<TelemetryMessage> written = writeArchive(archiveFile, 100);
+
+        long from = START_TIME + 3_000 * FRAME_PERIOD;
+        long to = from + 500 * FRAME_PERIOD;
+        int vc1 = GvcIdKey.of(FrameVersion.AOS_VALUE, SPACECRAFT_ID, 1);
+
+        try(TmArchiveReader reader = new TmArchiveReader(archiveFile)) {
+            assertEquals(NUM_TM_MESSAGES, reader.getIndex().numRecords());
+            assertTrue(reader.getIndex().isTimeOrdered());
+
+            List<TelemetryMessage> all = toList(reader.query(from, to, GvcIdKey.UNKNOWN));
+            assertEquals(filter(written, from, to, GvcIdKey.UNKNOWN), all);
+            assertEquals(500, all.size());
+
+            List<TelemetryMessage> vc = toList(reader.query(TimeUtil.fromNanos(from), TimeUtil.fromNanos(to),
+                GvcId.newBuilder().setSpacecraftId(SPACECRAFT_ID).setVersion(FrameVersion.AOS).setVirtualChannelId(1).build()));
+            assertEquals(filter(written, from, to, vc1), vc);
+            assertEquals(250, vc.size());
+
+            // window before the first frame
+            assertTrue(reader.query(0, START_TIME, GvcIdKey.UNKNOWN).hasNext() == false);
+        }
+    }
+
+    @Test
+    public void testIndexRebuild() throws IOException {
+        Path archiveFile = Paths.get(TM_OUT_DIR + "archive-rebuild.tlm");
+        List<TelemetryMessage> written = writeArchive(archiveFile, 1024);
+        Files.delete(TmArchiveIndex.indexFile(archiveFile));
+
+        try(TmArchiveReader reader = new TmArchiveReader(archiveFile)) {
+            assertEquals(NUM_TM_MESSAGES, reader.getIndex().numRecords());
+            assertEquals(written, toList(reader.query(0, Long.MAX_VALUE, GvcIdKey.UNKNOWN)));
+        }
+
+        assertTrue(Files.exists(TmArchiveIndex.indexFile(archiveFile)));
+    }
+
+    @Test
+    public void testStaleIndex() throws IOException {
+        Path archiveFile = Paths.get(TM_OUT_DIR + "archive-stale.tlm");
+        Path indexFile = TmArchiveIndex.indexFile(archiveFile);
+        writeArchive(archiveFile, 1024);
+        byte[] formerIndex = Files.readAllBytes(indexFile);
+        long formerLength = Files.size(archiveFile);
+        FileTime formerModified = Files.getLastModifiedTime(archiveFile);
+
+        // the same frames received one day later, each record keeps its length and offset
+        long startTime = START_TIME + 86_400_000_000_000L;
+        List<TelemetryMessage> written = writeArchive(archiveFile, 1024, startTime);
+        Files.write(indexFile, formerIndex);
+        Files.setLastModifiedTime(archiveFile, FileTime.fromMillis(formerModified.toMillis() + 1_000));
+        assertEquals(formerLength, Files.size(archiveFile));
+
+        long from = startTime + 3_000 * FRAME_PERIOD;
+        long to = from + 500 * FRAME_PERIOD;
+        try(TmArchiveReader reader = new TmArchiveReader(archiveFile)) {
+            assertEquals(NUM_TM_MESSAGES, reader.getIndex().numRecords());
+            assertEquals(filter(written, from, to, GvcIdKey.UNKNOWN), toList(reader.query(from, to, GvcIdKey.UNKNOWN)));
+            assertTrue(reader.query(START_TIME, startTime, GvcIdKey.UNKNOWN).hasNext() == false);
+        }
+        assertTrue(TmArchiveIndex.read(indexFile).isStale(archiveFile) == false);
+    }
+
+    private List<TelemetryMessage> writeArchive(Path archiveFile, int recordsPerEntry) throws IOException {
+        return writeArchive(archiveFile, recordsPerEntry, START_TIME);
+    }
+
+    /**
+     * Writes an archive with frames alternating among VC 1 and VC 2
+     */
+    private List<TelemetryMessage> writeArchive(Path archiveFile, int recordsPerEntry, long startTime) throws IOException {
+        List<TelemetryMessage> written = new ArrayList<>();
+        byte[] data = TestTelemetryFile.getFrameData(TM_FRAME_LENGTH);
+
+        try(TmArchiveWriter writer = new TmArchiveWriter(archiveFile, recordsPerEntry)) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                // AOS primary header: TFVN(2) SCID(8) VCID(6)
+                data[0] = (byte) (0x40 | (SPACECRAFT_ID >>> 2));
+                data[1] = (byte) (((SPACECRAFT_ID & 0x03) << 6) | (1 + idx % 2));
+
+                TelemetryMessage tmMessage = TelemetryMessage.newBuilder()
+                    .setSequenceNumber(idx)
+                    .setTelemetry(TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setReceiveTime(TimeUtil.fromNanos(startTime + idx * FRAME_PERIOD))
+                            .setDataLinkContinuity(-1)
+                            .build())
+                        .setData(ByteString.copyFrom(data))
+                        .build())
+                    .build();
+
+                writer.write(tmMessage);
+                written.add(tmMessage);
+            }
+        }
+
+        return written;
+    }
+
+    private static List<TelemetryMessage> filter(List<TelemetryMessage> messages, long from, long to, int gvcIdKey) {
+        List<TelemetryMessage> filtered = new ArrayList<>();
+        for(TelemetryMessage tmMessage : messages) {
+            long time = TimeUtil.toNanos(tmMessage.getTelemetry().getMetaData(0).getReceiveTime());
+            if(time >= from && time < to
+                && (gvcIdKey == GvcIdKey.UNKNOWN || GvcIdKey.fromFrame(tmMessage.getTelemetry().getData()) == gvcIdKey)) {
+                filtered.add(tmMessage);
+            }
+        }
+        return filtered;
+    }
+
+    private static List<TelemetryMessage> toList(Iterator<TelemetryMessage> iterator) {
+        List<TelemetryMessage> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+}
@@ -0,0 +1,77 @@
+package cdds.tm.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.protobuf.CodedOutputStream;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+
+/**
+ * Writes TelemetryMessages to an archive file using writeDelimitedTo framing
+ * and maintains the sparse sidecar index of the archive.
+ * The index is written on close.
+ */
+public class TmArchiveWriter implements Closeable {
+
+    private final Path archiveFile;
+    private final OutputStream output;
+    private final TmArchiveIndex index;
+    private long position = 0;
+
+    /**
+     * Creates a new archive with the default number of records per index entry.
+     * An existing archive is overwritten.
+     * @param archiveFile   The archive file
+     * @throws IOException
+     */
+    public TmArchiveWriter(Path archiveFile) throws IOException {
+        this(archiveFile, TmArchiveIndex.DEFAULT_RECORDS_PER_ENTRY);
+    }
+
+    /**
+     * Creates a new archive. An existing archive is overwritten.
+     * @param archiveFile       The archive file
+     * @param recordsPerEntry   The number of records per index entry
+     * @throws IOException
+     */
+    public TmArchiveWriter(Path archiveFile, int recordsPerEntry) throws IOException {
+        this.archiveFile = archiveFile;
+        this.index = new TmArchiveIndex(recordsPerEntry);
+        this.output = new BufferedOutputStream(Files.newOutputStream(archiveFile), 1 << 16);
+    }
+
+    /**
+     * Appends a message to the archive
+     * @param tmMessage     The message to append
+     * @throws IOException
+     */
+    public void write(TelemetryMessage tmMessage) throws IOException {
+        int messageLength = tmMessage.getSerializedSize();
+        int recordLength = CodedOutputStream.computeUInt32SizeNoTag(messageLength) + messageLength;
+
+        tmMessage.writeDelimitedTo(output);
+        index.add(position, recordLength, tmMessage);
+        position += recordLength;
+    }
+
+    /**
+     * @return The number of bytes written to the archive
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Closes the archive and writes the index sidecar file
+     */
+    @Override
+    public void close() throws IOException {
+        output.close();
+        index.write(TmArchiveIndex.indexFile(archiveFile), archiveFile);
+    }
+}
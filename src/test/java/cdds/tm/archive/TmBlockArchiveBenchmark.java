@@ -0,0 +1,148 @@
+package cdds.tm.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.util.TimeUtil;
+
+/**
+ * Benchmark of the block compressed TM archive against the plain delimited TM archive.
+ * Run with: mvn test -Pbenchmark
+ *
+ * Measures the compression ratio and the write and read throughput for 1115 byte frames
+ * with text payload (as used by the tests), idle frames (fill pattern) and a random payload per frame.
+ */
+@Tag("benchmark")
+public class TmBlockArchiveBenchmark {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 100_000;
+    private static final long FRAME_PERIOD = 100_000; // 100 us
+    private static String TM_OUT_DIR = "target" + File.separatorChar + "tm-files" + File.separatorChar ;
+
+    @BeforeAll
+    public static void createOutputDir() throws IOException {
+        Files.createDirectories(Paths.get(TM_OUT_DIR));
+    }
+
+    @Test
+    public void benchmarkTextFrames() throws IOException {
+        benchmark("text", TestTelemetryFile.getFrameData(TM_FRAME_LENGTH));
+    }
+
+    @Test
+    public void benchmarkIdleFrames() throws IOException {
+        byte[] data = new byte[TM_FRAME_LENGTH];
+        Arrays.fill(data, 6, data.length, (byte) 0x55);
+        benchmark("idle", data);
+    }
+
+    @Test
+    public void benchmarkRandomFrames() throws IOException {
+        benchmark("random", null);
+    }
+
+    /**
+     * @param data  The frame data of all frames, null for a random payload per frame
+     */
+    private void benchmark(String name, byte[] data) throws IOException {
+        Path plainFile = Paths.get(TM_OUT_DIR + "bench-" + name + ".tlm");
+        TelemetryMessage[] messages = createMessages(data);
+
+        long start = System.nanoTime();
+        try(TmArchiveWriter writer = new TmArchiveWriter(plainFile)) {
+            for(TelemetryMessage tmMessage : messages) {
+                writer.write(tmMessage);
+            }
+        }
+        long plainWriteNanos = System.nanoTime() - start;
+        long plainBytes = Files.size(plainFile);
+
+        start = System.nanoTime();
+        long numRead = 0;
+        try(TmArchiveReader reader = new TmArchiveReader(plainFile)) {
+            Iterator<TelemetryMessage> it = reader.query(Long.MIN_VALUE, Long.MAX_VALUE, -1);
+            while(it.hasNext()) {
+                it.next();
+                numRead++;
+            }
+        }
+        long plainReadNanos = System.nanoTime() - start;
+        report(name, "plain", plainBytes, plainBytes, plainWriteNanos, plainReadNanos, numRead);
+
+        for(int level : new int[] { Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION }) {
+            Path blockFile = Paths.get(TM_OUT_DIR + "bench-" + name + ".tlmb");
+
+            start = System.nanoTime();
+            try(TmBlockArchiveWriter writer = new TmBlockArchiveWriter(blockFile, TmBlockArchiveWriter.DEFAULT_BLOCK_SIZE, level)) {
+                for(TelemetryMessage tmMessage : messages) {
+                    writer.write(tmMessage);
+                }
+            }
+            long writeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            numRead = 0;
+            try(TmBlockArchiveReader reader = new TmBlockArchiveReader(blockFile)) {
+                Iterator<TelemetryMessage> it = reader.iterator();
+                while(it.hasNext()) {
+                    it.next();
+                    numRead++;
+                }
+            }
+            long readNanos = System.nanoTime() - start;
+            report(name, "deflate level " + level, plainBytes, Files.size(blockFile), writeNanos, readNanos, numRead);
+        }
+    }
+
+    private static TelemetryMessage[] createMessages(byte[] data) {
+        long startTime = TimeUtil.toNanos(TimeUtil.now());
+        Random random = new Random(4711);
+        ByteString frame = data != null ? ByteString.copyFrom(data) : null;
+        TelemetryMessage[] messages = new TelemetryMessage[NUM_TM_MESSAGES];
+        for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+            if(data == null) {
+                byte[] randomData = new byte[TM_FRAME_LENGTH];
+                random.nextBytes(randomData);
+                frame = ByteString.copyFrom(randomData);
+            }
+            messages[idx] = TelemetryMessage.newBuilder()
+                .setSequenceNumber(idx)
+                .setTelemetry(TelemetryData.newBuilder()
+                    .addMetaData(ReceptionMetaData.newBuilder()
+                        .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                        .setReceiveTime(TimeUtil.fromNanos(startTime + idx * FRAME_PERIOD))
+                        .setDataLinkContinuity(0)
+                        .build())
+                    .setData(frame)
+                    .build())
+                .build();
+        }
+        return messages;
+    }
+
+    private static void report(String payload, String format, long plainBytes, long fileBytes,
+            long writeNanos, long readNanos, long numRead) {
+        System.out.println(String.format("%-7s %-26s ratio %6.2f  size %,12d bytes  write %8.1f MB/s  read %8.1f MB/s (%d messages)",
+            payload, format, (double) plainBytes / fileBytes, fileBytes,
+            plainBytes * 1E3 / writeNanos, plainBytes * 1E3 / readNanos, numRead));
+    }
+}
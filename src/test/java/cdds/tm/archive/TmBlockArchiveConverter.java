@@ -0,0 +1,67 @@
+package cdds.tm.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+
+/**
+ * Converts between the plain delimited TM archive format and the block compressed TM archive format
+ */
+public class TmBlockArchiveConverter {
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.archive");
+
+    /**
+     * Converts a plain delimited TM archive to a block archive
+     * @param plainFile     The plain delimited TM archive
+     * @param blockFile     The block archive to create
+     * @param blockSize     The uncompressed block size
+     * @param level         The Deflater compression level
+     * @return              The number of converted messages
+     * @throws IOException
+     */
+    public static long toBlockArchive(Path plainFile, Path blockFile, int blockSize, int level) throws IOException {
+        long numMessages = 0;
+        try(MappedTmFile tmFile = new MappedTmFile(plainFile);
+            TmBlockArchiveWriter writer = new TmBlockArchiveWriter(blockFile, blockSize, level)) {
+            long offset = 0;
+            while(tmFile.readRecord(offset)) {
+                writer.write(tmFile.parseMessage(true));
+                offset = tmFile.nextRecordOffset();
+                numMessages++;
+            }
+            LOG.info("Converted " + numMessages + " messages of " + plainFile + " to " + blockFile
+                + ", " + writer.uncompressedBytes() + " -> " + writer.compressedBytes() + " bytes");
+        }
+        return numMessages;
+    }
+
+    /**
+     * Converts a block archive to a plain delimited TM archive
+     * @param blockFile     The block archive
+     * @param plainFile     The plain delimited TM archive to create
+     * @return              The number of converted messages
+     * @throws IOException
+     */
+    public static long toDelimited(Path blockFile, Path plainFile) throws IOException {
+        long numMessages = 0;
+        try(TmBlockArchiveReader reader = new TmBlockArchiveReader(blockFile);
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(plainFile), 1 << 16)) {
+            Iterator<TelemetryMessage> messages = reader.iterator();
+            while(messages.hasNext()) {
+                messages.next().writeDelimitedTo(out);
+                numMessages++;
+            }
+        }
+        LOG.info("Converted " + numMessages + " messages of " + blockFile + " to " + plainFile);
+        return numMessages;
+    }
+}
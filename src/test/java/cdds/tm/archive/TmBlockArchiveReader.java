@@ -0,0 +1,272 @@
+package cdds.tm.archive;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+
+/**
+ * Reads a block compressed TM archive written by TmBlockArchiveWriter.
+ *
+ * The block index is read on open. Each block is read with a positional read and decompressed
+ * on its own, without touching the other blocks of the archive.
+ */
+public class TmBlockArchiveReader implements Closeable {
+
+    private final Path archiveFile;
+    private final FileChannel channel;
+    private final Inflater inflater = new Inflater();
+
+    private final int numBlocks;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] uncompressedLengths;
+    private final long[] firstRecords;
+    private final int[] recordCounts;
+    private final long[] minTimes;
+    private final long[] maxTimes;
+
+    private byte[] compressed = new byte[0];
+
+    /**
+     * Opens a block archive and reads its block index
+     * @param archiveFile   The block archive file
+     * @throws IOException  If the file is not a block archive
+     */
+    public TmBlockArchiveReader(Path archiveFile) throws IOException {
+        this.archiveFile = archiveFile;
+        this.channel = FileChannel.open(archiveFile, StandardOpenOption.READ);
+
+        try {
+            ByteBuffer header = read(0, 12);
+            if(header.getInt() != TmBlockArchiveWriter.MAGIC) {
+                throw new IOException("Not a TM block archive: " + archiveFile);
+            }
+            int version = header.getInt();
+            int codec = header.getInt();
+            if(version != TmBlockArchiveWriter.FORMAT_VERSION || codec != TmBlockArchiveWriter.CODEC_DEFLATE) {
+                throw new IOException("Unsupported TM block archive version " + version + " codec " + codec + ": " + archiveFile);
+            }
+
+            ByteBuffer trailer = read(channel.size() - TmBlockArchiveWriter.TRAILER_LENGTH, TmBlockArchiveWriter.TRAILER_LENGTH);
+            long indexOffset = trailer.getLong();
+            numBlocks = trailer.getInt();
+            if(trailer.getInt() != TmBlockArchiveWriter.MAGIC) {
+                throw new IOException("TM block archive not closed properly, trailer missing: " + archiveFile);
+            }
+
+            offsets = new long[numBlocks];
+            compressedLengths = new int[numBlocks];
+            uncompressedLengths = new int[numBlocks];
+            firstRecords = new long[numBlocks];
+            recordCounts = new int[numBlocks];
+            minTimes = new long[numBlocks];
+            maxTimes = new long[numBlocks];
+
+            ByteBuffer index = read(indexOffset, numBlocks * TmBlockArchiveWriter.INDEX_ENTRY_LENGTH);
+            for(int idx = 0; idx < numBlocks; idx++) {
+                offsets[idx] = index.getLong();
+                compressedLengths[idx] = index.getInt();
+                uncompressedLengths[idx] = index.getInt();
+                firstRecords[idx] = index.getLong();
+                recordCounts[idx] = index.getInt();
+                minTimes[idx] = index.getLong();
+                maxTimes[idx] = index.getLong();
+            }
+        } catch(IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return The number of blocks of the archive
+     */
+    public int numBlocks() {
+        return numBlocks;
+    }
+
+    /**
+     * @return The number of records of the archive
+     */
+    public long numRecords() {
+        return numBlocks == 0 ? 0 : firstRecords[numBlocks - 1] + recordCounts[numBlocks - 1];
+    }
+
+    /**
+     * Finds the block holding the record with the given number
+     * @param recordNumber  The number of the record, starting with 0
+     * @return              The block number or -1 if the record does not exist
+     */
+    public int findBlock(long recordNumber) {
+        int low = 0;
+        int high = numBlocks - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            if(recordNumber < firstRecords[mid]) {
+                high = mid - 1;
+            } else if(recordNumber >= firstRecords[mid] + recordCounts[mid]) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads a single record
+     * @param recordNumber  The number of the record, starting with 0
+     * @return              The message of the record
+     * @throws IOException
+     */
+    public TelemetryMessage readRecord(long recordNumber) throws IOException {
+        int block = findBlock(recordNumber);
+        if(block < 0) {
+            throw new NoSuchElementException("No record " + recordNumber + " in " + archiveFile);
+        }
+        return readBlock(block).get((int) (recordNumber - firstRecords[block]));
+    }
+
+    /**
+     * Reads and decompresses one block
+     * @param block         The block number
+     * @return              The messages of the block
+     * @throws IOException  If the block cannot be read or decompressed
+     */
+    public List<TelemetryMessage> readBlock(int block) throws IOException {
+        int compressedLength = compressedLengths[block];
+        if(compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        ByteBuffer compressedBuffer = ByteBuffer.wrap(compressed, 0, compressedLength);
+        readFully(offsets[block] + TmBlockArchiveWriter.BLOCK_HEADER_LENGTH, compressedBuffer);
+
+        byte[] data = new byte[uncompressedLengths[block]]; // messages alias the block data
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int length = 0;
+            while(length < data.length && inflater.finished() == false) {
+                int inflated = inflater.inflate(data, length, data.length - length);
+                if(inflated == 0 && inflater.needsInput()) {
+                    break;
+                }
+                length += inflated;
+            }
+            if(length != data.length) {
+                throw new IOException("Block " + block + " of " + archiveFile + " decompressed to " + length
+                    + " instead of " + data.length + " bytes");
+            }
+        } catch(DataFormatException ex) {
+            throw new IOException("Corrupt block " + block + " of " + archiveFile, ex);
+        }
+
+        List<TelemetryMessage> messages = new ArrayList<>(recordCounts[block]);
+        CodedInputStream input = CodedInputStream.newInstance(data);
+        input.enableAliasing(true);
+        while(input.isAtEnd() == false) {
+            messages.add(input.readMessage(TelemetryMessage.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+        }
+        return messages;
+    }
+
+    /**
+     * Iterates the messages received in the given time range. Only blocks overlapping the time range are decompressed.
+     * @param fromTime  The start of the time range in nanoseconds since the CCSDS epoch (inclusive)
+     * @param toTime    The end of the time range in nanoseconds since the CCSDS epoch (exclusive)
+     * @return          An iterator over the messages in archive order
+     */
+    public Iterator<TelemetryMessage> query(long fromTime, long toTime) {
+        return new Iterator<TelemetryMessage>() {
+            private int block = -1;
+            private Iterator<TelemetryMessage> blockMessages = Collections.emptyIterator();
+            private TelemetryMessage next;
+            private long lastTime = Long.MIN_VALUE;
+
+            @Override
+            public boolean hasNext() {
+                while(next == null) {
+                    if(blockMessages.hasNext() == false) {
+                        do {
+                            block++;
+                        } while(block < numBlocks && (maxTimes[block] < fromTime || minTimes[block] >= toTime));
+
+                        if(block >= numBlocks) {
+                            return false;
+                        }
+                        try {
+                            blockMessages = readBlock(block).iterator();
+                        } catch(IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                        continue;
+                    }
+
+                    TelemetryMessage tmMessage = blockMessages.next();
+                    lastTime = TmArchiveIndex.receiveTime(tmMessage, lastTime);
+                    if(lastTime >= fromTime && lastTime < toTime) {
+                        next = tmMessage;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public TelemetryMessage next() {
+                if(hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+                TelemetryMessage tmMessage = next;
+                next = null;
+                return tmMessage;
+            }
+        };
+    }
+
+    /**
+     * @return An iterator over all messages of the archive
+     */
+    public Iterator<TelemetryMessage> iterator() {
+        return query(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(position, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(long position, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if(read < 0) {
+                throw new EOFException("Unexpected end of " + archiveFile);
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
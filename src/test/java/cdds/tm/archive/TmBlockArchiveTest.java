@@ -0,0 +1,118 @@
+package cdds.tm.archive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.util.TimeUtil;
+
+/**
+ * Test for the block compressed TM archive
+ *
+ * 1) testConversion - Converts a plain archive to a block archive and back, the plain archives are identical
+ * 2) testRandomAccess - Reads single records and a time range, decompressing only the needed blocks
+ */
+public class TmBlockArchiveTest {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 10_000;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final long START_TIME = TimeUtil.toNanos(TimeUtil.now());
+    private static final long FRAME_PERIOD = 1_000_000; // 1 ms
+    private static String TM_OUT_DIR = "target" + File.separatorChar + "tm-files" + File.separatorChar ;
+
+    @BeforeAll
+    public static void createOutputDir() throws IOException {
+        Files.createDirectories(Paths.get(TM_OUT_DIR));
+    }
+
+    @Test
+    public void testConversion() throws IOException {
+        Path plainFile = Paths.get(TM_OUT_DIR + "block-source.tlm");
+        Path blockFile = Paths.get(TM_OUT_DIR + "block-archive.tlmb");
+        Path convertedFile = Paths.get(TM_OUT_DIR + "block-converted.tlm");
+        writePlainArchive(plainFile);
+
+        assertEquals(NUM_TM_MESSAGES, TmBlockArchiveConverter.toBlockArchive(plainFile, blockFile, BLOCK_SIZE, Deflater.BEST_SPEED));
+        assertEquals(NUM_TM_MESSAGES, TmBlockArchiveConverter.toDelimited(blockFile, convertedFile));
+
+        System.out.println("Plain archive " + Files.size(plainFile) + " bytes, block archive " + Files.size(blockFile) + " bytes");
+        assertTrue(Files.size(blockFile) < Files.size(plainFile));
+        assertArrayEquals(Files.readAllBytes(plainFile), Files.readAllBytes(convertedFile));
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        Path blockFile = Paths.get(TM_OUT_DIR + "block-random.tlmb");
+        List<TelemetryMessage> written = new ArrayList<>();
+        try(TmBlockArchiveWriter writer = new TmBlockArchiveWriter(blockFile, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION)) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                TelemetryMessage tmMessage = createMessage(idx);
+                writer.write(tmMessage);
+                written.add(tmMessage);
+            }
+        }
+
+        try(TmBlockArchiveReader reader = new TmBlockArchiveReader(blockFile)) {
+            assertEquals(NUM_TM_MESSAGES, reader.numRecords());
+            assertTrue(reader.numBlocks() > 1);
+
+            for(int recordNumber : new int[] { NUM_TM_MESSAGES - 1, 0, 4711, 58, NUM_TM_MESSAGES / 2 }) {
+                assertEquals(written.get(recordNumber), reader.readRecord(recordNumber));
+            }
+
+            int lastBlock = reader.numBlocks() - 1;
+            List<TelemetryMessage> lastMessages = reader.readBlock(lastBlock);
+            assertEquals(written.subList(NUM_TM_MESSAGES - lastMessages.size(), NUM_TM_MESSAGES), lastMessages);
+
+            long from = START_TIME + 3_000 * FRAME_PERIOD;
+            long to = from + 500 * FRAME_PERIOD;
+            List<TelemetryMessage> range = new ArrayList<>();
+            Iterator<TelemetryMessage> messages = reader.query(from, to);
+            messages.forEachRemaining(range::add);
+            assertEquals(written.subList(3_000, 3_500), range);
+        }
+    }
+
+    private void writePlainArchive(Path archiveFile) throws IOException {
+        try(TmArchiveWriter writer = new TmArchiveWriter(archiveFile)) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                writer.write(createMessage(idx));
+            }
+        }
+    }
+
+    private static TelemetryMessage createMessage(int idx) {
+        return TelemetryMessage.newBuilder()
+            .setSequenceNumber(idx)
+            .setTelemetry(TelemetryData.newBuilder()
+                .addMetaData(ReceptionMetaData.newBuilder()
+                    .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                    .setReceiveTime(TimeUtil.fromNanos(START_TIME + idx * FRAME_PERIOD))
+                    .setDataLinkContinuity(-1)
+                    .build())
+                .setData(ByteString.copyFrom(TestTelemetryFile.getFrameData(TM_FRAME_LENGTH)))
+                .build())
+            .build();
+    }
+}
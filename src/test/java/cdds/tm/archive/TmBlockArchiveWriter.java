@@ -0,0 +1,219 @@
+package cdds.tm.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.jfr.ArchiveFlushEvent;
+
+/**
+ * Writes TelemetryMessages to a block compressed TM archive.
+ *
+ * Messages are serialized with writeDelimitedTo framing into blocks of about blockSize bytes.
+ * Each block is compressed on its own with the JDK Deflater, so a reader can decompress a single block.
+ * Writing a block is recorded as a JFR ArchiveFlushEvent.
+ * The repeated aperture IDs, annotations and receive times of consecutive messages compress within a block.
+ *
+ * File layout:
+ *  header:  magic (int), format version (int), codec (int)
+ *  blocks:  compressed length (int), uncompressed length (int), record count (int), compressed data
+ *  index:   per block: offset (long), compressed length (int), uncompressed length (int),
+ *           first record number (long), record count (int), min receive time (long), max receive time (long)
+ *  trailer: index offset (long), number of blocks (int), magic (int)
+ */
+public class TmBlockArchiveWriter implements Closeable {
+
+    /** Magic number of block archives */
+    static final int MAGIC = 0x43445442; // CDTB
+
+    /** Format version of block archives */
+    static final int FORMAT_VERSION = 1;
+
+    /** Codec identifier for Deflate */
+    static final int CODEC_DEFLATE = 1;
+
+    /** Length of the block header */
+    static final int BLOCK_HEADER_LENGTH = 12;
+
+    /** Length of an index entry */
+    static final int INDEX_ENTRY_LENGTH = 44;
+
+    /** Length of the trailer */
+    static final int TRAILER_LENGTH = 16;
+
+    /** Default uncompressed block size */
+    public static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+
+    private final String name;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final Deflater deflater;
+
+    private final ByteArrayOutputStream block;
+    private byte[] compressed;
+    private int blockRecords = 0;
+    private long blockMinTime = Long.MAX_VALUE;
+    private long blockMaxTime = Long.MIN_VALUE;
+    private long lastTime = Long.MIN_VALUE;
+
+    private long position;
+    private long numRecords = 0;
+    private long uncompressedBytes = 0;
+
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final DataOutputStream indexOutput = new DataOutputStream(index);
+    private int numBlocks = 0;
+
+    /**
+     * Creates a block archive with the default block size and fast compression.
+     * An existing file is overwritten.
+     * @param archiveFile   The block archive file
+     * @throws IOException
+     */
+    public TmBlockArchiveWriter(Path archiveFile) throws IOException {
+        this(archiveFile, DEFAULT_BLOCK_SIZE, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Creates a block archive. An existing file is overwritten.
+     * @param archiveFile   The block archive file
+     * @param blockSize     The uncompressed size of the blocks. Larger blocks compress better, smaller blocks
+     *                      reduce the cost of reading a single record.
+     * @param level         The Deflater compression level
+     * @throws IOException
+     */
+    public TmBlockArchiveWriter(Path archiveFile, int blockSize, int level) throws IOException {
+        this.name = archiveFile.getFileName().toString();
+        this.channel = FileChannel.open(archiveFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+        this.deflater = new Deflater(level);
+        this.block = new ByteArrayOutputStream(blockSize + blockSize / 4);
+        this.compressed = new byte[blockSize + blockSize / 4];
+
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(CODEC_DEFLATE).flip();
+        writeFully(header);
+    }
+
+    /**
+     * Appends a message to the archive
+     * @param tmMessage     The message to append
+     * @throws IOException
+     */
+    public void write(TelemetryMessage tmMessage) throws IOException {
+        tmMessage.writeDelimitedTo(block);
+
+        lastTime = TmArchiveIndex.receiveTime(tmMessage, lastTime);
+        blockMinTime = Math.min(blockMinTime, lastTime);
+        blockMaxTime = Math.max(blockMaxTime, lastTime);
+        blockRecords++;
+
+        if(block.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * @return The number of bytes written to the archive
+     */
+    public long compressedBytes() {
+        return position;
+    }
+
+    /**
+     * @return The number of bytes of the written messages in delimited framing
+     */
+    public long uncompressedBytes() {
+        return uncompressedBytes + block.size();
+    }
+
+    /**
+     * Compresses the current block and writes it to the archive
+     */
+    private void flushBlock() throws IOException {
+        if(blockRecords == 0) {
+            return;
+        }
+
+        ArchiveFlushEvent event = new ArchiveFlushEvent();
+        event.begin();
+
+        byte[] data = block.toByteArray();
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        int compressedLength = 0;
+        while(deflater.finished() == false) {
+            if(compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        indexOutput.writeLong(position);
+        indexOutput.writeInt(compressedLength);
+        indexOutput.writeInt(data.length);
+        indexOutput.writeLong(numRecords);
+        indexOutput.writeInt(blockRecords);
+        indexOutput.writeLong(blockMinTime);
+        indexOutput.writeLong(blockMaxTime);
+        numBlocks++;
+
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_LENGTH);
+        blockHeader.putInt(compressedLength).putInt(data.length).putInt(blockRecords).flip();
+        writeFully(blockHeader);
+        writeFully(ByteBuffer.wrap(compressed, 0, compressedLength));
+
+        event.end();
+        if(event.shouldCommit()) {
+            event.archive = name;
+            event.kind = ArchiveFlushEvent.BLOCK;
+            event.bytes = compressedLength;
+            event.records = blockRecords;
+            event.commit();
+        }
+
+        numRecords += blockRecords;
+        uncompressedBytes += data.length;
+        block.reset();
+        blockRecords = 0;
+        blockMinTime = Long.MAX_VALUE;
+        blockMaxTime = Long.MIN_VALUE;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes the last block, the block index and the trailer and closes the archive
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+
+            long indexOffset = position;
+            writeFully(ByteBuffer.wrap(index.toByteArray()));
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+            trailer.putLong(indexOffset).putInt(numBlocks).putInt(MAGIC).flip();
+            writeFully(trailer);
+        } finally {
+            deflater.end();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package cdds.tm.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Scans a TM archive of length delimited TelemetryMessages in parallel and aggregates the records.
+ *
+ * The archive is split into chunks. If the archive has an index sidecar file, the chunks start at indexed
+ * record offsets. Otherwise a chunk starts at the first offset from which a chain of records can be skimmed
+ * (resync). Each chunk is skimmed with a TmSkimReader in a ForkJoinPool and aggregated into its own result.
+ * Adjacent results are merged in archive order. If a chunk resynced on data which only looked like a record
+ * chain, the end of the preceding chunk does not meet its start and the chunk is scanned again from there.
+ *
+ * The archive must be complete, a record truncated at the end of the file fails the scan.
+ */
+public class TmParallelScanner {
+
+    /**
+     * An aggregation over the records of an archive.
+     * A result is created per chunk, the results of adjacent chunks are merged.
+     * @param <A>   The type of the result
+     */
+    public interface Aggregation<A> {
+
+        /**
+         * @return A new, empty result
+         */
+        A create();
+
+        /**
+         * Adds the current record of the reader to the result
+         * @param result    The result of the chunk
+         * @param record    The reader positioned on the record
+         */
+        void accumulate(A result, TmSkimReader record);
+
+        /**
+         * Merges two results
+         * @param first     The result of the earlier records
+         * @param second    The result of the later records
+         * @return          The merged result, can be one of the given results
+         */
+        A merge(A first, A second);
+    }
+
+    /** Default chunk size */
+    public static final long DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+
+    /** Maximum record length expected at resync, beyond the length of any frame */
+    static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    /** Number of records which must be skimmed from a resync offset */
+    static final int RESYNC_RECORDS = 4;
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.archive");
+
+    private final Path archiveFile;
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+    private final int fields;
+
+    /**
+     * Creates a scanner using the common ForkJoinPool and the default chunk size, extracting all fields
+     * @param archiveFile   The TM archive
+     */
+    public TmParallelScanner(Path archiveFile) {
+        this(archiveFile, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE, TmSkimReader.ALL_FIELDS);
+    }
+
+    /**
+     * Creates a scanner
+     * @param archiveFile   The TM archive
+     * @param pool          The pool executing the chunk scans
+     * @param chunkSize     The size of the chunks
+     * @param fields        The fields extracted by the TmSkimReader
+     */
+    public TmParallelScanner(Path archiveFile, ForkJoinPool pool, long chunkSize, int fields) {
+        this.archiveFile = archiveFile;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+        this.fields = fields;
+    }
+
+    /**
+     * Scans the archive
+     * @param aggregation   The aggregation of the records
+     * @return              The result over all records of the archive
+     * @throws IOException  If the archive cannot be read or holds invalid records
+     */
+    public <A> A scan(Aggregation<A> aggregation) throws IOException {
+        long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = split(size);
+
+            ChunkResult<A> result;
+            try {
+                result = pool.invoke(new ScanTask<>(channel, size, chunks, 0, chunks.size(), -1, aggregation));
+            } catch(UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            double seconds = (System.nanoTime() - start) / 1E9;
+            LOG.info("Scanned " + archiveFile + " in " + chunks.size() + " chunks, " + size + " bytes in "
+                + String.format("%.3f s, %.1f MB/s", seconds, size / seconds / 1E6));
+            return result.rest == null ? result.first : aggregation.merge(result.first, result.rest);
+        }
+    }
+
+    /**
+     * Splits the archive into chunks of { start offset, end offset, 1 if the start is a record offset }.
+     * A chunk holds the records starting at or after its start offset and before its end offset.
+     */
+    private List<long[]> split(long size) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        TmArchiveIndex index = readIndex(size);
+
+        if(index != null) {
+            long chunkStart = 0;
+            for(int entry = 1; entry < index.size(); entry++) {
+                if(index.offset(entry) - chunkStart >= chunkSize) {
+                    chunks.add(new long[] { chunkStart, index.offset(entry), 1 });
+                    chunkStart = index.offset(entry);
+                }
+            }
+            if(index.indexedLength() > chunkStart) {
+                chunks.add(new long[] { chunkStart, index.indexedLength(), 1 });
+                chunkStart = index.indexedLength();
+            }
+            // records appended after indexing
+            for(long offset = chunkStart; offset < size; offset += chunkSize) {
+                chunks.add(new long[] { offset, Math.min(offset + chunkSize, size), offset == chunkStart ? 1 : 0 });
+            }
+        } else {
+            for(long offset = 0; offset < size; offset += chunkSize) {
+                chunks.add(new long[] { offset, Math.min(offset + chunkSize, size), offset == 0 ? 1 : 0 });
+            }
+        }
+        return chunks;
+    }
+
+    private TmArchiveIndex readIndex(long size) {
+        Path indexFile = TmArchiveIndex.indexFile(archiveFile);
+        if(Files.exists(indexFile) == false) {
+            return null;
+        }
+
+        try {
+            TmArchiveIndex index = TmArchiveIndex.read(indexFile);
+            if(index.indexedLength() <= size && index.isStale(archiveFile) == false) {
+                return index;
+            }
+            LOG.warn("Index " + indexFile + " does not match the archive, scanning with resync");
+        } catch(IOException ex) {
+            LOG.warn("Cannot read index " + indexFile + ", scanning with resync: " + ex);
+        }
+        return null;
+    }
+
+    /**
+     * The result of scanning the records of a range of chunks. The result of the first chunk is kept apart
+     * from the merged result of the following chunks, so the first chunk alone can be scanned again.
+     * The following chunks start at the end of the records of the first chunk.
+     */
+    private static class ChunkResult<A> {
+        final long start;       // offset of the first record
+        final long firstEnd;    // offset after the last record of the first chunk
+        final A first;          // result of the first chunk
+        final long end;         // offset after the last record
+        final A rest;           // merged result of the following chunks, null if the range is one chunk
+
+        ChunkResult(long start, long firstEnd, A first, long end, A rest) {
+            this.start = start;
+            this.firstEnd = firstEnd;
+            this.first = first;
+            this.end = end;
+            this.rest = rest;
+        }
+    }
+
+    private class ScanTask<A> extends RecursiveTask<ChunkResult<A>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long size;
+        private final List<long[]> chunks;
+        private final int from;
+        private final int to;
+        private final long recordStart;
+        private final Aggregation<A> aggregation;
+
+        /**
+         * @param recordStart   The record offset to scan the first chunk from, -1 to scan it from its start
+         */
+        ScanTask(FileChannel channel, long size, List<long[]> chunks, int from, int to, long recordStart,
+                Aggregation<A> aggregation) {
+            this.channel = channel;
+            this.size = size;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.recordStart = recordStart;
+            this.aggregation = aggregation;
+        }
+
+        @Override
+        protected ChunkResult<A> compute() {
+            try {
+                if(to - from == 0) {
+                    return new ChunkResult<>(0, 0, aggregation.create(), 0, null);
+                }
+                if(to - from == 1) {
+                    long[] chunk = chunks.get(from);
+                    if(recordStart >= 0) {
+                        return scanChunk(recordStart, chunk[1], true);
+                    }
+                    return scanChunk(chunk[0], chunk[1], chunk[2] != 0);
+                }
+
+                int mid = (from + to) >>> 1;
+                ScanTask<A> second = new ScanTask<>(channel, size, chunks, mid, to, -1, aggregation);
+                second.fork();
+                ChunkResult<A> firstResult = new ScanTask<>(channel, size, chunks, from, mid, recordStart, aggregation).compute();
+                ChunkResult<A> secondResult = second.join();
+
+                if(firstResult.end != secondResult.start) {
+                    LOG.debug("Resync at " + secondResult.start + " does not meet record end " + firstResult.end
+                        + " in " + archiveFile + ", scanning again");
+                    secondResult = scanAgain(mid, firstResult.end, secondResult);
+                }
+
+                A rest = firstResult.rest == null ? secondResult.first : aggregation.merge(firstResult.rest, secondResult.first);
+                if(secondResult.rest != null) {
+                    rest = aggregation.merge(rest, secondResult.rest);
+                }
+                return new ChunkResult<>(firstResult.start, firstResult.firstEnd, firstResult.first, secondResult.end, rest);
+            } catch(IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        /**
+         * Scans the first chunk of the second half again from the end of the records of the first half.
+         * The results of the following chunks are kept if the records of the first chunk end where they start,
+         * otherwise they are scanned again from there as well.
+         * @param mid           The first chunk of the second half
+         * @param offset        The end of the records of the first half
+         * @param secondResult  The result of the second half
+         */
+        private ChunkResult<A> scanAgain(int mid, long offset, ChunkResult<A> secondResult) throws IOException {
+            ChunkResult<A> first = scanChunk(offset, chunks.get(mid)[1], true);
+            if(secondResult.rest == null) {
+                return first;
+            }
+            if(first.end == secondResult.firstEnd) {
+                return new ChunkResult<>(first.start, first.end, first.first, secondResult.end, secondResult.rest);
+            }
+
+            ChunkResult<A> rest = new ScanTask<>(channel, size, chunks, mid + 1, to, first.end, aggregation).compute();
+            A restResult = rest.rest == null ? rest.first : aggregation.merge(rest.first, rest.rest);
+            return new ChunkResult<>(first.start, first.end, first.first, rest.end, restResult);
+        }
+
+        /**
+         * Scans the records starting in the range of a chunk
+         * @param start         The start of the chunk
+         * @param end           The end of the chunk
+         * @param recordStart   true if the start is a record offset, false to resync
+         */
+        private ChunkResult<A> scanChunk(long start, long end, boolean recordStart) throws IOException {
+            long mapEnd = Math.min(size, Math.max(end, start) + MAX_RECORD_LENGTH);
+            MappedByteBuffer window = channel.map(MapMode.READ_ONLY, start, mapEnd - start);
+
+            long offset = recordStart ? start : resync(window, start, end, mapEnd == size);
+            A result = aggregation.create();
+            if(offset >= end) {
+                return new ChunkResult<>(offset, offset, result, offset, null);
+            }
+
+            window.position((int) (offset - start));
+            TmSkimReader reader = new TmSkimReader(window, offset, fields);
+            long recordOffset = offset;
+            while(recordOffset < end && reader.next()) {
+                aggregation.accumulate(result, reader);
+                recordOffset = reader.recordOffset() + reader.recordLength();
+            }
+            return new ChunkResult<>(offset, recordOffset, result, recordOffset, null);
+        }
+
+        /**
+         * Finds the first offset in the chunk from which a chain of records can be skimmed
+         * @return  The found offset or the end of the chunk if no record starts in the chunk
+         */
+        private long resync(ByteBuffer window, long start, long end, boolean windowAtEof) {
+            for(long offset = start; offset < end; offset++) {
+                if(isRecordChain(window, (int) (offset - start), windowAtEof)) {
+                    return offset;
+                }
+            }
+            return end;
+        }
+
+        private boolean isRecordChain(ByteBuffer window, int position, boolean windowAtEof) {
+            // cheap pre-check: a plausible length followed by a TelemetryMessage field tag
+            int length = 0;
+            int shift = 0;
+            int pos = position;
+            while(pos < window.limit() && shift < 28) {
+                int b = window.get(pos++);
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+                if(b >= 0) {
+                    break;
+                }
+            }
+            if(length <= 0 || length > MAX_RECORD_LENGTH || pos >= window.limit()) {
+                return false;
+            }
+            int tag = window.get(pos) & 0xff;
+            if(tag != 0x08 && tag != 0x52 && tag != 0xa2) { // sequenceNumber, telemetry, syncNotify
+                return false;
+            }
+
+            ByteBuffer chain = window.duplicate();
+            chain.position(position);
+            TmSkimReader reader = new TmSkimReader(chain, 0, fields);
+            try {
+                for(int records = 0; records < RESYNC_RECORDS; records++) {
+                    if(reader.next() == false) {
+                        return windowAtEof && records > 0;
+                    }
+                    if(reader.isTelemetry() == false && reader.isSyncNotify() == false) {
+                        return false;
+                    }
+                }
+                return true;
+            } catch(IOException ex) {
+                return false; // not a record, or a chain reaching the end of the window
+            }
+        }
+    }
+}
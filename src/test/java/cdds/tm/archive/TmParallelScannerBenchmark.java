@@ -0,0 +1,112 @@
+package cdds.tm.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameQuality;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Benchmark of the parallel TM archive scanner for 1 to 2 x number of cores threads.
+ * Run with: mvn test -Pbenchmark
+ *
+ * Counts the frames per VC of a 300k frame archive (about 350 MB) in the page cache, with and without index.
+ */
+@Tag("benchmark")
+public class TmParallelScannerBenchmark {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 300_000;
+    private static final int SPACECRAFT_ID = 71;
+    private static final Path TM_FILE = Paths.get("target" + File.separatorChar + "tm-files" + File.separatorChar + "bench-scan.tlm");
+
+    private static final TmParallelScanner.Aggregation<long[]> VC_COUNTS = new TmParallelScanner.Aggregation<>() {
+        @Override
+        public long[] create() {
+            return new long[64];
+        }
+
+        @Override
+        public void accumulate(long[] result, TmSkimReader record) {
+            result[GvcIdKey.virtualChannelId(record.gvcIdKey())]++;
+        }
+
+        @Override
+        public long[] merge(long[] first, long[] second) {
+            for(int vc = 0; vc < first.length; vc++) {
+                first[vc] += second[vc];
+            }
+            return first;
+        }
+    };
+
+    @BeforeAll
+    public static void writeTmFile() throws IOException {
+        Files.createDirectories(TM_FILE.getParent());
+        long startTime = TimeUtil.toNanos(TimeUtil.now());
+        byte[] data = TestTelemetryFile.getFrameData(TM_FRAME_LENGTH);
+
+        try(TmArchiveWriter writer = new TmArchiveWriter(TM_FILE)) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                // AOS primary header: TFVN(2) SCID(8) VCID(6)
+                data[0] = (byte) (0x40 | (SPACECRAFT_ID >>> 2));
+                data[1] = (byte) (((SPACECRAFT_ID & 0x03) << 6) | (idx % 8));
+
+                writer.write(TelemetryMessage.newBuilder()
+                    .setSequenceNumber(idx)
+                    .setTelemetry(TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setReceiveTime(TimeUtil.fromNanos(startTime + idx * 100_000L))
+                            .build())
+                        .setFrameQuality(FrameQuality.GOOD)
+                        .setData(ByteString.copyFrom(data))
+                        .build())
+                    .build());
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkScan() throws IOException {
+        long size = Files.size(TM_FILE);
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("Scanning " + size + " bytes with " + cores + " cores");
+
+        for(boolean withIndex : new boolean[] { true, false }) {
+            if(withIndex == false) {
+                Files.deleteIfExists(TmArchiveIndex.indexFile(TM_FILE));
+            }
+            for(int threads = 1; threads <= 2 * cores; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    TmParallelScanner scanner = new TmParallelScanner(TM_FILE, pool, TmParallelScanner.DEFAULT_CHUNK_SIZE / 4, TmSkimReader.GVCID);
+                    scanner.scan(VC_COUNTS); // warm up
+                    long start = System.nanoTime();
+                    long[] counts = scanner.scan(VC_COUNTS);
+                    long nanos = System.nanoTime() - start;
+                    System.out.println(String.format("%-8s %2d threads %8.1f MB/s %10.1f records/ms (vc0=%d)",
+                        withIndex ? "index" : "resync", threads, size * 1E3 / nanos, NUM_TM_MESSAGES * 1E6 / nanos, counts[0]));
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package cdds.tm.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.FrameQuality;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Test for the parallel TM archive scanner
+ *
+ * 1) testScanWithIndex - Scans an indexed archive in chunks starting at indexed offsets
+ * 2) testScanWithResync - Scans the archive without index. The frames carry delimited TelemetryMessages
+ *                         as payload to provoke false resyncs.
+ */
+public class TmParallelScannerTest {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 20_000;
+    private static final int SPACECRAFT_ID = 71;
+    private static final long START_TIME = TimeUtil.toNanos(TimeUtil.now());
+    private static final long FRAME_PERIOD = 10_000_000; // 10 ms
+    private static final long CHUNK_SIZE = 256 * 1024;
+    private static final String TM_OUT_DIR = "target" + File.separatorChar + "tm-files" + File.separatorChar;
+
+    private static FrameCounts expected;
+
+    /**
+     * Counts the frames per VC, quality and minute, the sync notifies and checks each record is counted once
+     */
+    private static class FrameCounts {
+        final Map<String, Long> frames = new TreeMap<>();
+        long syncNotifies = 0;
+        long records = 0;
+        long sequenceSum = 0;
+
+        void add(int gvcIdKey, int frameQuality, long receiveTime, long sequenceNumber, boolean telemetry) {
+            records++;
+            sequenceSum += sequenceNumber;
+            if(telemetry) {
+                frames.merge("vc=" + GvcIdKey.virtualChannelId(gvcIdKey) + " quality=" + frameQuality
+                    + " minute=" + (receiveTime - START_TIME) / 60_000_000_000L, 1L, Long::sum);
+            } else {
+                syncNotifies++;
+            }
+        }
+
+        FrameCounts merge(FrameCounts other) {
+            other.frames.forEach((key, count) -> frames.merge(key, count, Long::sum));
+            syncNotifies += other.syncNotifies;
+            records += other.records;
+            sequenceSum += other.sequenceSum;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "records=" + records + " syncNotifies=" + syncNotifies + " " + frames;
+        }
+    }
+
+    private static final TmParallelScanner.Aggregation<FrameCounts> FRAME_COUNTS = new TmParallelScanner.Aggregation<>() {
+        @Override
+        public FrameCounts create() {
+            return new FrameCounts();
+        }
+
+        @Override
+        public void accumulate(FrameCounts result, TmSkimReader record) {
+            result.add(record.gvcIdKey(), record.frameQuality(), record.receiveTime(), record.sequenceNumber(), record.isTelemetry());
+        }
+
+        @Override
+        public FrameCounts merge(FrameCounts first, FrameCounts second) {
+            return first.merge(second);
+        }
+    };
+
+    @BeforeAll
+    public static void writeArchives() throws IOException {
+        Files.createDirectories(Paths.get(TM_OUT_DIR));
+        expected = new FrameCounts();
+
+        // a payload of delimited TelemetryMessages, looking like a record chain
+        ByteArrayOutputStream embedded = new ByteArrayOutputStream();
+        for(int idx = 0; embedded.size() < TM_FRAME_LENGTH - 100; idx++) {
+            TelemetryMessage.newBuilder().setSequenceNumber(idx)
+                .setTelemetry(TelemetryData.newBuilder().setData(ByteString.copyFrom(new byte[40])).build())
+                .build().writeDelimitedTo(embedded);
+        }
+        byte[] text = TestTelemetryFile.getFrameData(TM_FRAME_LENGTH);
+
+        try(TmArchiveWriter indexed = new TmArchiveWriter(Paths.get(TM_OUT_DIR + "scan-indexed.tlm"));
+            TmArchiveWriter resync = new TmArchiveWriter(Paths.get(TM_OUT_DIR + "scan-resync.tlm"))) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                long receiveTime = START_TIME + idx * FRAME_PERIOD;
+                TelemetryMessage tmMessage;
+                if(idx % 500 == 0) {
+                    tmMessage = TelemetryMessage.newBuilder()
+                        .setSequenceNumber(idx)
+                        .setSyncNotify(SyncNotify.newBuilder().setTime(TimeUtil.fromNanos(receiveTime)).setDataDiscarded(idx).build())
+                        .build();
+                } else {
+                    byte[] data = new byte[TM_FRAME_LENGTH];
+                    if(idx % 2 == 0) {
+                        System.arraycopy(text, 0, data, 0, data.length);
+                    } else {
+                        byte[] payload = embedded.toByteArray();
+                        System.arraycopy(payload, 0, data, 6, payload.length);
+                    }
+                    // AOS primary header: TFVN(2) SCID(8) VCID(6)
+                    data[0] = (byte) (0x40 | (SPACECRAFT_ID >>> 2));
+                    data[1] = (byte) (((SPACECRAFT_ID & 0x03) << 6) | (idx % 5));
+
+                    tmMessage = TelemetryMessage.newBuilder()
+                        .setSequenceNumber(idx)
+                        .setTelemetry(TelemetryData.newBuilder()
+                            .addMetaData(ReceptionMetaData.newBuilder()
+                                .setReceiveTime(TimeUtil.fromNanos(receiveTime))
+                                .build())
+                            .setFrameQuality(idx % 7 == 0 ? FrameQuality.ERRED : FrameQuality.GOOD)
+                            .setData(ByteString.copyFrom(data))
+                            .build())
+                        .build();
+                }
+
+                indexed.write(tmMessage);
+                resync.write(tmMessage);
+                expected.add(TmArchiveIndex.gvcIdKey(tmMessage), tmMessage.getTelemetry().getFrameQualityValue(),
+                    TmArchiveIndex.receiveTime(tmMessage, 0), idx, tmMessage.hasTelemetry());
+            }
+        }
+        Files.delete(TmArchiveIndex.indexFile(Paths.get(TM_OUT_DIR + "scan-resync.tlm")));
+    }
+
+    @Test
+    public void testScanWithIndex() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FrameCounts counts = new TmParallelScanner(Paths.get(TM_OUT_DIR + "scan-indexed.tlm"), pool, CHUNK_SIZE,
+                TmSkimReader.ALL_FIELDS).scan(FRAME_COUNTS);
+            System.out.println("Indexed scan: " + counts);
+            assertCounts(counts);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testScanWithResync() throws IOException {
+        Path archiveFile = Paths.get(TM_OUT_DIR + "scan-resync.tlm");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(long chunkSize : new long[] { CHUNK_SIZE, 4096 + 17, Files.size(archiveFile) }) {
+                FrameCounts counts = new TmParallelScanner(archiveFile, pool, chunkSize, TmSkimReader.ALL_FIELDS).scan(FRAME_COUNTS);
+                assertCounts(counts);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertCounts(FrameCounts counts) {
+        assertEquals(NUM_TM_MESSAGES, counts.records);
+        assertEquals((long) NUM_TM_MESSAGES * (NUM_TM_MESSAGES - 1) / 2, counts.sequenceSum);
+        assertEquals(expected.syncNotifies, counts.syncNotifies);
+        assertEquals(expected.frames, counts.frames);
+    }
+}
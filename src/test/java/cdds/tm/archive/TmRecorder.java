@@ -0,0 +1,399 @@
+package cdds.tm.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.protobuf.CodedOutputStream;
+
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import cdds.jfr.ArchiveFlushEvent;
+import cdds.tm.EncodedTelemetryMessage;
+
+/**
+ * Records TelemetryMessages to size or time bounded segment files.
+ *
+ * Callers of record() only enqueue the message to a lock-free queue and never block.
+ * A single writer thread serializes the queued messages in batches using writeDelimitedTo
+ * framing, rolls the segments and syncs the segments to disk according to the durability.
+ * Encoded messages are copied into their delimited record on record() and written as they are,
+ * the writer only skims the record for the index.
+ * Each segment is a TM archive with its index sidecar file, readable by TmArchiveReader.
+ * Writes to and syncs of the segments are recorded as JFR ArchiveFlushEvents.
+ */
+public class TmRecorder implements Closeable {
+
+    /**
+     * The durability of the recorded messages, traded against disk load
+     */
+    public enum Durability {
+        NONE,           // never sync, the operating system writes back the data
+        SEGMENT,        // sync when a segment is closed
+        GROUP_COMMIT    // sync all messages written within a commit interval with one fsync
+    }
+
+    /** Suffix of the segment files */
+    public static final String SEGMENT_SUFFIX = ".tlm";
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private static final Logger LOG = LogManager.getLogger("cdds.tm.recorder");
+
+    private final Path directory;
+    private final String name;
+    private final long maxSegmentBytes;
+    private final long maxSegmentNanos;
+    private final Durability durability;
+    private final long commitIntervalNanos;
+    private final int maxQueuedMessages;
+
+    private final Queue<Object> queue = new ConcurrentLinkedQueue<>(); // TelemetryMessages and delimited records
+    private final AtomicInteger queuedMessages = new AtomicInteger();
+    private final AtomicLong recordedMessages = new AtomicLong();
+    private final AtomicLong droppedMessages = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean writerParked = false;
+    private volatile boolean closed = false;
+
+    // writer thread state
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private CodedOutputStream bufferOutput = CodedOutputStream.newInstance(writeBuffer);
+    private FileChannel segment;
+    private Path segmentFile;
+    private TmArchiveIndex segmentIndex;
+    private long segmentPosition;
+    private long segmentStartNanos;
+    private int segmentNumber = 0;
+    private boolean unsynced = false;
+    private long lastSyncNanos = System.nanoTime();
+
+    /**
+     * Creates a recorder and starts its writer thread
+     * @param directory             The directory of the segment files
+     * @param name                  The name prefix of the segment files
+     * @param maxSegmentBytes       The size after which a new segment is started
+     * @param maxSegmentMillis      The duration after which a new segment is started, 0 for no time bound
+     * @param durability            The durability of the recorded messages
+     * @param commitIntervalMillis  The commit interval for GROUP_COMMIT. Also the maximum time messages
+     *                              stay in the queue for the other durabilities.
+     * @param maxQueuedMessages     The maximum number of queued messages. Further messages are dropped and counted.
+     * @throws IOException          If the directory cannot be created
+     */
+    public TmRecorder(Path directory, String name, long maxSegmentBytes, long maxSegmentMillis,
+            Durability durability, long commitIntervalMillis, int maxQueuedMessages) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.name = name;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentNanos = TimeUnit.MILLISECONDS.toNanos(maxSegmentMillis);
+        this.durability = durability;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(commitIntervalMillis, 1));
+        this.maxQueuedMessages = maxQueuedMessages;
+
+        writerThread = new Thread(this::writeMessages, "TM recorder " + name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Enqueues a message for recording. Never blocks; if the queue is full the message is dropped.
+     * @param tmMessage     The message to record
+     * @return              false if the message was dropped
+     */
+    public boolean record(TelemetryMessage tmMessage) {
+        if(reserve() == false) {
+            return false;
+        }
+        enqueue(tmMessage);
+        return true;
+    }
+
+    /**
+     * Enqueues an encoded message for recording. The message is copied into its delimited record as the
+     * payload may refer to a buffer reused once the message is sent. Never blocks; if the queue is full
+     * the message is dropped.
+     * @param tmMessage     The encoded message to record
+     * @return              false if the message was dropped
+     */
+    public boolean record(EncodedTelemetryMessage tmMessage) {
+        if(reserve() == false) {
+            return false;
+        }
+
+        int messageLength = tmMessage.getSerializedSize();
+        int prefixLength = CodedOutputStream.computeUInt32SizeNoTag(messageLength);
+        byte[] record = new byte[prefixLength + messageLength];
+        try {
+            CodedOutputStream prefix = CodedOutputStream.newInstance(record, 0, prefixLength);
+            prefix.writeUInt32NoTag(messageLength);
+            prefix.flush();
+        } catch(IOException ex) {
+            throw new IllegalStateException(ex); // the array holds the prefix
+        }
+        System.arraycopy(tmMessage.getBuffer(), 0, record, prefixLength, tmMessage.getEncodedLength());
+        tmMessage.getPayload().copyTo(record, prefixLength + tmMessage.getEncodedLength());
+
+        enqueue(record);
+        return true;
+    }
+
+    /**
+     * Reserves a place in the queue
+     * @return false if the recorder is closed or the queue is full, the message is counted as dropped
+     */
+    private boolean reserve() {
+        if(closed || queuedMessages.incrementAndGet() > maxQueuedMessages) {
+            queuedMessages.decrementAndGet();
+            droppedMessages.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void enqueue(Object message) {
+        queue.offer(message);
+
+        if(writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * @return The number of recorded messages
+     */
+    public long getRecordedMessages() {
+        return recordedMessages.get();
+    }
+
+    /**
+     * @return The number of messages dropped because the queue was full
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * @return The number of currently queued messages
+     */
+    public int getQueuedMessages() {
+        return queuedMessages.get();
+    }
+
+    /**
+     * Stops recording after the queued messages are written and closes the current segment
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("TM recorder " + name + " closed. Recorded: " + recordedMessages.get() + " dropped: " + droppedMessages.get());
+    }
+
+    /**
+     * The writer thread loop: drains the queue in batches and commits according to the durability.
+     * The current segment is closed with its index also when writing failed.
+     */
+    private void writeMessages() {
+        try {
+            while(true) {
+                boolean wasClosed = closed; // read before draining, so no message is left behind
+
+                Object message;
+                while((message = queue.poll()) != null) {
+                    queuedMessages.decrementAndGet();
+                    if(message instanceof TelemetryMessage) {
+                        write((TelemetryMessage) message);
+                    } else {
+                        write((byte[]) message);
+                    }
+                }
+                flushBuffer();
+
+                long now = System.nanoTime();
+                if(durability == Durability.GROUP_COMMIT && unsynced && now - lastSyncNanos >= commitIntervalNanos) {
+                    sync();
+                }
+
+                if(wasClosed) {
+                    break;
+                }
+
+                writerParked = true;
+                if(queue.isEmpty() && closed == false) {
+                    LockSupport.parkNanos(commitIntervalNanos);
+                }
+                writerParked = false;
+            }
+        } catch(IOException ex) {
+            LOG.error("TM recorder " + name + " failed, recording stopped: " + ex);
+            closed = true;
+        } finally {
+            try {
+                closeSegment();
+            } catch(IOException ex) {
+                LOG.error("TM recorder " + name + " failed to close segment " + segmentFile + ": " + ex);
+            }
+        }
+    }
+
+    /**
+     * Serializes one message into the write buffer
+     */
+    private void write(TelemetryMessage tmMessage) throws IOException {
+        int messageLength = tmMessage.getSerializedSize();
+        int recordLength = CodedOutputStream.computeUInt32SizeNoTag(messageLength) + messageLength;
+        prepareWrite(recordLength);
+
+        if(recordLength > writeBuffer.capacity()) {
+            // larger than the write buffer, write directly
+            segment.write(ByteBuffer.wrap(serializeDelimited(tmMessage, messageLength, recordLength)));
+        } else {
+            bufferOutput.writeUInt32NoTag(messageLength);
+            tmMessage.writeTo(bufferOutput);
+        }
+
+        segmentIndex.add(segmentPosition, recordLength, tmMessage);
+        segmentPosition += recordLength;
+        recordedMessages.incrementAndGet();
+    }
+
+    /**
+     * Writes one delimited record of an encoded message as it is
+     */
+    private void write(byte[] record) throws IOException {
+        prepareWrite(record.length);
+
+        if(record.length > writeBuffer.capacity()) {
+            segment.write(ByteBuffer.wrap(record));
+        } else {
+            bufferOutput.writeRawBytes(record);
+        }
+
+        try(TmSkimReader skimReader = new TmSkimReader(ByteBuffer.wrap(record), TmSkimReader.ALL_FIELDS)) {
+            skimReader.next();
+            segmentIndex.add(segmentPosition, record.length, skimReader);
+        }
+        segmentPosition += record.length;
+        recordedMessages.incrementAndGet();
+    }
+
+    /**
+     * Rolls the segment if the record does not fit or the segment is due and makes room in the write buffer
+     */
+    private void prepareWrite(int recordLength) throws IOException {
+        if(segment == null || segmentPosition + recordLength > maxSegmentBytes && segmentPosition > 0
+            || maxSegmentNanos > 0 && System.nanoTime() - segmentStartNanos >= maxSegmentNanos) {
+            rollSegment();
+        }
+
+        if(recordLength > bufferOutput.spaceLeft()) {
+            flushBuffer();
+        }
+    }
+
+    private static byte[] serializeDelimited(TelemetryMessage tmMessage, int messageLength, int recordLength) throws IOException {
+        byte[] record = new byte[recordLength];
+        CodedOutputStream output = CodedOutputStream.newInstance(record);
+        output.writeUInt32NoTag(messageLength);
+        tmMessage.writeTo(output);
+        output.checkNoSpaceLeft();
+        return record;
+    }
+
+    /**
+     * Writes the serialized messages of the write buffer to the segment
+     */
+    private void flushBuffer() throws IOException {
+        bufferOutput.flush();
+        writeBuffer.flip();
+        if(writeBuffer.hasRemaining()) {
+            ArchiveFlushEvent event = new ArchiveFlushEvent();
+            event.begin();
+            long bytes = writeBuffer.remaining();
+            while(writeBuffer.hasRemaining()) {
+                segment.write(writeBuffer);
+                unsynced = true;
+            }
+            commit(event, ArchiveFlushEvent.BUFFER, bytes);
+        }
+        writeBuffer.clear();
+        bufferOutput = CodedOutputStream.newInstance(writeBuffer); // the encoder keeps its own position
+    }
+
+    private void sync() throws IOException {
+        ArchiveFlushEvent event = new ArchiveFlushEvent();
+        event.begin();
+        segment.force(false);
+        unsynced = false;
+        lastSyncNanos = System.nanoTime();
+        commit(event, ArchiveFlushEvent.SYNC, segmentPosition);
+    }
+
+    private void commit(ArchiveFlushEvent event, String kind, long bytes) {
+        event.end();
+        if(event.shouldCommit()) {
+            event.archive = name;
+            event.kind = kind;
+            event.bytes = bytes;
+            event.records = recordedMessages.get();
+            event.commit();
+        }
+    }
+
+    /**
+     * Closes the current segment and opens the next one
+     */
+    private void rollSegment() throws IOException {
+        closeSegment();
+
+        segmentFile = directory.resolve(String.format("%s-%06d%s", name, segmentNumber++, SEGMENT_SUFFIX));
+        segment = FileChannel.open(segmentFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+        segmentIndex = new TmArchiveIndex(TmArchiveIndex.DEFAULT_RECORDS_PER_ENTRY);
+        segmentPosition = 0;
+        segmentStartNanos = System.nanoTime();
+        LOG.info("TM recorder " + name + " started segment " + segmentFile);
+    }
+
+    /**
+     * Flushes and closes the current segment and writes its index, the segment is closed even if flushing fails
+     */
+    private void closeSegment() throws IOException {
+        if(segment == null) {
+            return;
+        }
+
+        try {
+            flushBuffer();
+            if(durability != Durability.NONE && unsynced) {
+                sync();
+            }
+        } finally {
+            writeBuffer.clear();
+            bufferOutput = CodedOutputStream.newInstance(writeBuffer);
+            try {
+                segment.close();
+            } finally {
+                segment = null;
+                segmentIndex.write(TmArchiveIndex.indexFile(segmentFile), segmentFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package cdds.tm.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.TmMessageTemplate;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Test for the segmented TM recorder
+ *
+ * 1) testSegmentedRecording - Records messages and encoded messages to 1 MB segments and reads all segments
+ *                             back in order with their indexes
+ * 2) testLargeBatch          - Records a batch much larger than the write buffer into one segment, the write
+ *                             buffer is flushed while the batch is drained and no message is lost
+ */
+public class TmRecorderTest {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 10_000;
+    private static final Path TM_OUT_DIR = Paths.get("target" + File.separatorChar + "tm-files" + File.separatorChar + "recorder");
+    private static final Path TM_BATCH_DIR = Paths.get("target" + File.separatorChar + "tm-files" + File.separatorChar + "recorder-batch");
+
+    @Test
+    public void testSegmentedRecording() throws IOException {
+        deleteFiles(TM_OUT_DIR);
+
+        byte[] frameData = TestTelemetryFile.getFrameData(TM_FRAME_LENGTH);
+        ByteString data = ByteString.copyFrom(frameData);
+        TmMessageTemplate template = new TmMessageTemplate(TelemetryData.newBuilder()
+            .addMetaData(ReceptionMetaData.newBuilder().build())
+            .build());
+
+        try(TmRecorder recorder = new TmRecorder(TM_OUT_DIR, "pass", 1 << 20, 0,
+                TmRecorder.Durability.GROUP_COMMIT, 50, NUM_TM_MESSAGES)) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                if(idx % 2 == 1) {
+                    // the payload refers to a buffer overwritten after recording
+                    byte[] buffer = frameData.clone();
+                    assertTrue(recorder.record(template.wrap(idx, TimeUtil.toNanos(TimeUtil.now()), -1,
+                        UnsafeByteOperations.unsafeWrap(buffer))));
+                    Arrays.fill(buffer, (byte) 0);
+                    continue;
+                }
+                assertTrue(recorder.record(TelemetryMessage.newBuilder()
+                    .setSequenceNumber(idx)
+                    .setTelemetry(TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setReceiveTime(TimeUtil.now())
+                            .build())
+                        .setData(data)
+                        .build())
+                    .build()));
+            }
+        }
+
+        List<Path> segments;
+        try(Stream<Path> files = Files.list(TM_OUT_DIR)) {
+            segments = files.filter(file -> file.toString().endsWith(TmRecorder.SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        System.out.println("Recorded " + NUM_TM_MESSAGES + " messages to " + segments.size() + " segments");
+        assertTrue(segments.size() > 1);
+
+        long sequenceNumber = 0;
+        for(Path segment : segments) {
+            assertTrue(Files.size(segment) <= 1 << 20);
+            TmArchiveIndex index = TmArchiveIndex.read(TmArchiveIndex.indexFile(segment));
+            assertFalse(index.isStale(segment));
+            assertTrue(index.isTimeOrdered());
+            long firstInSegment = sequenceNumber;
+
+            try(TmArchiveReader reader = new TmArchiveReader(segment)) {
+                Iterator<TelemetryMessage> messages = reader.query(0, Long.MAX_VALUE, GvcIdKey.UNKNOWN);
+                while(messages.hasNext()) {
+                    TelemetryMessage tmMessage = messages.next();
+                    assertEquals(sequenceNumber++, tmMessage.getSequenceNumber());
+                    assertEquals(data, tmMessage.getTelemetry().getData());
+                }
+            }
+            assertEquals(sequenceNumber - firstInSegment, index.numRecords());
+        }
+        assertEquals(NUM_TM_MESSAGES, sequenceNumber);
+    }
+
+    @Test
+    public void testLargeBatch() throws IOException {
+        deleteFiles(TM_BATCH_DIR);
+
+        ByteString data = ByteString.copyFrom(TestTelemetryFile.getFrameData(TM_FRAME_LENGTH));
+        TmMessageTemplate template = new TmMessageTemplate(TelemetryData.newBuilder()
+            .addMetaData(ReceptionMetaData.newBuilder().build())
+            .build());
+
+        // the messages are queued faster than written, a drain of the queue spans several write buffers
+        TmRecorder recorder = new TmRecorder(TM_BATCH_DIR, "batch", 1L << 30, 0,
+            TmRecorder.Durability.NONE, 1000, NUM_TM_MESSAGES);
+        try {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                assertTrue(recorder.record(template.wrap(idx, TimeUtil.toNanos(TimeUtil.now()), -1, data)));
+            }
+        } finally {
+            recorder.close();
+        }
+        System.out.println("Recorded " + recorder.getRecordedMessages() + " dropped " + recorder.getDroppedMessages());
+        assertEquals(NUM_TM_MESSAGES, recorder.getRecordedMessages());
+        assertEquals(0, recorder.getDroppedMessages());
+
+        List<Path> segments;
+        try(Stream<Path> files = Files.list(TM_BATCH_DIR)) {
+            segments = files.filter(file -> file.toString().endsWith(TmRecorder.SEGMENT_SUFFIX))
+                .collect(Collectors.toList());
+        }
+        assertEquals(1, segments.size());
+        assertTrue(Files.size(segments.get(0)) > 1 << 20);
+
+        long sequenceNumber = 0;
+        try(TmArchiveReader reader = new TmArchiveReader(segments.get(0))) {
+            Iterator<TelemetryMessage> messages = reader.query(0, Long.MAX_VALUE, GvcIdKey.UNKNOWN);
+            while(messages.hasNext()) {
+                TelemetryMessage tmMessage = messages.next();
+                assertEquals(sequenceNumber++, tmMessage.getSequenceNumber());
+                assertEquals(data, tmMessage.getTelemetry().getData());
+            }
+        }
+        assertEquals(NUM_TM_MESSAGES, sequenceNumber);
+    }
+
+    private static void deleteFiles(Path directory) throws IOException {
+        if(Files.exists(directory)) {
+            try(Stream<Path> files = Files.list(directory)) {
+                for(Path file : files.collect(Collectors.toList())) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
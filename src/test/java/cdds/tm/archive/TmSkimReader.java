@@ -0,0 +1,339 @@
+package cdds.tm.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
+
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Skims length delimited TelemetryMessages without materialising them.
+ *
+ * The reader walks the protobuf wire format with a CodedInputStream and extracts only the requested
+ * fields: sequenceNumber, the receive time of the first reception meta data (or the SyncNotify time),
+ * frameQuality and the GVCID of the frame primary header. The frame data (tag 30) is skipped by length,
+ * only its offset and length in the input are reported. No objects are created per record.
+ *
+ * Usage:
+ *  while(reader.next()) {
+ *      reader.sequenceNumber(); reader.receiveTime(); ...
+ *  }
+ */
+public class TmSkimReader implements Closeable {
+
+    // sequenceNumber and frameQuality are plain varints and always extracted
+
+    /** Extract the receive time of the first reception meta data or the SyncNotify time */
+    public static final int RECEIVE_TIME = 0x01;
+    /** Extract the GVCID from the frame primary header */
+    public static final int GVCID = 0x02;
+    /** Extract all fields */
+    public static final int ALL_FIELDS = RECEIVE_TIME | GVCID;
+
+    /** Receive time of records without a time */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int INPUT_BUFFER_SIZE = 1 << 16;
+
+    // TelemetryMessage
+    private static final int TAG_SEQUENCE_NUMBER = tag(1, WireFormat.WIRETYPE_VARINT);
+    private static final int TAG_TELEMETRY = tag(10, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int TAG_SYNC_NOTIFY = tag(20, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    // TelemetryData
+    private static final int TAG_META_DATA = tag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int TAG_FRAME_QUALITY = tag(10, WireFormat.WIRETYPE_VARINT);
+    private static final int TAG_DATA = tag(30, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    // ReceptionMetaData and SyncNotify
+    private static final int TAG_TIME = tag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    // DateTime
+    private static final int TAG_DAYS = tag(1, WireFormat.WIRETYPE_VARINT);
+    private static final int TAG_MS_OF_DAY = tag(10, WireFormat.WIRETYPE_VARINT);
+    private static final int TAG_PICO_SECS_OF_MS = tag(20, WireFormat.WIRETYPE_VARINT);
+
+    private final CodedInputStream input;
+    private final InputStream stream;
+    private final int fields;
+
+    private long position;          // offset of the next record in the input
+    private long recordOffset;
+    private int recordLength;
+
+    private boolean hasSequenceNumber;
+    private long sequenceNumber;
+    private boolean telemetry;
+    private boolean syncNotify;
+    private long receiveTime;
+    private int frameQuality;
+    private int gvcIdKey;
+    private long dataOffset;
+    private int dataLength;
+
+    /**
+     * Creates a skim reader for a file of length delimited TelemetryMessages.
+     * Files up to 2 GB are memory mapped, larger files are streamed.
+     * @param file          The TM file
+     * @param fields        The fields to extract, combination of RECEIVE_TIME and GVCID
+     * @throws IOException
+     */
+    public TmSkimReader(Path file, int fields) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() <= Integer.MAX_VALUE) {
+                this.stream = null;
+                this.input = CodedInputStream.newInstance(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+            } else {
+                this.stream = Files.newInputStream(file);
+                this.input = CodedInputStream.newInstance(stream, INPUT_BUFFER_SIZE);
+            }
+        }
+        this.fields = fields;
+    }
+
+    /**
+     * Creates a skim reader for a stream of length delimited TelemetryMessages.
+     * The stream is closed with the reader.
+     * @param stream        The input stream
+     * @param fields        The fields to extract
+     */
+    public TmSkimReader(InputStream stream, int fields) {
+        this.stream = stream;
+        this.input = CodedInputStream.newInstance(stream, INPUT_BUFFER_SIZE);
+        this.fields = fields;
+    }
+
+    /**
+     * Creates a skim reader for length delimited TelemetryMessages between position and limit of a buffer,
+     * e.g. a memory mapped TM file. Offsets are relative to the position of the buffer.
+     * @param buffer        The buffer
+     * @param fields        The fields to extract
+     */
+    public TmSkimReader(ByteBuffer buffer, int fields) {
+        this(buffer, 0, fields);
+    }
+
+    /**
+     * Creates a skim reader for length delimited TelemetryMessages between position and limit of a buffer
+     * holding a part of a TM file. Offsets are relative to the start of the file.
+     * @param buffer        The buffer
+     * @param baseOffset    The file offset of the buffer position
+     * @param fields        The fields to extract
+     */
+    public TmSkimReader(ByteBuffer buffer, long baseOffset, int fields) {
+        this.stream = null;
+        this.input = CodedInputStream.newInstance(buffer);
+        this.fields = fields;
+        this.position = baseOffset;
+    }
+
+    /**
+     * Skims the next record
+     * @return              false at the end of the input
+     * @throws IOException  If the input is truncated or not a TelemetryMessage
+     */
+    public boolean next() throws IOException {
+        position += input.getTotalBytesRead();
+        input.resetSizeCounter(); // keeps the counter small for inputs larger than 2 GB
+
+        if(input.isAtEnd()) {
+            return false;
+        }
+
+        hasSequenceNumber = false;
+        sequenceNumber = 0;
+        telemetry = false;
+        syncNotify = false;
+        receiveTime = NO_TIME;
+        frameQuality = 0;
+        gvcIdKey = GvcIdKey.UNKNOWN;
+        dataOffset = -1;
+        dataLength = 0;
+
+        recordOffset = position;
+        int messageLength = input.readRawVarint32();
+        recordLength = input.getTotalBytesRead() + messageLength;
+
+        int limit = input.pushLimit(messageLength);
+        int tag;
+        while((tag = input.readTag()) != 0) {
+            if(tag == TAG_SEQUENCE_NUMBER) {
+                hasSequenceNumber = true;
+                sequenceNumber = input.readInt64();
+            } else if(tag == TAG_TELEMETRY) {
+                telemetry = true;
+                syncNotify = false;
+                int dataLimit = input.pushLimit(input.readRawVarint32());
+                skimTelemetryData();
+                input.popLimit(dataLimit);
+            } else if(tag == TAG_SYNC_NOTIFY) {
+                syncNotify = true;
+                telemetry = false;
+                if((fields & RECEIVE_TIME) != 0) {
+                    int notifyLimit = input.pushLimit(input.readRawVarint32());
+                    skimTime();
+                    input.popLimit(notifyLimit);
+                } else {
+                    input.skipField(tag);
+                }
+            } else {
+                input.skipField(tag);
+            }
+        }
+        input.popLimit(limit);
+
+        return true;
+    }
+
+    private void skimTelemetryData() throws IOException {
+        boolean firstMetaData = true;
+        int tag;
+        while((tag = input.readTag()) != 0) {
+            if(tag == TAG_DATA) {
+                dataLength = input.readRawVarint32();
+                dataOffset = position + input.getTotalBytesRead();
+                if((fields & GVCID) != 0 && dataLength >= 4) {
+                    gvcIdKey = GvcIdKey.fromHeader(input.readRawByte() & 0xff, input.readRawByte() & 0xff,
+                        input.readRawByte() & 0xff, input.readRawByte() & 0xff);
+                    input.skipRawBytes(dataLength - 4);
+                } else {
+                    input.skipRawBytes(dataLength);
+                }
+            } else if(tag == TAG_FRAME_QUALITY) {
+                frameQuality = input.readEnum();
+            } else if(tag == TAG_META_DATA && firstMetaData && (fields & RECEIVE_TIME) != 0) {
+                firstMetaData = false;
+                int metaDataLimit = input.pushLimit(input.readRawVarint32());
+                skimTime();
+                input.popLimit(metaDataLimit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+    }
+
+    /**
+     * Reads the DateTime with tag 1 of a ReceptionMetaData or SyncNotify, skips all other fields
+     */
+    private void skimTime() throws IOException {
+        int tag;
+        while((tag = input.readTag()) != 0) {
+            if(tag == TAG_TIME) {
+                int timeLimit = input.pushLimit(input.readRawVarint32());
+                long days = 0;
+                long msOfDay = 0;
+                long picoSecsOfMs = 0;
+                while((tag = input.readTag()) != 0) {
+                    if(tag == TAG_DAYS) {
+                        days = input.readUInt32() & 0xffffffffL;
+                    } else if(tag == TAG_MS_OF_DAY) {
+                        msOfDay = input.readUInt32() & 0xffffffffL;
+                    } else if(tag == TAG_PICO_SECS_OF_MS) {
+                        picoSecsOfMs = input.readUInt32() & 0xffffffffL;
+                    } else {
+                        input.skipField(tag);
+                    }
+                }
+                input.popLimit(timeLimit);
+                receiveTime = TimeUtil.toNanos(days, msOfDay, picoSecsOfMs);
+            } else {
+                input.skipField(tag);
+            }
+        }
+    }
+
+    /**
+     * @return The offset of the current record in the input
+     */
+    public long recordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * @return The length of the current record including the length prefix
+     */
+    public int recordLength() {
+        return recordLength;
+    }
+
+    /**
+     * @return true if the current record has a sequence number
+     */
+    public boolean hasSequenceNumber() {
+        return hasSequenceNumber;
+    }
+
+    /**
+     * @return The sequence number of the current record, 0 if not present or not requested
+     */
+    public long sequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * @return true if the current record carries TelemetryData
+     */
+    public boolean isTelemetry() {
+        return telemetry;
+    }
+
+    /**
+     * @return true if the current record carries a SyncNotify
+     */
+    public boolean isSyncNotify() {
+        return syncNotify;
+    }
+
+    /**
+     * @return The receive time in nanoseconds since the CCSDS epoch, NO_TIME if not present or not requested
+     */
+    public long receiveTime() {
+        return receiveTime;
+    }
+
+    /**
+     * @return The FrameQuality enum number of the current record, 0 if not present
+     */
+    public int frameQuality() {
+        return frameQuality;
+    }
+
+    /**
+     * @return The GVCID key of the frame, GvcIdKey.UNKNOWN if not present or not requested
+     */
+    public int gvcIdKey() {
+        return gvcIdKey;
+    }
+
+    /**
+     * @return The offset of the frame data in the input, -1 if the record has no frame data
+     */
+    public long dataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * @return The length of the frame data
+     */
+    public int dataLength() {
+        return dataLength;
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return (fieldNumber << 3) | wireType;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(stream != null) {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package cdds.tm.archive;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameQuality;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Benchmark of a header only scan of a TM file: full parsing with parseDelimitedFrom against the skim reader.
+ * Run with: mvn test -Pbenchmark
+ *
+ * The scans compute the number of frames per GVCID and quality from the file in the page cache
+ * and report the time and the allocated bytes per record.
+ */
+@Tag("benchmark")
+public class TmSkimReaderBenchmark {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 200_000;
+    private static final int NUM_RUNS = 5;
+    private static final Path TM_FILE = Paths.get("target" + File.separatorChar + "tm-files" + File.separatorChar + "bench-skim.tlm");
+
+    @BeforeAll
+    public static void writeTmFile() throws IOException {
+        Files.createDirectories(TM_FILE.getParent());
+        long startTime = TimeUtil.toNanos(TimeUtil.now());
+        ByteString data = ByteString.copyFrom(TestTelemetryFile.getFrameData(TM_FRAME_LENGTH));
+
+        try(TmArchiveWriter writer = new TmArchiveWriter(TM_FILE)) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                writer.write(TelemetryMessage.newBuilder()
+                    .setSequenceNumber(idx)
+                    .setTelemetry(TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setReceiveTime(TimeUtil.fromNanos(startTime + idx * 100_000L))
+                            .setDataLinkContinuity(0)
+                            .build())
+                        .setFrameQuality(FrameQuality.GOOD)
+                        .setData(data)
+                        .build())
+                    .build());
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkHeaderScan() throws IOException {
+        for(int run = 0; run < NUM_RUNS; run++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            long[] counts = new long[8];
+            try(InputStream input = new BufferedInputStream(Files.newInputStream(TM_FILE), 1 << 16)) {
+                TelemetryMessage tmMessage;
+                while((tmMessage = TelemetryMessage.parseDelimitedFrom(input)) != null) {
+                    counts[GvcIdKey.virtualChannelId(TmArchiveIndex.gvcIdKey(tmMessage)) & 0x07]
+                        += tmMessage.getTelemetry().getFrameQualityValue();
+                }
+            }
+            report("parseDelimitedFrom", System.nanoTime() - start, allocatedBytes() - allocated, counts);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            counts = new long[8];
+            try(TmSkimReader reader = new TmSkimReader(TM_FILE, TmSkimReader.ALL_FIELDS)) {
+                while(reader.next()) {
+                    counts[GvcIdKey.virtualChannelId(reader.gvcIdKey()) & 0x07] += reader.frameQuality();
+                }
+            }
+            report("TmSkimReader mapped", System.nanoTime() - start, allocatedBytes() - allocated, counts);
+
+            allocated = allocatedBytes();
+            start = System.nanoTime();
+            counts = new long[8];
+            try(TmSkimReader reader = new TmSkimReader(Files.newInputStream(TM_FILE), TmSkimReader.ALL_FIELDS)) {
+                while(reader.next()) {
+                    counts[GvcIdKey.virtualChannelId(reader.gvcIdKey()) & 0x07] += reader.frameQuality();
+                }
+            }
+            report("TmSkimReader stream", System.nanoTime() - start, allocatedBytes() - allocated, counts);
+        }
+    }
+
+    private static void report(String reader, long nanos, long allocated, long[] counts) {
+        System.out.println(String.format("%-20s %8.1f ns/record %10.1f bytes/record allocated (%d frames)",
+            reader, (double) nanos / NUM_TM_MESSAGES, (double) allocated / NUM_TM_MESSAGES, counts[0]));
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+            .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,152 @@
+package cdds.tm.archive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Telemetry.SyncNotify;
+import ccsds.cdds.v1.Telemetry.TelemetryData;
+import ccsds.cdds.v1.Telemetry.TelemetryMessage;
+import ccsds.cdds.v1.Types.Annotation;
+import ccsds.cdds.v1.Types.ApertureId;
+import ccsds.cdds.v1.Types.FrameQuality;
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.ReceptionMetaData;
+import cdds.tm.TestTelemetryFile;
+import cdds.tm.frame.GvcIdKey;
+import cdds.util.TimeUtil;
+
+/**
+ * Test for the TM skim reader
+ *
+ * 1) testSkimFile - Skims a memory mapped TM file and compares the extracted fields and frame offsets with the fully parsed messages
+ * 2) testSkimStream - Skims the TM file as input stream
+ */
+public class TmSkimReaderTest {
+
+    private static final int TM_FRAME_LENGTH = 1115;
+    private static final int NUM_TM_MESSAGES = 5_000;
+    private static final int SPACECRAFT_ID = 71;
+    private static final long START_TIME = TimeUtil.toNanos(TimeUtil.now());
+    private static final Path TM_FILE = Paths.get("target" + File.separatorChar + "tm-files" + File.separatorChar + "skim.tlm");
+
+    private static List<TelemetryMessage> written;
+
+    @BeforeAll
+    public static void writeTmFile() throws IOException {
+        Files.createDirectories(TM_FILE.getParent());
+        written = new ArrayList<>();
+        byte[] data = TestTelemetryFile.getFrameData(TM_FRAME_LENGTH);
+
+        try(FileOutputStream output = new FileOutputStream(TM_FILE.toFile())) {
+            for(int idx = 0; idx < NUM_TM_MESSAGES; idx++) {
+                TelemetryMessage tmMessage;
+                if(idx % 1000 == 999) {
+                    tmMessage = TelemetryMessage.newBuilder()
+                        .setSequenceNumber(idx)
+                        .setSyncNotify(SyncNotify.newBuilder()
+                            .setTime(TimeUtil.fromNanos(START_TIME + idx * 1000))
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setDataDiscarded(idx)
+                            .build())
+                        .build();
+                } else {
+                    // AOS primary header: TFVN(2) SCID(8) VCID(6)
+                    data[0] = (byte) (0x40 | (SPACECRAFT_ID >>> 2));
+                    data[1] = (byte) (((SPACECRAFT_ID & 0x03) << 6) | (idx % 64));
+
+                    TelemetryData.Builder telemetry = TelemetryData.newBuilder()
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setApertureId(ApertureId.newBuilder().setLocalForm("NNO1").build())
+                            .setReceiveTime(TimeUtil.fromNanos(START_TIME + idx * 1000))
+                            .setDataLinkContinuity(0)
+                            .build())
+                        .addMetaData(ReceptionMetaData.newBuilder()
+                            .setReceiveTime(TimeUtil.fromNanos(START_TIME))
+                            .build())
+                        .addPrivateAnnotation(Annotation.newBuilder().setName("station").build())
+                        .setData(ByteString.copyFrom(data));
+                    if(idx % 3 != 0) {
+                        telemetry.setFrameQuality(idx % 3 == 1 ? FrameQuality.GOOD : FrameQuality.ERRED);
+                    }
+                    tmMessage = TelemetryMessage.newBuilder()
+                        .setSequenceNumber(idx)
+                        .setTelemetry(telemetry.build())
+                        .build();
+                }
+
+                tmMessage.writeDelimitedTo(output);
+                written.add(tmMessage);
+            }
+        }
+    }
+
+    @Test
+    public void testSkimFile() throws IOException {
+        byte[] file = Files.readAllBytes(TM_FILE);
+        try(TmSkimReader reader = new TmSkimReader(TM_FILE, TmSkimReader.ALL_FIELDS)) {
+            verify(reader, ByteBuffer.wrap(file));
+        }
+
+        // without the optional fields
+        try(TmSkimReader reader = new TmSkimReader(TM_FILE, 0)) {
+            assertTrue(reader.next());
+            assertEquals(0, reader.sequenceNumber());
+            assertEquals(TmSkimReader.NO_TIME, reader.receiveTime());
+            assertEquals(GvcIdKey.UNKNOWN, reader.gvcIdKey());
+            assertEquals(TM_FRAME_LENGTH, reader.dataLength());
+        }
+    }
+
+    @Test
+    public void testSkimStream() throws IOException {
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(TM_FILE));
+        try(TmSkimReader reader = new TmSkimReader(Files.newInputStream(TM_FILE), TmSkimReader.ALL_FIELDS)) {
+            verify(reader, file);
+        }
+    }
+
+    private static void verify(TmSkimReader reader, ByteBuffer file) throws IOException {
+        long offset = 0;
+        for(TelemetryMessage tmMessage : written) {
+            assertTrue(reader.next());
+            assertEquals(offset, reader.recordOffset());
+            offset += reader.recordLength();
+
+            assertEquals(tmMessage.getSequenceNumber(), reader.sequenceNumber());
+            assertEquals(TmArchiveIndex.receiveTime(tmMessage, TmSkimReader.NO_TIME), reader.receiveTime());
+            assertEquals(tmMessage.hasTelemetry(), reader.isTelemetry());
+            assertEquals(tmMessage.hasSyncNotify(), reader.isSyncNotify());
+
+            if(tmMessage.hasTelemetry()) {
+                TelemetryData telemetry = tmMessage.getTelemetry();
+                assertEquals(telemetry.getFrameQualityValue(), reader.frameQuality());
+                assertEquals(TmArchiveIndex.gvcIdKey(tmMessage), reader.gvcIdKey());
+                assertEquals(FrameVersion.AOS_VALUE, GvcIdKey.version(reader.gvcIdKey()));
+                assertEquals(telemetry.getData().size(), reader.dataLength());
+
+                ByteBuffer frame = file.duplicate();
+                frame.position((int) reader.dataOffset()).limit((int) reader.dataOffset() + reader.dataLength());
+                assertEquals(telemetry.getData(), ByteString.copyFrom(frame));
+            } else {
+                assertEquals(-1, reader.dataOffset());
+            }
+        }
+        assertTrue(reader.next() == false);
+        assertEquals(file.limit(), offset);
+    }
+}
@@ -0,0 +1,136 @@
+package cdds.tm.frame;
+
+import java.util.Arrays;
+
+/**
+ * Computes the data link continuity of ReceptionMetaData from the frame counts of the received frames.
+ *
+ * The data link continuity of a frame is the number of frames missing on its channel since the previous frame,
+ * 0 for the direct successor. It is -1 for the first frame of a channel, for frames without a frame count,
+ * if the length of the frame count changed and for the master channel of AOS and USLP frames, which has no
+ * frame count. The VC frame count wraps at 2^bits: 8 bits for TM, 24 or 28 bits with the cycle for AOS and the
+ * 0 to 56 bits of the USLP count. The continuity of TM master channels follows the 8 bit master channel frame count.
+ *
+ * The last frame counts are kept in primitive arrays with 64 VC slots and one master channel slot per
+ * master channel (frame version and spacecraft ID). The arrays only grow for a new master channel, computing
+ * the continuity creates no objects. Not thread safe, one instance serves the frames of one production.
+ */
+public class DataLinkContinuity {
+
+    /** The data link continuity of the first frame or of frames without frame count */
+    public static final long UNKNOWN = -1;
+
+    private static final int VC_SLOTS = 64;
+    private static final int MC_SLOT = VC_SLOTS;               // the master channel frame count of TM
+    private static final int CHANNEL_SLOTS = VC_SLOTS + 1;
+
+    private int[] masterChannels = new int[1];                 // the master channel keys
+    private int numMasterChannels = 0;
+    private int lastMasterChannel = -1;                        // index of the last master channel looked up
+
+    private long[] counts = new long[CHANNEL_SLOTS];           // the last frame count, -1 for none
+    private byte[] countBits = new byte[CHANNEL_SLOTS];        // the number of bits of the last frame count
+
+    /**
+     * Computes the data link continuity of a frame on its virtual channel
+     * @param header    The decoder wrapped around the frame
+     * @return          The number of frames missing on the VC before the frame, -1 if unknown
+     */
+    public long virtualChannel(TransferFrameHeader header) {
+        if(header.isValid() == false) {
+            return UNKNOWN;
+        }
+        return virtualChannel(header.gvcIdKey(), header.virtualChannelFrameCount(), header.virtualChannelFrameCountBits());
+    }
+
+    /**
+     * Computes the data link continuity of a frame on its master channel
+     * @param header    The decoder wrapped around the frame
+     * @return          The number of frames missing on the master channel before the frame, -1 if unknown and
+     *                  for AOS and USLP frames
+     */
+    public long masterChannel(TransferFrameHeader header) {
+        int countValue = header.masterChannelFrameCount();
+        if(header.isValid() == false || countValue < 0) {
+            return UNKNOWN;
+        }
+        return masterChannel(header.gvcIdKey(), countValue);
+    }
+
+    /**
+     * Computes the data link continuity of a TM frame on its master channel from the given frame count
+     * @param gvcIdKey  The GVCID key of the frame
+     * @param count     The 8 bit master channel frame count of the frame
+     * @return          The number of frames missing on the master channel before the frame, -1 if unknown
+     */
+    public long masterChannel(int gvcIdKey, int count) {
+        if(gvcIdKey < 0) {
+            return UNKNOWN;
+        }
+        return update(channelIndex(gvcIdKey) + MC_SLOT, count, 8);
+    }
+
+    /**
+     * Computes the data link continuity of a frame on its virtual channel from the given frame count
+     * @param gvcIdKey  The GVCID key of the frame
+     * @param count     The VC frame count of the frame, -1 for none
+     * @param bits      The number of bits of the frame count, 1 to 63, 0 for none
+     * @return          The number of frames missing on the VC before the frame, -1 if unknown
+     */
+    public long virtualChannel(int gvcIdKey, long count, int bits) {
+        if(gvcIdKey < 0) {
+            return UNKNOWN;
+        }
+        return update(channelIndex(gvcIdKey) + GvcIdKey.virtualChannelId(gvcIdKey), count, bits);
+    }
+
+    /**
+     * Forgets the frame counts of all channels, the next frame of each channel is a first frame
+     */
+    public void reset() {
+        numMasterChannels = 0;
+        lastMasterChannel = -1;
+    }
+
+    private long update(int slot, long count, int bits) {
+        long lastCount = counts[slot];
+        int lastBits = countBits[slot];
+        counts[slot] = count;
+        countBits[slot] = (byte) bits;
+
+        if(bits == 0 || count < 0 || lastCount < 0 || lastBits != bits) {
+            return UNKNOWN;
+        }
+        return (count - lastCount - 1) & ((1L << bits) - 1);
+    }
+
+    /**
+     * @return The index of the first slot of the master channel of the GVCID, added with empty slots if new
+     */
+    private int channelIndex(int gvcIdKey) {
+        int masterChannel = GvcIdKey.masterChannel(gvcIdKey);
+        if(lastMasterChannel >= 0 && masterChannels[lastMasterChannel] == masterChannel) {
+            return lastMasterChannel * CHANNEL_SLOTS;
+        }
+
+        for(int idx = 0; idx < numMasterChannels; idx++) {
+            if(masterChannels[idx] == masterChannel) {
+                lastMasterChannel = idx;
+                return idx * CHANNEL_SLOTS;
+            }
+        }
+
+        if(numMasterChannels == masterChannels.length) {
+            int capacity = 2 * masterChannels.length;
+            masterChannels = Arrays.copyOf(masterChannels, capacity);
+            counts = Arrays.copyOf(counts, capacity * CHANNEL_SLOTS);
+            countBits = Arrays.copyOf(countBits, capacity * CHANNEL_SLOTS);
+        }
+
+        int idx = numMasterChannels++;
+        masterChannels[idx] = masterChannel;
+        Arrays.fill(counts, idx * CHANNEL_SLOTS, (idx + 1) * CHANNEL_SLOTS, -1);
+        lastMasterChannel = idx;
+        return idx * CHANNEL_SLOTS;
+    }
+}
@@ -0,0 +1,140 @@
+package cdds.tm.frame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+
+/**
+ * Test for the data link continuity computation
+ *
+ * 1) testTm - Follows the VC and master channel frame counts of TM frames of two VCs across the wrap-around
+ * 2) testAos - Follows 24 bit AOS counts across the wrap-around, a change to the 28 bit count with cycle
+ *              and the master channel without count
+ * 3) testUslp - Follows USLP counts of several lengths and frames without count
+ * 4) testChannels - Follows the counts of more master channels than initially held and resets
+ */
+public class DataLinkContinuityTest {
+
+    @Test
+    public void testTm() {
+        DataLinkContinuity continuity = new DataLinkContinuity();
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        // SCID 0x123, VC 5: MC count, VC count
+        assertEquals(-1, continuity.virtualChannel(header.wrap(tm(5, 254, 254))));
+        assertEquals(-1, continuity.masterChannel(header));
+        assertEquals(0, continuity.virtualChannel(header.wrap(tm(5, 255, 255))));
+        assertEquals(0, continuity.masterChannel(header));
+        assertEquals(0, continuity.virtualChannel(header.wrap(tm(5, 0, 0))));
+        assertEquals(0, continuity.masterChannel(header));
+
+        // VC 2 on the same master channel
+        assertEquals(-1, continuity.virtualChannel(header.wrap(tm(2, 1, 100))));
+        assertEquals(0, continuity.masterChannel(header));
+
+        // 3 frames of VC 5 lost across the wrap-around, 2 frames of the master channel
+        assertEquals(3, continuity.virtualChannel(header.wrap(tm(5, 4, 4))));
+        assertEquals(2, continuity.masterChannel(header));
+
+        // the same count again: a full cycle is missing
+        assertEquals(255, continuity.virtualChannel(header.wrap(tm(5, 5, 4))));
+        assertEquals(1, continuity.virtualChannel(header.wrap(tm(2, 6, 102))));
+    }
+
+    @Test
+    public void testAos() {
+        DataLinkContinuity continuity = new DataLinkContinuity();
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        assertEquals(-1, continuity.virtualChannel(header.wrap(aos(33, 0xfffffe, -1))));
+        assertEquals(0, continuity.virtualChannel(header.wrap(aos(33, 0xffffff, -1))));
+        assertEquals(0, continuity.virtualChannel(header.wrap(aos(33, 0, -1))));
+        assertEquals(9, continuity.virtualChannel(header.wrap(aos(33, 10, -1))));
+        assertEquals(-1, continuity.masterChannel(header));
+
+        // the VC frame count cycle is used from now on
+        assertEquals(-1, continuity.virtualChannel(header.wrap(aos(33, 0xffffff, 0xf))));
+        assertEquals(0, continuity.virtualChannel(header.wrap(aos(33, 0, 0))));
+        assertEquals(0x1000000 - 1, continuity.virtualChannel(header.wrap(aos(33, 0, 1))));
+    }
+
+    @Test
+    public void testUslp() {
+        DataLinkContinuity continuity = new DataLinkContinuity();
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        assertEquals(-1, continuity.virtualChannel(header.wrap(uslp(1, 0xff))));
+        assertEquals(0, continuity.virtualChannel(header.wrap(uslp(1, 0))));
+
+        // the length of the count changed
+        assertEquals(-1, continuity.virtualChannel(header.wrap(uslp(2, 0))));
+        assertEquals(0xfffe, continuity.virtualChannel(header.wrap(uslp(2, 0xffff))));
+        assertEquals(-1, continuity.virtualChannel(header.wrap(uslp(7, 0x00ffffffffffffffL))));
+        assertEquals(0, continuity.virtualChannel(header.wrap(uslp(7, 0))));
+        assertEquals(1, continuity.virtualChannel(header.wrap(uslp(7, 2))));
+
+        // no count
+        assertEquals(-1, continuity.virtualChannel(header.wrap(uslp(0, 0))));
+        assertEquals(-1, continuity.virtualChannel(header.wrap(uslp(0, 0))));
+        assertEquals(-1, continuity.masterChannel(header));
+    }
+
+    @Test
+    public void testChannels() {
+        DataLinkContinuity continuity = new DataLinkContinuity();
+
+        for(int count = 0; count < 3; count++) {
+            for(int scId = 0; scId < 100; scId++) {
+                assertEquals(count == 0 ? -1 : 0,
+                    continuity.virtualChannel(GvcIdKey.of(FrameVersion.AOS_VALUE, scId, scId % 64), count, 24));
+                assertEquals(count == 0 ? -1 : 0,
+                    continuity.masterChannel(GvcIdKey.of(FrameVersion.TM_TC_SDLP_VALUE, scId, 0), count));
+            }
+        }
+        assertEquals(-1, continuity.virtualChannel(GvcIdKey.UNKNOWN, 3, 24));
+
+        continuity.reset();
+        assertEquals(-1, continuity.virtualChannel(GvcIdKey.of(FrameVersion.AOS_VALUE, 1, 1), 3, 24));
+        assertEquals(-1, continuity.masterChannel(GvcIdKey.of(FrameVersion.TM_TC_SDLP_VALUE, 1, 0), 3));
+        assertEquals(0, continuity.virtualChannel(GvcIdKey.of(FrameVersion.AOS_VALUE, 1, 1), 4, 24));
+    }
+
+    /**
+     * @return The primary header of a TM frame of SCID 0x123 and the given VC and frame counts
+     */
+    private static ByteString tm(int vcId, int mcCount, int vcCount) {
+        return frame(0x12, 0x30 | (vcId << 1), mcCount, vcCount, 0x07, 0xff);
+    }
+
+    /**
+     * @return The primary header of an AOS frame of SCID 0x42 and the given VC, count and cycle, -1 for no cycle
+     */
+    private static ByteString aos(int vcId, int count, int cycle) {
+        return frame(0x50, 0x80 | vcId, count >>> 16, count >>> 8, count, cycle < 0 ? 0 : 0x40 | cycle);
+    }
+
+    /**
+     * @return The primary header of a USLP frame of SCID 0x4321 and VC 33 with a count of the given length
+     */
+    private static ByteString uslp(int countLength, long count) {
+        int[] octets = new int[7 + countLength];
+        int[] header = { 0xc4, 0x32, 0x14, 0x2a, 0x04, 0x5a, countLength };
+        System.arraycopy(header, 0, octets, 0, header.length);
+        for(int idx = 0; idx < countLength; idx++) {
+            octets[7 + idx] = (int) (count >>> (8 * (countLength - 1 - idx)));
+        }
+        return frame(octets);
+    }
+
+    private static ByteString frame(int... octets) {
+        byte[] frame = new byte[octets.length];
+        for(int idx = 0; idx < octets.length; idx++) {
+            frame[idx] = (byte) octets[idx];
+        }
+        return ByteString.copyFrom(frame);
+    }
+}
@@ -0,0 +1,138 @@
+package cdds.tm.frame;
+
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+import ccsds.cdds.v1.Types.GvcId;
+
+/**
+ * Packs a Global Virtual Channel Identifier (frame version, spacecraft ID, VC ID) into a primitive int.
+ *
+ * Layout of the key: | frame version (4 bit) | spacecraft ID (16 bit) | VC ID (6 bit) |
+ *
+ * The frame version is the number of the FrameVersion enum, which fits 4 bits for TM, AOS, PROX1 and USLP.
+ * A negative key denotes an unknown GVCID.
+ */
+public class GvcIdKey {
+
+    public static final int UNKNOWN = -1;
+
+    private static final int VC_BITS = 6;
+    private static final int SC_BITS = 16;
+
+    private static final int VC_MASK = (1 << VC_BITS) - 1;
+    private static final int SC_MASK = (1 << SC_BITS) - 1;
+
+    /**
+     * Creates the key for the given GVCID elements
+     * @param version   The frame version number (FrameVersion enum number)
+     * @param scId      The spacecraft ID
+     * @param vcId      The virtual channel ID
+     * @return          The packed GVCID key
+     */
+    public static int of(int version, int scId, int vcId) {
+        return (version << (SC_BITS + VC_BITS)) | ((scId & SC_MASK) << VC_BITS) | (vcId & VC_MASK);
+    }
+
+    /**
+     * Creates the key for the given GVCID. A missing VC ID is mapped to VC 0.
+     * @param gvcId     The GVCID
+     * @return          The packed GVCID key
+     */
+    public static int of(GvcId gvcId) {
+        return of(gvcId.getVersionValue(), gvcId.getSpacecraftId(), gvcId.getVirtualChannelId());
+    }
+
+    /**
+     * Reads the GVCID out of the primary header of a TM, AOS or USLP transfer frame.
+     * @param frame     The frame data
+     * @return          The GVCID key or UNKNOWN for other frame versions or too short frames
+     */
+    public static int fromFrame(ByteString frame) {
+        if(frame.size() < 4) {
+            return UNKNOWN;
+        }
+
+        return fromHeader(frame.byteAt(0) & 0xff, frame.byteAt(1) & 0xff, frame.byteAt(2) & 0xff, frame.byteAt(3) & 0xff);
+    }
+
+    /**
+     * Reads the GVCID out of the primary header of a TM, AOS or USLP transfer frame.
+     * @param frame     The buffer holding the frame
+     * @param offset    The absolute offset of the frame in the buffer
+     * @param length    The length of the frame
+     * @return          The GVCID key or UNKNOWN for other frame versions or too short frames
+     */
+    public static int fromFrame(ByteBuffer frame, int offset, int length) {
+        if(length < 4) {
+            return UNKNOWN;
+        }
+
+        return fromHeader(frame.get(offset) & 0xff, frame.get(offset + 1) & 0xff,
+            frame.get(offset + 2) & 0xff, frame.get(offset + 3) & 0xff);
+    }
+
+    /**
+     * Decodes the GVCID from the first four octets of a TM, AOS or USLP transfer frame primary header
+     * @param b0        The first octet of the frame (0..255)
+     * @param b1        The second octet of the frame (0..255)
+     * @param b2        The third octet of the frame (0..255)
+     * @param b3        The fourth octet of the frame (0..255)
+     * @return          The GVCID key or UNKNOWN for other frame versions
+     */
+    public static int fromHeader(int b0, int b1, int b2, int b3) {
+        switch(b0 >>> 6) {
+            case 0: // TM: TFVN(2) SCID(10) VCID(3)
+                return of(FrameVersion.TM_TC_SDLP_VALUE, ((b0 & 0x3f) << 4) | (b1 >>> 4), (b1 >>> 1) & 0x07);
+            case 1: // AOS: TFVN(2) SCID(8) VCID(6)
+                return of(FrameVersion.AOS_VALUE, ((b0 & 0x3f) << 2) | (b1 >>> 6), b1 & 0x3f);
+            case 3:
+                if((b0 >>> 4) == 0x0c) { // USLP: TFVN(4) SCID(16) S/D(1) VCID(6) MAP ID(4) EOFPH(1)
+                    return of(FrameVersion.USLP_VALUE, ((b0 & 0x0f) << 12) | (b1 << 4) | (b2 >>> 4), ((b2 & 0x07) << 3) | (b3 >>> 5));
+                }
+                return UNKNOWN;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    /**
+     * @return The frame version number of the key
+     */
+    public static int version(int key) {
+        return key >>> (SC_BITS + VC_BITS);
+    }
+
+    /**
+     * @return The spacecraft ID of the key
+     */
+    public static int spacecraftId(int key) {
+        return (key >>> VC_BITS) & SC_MASK;
+    }
+
+    /**
+     * @return The VC ID of the key
+     */
+    public static int virtualChannelId(int key) {
+        return key & VC_MASK;
+    }
+
+    /**
+     * @return The key of the master channel of the key: the frame version and spacecraft ID with VC ID 0
+     */
+    public static int masterChannel(int key) {
+        return key & ~VC_MASK;
+    }
+
+    /**
+     * String for the given key
+     */
+    public static String toString(int key) {
+        if(key < 0) {
+            return "unknown";
+        }
+        return "tfv=" + version(key) + ".sc=" + spacecraftId(key) + ".vc=" + virtualChannelId(key);
+    }
+}
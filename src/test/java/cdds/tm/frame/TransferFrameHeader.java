@@ -0,0 +1,371 @@
+package cdds.tm.frame;
+
+import java.nio.ByteBuffer;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+
+/**
+ * Flyweight decoder of the primary header of CCSDS 132.0 TM, 732.0 AOS and 732.1 USLP transfer frames.
+ *
+ * The decoder is wrapped around the frame data in a ByteString or ByteBuffer and reads the fields from there
+ * on each call, nothing is copied or created. One decoder is reused for all frames of a thread.
+ *
+ * Primary headers:
+ *  TM:   TFVN(2) SCID(10) VCID(3) OCF(1) | MC count(8) | VC count(8) | sec hdr(1) sync(1) order(1) seg(2) FHP(11)
+ *  AOS:  TFVN(2) SCID(8) VCID(6) | VC count(24) | replay(1) count usage(1) spare(2) count cycle(4) | [FHEC(16)]
+ *  USLP: TFVN(4) SCID(16) S/D(1) VCID(6) MAP ID(4) EOFPH(1) | length(16) | bypass(1) PCC(1) spare(2) OCF(1)
+ *        count length(3) | VC count(0..56)
+ *
+ * The presence of the AOS frame header error control and OCF and the length of the insert zone are managed
+ * parameters of the physical channel given to the constructor. The first header pointer of AOS and USLP frames
+ * is read from the M_PDU or TFDF header following the insert zone.
+ */
+public final class TransferFrameHeader {
+
+    /** First header pointer: the data field holds no packet start */
+    public static final int NO_PACKET_START = 0x7ff;
+
+    /** First header pointer: not available for the frame */
+    public static final int NO_POINTER = -1;
+
+    private final boolean aosFhecPresent;
+    private final int insertZoneLength;
+    private final boolean aosOcfPresent;
+
+    private ByteString frame;
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private int versionNumber = -1;
+
+    /**
+     * Creates the decoder for physical channels without AOS frame header error control, insert zone and AOS OCF
+     */
+    public TransferFrameHeader() {
+        this(false, 0, false);
+    }
+
+    /**
+     * Creates the decoder
+     * @param aosFhecPresent    true if AOS frames have a frame header error control
+     * @param insertZoneLength  The length of the insert zone of AOS and USLP frames
+     * @param aosOcfPresent     true if AOS frames have an operational control field
+     */
+    public TransferFrameHeader(boolean aosFhecPresent, int insertZoneLength, boolean aosOcfPresent) {
+        this.aosFhecPresent = aosFhecPresent;
+        this.insertZoneLength = insertZoneLength;
+        this.aosOcfPresent = aosOcfPresent;
+    }
+
+    /**
+     * Wraps the decoder around a frame, the frame version is read from the frame
+     * @param frame     The frame data
+     * @return          This decoder
+     */
+    public TransferFrameHeader wrap(ByteString frame) {
+        this.frame = frame;
+        this.buffer = null;
+        this.offset = 0;
+        this.length = frame.size();
+        this.versionNumber = length > 0 ? readVersionNumber() : -1;
+        return this;
+    }
+
+    /**
+     * Wraps the decoder around a frame in a buffer, the frame version is read from the frame
+     * @param buffer    The buffer holding the frame
+     * @param offset    The absolute offset of the frame in the buffer
+     * @param length    The length of the frame
+     * @return          This decoder
+     */
+    public TransferFrameHeader wrap(ByteBuffer buffer, int offset, int length) {
+        this.frame = null;
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.versionNumber = length > 0 ? readVersionNumber() : -1;
+        return this;
+    }
+
+    /**
+     * Wraps the decoder around a frame of a known version, e.g. the version of the endpoint
+     * @param frame     The frame data
+     * @param version   The frame version
+     * @return          This decoder
+     */
+    public TransferFrameHeader wrap(ByteString frame, FrameVersion version) {
+        wrap(frame);
+        versionNumber = versionNumber(version);
+        return this;
+    }
+
+    /**
+     * Wraps the decoder around a frame of a known version in a buffer
+     * @param buffer    The buffer holding the frame
+     * @param offset    The absolute offset of the frame in the buffer
+     * @param length    The length of the frame
+     * @param version   The frame version
+     * @return          This decoder
+     */
+    public TransferFrameHeader wrap(ByteBuffer buffer, int offset, int length, FrameVersion version) {
+        wrap(buffer, offset, length);
+        versionNumber = versionNumber(version);
+        return this;
+    }
+
+    /**
+     * @return true if the frame is a TM, AOS or USLP frame holding the complete primary header
+     */
+    public boolean isValid() {
+        return versionNumber >= 0 && length >= headerLength();
+    }
+
+    /**
+     * @return The frame version, FrameVersion.UNKNOWN for other frames
+     */
+    public FrameVersion frameVersion() {
+        switch(versionNumber) {
+            case 0:
+                return FrameVersion.TM_TC_SDLP;
+            case 1:
+                return FrameVersion.AOS;
+            case 12:
+                return FrameVersion.USLP;
+            default:
+                return FrameVersion.UNKNOWN;
+        }
+    }
+
+    /**
+     * @return The length of the primary header including the AOS frame header error control and the USLP VC frame count
+     */
+    public int headerLength() {
+        switch(versionNumber) {
+            case 0:
+                return 6;
+            case 1:
+                return aosFhecPresent ? 8 : 6;
+            case 12:
+                if(length < 4 || isTruncated()) {
+                    return 4;
+                }
+                return length < 7 ? 7 : 7 + (byteAt(6) & 0x07);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return The spacecraft ID
+     */
+    public int spacecraftId() {
+        switch(versionNumber) {
+            case 0:
+                return ((byteAt(0) & 0x3f) << 4) | (byteAt(1) >>> 4);
+            case 1:
+                return ((byteAt(0) & 0x3f) << 2) | (byteAt(1) >>> 6);
+            case 12:
+                return ((byteAt(0) & 0x0f) << 12) | (byteAt(1) << 4) | (byteAt(2) >>> 4);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return The virtual channel ID
+     */
+    public int virtualChannelId() {
+        switch(versionNumber) {
+            case 0:
+                return (byteAt(1) >>> 1) & 0x07;
+            case 1:
+                return byteAt(1) & 0x3f;
+            case 12:
+                return ((byteAt(2) & 0x07) << 3) | (byteAt(3) >>> 5);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return The packed GVCID key, GvcIdKey.UNKNOWN for other frames
+     */
+    public int gvcIdKey() {
+        if(versionNumber < 0 || length < 4) {
+            return GvcIdKey.UNKNOWN;
+        }
+        return GvcIdKey.of(versionNumber, spacecraftId(), virtualChannelId()); // the TFVN is the FrameVersion number
+    }
+
+    /**
+     * @return The USLP MAP ID, -1 for other frames
+     */
+    public int mapId() {
+        return versionNumber == 12 ? (byteAt(3) >>> 1) & 0x0f : -1;
+    }
+
+    /**
+     * @return true for a USLP frame with a truncated primary header
+     */
+    public boolean isTruncated() {
+        return versionNumber == 12 && (byteAt(3) & 0x01) != 0;
+    }
+
+    /**
+     * @return The TM master channel frame count, -1 for other frames
+     */
+    public int masterChannelFrameCount() {
+        return versionNumber == 0 ? byteAt(2) : -1;
+    }
+
+    /**
+     * The VC frame count. The AOS count includes the VC frame count cycle if used.
+     * @return The VC frame count, -1 if the frame has none
+     */
+    public long virtualChannelFrameCount() {
+        switch(versionNumber) {
+            case 0:
+                return byteAt(3);
+            case 1: {
+                long count = ((long) byteAt(2) << 16) | (byteAt(3) << 8) | byteAt(4);
+                int signaling = byteAt(5);
+                if((signaling & 0x40) != 0) {
+                    count |= (long) (signaling & 0x0f) << 24;
+                }
+                return count;
+            }
+            case 12: {
+                int countLength = uslpCountLength();
+                if(countLength == 0) {
+                    return -1;
+                }
+                long count = 0;
+                for(int idx = 0; idx < countLength; idx++) {
+                    count = (count << 8) | byteAt(7 + idx);
+                }
+                return count;
+            }
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return The number of bits of the VC frame count, the count wraps at 2^bits. 0 if the frame has no count.
+     */
+    public int virtualChannelFrameCountBits() {
+        switch(versionNumber) {
+            case 0:
+                return 8;
+            case 1:
+                return (byteAt(5) & 0x40) != 0 ? 28 : 24;
+            case 12:
+                return 8 * uslpCountLength();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return true if the frame has an operational control field, for AOS frames as managed
+     */
+    public boolean isOcfPresent() {
+        switch(versionNumber) {
+            case 0:
+                return (byteAt(1) & 0x01) != 0;
+            case 1:
+                return aosOcfPresent;
+            case 12:
+                return isTruncated() == false && (byteAt(6) & 0x08) != 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The first header pointer of the TM data field status, the AOS M_PDU header or the USLP TFDF header.
+     * @return The offset of the first packet header in the data field, NO_PACKET_START (TM, AOS) or 0xffff (USLP)
+     *         if no packet starts in the frame, NO_POINTER if the frame has no pointer
+     */
+    public int firstHeaderPointer() {
+        switch(versionNumber) {
+            case 0:
+                if((byteAt(4) & 0x40) != 0 || length < 6) {
+                    return NO_POINTER; // synchronisation flag: the data field does not hold packets
+                }
+                return ((byteAt(4) & 0x07) << 8) | byteAt(5);
+            case 1: {
+                int pointerOffset = headerLength() + insertZoneLength;
+                if(length < pointerOffset + 2) {
+                    return NO_POINTER;
+                }
+                return ((byteAt(pointerOffset) & 0x07) << 8) | byteAt(pointerOffset + 1);
+            }
+            case 12: {
+                int tfdfOffset = headerLength() + insertZoneLength;
+                if(length < tfdfOffset + 3 || (byteAt(tfdfOffset) >>> 5) > 2) {
+                    return NO_POINTER; // construction rules without pointer
+                }
+                return (byteAt(tfdfOffset + 1) << 8) | byteAt(tfdfOffset + 2);
+            }
+            default:
+                return NO_POINTER;
+        }
+    }
+
+    /**
+     * @return The frame length of the USLP header, -1 for other frames
+     */
+    public int uslpFrameLength() {
+        if(versionNumber != 12 || isTruncated()) {
+            return -1;
+        }
+        return ((byteAt(4) << 8) | byteAt(5)) + 1;
+    }
+
+    private int uslpCountLength() {
+        if(isTruncated() || length < 7) {
+            return 0;
+        }
+        return byteAt(6) & 0x07;
+    }
+
+    private int readVersionNumber() {
+        int b0 = byteAt(0);
+        switch(b0 >>> 6) {
+            case 0:
+                return 0;
+            case 1:
+                return 1;
+            case 3:
+                return (b0 >>> 4) == 0x0c ? 12 : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static int versionNumber(FrameVersion version) {
+        switch(version) {
+            case TM_TC_SDLP:
+                return 0;
+            case AOS:
+                return 1;
+            case USLP:
+                return 12;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return The octet at the index of the frame (0..255), 0 beyond the frame
+     */
+    private int byteAt(int index) {
+        if(index >= length) {
+            return 0;
+        }
+        return (buffer != null ? buffer.get(offset + index) : frame.byteAt(index)) & 0xff;
+    }
+}
@@ -0,0 +1,121 @@
+package cdds.tm.frame;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.protobuf.ByteString;
+
+import cdds.tm.TestTelemetryFile;
+
+/**
+ * JMH benchmark of the transfer frame header decoder for 1115 byte TM, AOS and USLP frames
+ * in a ByteString and in a direct ByteBuffer.
+ * Run with: mvn test -Pbenchmark -Dtest=TransferFrameHeaderBenchmark
+ *
+ * Each benchmark decodes SCID, VCID, VC frame count, first header pointer and OCF presence of one frame.
+ * The GC profiler reports the bytes allocated per decoded frame, the test fails if decoding allocates.
+ */
+@Tag("benchmark")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransferFrameHeaderBenchmark {
+
+    private static final int FRAME_LENGTH = 1115;
+
+    private final TransferFrameHeader header = new TransferFrameHeader();
+
+    private ByteString tmFrame;
+    private ByteString aosFrame;
+    private ByteString uslpFrame;
+    private ByteBuffer aosBuffer;
+
+    @Setup
+    public void setup() {
+        tmFrame = frame(0x12, 0x3b, 200, 17, 0x04, 0x56);
+        aosFrame = frame(0x50, 0xa1, 0x12, 0x34, 0x56, 0x4a, 0x00, 0x10);
+        uslpFrame = frame(0xc4, 0x32, 0x14, 0x2a, 0x04, 0x5a, 0x0a, 0x12, 0x34, 0x00, 0x00, 0x10);
+        aosBuffer = ByteBuffer.allocateDirect(FRAME_LENGTH);
+        aosFrame.copyTo(aosBuffer);
+    }
+
+    @Benchmark
+    public void decodeTm(Blackhole blackhole) {
+        decode(header.wrap(tmFrame), blackhole);
+    }
+
+    @Benchmark
+    public void decodeAos(Blackhole blackhole) {
+        decode(header.wrap(aosFrame), blackhole);
+    }
+
+    @Benchmark
+    public void decodeUslp(Blackhole blackhole) {
+        decode(header.wrap(uslpFrame), blackhole);
+    }
+
+    @Benchmark
+    public void decodeAosBuffer(Blackhole blackhole) {
+        decode(header.wrap(aosBuffer, 0, FRAME_LENGTH), blackhole);
+    }
+
+    private static void decode(TransferFrameHeader header, Blackhole blackhole) {
+        blackhole.consume(header.spacecraftId());
+        blackhole.consume(header.virtualChannelId());
+        blackhole.consume(header.virtualChannelFrameCount());
+        blackhole.consume(header.firstHeaderPointer());
+        blackhole.consume(header.isOcfPresent());
+    }
+
+    @Test
+    public void benchmarkDecoding() throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(TransferFrameHeaderBenchmark.class.getName() + ".decode")
+            .addProfiler(GCProfiler.class)
+            .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        for(RunResult result : results) {
+            Result<?> allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf("%-20s %6.2f ns/frame %6.3f bytes allocated/frame%n", result.getParams().getBenchmark()
+                .substring(result.getParams().getBenchmark().lastIndexOf('.') + 1), result.getPrimaryResult().getScore(),
+                allocated.getScore());
+            assertTrue(allocated.getScore() < 1, "decoding allocates");
+        }
+    }
+
+    private static ByteString frame(int... header) {
+        byte[] frame = TestTelemetryFile.getFrameData(FRAME_LENGTH);
+        for(int idx = 0; idx < header.length; idx++) {
+            frame[idx] = (byte) header[idx];
+        }
+        return ByteString.copyFrom(frame);
+    }
+}
@@ -0,0 +1,166 @@
+package cdds.tm.frame;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.protobuf.ByteString;
+
+import ccsds.cdds.v1.Types.FrameVersion;
+
+/**
+ * Test for the transfer frame header decoder
+ *
+ * 1) testTm - Decodes TM primary headers with and without OCF and packets
+ * 2) testAos - Decodes AOS primary headers with and without VC frame count cycle, FHEC and insert zone
+ * 3) testUslp - Decodes USLP primary headers with VC frame counts of several lengths and a truncated header
+ * 4) testBuffer - Decodes frames at an offset in a direct buffer and frames too short or of other versions
+ */
+public class TransferFrameHeaderTest {
+
+    @Test
+    public void testTm() {
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        // SCID 0x123, VC 5, OCF, MC count 200, VC count 17, FHP 0x456
+        header.wrap(frame(0x12, 0x3b, 200, 17, 0x04, 0x56));
+        assertTrue(header.isValid());
+        assertEquals(FrameVersion.TM_TC_SDLP, header.frameVersion());
+        assertEquals(6, header.headerLength());
+        assertEquals(0x123, header.spacecraftId());
+        assertEquals(5, header.virtualChannelId());
+        assertEquals(GvcIdKey.of(FrameVersion.TM_TC_SDLP_VALUE, 0x123, 5), header.gvcIdKey());
+        assertEquals(200, header.masterChannelFrameCount());
+        assertEquals(17, header.virtualChannelFrameCount());
+        assertEquals(8, header.virtualChannelFrameCountBits());
+        assertEquals(0x456, header.firstHeaderPointer());
+        assertTrue(header.isOcfPresent());
+
+        // no OCF, no packet start, VC count 255
+        header.wrap(frame(0x12, 0x3a, 0, 255, 0x07, 0xff));
+        assertFalse(header.isOcfPresent());
+        assertEquals(255, header.virtualChannelFrameCount());
+        assertEquals(TransferFrameHeader.NO_PACKET_START, header.firstHeaderPointer());
+
+        // synchronisation flag, no packets
+        header.wrap(frame(0x12, 0x3a, 0, 0, 0x40, 0x00));
+        assertEquals(TransferFrameHeader.NO_POINTER, header.firstHeaderPointer());
+        assertEquals(-1, header.mapId());
+    }
+
+    @Test
+    public void testAos() {
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        // SCID 0x42, VC 33, VC count 0x123456 without cycle, M_PDU FHP 0x7ff
+        header.wrap(frame(0x50, 0xa1, 0x12, 0x34, 0x56, 0x00, 0x07, 0xff));
+        assertTrue(header.isValid());
+        assertEquals(FrameVersion.AOS, header.frameVersion());
+        assertEquals(0x42, header.spacecraftId());
+        assertEquals(33, header.virtualChannelId());
+        assertEquals(0x123456, header.virtualChannelFrameCount());
+        assertEquals(24, header.virtualChannelFrameCountBits());
+        assertEquals(TransferFrameHeader.NO_PACKET_START, header.firstHeaderPointer());
+        assertFalse(header.isOcfPresent());
+        assertEquals(-1, header.masterChannelFrameCount());
+
+        // VC frame count cycle 0xa in use
+        header.wrap(frame(0x50, 0xa1, 0x12, 0x34, 0x56, 0x4a, 0x00, 0x10));
+        assertEquals(0xa123456L, header.virtualChannelFrameCount());
+        assertEquals(28, header.virtualChannelFrameCountBits());
+        assertEquals(0x10, header.firstHeaderPointer());
+
+        // FHEC and 4 octets insert zone before the M_PDU header, OCF managed
+        header = new TransferFrameHeader(true, 4, true);
+        header.wrap(frame(0x50, 0xa1, 0, 0, 1, 0, 0xee, 0xee, 1, 2, 3, 4, 0x01, 0x23));
+        assertEquals(8, header.headerLength());
+        assertEquals(1, header.virtualChannelFrameCount());
+        assertEquals(0x123, header.firstHeaderPointer());
+        assertTrue(header.isOcfPresent());
+    }
+
+    @Test
+    public void testUslp() {
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        // SCID 0x4321, VC 33, MAP 5, length 1115, OCF, 2 octets VC count 0x1234, TFDF rule 0 FHP 0x0010
+        header.wrap(frame(0xc4, 0x32, 0x14, 0x2a, 0x04, 0x5a, 0x0a, 0x12, 0x34, 0x00, 0x00, 0x10));
+        assertTrue(header.isValid());
+        assertEquals(FrameVersion.USLP, header.frameVersion());
+        assertEquals(0x4321, header.spacecraftId());
+        assertEquals(33, header.virtualChannelId());
+        assertEquals(GvcIdKey.fromFrame(frame(0xc4, 0x32, 0x14, 0x2a)), header.gvcIdKey());
+        assertEquals(5, header.mapId());
+        assertEquals(1115, header.uslpFrameLength());
+        assertTrue(header.isOcfPresent());
+        assertEquals(9, header.headerLength());
+        assertEquals(0x1234, header.virtualChannelFrameCount());
+        assertEquals(16, header.virtualChannelFrameCountBits());
+        assertEquals(0x10, header.firstHeaderPointer());
+
+        // 7 octets VC count, TFDF rule 7 without pointer
+        header.wrap(frame(0xc4, 0x32, 0x14, 0x2a, 0x04, 0x5a, 0x07, 1, 2, 3, 4, 5, 6, 7, 0xe0, 0, 0));
+        assertEquals(0x01020304050607L, header.virtualChannelFrameCount());
+        assertEquals(56, header.virtualChannelFrameCountBits());
+        assertEquals(TransferFrameHeader.NO_POINTER, header.firstHeaderPointer());
+        assertFalse(header.isOcfPresent());
+
+        // no VC count
+        header.wrap(frame(0xc4, 0x32, 0x14, 0x2a, 0x04, 0x5a, 0x00));
+        assertEquals(-1, header.virtualChannelFrameCount());
+        assertEquals(0, header.virtualChannelFrameCountBits());
+
+        // truncated primary header
+        header.wrap(frame(0xc4, 0x32, 0x14, 0x2b));
+        assertTrue(header.isValid());
+        assertTrue(header.isTruncated());
+        assertEquals(4, header.headerLength());
+        assertEquals(33, header.virtualChannelId());
+        assertEquals(-1, header.virtualChannelFrameCount());
+        assertEquals(-1, header.uslpFrameLength());
+    }
+
+    @Test
+    public void testBuffer() {
+        TransferFrameHeader header = new TransferFrameHeader();
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+        buffer.position(10);
+        buffer.put(new byte[] { 0x50, (byte) 0xa1, 0x12, 0x34, 0x56, 0x00 });
+        header.wrap(buffer, 10, 6);
+        assertTrue(header.isValid());
+        assertEquals(0x42, header.spacecraftId());
+        assertEquals(0x123456, header.virtualChannelFrameCount());
+        assertEquals(TransferFrameHeader.NO_POINTER, header.firstHeaderPointer());
+
+        // the version of the endpoint instead of the frame
+        header.wrap(buffer, 10, 6, FrameVersion.TM_TC_SDLP);
+        assertEquals(FrameVersion.TM_TC_SDLP, header.frameVersion());
+        assertEquals(0x10a, header.spacecraftId());
+
+        // too short
+        header.wrap(frame(0x50, 0xa1, 0x12));
+        assertFalse(header.isValid());
+        header.wrap(ByteString.EMPTY);
+        assertFalse(header.isValid());
+        assertEquals(GvcIdKey.UNKNOWN, header.gvcIdKey());
+
+        // version 2
+        header.wrap(frame(0x80, 0, 0, 0, 0, 0));
+        assertFalse(header.isValid());
+        assertEquals(FrameVersion.UNKNOWN, header.frameVersion());
+        assertEquals(GvcIdKey.UNKNOWN, header.gvcIdKey());
+    }
+
+    private static ByteString frame(int... octets) {
+        byte[] frame = new byte[octets.length];
+        for(int idx = 0; idx < octets.length; idx++) {
+            frame[idx] = (byte) octets[idx];
+        }
+        return ByteString.copyFrom(frame);
+    }
+}
@@ -0,0 +1,102 @@
+package cdds.util;
+
+import java.time.Clock;
+import java.time.Instant;
+
+import ccsds.cdds.v1.Types.DateTime;
+
+/**
+ * Clock source of CDDS DateTimes filling builders without intermediate objects.
+ *
+ * The clock keeps the current day since the CCSDS epoch and the epoch second of its start. Reading the time
+ * takes the seconds and nanoseconds of the underlying clock and only subtracts the start of the day, the day
+ * is computed again when the time leaves it. The instant read from the underlying clock does not escape and
+ * is removed by the JIT compiler, so a warmed up clock allocates nothing.
+ */
+public final class CddsClock {
+
+    private static final CddsClock SYSTEM = new CddsClock(Clock.systemUTC());
+
+    private final Clock clock;
+
+    private volatile Day day = new Day(0);
+
+    /**
+     * Creates a clock reading the given clock
+     * @param clock The underlying clock, e.g. a fixed clock for tests
+     */
+    public CddsClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return The clock of the system time in UTC with the resolution of Instant.now()
+     */
+    public static CddsClock system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Sets the current time on a DateTime builder
+     * @param builder   The builder to fill
+     * @return          The builder
+     */
+    public DateTime.Builder now(DateTime.Builder builder) {
+        Instant now = clock.instant();
+        long epochSecond = now.getEpochSecond();
+        Day current = day(epochSecond);
+        long secondOfDay = epochSecond - current.startEpochSecond;
+        int nano = now.getNano();
+
+        return builder.setDays((int) current.days)
+            .setMsOfDay((int) (secondOfDay * 1_000 + nano / 1_000_000))
+            .setPicoSecsOfMs(nano % 1_000_000 * 1_000);
+    }
+
+    /**
+     * @return The current time
+     */
+    public CddsTime now() {
+        Instant now = clock.instant();
+        long epochSecond = now.getEpochSecond();
+        Day current = day(epochSecond);
+        return CddsTime.ofPicos(current.days,
+            (epochSecond - current.startEpochSecond) * CddsTime.PICOS_PER_SECOND + now.getNano() * CddsTime.PICOS_PER_NANO);
+    }
+
+    /**
+     * @return The current time in nanoseconds since the CCSDS epoch
+     */
+    public long nowNanos() {
+        Instant now = clock.instant();
+        return (CddsTime.CCSDS_TO_JAVA_EPOCH_DAYS * CddsTime.SECONDS_PER_DAY + now.getEpochSecond()) * 1_000_000_000L
+            + now.getNano();
+    }
+
+    /**
+     * @return The day holding the epoch second, the cached day unless the time left it
+     */
+    private Day day(long epochSecond) {
+        Day current = day;
+        long secondOfDay = epochSecond - current.startEpochSecond;
+        if(secondOfDay < 0 || secondOfDay >= CddsTime.SECONDS_PER_DAY) {
+            current = new Day(Math.floorDiv(epochSecond, CddsTime.SECONDS_PER_DAY));
+            day = current;
+        }
+        return current;
+    }
+
+    /**
+     * A day since the CCSDS epoch with the epoch second of its start, replaced as a whole
+     */
+    private static final class Day {
+
+        final long days;
+        final long startEpochSecond;
+
+        Day(long epochDay) {
+            this.days = epochDay + CddsTime.CCSDS_TO_JAVA_EPOCH_DAYS;
+            this.startEpochSecond = epochDay * CddsTime.SECONDS_PER_DAY;
+        }
+    }
+}
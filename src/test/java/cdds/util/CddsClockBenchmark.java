@@ -0,0 +1,121 @@
+package cdds.util;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ccsds.cdds.v1.Types.DateTime;
+
+/**
+ * JMH benchmark of reading the current time as CDDS DateTime.
+ * Run with: mvn test -Pbenchmark -Dtest=CddsClockBenchmark
+ *
+ *  - zonedDateTimeNow: the former TimeUtil.now() computing the days with LocalDate, ZonedDateTime and ChronoUnit
+ *  - timeUtilNow: TimeUtil.now() building a DateTime from the CddsClock
+ *  - clockFill: the CddsClock filling a reused builder
+ *  - clockNow: the CddsClock returning a CddsTime
+ *  - instantNow: Instant.now(), the read of the system clock all others include
+ * The GC profiler reports the bytes allocated per call, the test fails if filling a builder allocates.
+ */
+@Tag("benchmark")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CddsClockBenchmark {
+
+    private final CddsClock clock = CddsClock.system();
+
+    private final DateTime.Builder builder = DateTime.newBuilder();
+
+    @Benchmark
+    public DateTime zonedDateTimeNow() {
+        LocalDate epochDate = LocalDate.of(1958, 1, 1);
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        int daysSinceEpoch = (int) ChronoUnit.DAYS.between(epochDate, now.toLocalDate());
+        long nanoOfDay = now.toLocalTime().toNanoOfDay();
+
+        return DateTime.newBuilder()
+            .setDays(daysSinceEpoch)
+            .setMsOfDay((int) (nanoOfDay / 1_000_000))
+            .setPicoSecsOfMs((int) (nanoOfDay % 1_000_000 * 1_000)).build();
+    }
+
+    @Benchmark
+    public DateTime timeUtilNow() {
+        return TimeUtil.now();
+    }
+
+    @Benchmark
+    public DateTime.Builder clockFill() {
+        return clock.now(builder);
+    }
+
+    @Benchmark
+    public CddsTime clockNow() {
+        return clock.now();
+    }
+
+    @Benchmark
+    public Instant instantNow() {
+        return Instant.now();
+    }
+
+    @Test
+    public void benchmarkClock() throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(CddsClockBenchmark.class.getName() + ".")
+            .addProfiler(GCProfiler.class)
+            .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        double baseline = 0;
+        for(RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            if(benchmark.equals("zonedDateTimeNow")) {
+                baseline = result.getPrimaryResult().getScore();
+            }
+        }
+
+        for(RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            double nanos = result.getPrimaryResult().getScore();
+            Result<?> allocated = result.getSecondaryResults().get("gc.alloc.rate.norm");
+            System.out.printf("%-20s %8.1f ns/call %6.1fx %8.1f bytes allocated/call%n", benchmark, nanos,
+                baseline / nanos, allocated.getScore());
+
+            if(benchmark.equals("clockFill")) {
+                assertTrue(allocated.getScore() < 1, "filling a DateTime builder allocates");
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package cdds.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import ccsds.cdds.v1.Types.DateTime;
+
+/**
+ * A CDDS DateTime as primitive values: the days since the CCSDS epoch 01/01/1958 and the picoseconds of the day.
+ * The milliseconds of the day and the picoseconds of the millisecond are derived from the picoseconds of the day,
+ * which hold a full day with picosecond precision in a long. Leap seconds are not represented, like in java.time.
+ *
+ * Values are immutable and normalized, the picoseconds of the day are within [0, PICOS_PER_DAY).
+ * The static methods on the primitive values allow hot paths to work without creating CddsTime objects.
+ */
+public final class CddsTime implements Comparable<CddsTime> {
+
+    public static final long PICOS_PER_NANO = 1_000L;
+    public static final long PICOS_PER_MS = 1_000_000_000L;
+    public static final long PICOS_PER_SECOND = 1_000_000_000_000L;
+    public static final long MS_PER_DAY = 86_400_000L;
+    public static final long SECONDS_PER_DAY = 86_400L;
+    public static final long NANOS_PER_DAY = 86_400_000_000_000L;
+    public static final long PICOS_PER_DAY = MS_PER_DAY * PICOS_PER_MS;
+
+    /** Days from the CCSDS epoch 01/01/1958 to the Java epoch 01/01/1970 */
+    public static final long CCSDS_TO_JAVA_EPOCH_DAYS = 4383;
+
+    /** The CCSDS epoch 01/01/1958 */
+    public static final CddsTime EPOCH = new CddsTime(0, 0);
+
+    private final long days;
+    private final long picosOfDay;
+
+    private CddsTime(long days, long picosOfDay) {
+        this.days = days;
+        this.picosOfDay = picosOfDay;
+    }
+
+    /**
+     * Creates the time, the values are normalized, e.g. 25 hours of day 0 is 1 hour of day 1
+     * @param days          The days since 01/01/1958
+     * @param msOfDay       The milliseconds of the day
+     * @param picoSecsOfMs  The picoseconds of the millisecond
+     * @return              The time
+     */
+    public static CddsTime of(long days, long msOfDay, long picoSecsOfMs) {
+        return ofPicos(days, Math.addExact(Math.multiplyExact(msOfDay, PICOS_PER_MS), picoSecsOfMs));
+    }
+
+    /**
+     * @param days          The days since 01/01/1958
+     * @param picosOfDay    The picoseconds of the day, normalized into the days
+     * @return              The time
+     */
+    public static CddsTime ofPicos(long days, long picosOfDay) {
+        return new CddsTime(days + Math.floorDiv(picosOfDay, PICOS_PER_DAY), Math.floorMod(picosOfDay, PICOS_PER_DAY));
+    }
+
+    /**
+     * @param dateTime  The CDDS DateTime, the unsigned fields are read as such
+     * @return          The time
+     */
+    public static CddsTime of(DateTime dateTime) {
+        return of(Integer.toUnsignedLong(dateTime.getDays()), Integer.toUnsignedLong(dateTime.getMsOfDay()),
+            Integer.toUnsignedLong(dateTime.getPicoSecsOfMs()));
+    }
+
+    /**
+     * @param nanos The nanoseconds since 01/01/1958, see TimeUtil.toNanos()
+     * @return      The time
+     */
+    public static CddsTime ofNanos(long nanos) {
+        return new CddsTime(Math.floorDiv(nanos, NANOS_PER_DAY), Math.floorMod(nanos, NANOS_PER_DAY) * PICOS_PER_NANO);
+    }
+
+    /**
+     * @param instant   The instant, before the CCSDS epoch for negative days
+     * @return          The time
+     */
+    public static CddsTime ofInstant(Instant instant) {
+        long epochSecond = instant.getEpochSecond();
+        long secondOfDay = Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        return new CddsTime(Math.floorDiv(epochSecond, SECONDS_PER_DAY) + CCSDS_TO_JAVA_EPOCH_DAYS,
+            secondOfDay * PICOS_PER_SECOND + instant.getNano() * PICOS_PER_NANO);
+    }
+
+    /**
+     * @return The days since 01/01/1958
+     */
+    public long getDays() {
+        return days;
+    }
+
+    /**
+     * @return The picoseconds of the day
+     */
+    public long getPicosOfDay() {
+        return picosOfDay;
+    }
+
+    /**
+     * @return The milliseconds of the day
+     */
+    public long getMsOfDay() {
+        return msOfDay(picosOfDay);
+    }
+
+    /**
+     * @return The picoseconds of the millisecond
+     */
+    public long getPicoSecsOfMs() {
+        return picoSecsOfMs(picosOfDay);
+    }
+
+    /**
+     * @param picosOfDay    The picoseconds of the day
+     * @return              The milliseconds of the day
+     */
+    public static long msOfDay(long picosOfDay) {
+        return picosOfDay / PICOS_PER_MS;
+    }
+
+    /**
+     * @param picosOfDay    The picoseconds of the day
+     * @return              The picoseconds of the millisecond
+     */
+    public static long picoSecsOfMs(long picosOfDay) {
+        return picosOfDay % PICOS_PER_MS;
+    }
+
+    /**
+     * @param picos The picoseconds to add, negative to subtract
+     * @return      The time plus the picoseconds
+     */
+    public CddsTime plusPicos(long picos) {
+        if(picos == 0) {
+            return this;
+        }
+        // picosOfDay + picos % PICOS_PER_DAY cannot overflow
+        return ofPicos(days + picos / PICOS_PER_DAY, picosOfDay + picos % PICOS_PER_DAY);
+    }
+
+    /**
+     * @param nanos The nanoseconds to add, negative to subtract
+     * @return      The time plus the nanoseconds
+     */
+    public CddsTime plusNanos(long nanos) {
+        return ofPicos(days + nanos / NANOS_PER_DAY, picosOfDay + nanos % NANOS_PER_DAY * PICOS_PER_NANO);
+    }
+
+    /**
+     * @param millis    The milliseconds to add, negative to subtract
+     * @return          The time plus the milliseconds
+     */
+    public CddsTime plusMillis(long millis) {
+        return ofPicos(days + millis / MS_PER_DAY, picosOfDay + millis % MS_PER_DAY * PICOS_PER_MS);
+    }
+
+    /**
+     * @param numDays   The days to add, negative to subtract
+     * @return          The time plus the days
+     */
+    public CddsTime plusDays(long numDays) {
+        return numDays == 0 ? this : new CddsTime(days + numDays, picosOfDay);
+    }
+
+    /**
+     * @param other The other time
+     * @return      The picoseconds from this time to the other, negative if the other is before
+     * @throws ArithmeticException if the difference exceeds a long, about 106 days
+     */
+    public long picosUntil(CddsTime other) {
+        return Math.addExact(Math.multiplyExact(other.days - days, PICOS_PER_DAY), other.picosOfDay - picosOfDay);
+    }
+
+    /**
+     * @param other The other time
+     * @return      The nanoseconds from this time to the other, truncated, negative if the other is before
+     */
+    public long nanosUntil(CddsTime other) {
+        return (other.days - days) * NANOS_PER_DAY + (other.picosOfDay - picosOfDay) / PICOS_PER_NANO;
+    }
+
+    public boolean isBefore(CddsTime other) {
+        return compareTo(other) < 0;
+    }
+
+    public boolean isAfter(CddsTime other) {
+        return compareTo(other) > 0;
+    }
+
+    @Override
+    public int compareTo(CddsTime other) {
+        return compare(days, picosOfDay, other.days, other.picosOfDay);
+    }
+
+    /**
+     * Compares two times given as primitive values
+     * @return  Negative, zero or positive as the first time is before, equal to or after the second
+     */
+    public static int compare(long days1, long picosOfDay1, long days2, long picosOfDay2) {
+        int result = Long.compare(days1, days2);
+        return result != 0 ? result : Long.compare(picosOfDay1, picosOfDay2);
+    }
+
+    /**
+     * @return The nanoseconds since 01/01/1958, picoseconds truncated. The value fits a long until the year 2250.
+     */
+    public long toNanos() {
+        return days * NANOS_PER_DAY + picosOfDay / PICOS_PER_NANO;
+    }
+
+    /**
+     * @return The instant, picoseconds truncated to nanoseconds
+     */
+    public Instant toInstant() {
+        return Instant.ofEpochSecond((days - CCSDS_TO_JAVA_EPOCH_DAYS) * SECONDS_PER_DAY + picosOfDay / PICOS_PER_SECOND,
+            picosOfDay % PICOS_PER_SECOND / PICOS_PER_NANO);
+    }
+
+    /**
+     * Sets the time on a DateTime builder
+     * @param builder   The builder to fill
+     * @return          The builder
+     */
+    public DateTime.Builder fill(DateTime.Builder builder) {
+        return fill(builder, days, picosOfDay);
+    }
+
+    /**
+     * Sets a time given as primitive values on a DateTime builder
+     * @param builder       The builder to fill
+     * @param days          The days since 01/01/1958
+     * @param picosOfDay    The picoseconds of the day
+     * @return              The builder
+     */
+    public static DateTime.Builder fill(DateTime.Builder builder, long days, long picosOfDay) {
+        return builder.setDays((int) days)
+            .setMsOfDay((int) msOfDay(picosOfDay))
+            .setPicoSecsOfMs((int) picoSecsOfMs(picosOfDay));
+    }
+
+    /**
+     * @return The time as CDDS DateTime
+     */
+    public DateTime toDateTime() {
+        return fill(DateTime.newBuilder()).build();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
+        }
+        if(obj instanceof CddsTime == false) {
+            return false;
+        }
+        CddsTime other = (CddsTime) obj;
+        return days == other.days && picosOfDay == other.picosOfDay;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(days) * 31 + Long.hashCode(picosOfDay);
+    }
+
+    /**
+     * @return The time in ISO 8601 UTC with the picoseconds, e.g. 2025-01-01T12:00:00.000000000001Z
+     */
+    @Override
+    public String toString() {
+        long secondOfDay = picosOfDay / PICOS_PER_SECOND;
+        return String.format("%sT%02d:%02d:%02d.%012dZ", LocalDate.ofEpochDay(days - CCSDS_TO_JAVA_EPOCH_DAYS),
+            secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60, picosOfDay % PICOS_PER_SECOND);
+    }
+}
@@ -0,0 +1,125 @@
+package cdds.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import ccsds.cdds.v1.Types.DateTime;
+
+/**
+ * Test for the CDDS time and clock
+ *
+ * 1) testConversions - Converts between DateTime, Instant, nanoseconds and CddsTime, keeping the picoseconds,
+ *                     and formats whole minutes and midnight with the seconds
+ * 2) testArithmetic - Adds and subtracts across day boundaries, compares and takes differences
+ * 3) testClock - Reads the system clock against Instant.now() and a clock stepped over midnight
+ */
+public class CddsTimeTest {
+
+    @Test
+    public void testConversions() {
+        CddsTime time = CddsTime.of(24_000, 43_200_123, 456_789_012);
+        assertEquals(24_000, time.getDays());
+        assertEquals(43_200_123, time.getMsOfDay());
+        assertEquals(456_789_012, time.getPicoSecsOfMs());
+
+        DateTime dateTime = time.toDateTime();
+        assertEquals(time, CddsTime.of(dateTime));
+        assertEquals(456_789_012, dateTime.getPicoSecsOfMs());
+        assertEquals(TimeUtil.toNanos(dateTime), time.toNanos());
+        assertEquals(CddsTime.of(24_000, 43_200_123, 456_789_000), CddsTime.ofNanos(time.toNanos()));
+
+        Instant instant = Instant.parse("2025-09-01T12:34:56.123456789Z");
+        CddsTime fromInstant = CddsTime.ofInstant(instant);
+        assertEquals(instant, fromInstant.toInstant());
+        assertEquals("2025-09-01T12:34:56.123456789000Z", fromInstant.toString());
+        assertEquals("2025-01-01T12:00:00.000000000001Z",
+            CddsTime.ofInstant(Instant.parse("2025-01-01T12:00:00Z")).plusPicos(1).toString()); // whole minute
+        assertEquals("2025-01-01T00:00:00.000000000000Z", CddsTime.ofInstant(Instant.parse("2025-01-01T00:00:00Z")).toString());
+        assertEquals(TimeUtil.dateTime(fromInstant.toDateTime()), instant.atZone(ZoneOffset.UTC).toString());
+
+        assertEquals(CddsTime.EPOCH, CddsTime.ofInstant(Instant.parse("1958-01-01T00:00:00Z")));
+        assertEquals(-1, CddsTime.ofInstant(Instant.parse("1957-12-31T23:59:59Z")).getDays());
+
+        // the previous now() and fromNanos() kept the picoseconds of the millisecond within an int
+        assertEquals(999_999_000, TimeUtil.fromNanos(CddsTime.NANOS_PER_DAY - 1).getPicoSecsOfMs());
+    }
+
+    @Test
+    public void testArithmetic() {
+        CddsTime time = CddsTime.of(100, CddsTime.MS_PER_DAY - 1, CddsTime.PICOS_PER_MS - 1);
+
+        CddsTime next = time.plusPicos(1);
+        assertEquals(CddsTime.of(101, 0, 0), next);
+        assertEquals(time, next.plusPicos(-1));
+        assertEquals(1, time.picosUntil(next));
+        assertEquals(-1, next.picosUntil(time));
+        assertTrue(time.isBefore(next));
+        assertTrue(next.isAfter(time));
+        assertEquals(0, time.compareTo(CddsTime.of(100, CddsTime.MS_PER_DAY - 1, CddsTime.PICOS_PER_MS - 1)));
+
+        assertEquals(CddsTime.of(99, CddsTime.MS_PER_DAY - 1, 0), CddsTime.of(100, 0, 0).plusMillis(-1));
+        assertEquals(CddsTime.of(103, 0, 0), next.plusDays(2));
+        assertEquals(CddsTime.of(101, 1, 500_000), next.plusNanos(1_000_500));
+        assertEquals(CddsTime.of(90, 0, 0), next.plusNanos(-11 * CddsTime.NANOS_PER_DAY));
+        assertEquals(11 * CddsTime.NANOS_PER_DAY, CddsTime.of(90, 0, 0).nanosUntil(next));
+        assertEquals(CddsTime.of(102, 0, 0), CddsTime.of(100, 2 * CddsTime.MS_PER_DAY, 0));
+
+        assertThrows(ArithmeticException.class, () -> CddsTime.EPOCH.picosUntil(CddsTime.EPOCH.plusDays(200)));
+    }
+
+    @Test
+    public void testClock() {
+        CddsClock system = CddsClock.system();
+        long before = CddsTime.ofInstant(Instant.now()).toNanos();
+        CddsTime now = system.now();
+        DateTime filled = system.now(DateTime.newBuilder()).build();
+        long after = CddsTime.ofInstant(Instant.now()).toNanos();
+        assertTrue(before <= now.toNanos() && now.toNanos() <= after);
+        assertTrue(now.toNanos() <= TimeUtil.toNanos(filled) && TimeUtil.toNanos(filled) <= after);
+
+        SteppedClock stepped = new SteppedClock(Instant.parse("2025-12-31T23:59:59.999999999Z"));
+        CddsClock clock = new CddsClock(stepped);
+        assertEquals(CddsTime.ofInstant(stepped.instant()), clock.now());
+        stepped.now = stepped.now.plusNanos(1);
+        assertEquals(CddsTime.ofInstant(stepped.instant()), CddsTime.of(clock.now(DateTime.newBuilder()).build()));
+        assertEquals(0, clock.now().getPicosOfDay());
+        stepped.now = Instant.parse("2025-12-31T12:00:00Z"); // stepped back into the previous day
+        assertEquals(CddsTime.ofInstant(stepped.instant()), clock.now());
+        assertEquals(stepped.instant(), CddsTime.ofNanos(clock.nowNanos()).toInstant());
+    }
+
+    /**
+     * Clock returning a set instant
+     */
+    private static class SteppedClock extends Clock {
+
+        Instant now;
+
+        SteppedClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package cdds.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with a relative precision of 1/64, in the manner of HdrHistogram.
+ *
+ * Values below 128 have a bucket each. Above, each power of two is divided into 64 linear sub buckets, a value
+ * is counted in the sub bucket holding it and reported as the highest value of that sub bucket. The counts cover
+ * the full range of long in 3712 buckets.
+ *
+ * Each recording thread has its own recorder, created on its first recording. A recorder is written by its
+ * thread only, without locks and without contention between the recording threads. A snapshot adds the counts
+ * of all recorders and may be taken while recording.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Recorder> threadRecorder = ThreadLocal.withInitial(this::newRecorder);
+
+    /**
+     * Records a latency in the recorder of the calling thread
+     * @param nanos     The latency, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        threadRecorder.get().record(nanos);
+    }
+
+    /**
+     * @return The recorder of the calling thread, to record without the thread local lookup
+     */
+    public Recorder recorder() {
+        return threadRecorder.get();
+    }
+
+    /**
+     * @return The counts of all recorders
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[NUM_BUCKETS];
+        long max = 0;
+        for(Recorder recorder : recorders) {
+            for(int idx = 0; idx < NUM_BUCKETS; idx++) {
+                counts[idx] += recorder.counts.get(idx);
+            }
+            max = Math.max(max, recorder.max);
+        }
+        return new Snapshot(counts, max);
+    }
+
+    private Recorder newRecorder() {
+        Recorder recorder = new Recorder();
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * @return The index of the bucket counting the value
+     */
+    static int bucketIndex(long value) {
+        int shift = Math.max(0, 64 - SUB_BUCKET_BITS - 1 - Long.numberOfLeadingZeros(value));
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return The highest value counted in the bucket
+     */
+    static long highestValue(int index) {
+        if(index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long subBucket = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * The counts of one recording thread
+     */
+    public static class Recorder {
+
+        private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+        private volatile long max = 0;
+
+        private Recorder() {
+        }
+
+        /**
+         * Records a latency. Called by the owning thread only.
+         * @param nanos     The latency, negative values are recorded as 0
+         */
+        public void record(long nanos) {
+            long value = Math.max(0, nanos);
+            int idx = bucketIndex(value);
+            counts.lazySet(idx, counts.get(idx) + 1);   // single writer
+            if(value > max) {
+                max = value;
+            }
+        }
+    }
+
+    /**
+     * The counts of all recorders at a point in time
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long totalCount;
+        private final long max;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            long total = 0;
+            for(long count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+            this.max = max;
+        }
+
+        /**
+         * @return The number of recorded latencies
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @return The highest recorded latency, exact
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile    The percentile from 0 to 100, e.g. 99.9
+         * @return              The latency not exceeded by the percentile of the recorded latencies, 0 if none
+         */
+        public long getValueAtPercentile(double percentile) {
+            if(totalCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(totalCount * Math.min(100, percentile) / 100));
+            long count = 0;
+            for(int idx = 0; idx < counts.length; idx++) {
+                count += counts[idx];
+                if(count >= rank) {
+                    return Math.min(highestValue(idx), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return The percentiles p50, p99, p99.9 and the maximum in microseconds
+         */
+        @Override
+        public String toString() {
+            return String.format("p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us (%d values)",
+                getValueAtPercentile(50) / 1E3, getValueAtPercentile(99) / 1E3, getValueAtPercentile(99.9) / 1E3,
+                max / 1E3, totalCount);
+        }
+    }
+}
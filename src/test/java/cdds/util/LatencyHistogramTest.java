@@ -0,0 +1,91 @@
+package cdds.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test for the latency histogram
+ *
+ * 1) testBuckets - Checks that each value is counted in a bucket holding it, within the precision
+ * 2) testPercentiles - Records 1 to 100000 ns and checks the percentiles and the maximum
+ * 3) testRecorders - Records from several threads and while taking snapshots, checks the merged counts
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        long[] values = { 0, 1, 127, 128, 129, 130, 1_000, 65_535, 65_536, 1_000_000_007L, 1L << 40, Long.MAX_VALUE };
+        for(long value : values) {
+            int idx = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestValue(idx);
+            assertTrue(highest >= value, "value " + value + " above its bucket");
+            assertTrue(highest - value <= value / 64, "value " + value + " beyond the precision");
+            if(idx > 0) {
+                assertTrue(LatencyHistogram.highestValue(idx - 1) < value, "value " + value + " in a later bucket");
+            }
+        }
+        assertEquals(0, LatencyHistogram.bucketIndex(0));
+        assertEquals(129, LatencyHistogram.highestValue(LatencyHistogram.bucketIndex(128)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().getValueAtPercentile(50));
+
+        for(long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5); // counted as 0
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_001, snapshot.getTotalCount());
+        assertEquals(100_000, snapshot.getMax());
+        assertEquals(100_000, snapshot.getValueAtPercentile(100));
+        assertEquals(0, snapshot.getValueAtPercentile(0));
+        assertWithin(50_000, snapshot.getValueAtPercentile(50));
+        assertWithin(99_000, snapshot.getValueAtPercentile(99));
+        assertWithin(99_900, snapshot.getValueAtPercentile(99.9));
+        System.out.println(snapshot);
+    }
+
+    @Test
+    public void testRecorders() throws InterruptedException {
+        final int numThreads = 4;
+        final int numValues = 100_000;
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        Thread[] threads = new Thread[numThreads];
+        for(int idx = 0; idx < numThreads; idx++) {
+            final long value = (idx + 1) * 1_000L;
+            threads[idx] = new Thread(() -> {
+                LatencyHistogram.Recorder recorder = histogram.recorder();
+                for(int count = 0; count < numValues; count++) {
+                    recorder.record(value);
+                }
+            });
+            threads[idx].start();
+        }
+        long lastCount = 0;
+        for(Thread thread : threads) {
+            while(thread.isAlive()) {
+                long count = histogram.snapshot().getTotalCount();
+                assertTrue(count >= lastCount);
+                lastCount = count;
+                thread.join(1);
+            }
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(numThreads * numValues, snapshot.getTotalCount());
+        assertEquals(numThreads * 1_000L, snapshot.getMax());
+        assertWithin(1_000, snapshot.getValueAtPercentile(25));
+        assertWithin(3_000, snapshot.getValueAtPercentile(75));
+    }
+
+    private static void assertWithin(long expected, long value) {
+        assertTrue(value >= expected && value - expected <= expected / 64, value + " not within precision of " + expected);
+    }
+}
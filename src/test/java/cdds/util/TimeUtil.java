@@ -1,10 +1,8 @@
 package cdds.util;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 
 import ccsds.cdds.v1.Types.DateTime;
 
@@ -12,35 +10,35 @@ import ccsds.cdds.v1.Types.DateTime;
  * Provides some DateTime related functions
  */
 public class TimeUtil {
+
+    private static final long NANOS_PER_DAY = CddsTime.NANOS_PER_DAY;
+
+    /** The offset of System.nanoTime() to the nanoseconds since the CCSDS epoch */
+    private static final long NANO_TIME_OFFSET = nowNanos() - System.nanoTime();
+
     /**
-     * Get the current time
+     * Get the current time from the system CddsClock
      * @return Current time as CDDS DateTime
      */
     public static DateTime now() {
-        
-          // 1. Define the CCSDS epoch: Jan 1, 1958 at UTC
-        LocalDate epochDate = LocalDate.of(1958, 1, 1);
-        ZoneId zone = ZoneOffset.UTC;
-        ZonedDateTime now = ZonedDateTime.now(zone);
-        LocalDate currentDate = now.toLocalDate();
-
-        // 2. Days since epoch
-        int daysSinceEpoch = (int) ChronoUnit.DAYS.between(epochDate, currentDate);
-
-        // 3. Nanoseconds since midnight
-        long nanoOfDay = now.toLocalTime().toNanoOfDay();
-
-        // 4. Milliseconds of the day (integer)
-        int millisOfDay = (int) (nanoOfDay / 1_000_000);
+        return CddsClock.system().now(DateTime.newBuilder()).build();
+    }
 
-        // 5. Picoseconds of the millisecond
-        long nanosWithinMillisecond = nanoOfDay % 1_000_000;
-        int picoOfMillisecond = (int) nanosWithinMillisecond * 1_000;
+    /**
+     * Get the current time without creating a DateTime
+     * @return Current time in nanoseconds since the CCSDS epoch
+     */
+    public static long nowNanos() {
+        return CddsClock.system().nowNanos();
+    }
 
-        return DateTime.newBuilder()
-            .setDays(daysSinceEpoch)
-            .setMsOfDay(millisOfDay)
-            .setPicoSecsOfMs(picoOfMillisecond).build();
+    /**
+     * Get the current time with the resolution of System.nanoTime(), for latency measurements. The clock follows
+     * the system time read once at class initialization, later adjustments of the system time are not followed.
+     * @return Current time in nanoseconds since the CCSDS epoch
+     */
+    public static long preciseNanos() {
+        return System.nanoTime() + NANO_TIME_OFFSET;
     }
 
     /**
@@ -72,4 +70,42 @@ public class TimeUtil {
         return result.toString();        
     }
 
+    /**
+     * Convert CDDS DateTime to nanoseconds since the CCSDS epoch. Picoseconds are truncated.
+     * The value fits a long until the year 2250.
+     * @param dt    The DateTime to convert
+     * @return      The nanoseconds since 01/01/1958
+     */
+    public static long toNanos(DateTime dt) {
+        return toNanos(dt.getDays(), dt.getMsOfDay(), dt.getPicoSecsOfMs());
+    }
+
+    /**
+     * Convert the elements of a CDDS DateTime to nanoseconds since the CCSDS epoch. Picoseconds are truncated.
+     * @param days          The days since 01/01/1958
+     * @param msOfDay       The milliseconds of the day
+     * @param picoSecsOfMs  The picoseconds of the millisecond
+     * @return              The nanoseconds since 01/01/1958
+     */
+    public static long toNanos(long days, long msOfDay, long picoSecsOfMs) {
+        return days * NANOS_PER_DAY
+            + msOfDay * 1_000_000L
+            + picoSecsOfMs / 1_000;
+    }
+
+    /**
+     * Convert nanoseconds since the CCSDS epoch to a CDDS DateTime
+     * @param nanos The nanoseconds since 01/01/1958
+     * @return      The corresponding DateTime
+     */
+    public static DateTime fromNanos(long nanos) {
+        long nanoOfDay = nanos % NANOS_PER_DAY;
+
+        return DateTime.newBuilder()
+            .setDays((int) (nanos / NANOS_PER_DAY))
+            .setMsOfDay((int) (nanoOfDay / 1_000_000))
+            .setPicoSecsOfMs((int) (nanoOfDay % 1_000_000 * 1_000))
+            .build();
+    }
+
 }